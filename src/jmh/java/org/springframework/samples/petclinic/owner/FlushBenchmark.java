@@ -0,0 +1,103 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.Vet;
+
+/**
+ * Cost of flushing a session holding 10,000 managed visits of which {@code modified}
+ * have changed. With the build-time enhanced entities, Hibernate only looks at the
+ * entities that recorded a change; compare with a run on plain entities via
+ * {@code ./gradlew jmh -PskipEnhancement}, where every flush compares the state of all
+ * 10,000 entities with their snapshots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FlushBenchmark {
+
+	private static final int VISITS = 10_000;
+
+	@Param({ "0", "10" })
+	public int modified;
+
+	private SessionFactory sessionFactory;
+
+	private Session session;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		sessionFactory = new Configuration().addAnnotatedClass(Owner.class)
+			.addAnnotatedClass(Pet.class)
+			.addAnnotatedClass(PetType.class)
+			.addAnnotatedClass(Visit.class)
+			.addAnnotatedClass(Vet.class)
+			.addAnnotatedClass(Specialty.class)
+			.setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:flush-benchmark;DB_CLOSE_DELAY=-1")
+			.setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+			.setProperty(AvailableSettings.JAKARTA_VALIDATION_MODE, "none")
+			.setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "50")
+			.buildSessionFactory();
+		sessionFactory.inTransaction(session -> {
+			PetType cat = new PetType();
+			cat.setName("cat");
+			session.persist(cat);
+			Pet leo = new Pet();
+			leo.setName("Leo");
+			leo.setType(cat);
+			session.persist(leo);
+			for (int i = 0; i < VISITS; i++) {
+				Visit visit = new Visit();
+				visit.setDate(LocalDate.of(2020, 1, 1).plusDays(i % 1000));
+				visit.setDescription("checkup");
+				visit.setPet(leo);
+				session.persist(visit);
+			}
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		sessionFactory.close();
+	}
+
+	@Setup(Level.Invocation)
+	public void loadVisits() {
+		session = sessionFactory.openSession();
+		session.beginTransaction();
+		List<Visit> visits = session.createSelectionQuery("from Visit", Visit.class).list();
+		for (int i = 0; i < modified; i++) {
+			Visit visit = visits.get(i * (VISITS / modified));
+			visit.setDate(visit.getDate().plusDays(1));
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void rollback() {
+		session.getTransaction().rollback();
+		session.close();
+	}
+
+	@Benchmark
+	public void flush() {
+		session.flush();
+	}
+
+}
@@ -0,0 +1,110 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.Vet;
+
+/**
+ * Owner graphs (one owner, two pets, three visits each) inserted per second, one
+ * transaction per graph, with ids from the pooled sequences. Without {@code batching}
+ * Hibernate inserts row by row, one round trip per row as it had to with identity ids;
+ * with it, inserts and updates are ordered and sent in JDBC batches, as configured for
+ * production. Run with {@code ./gradlew jmh}.
+ * <p>
+ * Runs against a file-backed H2 database, or against the empty database given by the
+ * {@code benchmark.jdbc.url}, {@code benchmark.jdbc.username} and
+ * {@code benchmark.jdbc.password} system properties, e.g.
+ * {@code jdbc:postgresql://localhost/benchmark?reWriteBatchedInserts=true}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OwnerGraphInsertBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean batching;
+
+	private Path directory;
+
+	private SessionFactory sessionFactory;
+
+	private PetType cat;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("owner-graph-benchmark");
+		String url = System.getProperty("benchmark.jdbc.url", "jdbc:h2:file:" + directory.resolve("petclinic"));
+		Configuration configuration = new Configuration().addAnnotatedClass(Owner.class)
+			.addAnnotatedClass(Pet.class)
+			.addAnnotatedClass(PetType.class)
+			.addAnnotatedClass(Visit.class)
+			.addAnnotatedClass(Vet.class)
+			.addAnnotatedClass(Specialty.class)
+			.setProperty(AvailableSettings.JAKARTA_JDBC_URL, url)
+			.setProperty(AvailableSettings.JAKARTA_JDBC_USER, System.getProperty("benchmark.jdbc.username", "sa"))
+			.setProperty(AvailableSettings.JAKARTA_JDBC_PASSWORD, System.getProperty("benchmark.jdbc.password", ""))
+			.setProperty(AvailableSettings.HBM2DDL_AUTO, "create")
+			.setProperty(AvailableSettings.JAKARTA_VALIDATION_MODE, "none");
+		if (batching) {
+			configuration.setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "50")
+				.setProperty(AvailableSettings.ORDER_INSERTS, "true")
+				.setProperty(AvailableSettings.ORDER_UPDATES, "true");
+		}
+		sessionFactory = configuration.buildSessionFactory();
+		cat = new PetType();
+		cat.setName("cat");
+		sessionFactory.inTransaction(session -> session.persist(cat));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		sessionFactory.close();
+		try (var files = Files.walk(directory)) {
+			files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public Integer insertOwnerGraph() {
+		Owner owner = new Owner();
+		owner.setFirstName("George");
+		owner.setLastName("Franklin");
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		for (int p = 0; p < 2; p++) {
+			Pet pet = new Pet();
+			pet.setName("Leo");
+			pet.setBirthDate(LocalDate.of(2020, 9, 7));
+			pet.setType(cat);
+			for (int v = 0; v < 3; v++) {
+				Visit visit = new Visit();
+				visit.setDate(LocalDate.of(2024, 1, 1).plusDays(v));
+				visit.setDescription("checkup");
+				pet.addVisit(visit);
+			}
+			owner.addPet(pet);
+		}
+		sessionFactory.inTransaction(session -> session.persist(owner));
+		return owner.getId();
+	}
+
+}
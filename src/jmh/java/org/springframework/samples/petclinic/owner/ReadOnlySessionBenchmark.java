@@ -0,0 +1,94 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.FlushMode;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.Vet;
+
+/**
+ * Cost of a GET request that lists 100 owners with their pets, with a regular session
+ * and with the read-only session used for GET requests (see
+ * {@code ReadOnlyRequestFilter}). Run with the GC profiler to see the heap allocated per
+ * request in {@code gc.alloc.rate.norm}:
+ * {@code java -jar build/libs/spring-petclinic-*-jmh.jar ReadOnlySessionBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadOnlySessionBenchmark {
+
+	private static final int OWNERS = 100;
+
+	@Param({ "false", "true" })
+	public boolean readOnly;
+
+	private SessionFactory sessionFactory;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		sessionFactory = new Configuration().addAnnotatedClass(Owner.class)
+			.addAnnotatedClass(Pet.class)
+			.addAnnotatedClass(PetType.class)
+			.addAnnotatedClass(Visit.class)
+			.addAnnotatedClass(Vet.class)
+			.addAnnotatedClass(Specialty.class)
+			.setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:read-only-benchmark;DB_CLOSE_DELAY=-1")
+			.setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+			.setProperty(AvailableSettings.JAKARTA_VALIDATION_MODE, "none")
+			.buildSessionFactory();
+		sessionFactory.inTransaction(session -> {
+			PetType cat = new PetType();
+			cat.setName("cat");
+			session.persist(cat);
+			for (int i = 0; i < OWNERS; i++) {
+				Owner owner = new Owner();
+				owner.setFirstName("George");
+				owner.setLastName("Franklin" + i);
+				owner.setAddress("110 W. Liberty St.");
+				owner.setCity("Madison");
+				owner.setTelephone("6085551023");
+				for (int p = 0; p < 2; p++) {
+					Pet pet = new Pet();
+					pet.setName("Leo" + p);
+					pet.setBirthDate(LocalDate.of(2020, 9, 7));
+					pet.setType(cat);
+					owner.addPet(pet);
+				}
+				session.persist(owner);
+			}
+		});
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		sessionFactory.close();
+	}
+
+	@Benchmark
+	public List<Owner> listOwners() {
+		return sessionFactory.fromTransaction(session -> {
+			if (readOnly) {
+				session.setDefaultReadOnly(true);
+				session.setHibernateFlushMode(FlushMode.MANUAL);
+			}
+			return session.createSelectionQuery("from Owner o order by o.lastName", Owner.class).list();
+		});
+	}
+
+}
@@ -0,0 +1,90 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+/**
+ * Compares the binary {@link VisitDtoSerializer}/{@link VisitDtoDeserializer} pair with
+ * the JSON serializers previously used for the {@code visit} topic. Record sizes are
+ * printed once per trial; run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VisitDtoSerializationBenchmark {
+
+	private static final String TOPIC = "visit";
+
+	private final VisitDto visit = new VisitDto(48213, LocalDate.of(2024, 3, 7), "rabies shot and annual checkup", 3, 1207);
+
+	private final VisitDtoSerializer binarySerializer = new VisitDtoSerializer();
+
+	private final VisitDtoDeserializer binaryDeserializer = new VisitDtoDeserializer();
+
+	private final JsonSerializer<VisitDto> jsonSerializer = new JsonSerializer<>();
+
+	private final JsonDeserializer<VisitDto> jsonDeserializer = new JsonDeserializer<>(VisitDto.class, false);
+
+	private RecordHeaders binaryHeaders;
+
+	private byte[] binaryRecord;
+
+	private RecordHeaders jsonHeaders;
+
+	private byte[] jsonRecord;
+
+	@Setup
+	public void setUp() {
+		binaryHeaders = new RecordHeaders();
+		binaryRecord = binarySerializer.serialize(TOPIC, binaryHeaders, visit);
+		jsonHeaders = new RecordHeaders();
+		jsonRecord = jsonSerializer.serialize(TOPIC, jsonHeaders, visit);
+		System.out.printf("%nbytes per record: binary=%d (+%d header), json=%d (+%d header)%n", binaryRecord.length,
+				headerBytes(binaryHeaders), jsonRecord.length, headerBytes(jsonHeaders));
+	}
+
+	@Benchmark
+	public byte[] serializeBinary() {
+		return binarySerializer.serialize(TOPIC, new RecordHeaders(), visit);
+	}
+
+	@Benchmark
+	public byte[] serializeJson() {
+		return jsonSerializer.serialize(TOPIC, new RecordHeaders(), visit);
+	}
+
+	@Benchmark
+	public VisitDto deserializeBinary() {
+		return binaryDeserializer.deserialize(TOPIC, binaryHeaders, binaryRecord);
+	}
+
+	@Benchmark
+	public VisitDto deserializeJson() {
+		return jsonDeserializer.deserialize(TOPIC, jsonHeaders, jsonRecord);
+	}
+
+	@Benchmark
+	public VisitDto deserializeLegacyJsonThroughBinaryDeserializer() {
+		return binaryDeserializer.deserialize(TOPIC, jsonHeaders, jsonRecord);
+	}
+
+	private static int headerBytes(RecordHeaders headers) {
+		int size = 0;
+		for (var header : headers) {
+			size += header.key().length() + header.value().length;
+		}
+		return size;
+	}
+
+}
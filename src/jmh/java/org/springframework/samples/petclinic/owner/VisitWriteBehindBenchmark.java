@@ -0,0 +1,164 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+/**
+ * New visits saved per second from 32 concurrent request threads against a file-backed
+ * H2 database, through the code the visit form uses: {@link VisitService}, one
+ * transaction per visit, versus {@link VisitWriteBehindService}, which commits a batch of
+ * visits per transaction. Hibernate runs with the production id generation and JDBC
+ * batching, so a batch is inserted with multi-row JDBC batches. Run with
+ * {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(32)
+public class VisitWriteBehindBenchmark {
+
+	private Path directory;
+
+	private AnnotationConfigApplicationContext context;
+
+	private VisitService visitService;
+
+	private VisitWriteBehindService writeBehind;
+
+	private int ownerId;
+
+	private int petId;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("visit-write-behind-benchmark");
+		System.setProperty("benchmark.url", "jdbc:h2:file:" + directory.resolve("petclinic") + ";WRITE_DELAY=0");
+		context = new AnnotationConfigApplicationContext(Context.class);
+		visitService = context.getBean(VisitService.class);
+		writeBehind = context.getBean(VisitWriteBehindService.class);
+		PetType cat = new PetType();
+		cat.setName("cat");
+		Pet pet = new Pet();
+		pet.setName("Leo");
+		pet.setBirthDate(LocalDate.of(2020, 9, 7));
+		context.getBean(EntityManagerFactory.class)
+			.unwrap(SessionFactory.class)
+			.inTransaction(session -> session.persist(cat));
+		pet.setType(cat);
+		Owner owner = new Owner();
+		owner.setFirstName("George");
+		owner.setLastName("Franklin");
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		owner.addPet(pet);
+		owner = context.getBean(OwnerRepository.class).save(owner);
+		ownerId = owner.getId();
+		petId = owner.getPets().get(0).getId();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		context.close();
+		try (var files = Files.walk(directory)) {
+			files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public Visit perRequestCommit() {
+		return visitService.addVisit(ownerId, petId, visit());
+	}
+
+	@Benchmark
+	public void groupCommit() {
+		writeBehind.save(ownerId, petId, visit());
+	}
+
+	private static Visit visit() {
+		Visit visit = new Visit();
+		visit.setDescription("checkup");
+		return visit;
+	}
+
+	@Configuration
+	@EnableJpaRepositories(basePackageClasses = VisitRepository.class)
+	@EnableTransactionManagement
+	static class Context {
+
+		@Bean(destroyMethod = "close")
+		HikariDataSource dataSource() {
+			HikariDataSource dataSource = new HikariDataSource();
+			// the JMH fat jar keeps only one META-INF/services/java.sql.Driver entry
+			dataSource.setDriverClassName("org.h2.Driver");
+			dataSource.setJdbcUrl(System.getProperty("benchmark.url"));
+			dataSource.setMaximumPoolSize(33);
+			return dataSource;
+		}
+
+		@Bean
+		LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+			LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+			factory.setDataSource(dataSource);
+			factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+			factory.setPackagesToScan("org.springframework.samples.petclinic");
+			Properties properties = new Properties();
+			properties.setProperty(AvailableSettings.HBM2DDL_AUTO, "create");
+			properties.setProperty(AvailableSettings.JAKARTA_VALIDATION_MODE, "none");
+			properties.setProperty(AvailableSettings.STATEMENT_BATCH_SIZE, "50");
+			properties.setProperty(AvailableSettings.ORDER_INSERTS, "true");
+			factory.setJpaProperties(properties);
+			return factory;
+		}
+
+		@Bean
+		JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+			return new JpaTransactionManager(entityManagerFactory);
+		}
+
+		@Bean
+		VisitService visitService(PetRepository pets, VisitRepository visits) {
+			return new VisitService(pets, visits);
+		}
+
+		@Bean
+		VisitWriteBehindService visitWriteBehindService(PetRepository pets, VisitRepository visits,
+				DataSource dataSource, PlatformTransactionManager transactionManager) {
+			return new VisitWriteBehindService(pets, visits, dataSource, transactionManager, 1024, 64, Duration.ofMillis(2),
+					Duration.ofSeconds(5), Duration.ofSeconds(10));
+		}
+
+	}
+
+}
@@ -0,0 +1,115 @@
+package org.springframework.samples.petclinic.system;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Requests per second from 64 request threads against a simulated database that runs 16
+ * statements at full speed and slows down more than proportionally beyond that, as a
+ * database does once it thrashes on locks and buffers. A fixed pool of 4 leaves the
+ * database idle while requests wait, a fixed pool of 64 overloads it, and the
+ * {@link AdaptivePoolSizer}, started at 4, settles near the database's capacity. The
+ * final pool size is printed at the end of each trial. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Threads(64)
+public class AdaptivePoolBenchmark {
+
+	private static final int DATABASE_CAPACITY = 16;
+
+	private static final long STATEMENT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+	private static final AtomicInteger running = new AtomicInteger();
+
+	@Param({ "fixed-4", "fixed-64", "adaptive" })
+	public String pool;
+
+	private HikariDataSource hikari;
+
+	private SlowQueryLog slowQueryLog;
+
+	private SlowQueryDataSource dataSource;
+
+	private ScheduledExecutorService scheduler;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException, ClassNotFoundException {
+		// the JMH fat jar keeps only one META-INF/services/java.sql.Driver entry
+		Class.forName("org.h2.Driver");
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		hikari = new HikariDataSource();
+		hikari.setJdbcUrl("jdbc:h2:mem:adaptive-pool;DB_CLOSE_DELAY=-1");
+		hikari.setPoolName("benchmark");
+		hikari.setMinimumIdle(4);
+		hikari.setMaximumPoolSize(pool.equals("fixed-64") ? 64 : 4);
+		hikari.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+		slowQueryLog = new SlowQueryLog(16, Duration.ofMinutes(1), 0, false, registry);
+		dataSource = new SlowQueryDataSource(hikari, slowQueryLog);
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute("CREATE ALIAS IF NOT EXISTS WORK FOR \"" + getClass().getName() + ".work\"");
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		if (pool.equals("adaptive")) {
+			AdaptivePoolSizer sizer = new AdaptivePoolSizer(hikari, registry, 4, 64, Duration.ofMillis(1));
+			scheduler.scheduleWithFixedDelay(sizer::adjust, 100, 100, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		scheduler.shutdownNow();
+		System.out.println("Final pool size: " + hikari.getMaximumPoolSize());
+		slowQueryLog.close();
+		hikari.close();
+	}
+
+	@Benchmark
+	public void request() throws SQLException {
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute("CALL WORK()");
+		}
+	}
+
+	/**
+	 * The simulated statement: full speed up to the capacity, then slower with the square
+	 * of the overload.
+	 */
+	public static int work() {
+		int concurrent = running.incrementAndGet();
+		try {
+			double overload = Math.max(1, (double) concurrent / DATABASE_CAPACITY);
+			LockSupport.parkNanos((long) (STATEMENT_NANOS * overload * overload));
+			return concurrent;
+		}
+		finally {
+			running.decrementAndGet();
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Rows loaded by the {@link BulkLoader}, per table in loading order, and the dates of the
+ * first and last loaded visit, both {@code null} when no visit was loaded.
+ */
+public record BulkLoadReport(List<TableLoad> tables, LocalDate firstVisit, LocalDate lastVisit) {
+
+	public long rows() {
+		return tables.stream().mapToLong(TableLoad::rows).sum();
+	}
+
+	public Duration elapsed() {
+		return tables.stream().map(TableLoad::elapsed).reduce(Duration.ZERO, Duration::plus);
+	}
+
+	public double rowsPerSecond() {
+		return rowsPerSecond(rows(), elapsed());
+	}
+
+	/**
+	 * One table: staging, resolving references and inserting.
+	 */
+	public record TableLoad(String table, long rows, Duration elapsed) {
+
+		public double rowsPerSecond() {
+			return BulkLoadReport.rowsPerSecond(rows, elapsed);
+		}
+
+	}
+
+	private static double rowsPerSecond(long rows, Duration elapsed) {
+		return elapsed.isZero() ? 0 : rows * 1e9 / elapsed.toNanos();
+	}
+
+}
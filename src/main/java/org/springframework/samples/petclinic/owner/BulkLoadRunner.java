@@ -0,0 +1,66 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.vet.VisitRollupReconciler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Runs the {@link BulkLoader} on startup over the directory given by
+ * {@code petclinic.bulk-load.directory}, then brings the owner and pet counters and the
+ * visit rollups of the loaded visits' dates up to date, which the loader's plain SQL does
+ * not maintain. Files loaded by an earlier start are skipped, so the property can stay
+ * set.
+ */
+@Component
+@ConditionalOnProperty("petclinic.bulk-load.directory")
+class BulkLoadRunner implements ApplicationRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(BulkLoadRunner.class);
+
+	private final BulkLoader loader;
+
+	private final OwnerCounterReconciler reconciler;
+
+	private final VisitRollupReconciler rollups;
+
+	private final Path directory;
+
+	BulkLoadRunner(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			OwnerCounterReconciler reconciler, VisitRollupReconciler rollups,
+			@Value("${petclinic.bulk-load.directory}") Path directory) {
+		this.loader = new BulkLoader(jdbcTemplate, transactionManager);
+		this.reconciler = reconciler;
+		this.rollups = rollups;
+		this.directory = directory;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		BulkLoadReport report = loader.load(directory);
+		if (report.tables().isEmpty()) {
+			log.info("Nothing new to load from {}", directory);
+			return;
+		}
+		for (BulkLoadReport.TableLoad table : report.tables()) {
+			log.info("Loaded {} {} in {} ms, {} rows/s", table.rows(), table.table(), table.elapsed().toMillis(),
+					Math.round(table.rowsPerSecond()));
+		}
+		log.info("Loaded {} rows from {} in {} ms, {} rows/s", report.rows(), directory,
+				report.elapsed().toMillis(), Math.round(report.rowsPerSecond()));
+		reconciler.reconcile();
+		if (report.firstVisit() != null) {
+			// the loaded visits may be older than the reconcile window
+			rollups.reconcileRange(report.firstVisit(), report.lastVisit());
+		}
+	}
+
+}
@@ -0,0 +1,362 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Loads vets, owners, pets and visits exported from another system, in one transaction.
+ * Each table comes from a CSV file named after it, with a header row, and is streamed
+ * into a temporary staging table: with {@code COPY} on PostgreSQL, with batched inserts
+ * elsewhere. The staged rows get ids from the table's sequence, in blocks of 50 like
+ * Hibernate's. Each table is then filled with a single {@code INSERT ... SELECT}, and the
+ * id every row got is recorded in {@code bulk_load_ids} under its id in the other system.
+ * References, given as the other system's ids, are resolved through that mapping, so they
+ * may point to rows of the same load or of an earlier one. Pet types are matched by name
+ * and must exist.
+ * <p>
+ * Loads can be repeated over the same directory: a file whose checksum is recorded in
+ * {@code bulk_load_history} is skipped, and rows of a changed file that an earlier load
+ * already added are left out, so a re-export only adds its new rows.
+ * <p>
+ * The files, all optional, and their columns:
+ * <ul>
+ * <li>{@code vets.csv}: {@code legacy_id, first_name, last_name}</li>
+ * <li>{@code owners.csv}: {@code legacy_id, first_name, last_name, address, city,
+ * telephone}</li>
+ * <li>{@code pets.csv}: {@code legacy_id, owner_legacy_id, name, birth_date, type}</li>
+ * <li>{@code visits.csv}: {@code legacy_id, pet_legacy_id, vet_legacy_id, visit_date,
+ * description}</li>
+ * </ul>
+ * Dates are ISO dates, empty unquoted values are nulls.
+ */
+public class BulkLoader {
+
+	private static final int BLOCK_SIZE = 50;
+
+	private static final int BATCH_SIZE = 1000;
+
+	private static final List<Table> TABLES = List.of(
+			new Table("vets", "legacy_id, first_name, last_name",
+					"legacy_id VARCHAR(255) UNIQUE, first_name VARCHAR(255), last_name VARCHAR(255)",
+					"INSERT INTO vets (id, first_name, last_name) SELECT id, first_name, last_name FROM staging_vets",
+					List.of()),
+			new Table("owners", "legacy_id, first_name, last_name, address, city, telephone",
+					"legacy_id VARCHAR(255) UNIQUE, first_name VARCHAR(255), last_name VARCHAR(255), "
+							+ "address VARCHAR(255), city VARCHAR(255), telephone VARCHAR(255)",
+					"INSERT INTO owners (id, first_name, last_name, address, city, telephone) "
+							+ "SELECT id, first_name, last_name, address, city, telephone FROM staging_owners",
+					List.of()),
+			new Table("pets", "legacy_id, owner_legacy_id, name, birth_date, type",
+					"legacy_id VARCHAR(255) UNIQUE, owner_legacy_id VARCHAR(255), name VARCHAR(255), "
+							+ "birth_date DATE, type VARCHAR(255)",
+					"INSERT INTO pets (id, name, birth_date, type_id, owner_id) "
+							+ "SELECT s.id, s.name, s.birth_date, t.id, o.id FROM staging_pets s "
+							+ "JOIN types t ON t.name = s.type "
+							+ "LEFT JOIN bulk_load_ids o "
+							+ "ON o.table_name = 'owners' AND o.legacy_id = s.owner_legacy_id",
+					List.of(new Check("pets of an unknown type", "SELECT COUNT(*) FROM staging_pets s "
+							+ "WHERE NOT EXISTS (SELECT 1 FROM types t WHERE t.name = s.type)"),
+							new Check("pets of an unknown owner", "SELECT COUNT(*) FROM staging_pets s "
+									+ "WHERE s.owner_legacy_id IS NOT NULL AND NOT EXISTS "
+									+ "(SELECT 1 FROM bulk_load_ids o "
+									+ "WHERE o.table_name = 'owners' AND o.legacy_id = s.owner_legacy_id)"))),
+			new Table("visits", "legacy_id, pet_legacy_id, vet_legacy_id, visit_date, description",
+					"legacy_id VARCHAR(255) UNIQUE, pet_legacy_id VARCHAR(255), vet_legacy_id VARCHAR(255), "
+							+ "visit_date DATE, description VARCHAR(255)",
+					"INSERT INTO visits (id, pet_id, vet_id, visit_date, description) "
+							+ "SELECT s.id, p.id, v.id, s.visit_date, s.description FROM staging_visits s "
+							+ "JOIN bulk_load_ids p ON p.table_name = 'pets' AND p.legacy_id = s.pet_legacy_id "
+							+ "LEFT JOIN bulk_load_ids v ON v.table_name = 'vets' AND v.legacy_id = s.vet_legacy_id",
+					List.of(new Check("visits of an unknown pet", "SELECT COUNT(*) FROM staging_visits s "
+							+ "WHERE NOT EXISTS (SELECT 1 FROM bulk_load_ids p "
+							+ "WHERE p.table_name = 'pets' AND p.legacy_id = s.pet_legacy_id)"),
+							new Check("visits of an unknown vet", "SELECT COUNT(*) FROM staging_visits s "
+									+ "WHERE s.vet_legacy_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM bulk_load_ids v "
+									+ "WHERE v.table_name = 'vets' AND v.legacy_id = s.vet_legacy_id)"))));
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	public BulkLoader(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * Load the CSV files found in {@code directory} that were not loaded before, all or
+	 * nothing.
+	 * @throws IllegalArgumentException if a file has unexpected columns or refers to
+	 * rows that do not exist
+	 */
+	public BulkLoadReport load(Path directory) {
+		return transactionTemplate.execute(status -> {
+			boolean postgres = isPostgres();
+			createStagingTables(postgres);
+			List<BulkLoadReport.TableLoad> loads = new ArrayList<>();
+			LocalDate firstVisit = null;
+			LocalDate lastVisit = null;
+			for (Table table : TABLES) {
+				Path file = directory.resolve(table.name() + ".csv");
+				if (Files.exists(file)) {
+					String checksum = checksum(file);
+					if (!isLoaded(file, checksum)) {
+						BulkLoadReport.TableLoad load = load(table, file, postgres);
+						jdbcTemplate.update("INSERT INTO bulk_load_history (file_name, checksum, row_count, loaded_at) "
+								+ "VALUES (?, ?, ?, CURRENT_TIMESTAMP)", file.getFileName().toString(), checksum,
+								load.rows());
+						loads.add(load);
+						if (table.name().equals("visits")) {
+							firstVisit = jdbcTemplate.queryForObject("SELECT MIN(visit_date) FROM staging_visits",
+									LocalDate.class);
+							lastVisit = jdbcTemplate.queryForObject("SELECT MAX(visit_date) FROM staging_visits",
+									LocalDate.class);
+						}
+					}
+				}
+			}
+			if (postgres) {
+				// fresh statistics for the planner, the tables may have grown many times over
+				loads.forEach(load -> jdbcTemplate.execute("ANALYZE " + load.table()));
+			}
+			return new BulkLoadReport(loads, firstVisit, lastVisit);
+		});
+	}
+
+	private void createStagingTables(boolean postgres) {
+		// H2 commits the open transaction on DDL unless the table is TRANSACTIONAL
+		String options = postgres ? " ON COMMIT DROP" : " ON COMMIT DROP TRANSACTIONAL";
+		for (Table table : TABLES) {
+			jdbcTemplate.execute("CREATE LOCAL TEMPORARY TABLE staging_" + table.name()
+					+ " (rn BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY, id INTEGER, " + table.stagingColumns()
+					+ ")" + options);
+		}
+		jdbcTemplate.execute(
+				"CREATE LOCAL TEMPORARY TABLE staging_blocks (block BIGINT PRIMARY KEY, top BIGINT)" + options);
+		jdbcTemplate
+			.execute("CREATE LOCAL TEMPORARY TABLE staging_order (rn BIGINT PRIMARY KEY, n BIGINT)" + options);
+	}
+
+	private boolean isLoaded(Path file, String checksum) {
+		return jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM bulk_load_history WHERE file_name = ? AND checksum = ?", Long.class,
+				file.getFileName().toString(), checksum) > 0;
+	}
+
+	private BulkLoadReport.TableLoad load(Table table, Path file, boolean postgres) {
+		long start = System.nanoTime();
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String header = reader.readLine();
+			String expected = table.columns().replace(" ", "");
+			if (header == null || !header.replace(" ", "").equalsIgnoreCase(expected)) {
+				throw new IllegalArgumentException(file + " must start with the header " + expected);
+			}
+			long staged = postgres ? copy(table, reader) : insert(table, reader);
+			staged -= jdbcTemplate.update("DELETE FROM staging_" + table.name() + " s WHERE EXISTS "
+					+ "(SELECT 1 FROM bulk_load_ids m WHERE m.table_name = ? AND m.legacy_id = s.legacy_id)",
+					table.name());
+			assignIds(table, staged, postgres);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		for (Check check : table.checks()) {
+			Long unresolved = jdbcTemplate.queryForObject(check.query(), Long.class);
+			if (unresolved > 0) {
+				throw new IllegalArgumentException(unresolved + " " + check.description() + " in " + file);
+			}
+		}
+		int rows = jdbcTemplate.update(table.insert());
+		jdbcTemplate.update("INSERT INTO bulk_load_ids (table_name, legacy_id, id) "
+				+ "SELECT ?, legacy_id, id FROM staging_" + table.name() + " WHERE legacy_id IS NOT NULL",
+				table.name());
+		return new BulkLoadReport.TableLoad(table.name(), rows, Duration.ofNanos(System.nanoTime() - start));
+	}
+
+	private long copy(Table table, Reader reader) {
+		String sql = "COPY staging_" + table.name() + " (" + table.columns() + ") FROM STDIN WITH (FORMAT csv)";
+		return jdbcTemplate.execute((Connection connection) -> {
+			try {
+				return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, reader);
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		});
+	}
+
+	private long insert(Table table, Reader reader) throws IOException {
+		int columns = table.columns().split(",").length;
+		String sql = "INSERT INTO staging_" + table.name() + " (" + table.columns() + ") VALUES ("
+				+ String.join(", ", Collections.nCopies(columns, "?")) + ")";
+		CsvReader csv = new CsvReader(reader);
+		List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+		long rows = 0;
+		for (List<String> record = csv.next(); record != null; record = csv.next()) {
+			if (record.size() != columns) {
+				throw new IllegalArgumentException(
+						"Record " + (rows + batch.size() + 1) + " of staging_" + table.name() + " has "
+								+ record.size() + " values, expected " + columns);
+			}
+			batch.add(record.toArray());
+			if (batch.size() == BATCH_SIZE) {
+				jdbcTemplate.batchUpdate(sql, batch);
+				rows += batch.size();
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			jdbcTemplate.batchUpdate(sql, batch);
+			rows += batch.size();
+		}
+		return rows;
+	}
+
+	/**
+	 * Give the staged rows ids the way Hibernate's pooled optimizer does: every sequence
+	 * value is the top of a block of 50 ids that belongs to whoever fetched it, so the
+	 * loaded rows and the running application never collide. The rows left out as
+	 * already loaded leave gaps in the staging order, which the ids close.
+	 */
+	private void assignIds(Table table, long rows, boolean postgres) {
+		String sequence = table.name() + "_seq";
+		String values = postgres ? "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)"
+				: "SELECT NEXT VALUE FOR " + sequence + " FROM SYSTEM_RANGE(1, ?)";
+		long blocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		// one spare: the sequence's initial value tops a block that reaches below 1
+		List<Long> tops = jdbcTemplate.queryForList(values, Long.class, blocks + 1)
+			.stream()
+			.filter(top -> top >= BLOCK_SIZE)
+			.limit(blocks)
+			.toList();
+		jdbcTemplate.update("DELETE FROM staging_blocks");
+		jdbcTemplate.batchUpdate("INSERT INTO staging_blocks (block, top) VALUES (?, ?)",
+				IntStream.range(0, tops.size()).mapToObj(i -> new Object[] { i, tops.get(i) }).toList());
+		jdbcTemplate.update("DELETE FROM staging_order");
+		jdbcTemplate.update("INSERT INTO staging_order (rn, n) "
+				+ "SELECT rn, ROW_NUMBER() OVER (ORDER BY rn) - 1 FROM staging_" + table.name());
+		jdbcTemplate.update("UPDATE staging_" + table.name() + " s SET id = (SELECT b.top - " + (BLOCK_SIZE - 1)
+				+ " + MOD(o.n, " + BLOCK_SIZE + ") FROM staging_order o JOIN staging_blocks b ON b.block = o.n / "
+				+ BLOCK_SIZE + " WHERE o.rn = s.rn)");
+	}
+
+	private static String checksum(Path file) {
+		try (InputStream in = Files.newInputStream(file)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] buffer = new byte[8192];
+			for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+				digest.update(buffer, 0, read);
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	private boolean isPostgres() {
+		return Boolean.TRUE.equals(jdbcTemplate.execute(
+				(Connection connection) -> connection.getMetaData().getDatabaseProductName().equals("PostgreSQL")));
+	}
+
+	record Table(String name, String columns, String stagingColumns, String insert, List<Check> checks) {
+	}
+
+	record Check(String description, String query) {
+	}
+
+	/**
+	 * Reads RFC 4180 CSV the way PostgreSQL's {@code COPY} does: quoted values may
+	 * contain commas, line breaks and doubled quotes, and an empty unquoted value is a
+	 * null.
+	 */
+	static class CsvReader {
+
+		private final PushbackReader reader;
+
+		CsvReader(Reader reader) {
+			this.reader = new PushbackReader(reader);
+		}
+
+		/**
+		 * The values of the next record, or {@code null} at the end of the input.
+		 */
+		List<String> next() throws IOException {
+			int c = reader.read();
+			if (c == -1) {
+				return null;
+			}
+			List<String> values = new ArrayList<>();
+			StringBuilder value = new StringBuilder();
+			boolean quoted = false;
+			while (true) {
+				if (c == '"' && value.isEmpty() && !quoted) {
+					quoted = true;
+					c = readQuoted(value);
+				}
+				else if (c == ',' || c == '\n' || c == '\r' || c == -1) {
+					values.add(quoted || !value.isEmpty() ? value.toString() : null);
+					if (c != ',') {
+						if (c == '\r') {
+							int next = reader.read();
+							if (next != '\n' && next != -1) {
+								reader.unread(next);
+							}
+						}
+						return values;
+					}
+					value.setLength(0);
+					quoted = false;
+					c = reader.read();
+				}
+				else {
+					value.append((char) c);
+					c = reader.read();
+				}
+			}
+		}
+
+		private int readQuoted(StringBuilder value) throws IOException {
+			while (true) {
+				int c = reader.read();
+				if (c == -1) {
+					throw new IOException("Unterminated quoted value");
+				}
+				if (c == '"') {
+					c = reader.read();
+					if (c != '"') {
+						return c;
+					}
+				}
+				value.append((char) c);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,32 @@
+package org.springframework.samples.petclinic.owner;
+
+/**
+ * A {@link Pet} with the name of its {@link Owner}, loaded together for the pages about
+ * a single pet.
+ */
+public record OwnedPet(Pet pet, OwnerName owner) {
+
+	public OwnedPet(Pet pet, Integer ownerId, String ownerFirstName, String ownerLastName) {
+		this(pet, new Name(ownerId, ownerFirstName, ownerLastName));
+	}
+
+	private record Name(Integer id, String firstName, String lastName) implements OwnerName {
+
+		@Override
+		public Integer getId() {
+			return this.id;
+		}
+
+		@Override
+		public String getFirstName() {
+			return this.firstName;
+		}
+
+		@Override
+		public String getLastName() {
+			return this.lastName;
+		}
+
+	}
+
+}
@@ -15,9 +15,11 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.hibernate.annotations.BatchSize;
 import org.springframework.core.style.ToStringCreator;
 import org.springframework.samples.petclinic.model.Person;
 import org.springframework.util.Assert;
@@ -59,11 +61,23 @@ public class Owner extends Person {
 	@Digits(fraction = 0, integer = 10)
 	private String telephone;
 
+	// owner lists load the pets of a whole page in one query instead of one per owner
 	@OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
 	@JoinColumn(name = "owner_id")
 	@OrderBy("name")
+	@BatchSize(size = 20)
 	private List<Pet> pets = new ArrayList<>();
 
+	// maintained by OwnerCounterListener, never written through the entity
+	@Column(name = "pet_count", insertable = false, updatable = false)
+	private int petCount;
+
+	@Column(name = "visit_count", insertable = false, updatable = false)
+	private int visitCount;
+
+	@Column(name = "last_visit_date", insertable = false, updatable = false)
+	private LocalDate lastVisitDate;
+
 	public String getAddress() {
 		return this.address;
 	}
@@ -92,6 +106,18 @@ public class Owner extends Person {
 		return this.pets;
 	}
 
+	public int getPetCount() {
+		return this.petCount;
+	}
+
+	public int getVisitCount() {
+		return this.visitCount;
+	}
+
+	public LocalDate getLastVisitDate() {
+		return this.lastVisitDate;
+	}
+
 	public void addPet(Pet pet) {
 		if (pet.isNew()) {
 			getPets().add(pet);
@@ -0,0 +1,11 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Set;
+
+/**
+ * Published by {@link OwnerCounterListener} after a transaction that changed owners,
+ * their pets or their visits has committed, with the ids of the owners whose
+ * {@code aggregate_version} it bumped.
+ */
+public record OwnerAggregateChangedEvent(Set<Integer> ownerIds) {
+}
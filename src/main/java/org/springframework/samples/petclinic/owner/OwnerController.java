@@ -15,6 +15,8 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -46,10 +48,15 @@ class OwnerController {
 
 	private static final String VIEWS_OWNER_CREATE_OR_UPDATE_FORM = "owners/createOrUpdateOwnerForm";
 
+	private static final int LATEST_VISITS = 5;
+
 	private final OwnerRepository owners;
 
-	public OwnerController(OwnerRepository clinicService) {
+	private final VisitRepository visits;
+
+	public OwnerController(OwnerRepository clinicService, VisitRepository visits) {
 		this.owners = clinicService;
+		this.visits = visits;
 	}
 
 	@InitBinder
@@ -92,6 +99,7 @@ class OwnerController {
 			owner.setLastName(""); // empty string signifies broadest possible search
 		}
 
+		page = Math.max(page, 1);
 		// find owners by last name
 		Page<Owner> ownersResults = findPaginatedForOwnersLastName(page, owner.getLastName());
 		if (ownersResults.isEmpty()) {
@@ -127,9 +135,8 @@ class OwnerController {
 	}
 
 	@GetMapping("/owners/{ownerId}/edit")
-	public String initUpdateOwnerForm(@PathVariable("ownerId") int ownerId, Model model) {
-		Owner owner = this.owners.findByIdCustom(ownerId);
-		model.addAttribute(owner);
+	public String initUpdateOwnerForm() {
+		// the owner has already been loaded by findOwner
 		return VIEWS_OWNER_CREATE_OR_UPDATE_FORM;
 	}
 
@@ -147,14 +154,20 @@ class OwnerController {
 
 	/**
 	 * Custom handler for displaying an owner.
-	 * @param ownerId the ID of the owner to display
+	 * @param owner the owner to display, as loaded by {@link #findOwner}
 	 * @return a ModelMap with the model attributes for the view
 	 */
 	@GetMapping("/owners/{ownerId}")
-	public ModelAndView showOwner(@PathVariable("ownerId") int ownerId) {
+	public ModelAndView showOwner(@ModelAttribute(name = "owner", binding = false) Owner owner) {
 		ModelAndView mav = new ModelAndView("owners/ownerDetails");
-		Owner owner = this.owners.findByIdCustom(ownerId);
-		mav.addObject(owner);
+		// only the latest visits of each pet, the full history is paged separately
+		Map<Integer, List<Visit>> latestVisits = new LinkedHashMap<>();
+		owner.getPets().forEach(pet -> latestVisits.put(pet.getId(), new ArrayList<>()));
+		if (!latestVisits.isEmpty()) {
+			this.visits.findLatestByPetIds(latestVisits.keySet(), LATEST_VISITS)
+				.forEach(visit -> latestVisits.get(visit.getPet().getId()).add(visit));
+		}
+		mav.addObject("latestVisits", latestVisits);
 		return mav;
 	}
 
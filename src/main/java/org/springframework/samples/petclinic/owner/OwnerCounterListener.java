@@ -0,0 +1,437 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreDeleteEvent;
+import org.hibernate.event.spi.PreDeleteEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps {@code owners.pet_count}, {@code visit_count} and {@code last_visit_date} and
+ * the same visit counters on {@code pets} up to date in the transaction that changes
+ * pets or visits. Changes are collected per session while flushing and applied once
+ * just before the transaction commits, after the last batched statement has run: visit
+ * counts as increments, so that concurrent transactions do not overwrite each other,
+ * and a last visit date that may have been removed by recomputing it. The owner
+ * counters are updated by owner id, looked up once per transaction for the changed pets,
+ * or before the row is gone for a deleted pet. Visits deleted without Hibernate, such as
+ * archived ones, are reported with {@link #visitsRemoved}; other changes made without
+ * Hibernate are repaired by {@link OwnerCounterReconciler}.
+ * <p>
+ * The same transaction bumps {@code owners.aggregate_version} of every owner whose
+ * details, pets or visits changed, and an {@link OwnerAggregateChangedEvent} is
+ * published once it has committed. A renamed vet bumps the versions of the owners whose
+ * visits show the vet, with a single statement and without an event: their snapshots are
+ * then stale and rendered, and rebuilt, on their next read.
+ */
+@Component
+class OwnerCounterListener implements PostInsertEventListener, PreDeleteEventListener, PostDeleteEventListener,
+		PostUpdateEventListener, PostCollectionRecreateEventListener, PostCollectionUpdateEventListener {
+
+	private static final String ADD_PET_VISITS = "UPDATE pets SET visit_count = visit_count + ?, "
+			+ "last_visit_date = CASE WHEN last_visit_date IS NULL OR last_visit_date < ? THEN ? ELSE last_visit_date END "
+			+ "WHERE id = ?";
+
+	private static final String REMOVE_PET_VISITS = "UPDATE pets SET visit_count = visit_count + ?, "
+			+ "last_visit_date = (SELECT MAX(v.visit_date) FROM visits v WHERE v.pet_id = pets.id) WHERE id = ?";
+
+	private static final String ADD_OWNER_VISITS = "UPDATE owners SET visit_count = visit_count + ?, "
+			+ "last_visit_date = CASE WHEN last_visit_date IS NULL OR last_visit_date < ? THEN ? ELSE last_visit_date END "
+			+ "WHERE id = ?";
+
+	private static final String REMOVE_OWNER_VISITS = "UPDATE owners SET visit_count = visit_count + ?, "
+			+ "last_visit_date = (SELECT MAX(p.last_visit_date) FROM pets p WHERE p.owner_id = owners.id) "
+			+ "WHERE id = ?";
+
+	private static final String COUNT_PETS = "UPDATE owners "
+			+ "SET pet_count = (SELECT COUNT(*) FROM pets p WHERE p.owner_id = owners.id) WHERE id = ?";
+
+	private static final String BUMP_VERSION = "UPDATE owners SET aggregate_version = aggregate_version + 1 "
+			+ "WHERE id = ?";
+
+	private static final String BUMP_VET_VERSIONS = "UPDATE owners SET aggregate_version = aggregate_version + 1 "
+			+ "WHERE id IN (SELECT p.owner_id FROM pets p JOIN visits v ON v.pet_id = p.id WHERE v.vet_id = ?)";
+
+	private final EntityManagerFactory entityManagerFactory;
+
+	private final ApplicationEventPublisher publisher;
+
+	private final Map<SharedSessionContractImplementor, Changes> changes = new ConcurrentHashMap<>();
+
+	OwnerCounterListener(EntityManagerFactory entityManagerFactory, ApplicationEventPublisher publisher) {
+		this.entityManagerFactory = entityManagerFactory;
+		this.publisher = publisher;
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		if (event.getEntity() instanceof Visit visit) {
+			changes(event.getSession()).addVisit(id(visit.getPet()), visit.getDate());
+		}
+		else if (event.getEntity() instanceof Owner owner) {
+			changes(event.getSession()).changedOwners.add(owner.getId());
+		}
+	}
+
+	/**
+	 * Remember the owner of a pet about to be deleted, whose visit counters still have to
+	 * be updated once the pet row is gone.
+	 */
+	@Override
+	public boolean onPreDelete(PreDeleteEvent event) {
+		if (event.getEntity() instanceof Pet pet) {
+			EventSource session = event.getSession();
+			Integer ownerId = (Integer) session.getPersistenceContextInternal()
+				.getOwnerId(Owner.class.getName(), "pets", pet, null);
+			if (ownerId == null) {
+				ownerId = session.doReturningWork(connection -> findOwnerId(connection, pet.getId()));
+			}
+			changes(session).petOwners.put(pet.getId(), ownerId);
+		}
+		return false;
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof Visit visit) {
+			changes(event.getSession()).removeVisit(id(visit.getPet()));
+		}
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (event.getEntity() instanceof Owner owner) {
+			changes(event.getSession()).changedOwners.add(owner.getId());
+			return;
+		}
+		if (event.getEntity() instanceof Pet pet) {
+			changes(event.getSession()).changedPets.add(pet.getId());
+			return;
+		}
+		if (event.getEntity() instanceof Vet vet) {
+			if (isRenamed(event)) {
+				changes(event.getSession()).renamedVets.add(vet.getId());
+			}
+			return;
+		}
+		if (!(event.getEntity() instanceof Visit visit)) {
+			return;
+		}
+		Changes changes = changes(event.getSession());
+		Integer petId = id(visit.getPet());
+		changes.changedPets.add(petId);
+		if (event.getOldState() == null) {
+			// updated without loading it first, the reconciliation repairs the counters
+			return;
+		}
+		List<String> properties = Arrays.asList(event.getPersister().getPropertyNames());
+		Integer oldPetId = id((BaseEntity) event.getOldState()[properties.indexOf("pet")]);
+		LocalDate oldDate = (LocalDate) event.getOldState()[properties.indexOf("date")];
+		if (Objects.equals(oldPetId, petId) && Objects.equals(oldDate, visit.getDate())) {
+			return;
+		}
+		changes.removeVisit(oldPetId);
+		changes.addVisit(petId, visit.getDate());
+	}
+
+	private static boolean isRenamed(PostUpdateEvent event) {
+		if (event.getOldState() == null) {
+			return true;
+		}
+		List<String> properties = Arrays.asList(event.getPersister().getPropertyNames());
+		for (String name : List.of("firstName", "lastName")) {
+			int index = properties.indexOf(name);
+			if (!Objects.equals(event.getOldState()[index], event.getState()[index])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Count visits deleted by a bulk statement of the current transaction as removed,
+	 * one pet id per visit.
+	 */
+	void visitsRemoved(EntityManager entityManager, List<Integer> petIds) {
+		Changes changes = changes(entityManager.unwrap(EventSource.class));
+		petIds.forEach(changes::removeVisit);
+	}
+
+	@Override
+	public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+		countPets(event);
+	}
+
+	@Override
+	public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+		countPets(event);
+	}
+
+	private void countPets(AbstractCollectionEvent event) {
+		// pets is the only collection of owners
+		if (Owner.class.getName().equals(event.getAffectedOwnerEntityName())
+				&& event.getAffectedOwnerIdOrNull() != null) {
+			Changes changes = changes(event.getSession());
+			changes.owners.add((Integer) event.getAffectedOwnerIdOrNull());
+			changes.changedOwners.add((Integer) event.getAffectedOwnerIdOrNull());
+		}
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return false;
+	}
+
+	private Changes changes(EventSource session) {
+		return changes.computeIfAbsent(session, key -> {
+			session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) completing -> {
+				Changes collected = changes.get(session);
+				if (collected != null) {
+					completing.doWork(collected::apply);
+				}
+			});
+			session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, completed) -> {
+				Changes collected = changes.remove(session);
+				if (success && collected != null && !collected.changedOwners.isEmpty()) {
+					publisher.publishEvent(new OwnerAggregateChangedEvent(Set.copyOf(collected.changedOwners)));
+				}
+			});
+			return new Changes();
+		});
+	}
+
+	private static Integer id(BaseEntity entity) {
+		return entity == null ? null : entity.getId();
+	}
+
+	private static Integer findOwnerId(Connection connection, Integer petId) throws SQLException {
+		try (PreparedStatement select = connection.prepareStatement("SELECT owner_id FROM pets WHERE id = ?")) {
+			select.setInt(1, petId);
+			try (ResultSet rs = select.executeQuery()) {
+				return rs.next() ? rs.getObject(1, Integer.class) : null;
+			}
+		}
+	}
+
+	@PostConstruct
+	void register() {
+		EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+			.getServiceRegistry()
+			.getService(EventListenerRegistry.class);
+		registry.appendListeners(EventType.POST_INSERT, this);
+		registry.appendListeners(EventType.PRE_DELETE, this);
+		registry.appendListeners(EventType.POST_DELETE, this);
+		registry.appendListeners(EventType.POST_UPDATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+		registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+	}
+
+	/**
+	 * The counter changes of one transaction.
+	 */
+	private static class Changes {
+
+		private final Map<Integer, Visits> pets = new LinkedHashMap<>();
+
+		// the owner of each changed pet, null for a pet without one
+		private final Map<Integer, Integer> petOwners = new HashMap<>();
+
+		private final Set<Integer> owners = new LinkedHashSet<>();
+
+		private final Set<Integer> changedOwners = new LinkedHashSet<>();
+
+		private final Set<Integer> changedPets = new LinkedHashSet<>();
+
+		private final Set<Integer> renamedVets = new LinkedHashSet<>();
+
+		void addVisit(Integer petId, LocalDate date) {
+			changedPets.add(petId);
+			if (petId != null) {
+				Visits visits = pets.computeIfAbsent(petId, id -> new Visits());
+				visits.delta++;
+				if (date != null && (visits.latest == null || date.isAfter(visits.latest))) {
+					visits.latest = date;
+				}
+			}
+		}
+
+		void removeVisit(Integer petId) {
+			changedPets.add(petId);
+			if (petId != null) {
+				Visits visits = pets.computeIfAbsent(petId, id -> new Visits());
+				visits.delta--;
+				visits.removed = true;
+			}
+		}
+
+		void apply(Connection connection) throws SQLException {
+			changedPets.remove(null);
+			changedOwners.remove(null);
+			findOwners(connection);
+			// pets first, the owner's last visit date may be recomputed from them
+			try (PreparedStatement add = connection.prepareStatement(ADD_PET_VISITS);
+					PreparedStatement remove = connection.prepareStatement(REMOVE_PET_VISITS)) {
+				bindVisits(pets, add, remove);
+			}
+			try (PreparedStatement add = connection.prepareStatement(ADD_OWNER_VISITS);
+					PreparedStatement remove = connection.prepareStatement(REMOVE_OWNER_VISITS)) {
+				bindVisits(ownerVisits(), add, remove);
+			}
+			if (!owners.isEmpty()) {
+				try (PreparedStatement count = connection.prepareStatement(COUNT_PETS)) {
+					for (Integer ownerId : owners) {
+						count.setInt(1, ownerId);
+						count.addBatch();
+					}
+					count.executeBatch();
+				}
+			}
+			for (Integer petId : changedPets) {
+				Integer ownerId = petOwners.get(petId);
+				if (ownerId != null) {
+					changedOwners.add(ownerId);
+				}
+			}
+			if (!changedOwners.isEmpty()) {
+				try (PreparedStatement bump = connection.prepareStatement(BUMP_VERSION)) {
+					for (Integer ownerId : changedOwners) {
+						bump.setInt(1, ownerId);
+						bump.addBatch();
+					}
+					bump.executeBatch();
+				}
+			}
+			if (!renamedVets.isEmpty()) {
+				try (PreparedStatement bump = connection.prepareStatement(BUMP_VET_VERSIONS)) {
+					for (Integer vetId : renamedVets) {
+						bump.setInt(1, vetId);
+						bump.addBatch();
+					}
+					bump.executeBatch();
+				}
+			}
+		}
+
+		/**
+		 * Look up the owners of the changed pets not known yet, in one statement.
+		 */
+		private void findOwners(Connection connection) throws SQLException {
+			Set<Integer> unknown = new LinkedHashSet<>(changedPets);
+			unknown.removeAll(petOwners.keySet());
+			if (unknown.isEmpty()) {
+				return;
+			}
+			String placeholders = unknown.stream().map(id -> "?").collect(Collectors.joining(", "));
+			try (PreparedStatement select = connection
+				.prepareStatement("SELECT id, owner_id FROM pets WHERE id IN (" + placeholders + ")")) {
+				int index = 1;
+				for (Integer petId : unknown) {
+					select.setInt(index++, petId);
+				}
+				try (ResultSet rs = select.executeQuery()) {
+					while (rs.next()) {
+						petOwners.put(rs.getInt(1), rs.getObject(2, Integer.class));
+					}
+				}
+			}
+		}
+
+		/**
+		 * The visit changes of the pets summed up per owner.
+		 */
+		private Map<Integer, Visits> ownerVisits() {
+			Map<Integer, Visits> ownerVisits = new LinkedHashMap<>();
+			for (Map.Entry<Integer, Visits> pet : pets.entrySet()) {
+				Integer ownerId = petOwners.get(pet.getKey());
+				if (ownerId == null) {
+					continue;
+				}
+				Visits visits = ownerVisits.computeIfAbsent(ownerId, id -> new Visits());
+				visits.delta += pet.getValue().delta;
+				visits.removed |= pet.getValue().removed;
+				LocalDate latest = pet.getValue().latest;
+				if (latest != null && (visits.latest == null || latest.isAfter(visits.latest))) {
+					visits.latest = latest;
+				}
+			}
+			return ownerVisits;
+		}
+
+		private static void bindVisits(Map<Integer, Visits> rows, PreparedStatement add, PreparedStatement remove)
+				throws SQLException {
+			for (Map.Entry<Integer, Visits> row : rows.entrySet()) {
+				Visits visits = row.getValue();
+				if (visits.removed) {
+					remove.setInt(1, visits.delta);
+					remove.setInt(2, row.getKey());
+					remove.addBatch();
+				}
+				else {
+					Date latest = visits.latest == null ? null : Date.valueOf(visits.latest);
+					add.setInt(1, visits.delta);
+					add.setDate(2, latest);
+					add.setDate(3, latest);
+					add.setInt(4, row.getKey());
+					add.addBatch();
+				}
+			}
+			add.executeBatch();
+			remove.executeBatch();
+		}
+
+	}
+
+	/**
+	 * The visit changes of one pet or owner.
+	 */
+	private static class Visits {
+
+		private int delta;
+
+		private LocalDate latest;
+
+		private boolean removed;
+
+	}
+
+}
@@ -0,0 +1,81 @@
+package org.springframework.samples.petclinic.owner;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Periodically recomputes the counters kept by {@link OwnerCounterListener} from
+ * {@code pets} and {@code visits} and overwrites the rows that drifted, e.g. because
+ * visits were changed with SQL. Runs on every shard of a sharded database.
+ */
+@Component
+class OwnerCounterReconciler {
+
+	private static final Logger log = LoggerFactory.getLogger(OwnerCounterReconciler.class);
+
+	private static final String VISIT_COUNT = "(SELECT COUNT(*) FROM visits v WHERE v.pet_id = pets.id)";
+
+	private static final String LAST_VISIT = "(SELECT MAX(v.visit_date) FROM visits v WHERE v.pet_id = pets.id)";
+
+	private static final String PET_COUNT = "(SELECT COUNT(*) FROM pets p WHERE p.owner_id = owners.id)";
+
+	private static final String OWNER_VISIT_COUNT = "(SELECT COALESCE(SUM(p.visit_count), 0) FROM pets p "
+			+ "WHERE p.owner_id = owners.id)";
+
+	private static final String OWNER_LAST_VISIT = "(SELECT MAX(p.last_visit_date) FROM pets p "
+			+ "WHERE p.owner_id = owners.id)";
+
+	private static final String REPAIR_PETS = "UPDATE pets SET visit_count = " + VISIT_COUNT + ", last_visit_date = "
+			+ LAST_VISIT + " WHERE visit_count <> " + VISIT_COUNT + " OR last_visit_date IS DISTINCT FROM "
+			+ LAST_VISIT;
+
+	private static final String REPAIR_OWNERS = "UPDATE owners SET pet_count = " + PET_COUNT + ", visit_count = "
+			+ OWNER_VISIT_COUNT + ", last_visit_date = " + OWNER_LAST_VISIT + " WHERE pet_count <> " + PET_COUNT
+			+ " OR visit_count <> " + OWNER_VISIT_COUNT + " OR last_visit_date IS DISTINCT FROM " + OWNER_LAST_VISIT;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final Counter repaired;
+
+	OwnerCounterReconciler(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			MeterRegistry registry) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.repaired = Counter.builder("petclinic.owners.counters.repaired")
+			.description("Owner and pet counter rows found out of date by reconciliation")
+			.register(registry);
+	}
+
+	@Scheduled(cron = "${petclinic.owners.counters.reconcile-cron:0 30 4 * * *}")
+	public void reconcileAll() {
+		int rows = ShardRoutingDataSource.callOnEach(jdbcTemplate.getDataSource(), this::reconcile)
+			.stream()
+			.mapToInt(Integer::intValue)
+			.sum();
+		repaired.increment(rows);
+		if (rows > 0) {
+			log.warn("Repaired {} owner and pet counter rows", rows);
+		}
+	}
+
+	/**
+	 * Recompute all counters, pets first since the owner counters add up theirs.
+	 * @return the number of rows that were repaired
+	 */
+	int reconcile() {
+		Integer rows = transactionTemplate
+			.execute(status -> jdbcTemplate.update(REPAIR_PETS) + jdbcTemplate.update(REPAIR_OWNERS));
+		return rows;
+	}
+
+}
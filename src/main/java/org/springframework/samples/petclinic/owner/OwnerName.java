@@ -0,0 +1,14 @@
+package org.springframework.samples.petclinic.owner;
+
+/**
+ * The columns of an {@link Owner} a page header shows, loaded without its pets.
+ */
+public interface OwnerName {
+
+	Integer getId();
+
+	String getFirstName();
+
+	String getLastName();
+
+}
@@ -24,6 +24,7 @@ import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -64,10 +65,34 @@ public interface OwnerRepository extends Repository<Owner, Integer>, ListCrudRep
 	 * @param id the id to search for
 	 * @return the {@link Owner} if found
 	 */
-	@Query("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id")
+	@Query("SELECT owner FROM Owner owner left join fetch owner.pets pet left join fetch pet.type WHERE owner.id =:id")
 	@Transactional(readOnly = true)
 	Owner findByIdCustom(@Param("id") Integer id);
 
+	/**
+	 * Retrieve the {@link Owner}s with the given ids, with their pets and pet types, in
+	 * one query. Call {@link #findPetsWithVisitsByOwnerIdIn} in the same transaction to
+	 * load the visits of the pets as well.
+	 * @param ids the owners to search for
+	 * @return the owners found, in no particular order
+	 */
+	@Query("SELECT DISTINCT owner FROM Owner owner LEFT JOIN FETCH owner.pets pet LEFT JOIN FETCH pet.type "
+			+ "WHERE owner.id IN :ids")
+	@Transactional(readOnly = true)
+	List<Owner> findWithPetsByIdIn(@Param("ids") Collection<Integer> ids);
+
+	/**
+	 * Retrieve the pets of the given owners with their visits and the visits' vets, in
+	 * one query. The vets' eager specialties are fetched along, not by another query.
+	 * This initializes the visits of pets that the current transaction loaded already,
+	 * such as those of {@link #findWithPetsByIdIn}.
+	 * @param ownerIds the owners whose pets to load
+	 */
+	@Query("SELECT DISTINCT pet FROM Owner owner JOIN owner.pets pet LEFT JOIN FETCH pet.visits visit "
+			+ "LEFT JOIN FETCH visit.vet vet LEFT JOIN FETCH vet.specialties WHERE owner.id IN :ownerIds")
+	@Transactional(readOnly = true)
+	List<Pet> findPetsWithVisitsByOwnerIdIn(@Param("ownerIds") Collection<Integer> ownerIds);
+
 	/**
 	 * Returns all the owners from data store
 	 **/
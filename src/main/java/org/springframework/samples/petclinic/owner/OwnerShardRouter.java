@@ -0,0 +1,273 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.samples.petclinic.system.ShardIdAllocator;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Sends {@link OwnerRepository} calls to the shards holding the owners. Calls by owner
+ * id, or by owner ids that all live on one shard, and saves and deletes of an owner,
+ * run on the owner's shard, which the rest of the request then sticks to; new owners
+ * take turns over the shards. Searches run on every shard in parallel and their results
+ * are merged: pages are re-sorted and cut from the first {@code offset + size} rows of
+ * each shard, so deep pages cost more with every shard. Searches can only be sorted by
+ * numeric and date properties, such as {@code id}, {@code visitCount} or
+ * {@code lastVisitDate}: strings would be re-sorted by Java's order rather than the
+ * database collation every shard sorted them by, so merged pages could skip or repeat
+ * rows. Repository methods whose results cannot be merged are
+ * {@link #checkMergeable rejected} on startup.
+ * <p>
+ * A call runs in its own transaction on its shard. Calls for another shard than the one
+ * of an active transaction fail, and searches do not see the active transaction's
+ * changes.
+ */
+class OwnerShardRouter implements MethodInterceptor, AutoCloseable {
+
+	private static final Sort BY_ID = Sort.by("id");
+
+	private final ShardIdAllocator allocator;
+
+	private final ExecutorService executor;
+
+	OwnerShardRouter(ShardIdAllocator allocator, int threads) {
+		this.allocator = allocator;
+		this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("owner-shards-"));
+	}
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		Object[] arguments = invocation.getArguments();
+		if (arguments.length == 1 && arguments[0] instanceof Integer id) {
+			return onShard(allocator.shardOf(id), invocation);
+		}
+		if (arguments.length == 1 && arguments[0] instanceof Owner owner) {
+			return onShard(shardOf(owner), invocation);
+		}
+		if (arguments.length == 1 && arguments[0] instanceof Collection<?> ids && !ids.isEmpty()
+				&& ids.stream().allMatch(Integer.class::isInstance)) {
+			Set<Integer> shards = ids.stream()
+				.map(id -> allocator.shardOf((Integer) id))
+				.collect(Collectors.toSet());
+			if (shards.size() == 1) {
+				return onShard(shards.iterator().next(), invocation);
+			}
+		}
+		if (arguments.length == 1 && arguments[0] instanceof Iterable<?> owners
+				&& StreamSupport.stream(owners.spliterator(), false).allMatch(Owner.class::isInstance)) {
+			return eachOnItsShard(owners, invocation);
+		}
+		if (invocation.getMethod().getName().equals("findPetTypes")) {
+			// reference data, every shard has the same
+			return invocation.proceed();
+		}
+		return scatterGather(invocation);
+	}
+
+	private int shardOf(Owner owner) {
+		return owner.isNew() ? allocator.nextShard() : allocator.shardOf(owner.getId());
+	}
+
+	private Object onShard(int shard, MethodInvocation invocation) throws Throwable {
+		if (ShardRoutingDataSource.currentShard() == shard) {
+			return invocation.proceed();
+		}
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new IllegalStateException("Cannot switch to shard " + shard + " inside a transaction on shard "
+					+ ShardRoutingDataSource.currentShard());
+		}
+		ShardRoutingDataSource.pinRequest(shard);
+		return ShardRoutingDataSource.callOn(shard, () -> proceed(invocation));
+	}
+
+	private Object eachOnItsShard(Iterable<?> owners, MethodInvocation invocation) throws Throwable {
+		List<Object> saved = new ArrayList<>();
+		for (Object owner : owners) {
+			MethodInvocation call = ((ProxyMethodInvocation) invocation).invocableClone(List.of(owner));
+			if (onShard(shardOf((Owner) owner), call) instanceof Iterable<?> result) {
+				result.forEach(saved::add);
+			}
+		}
+		return invocation.getMethod().getReturnType() == void.class ? null : saved;
+	}
+
+	private Object scatterGather(MethodInvocation invocation) throws Throwable {
+		Object[] arguments = invocation.getArguments().clone();
+		Pageable pageable = null;
+		Sort sort = Sort.unsorted();
+		for (int i = 0; i < arguments.length; i++) {
+			if (arguments[i] instanceof Pageable requested) {
+				// a stable order, so that pages do not overlap
+				pageable = requested.getSort().isSorted() ? requested
+						: requested.isPaged() ? PageRequest.of(requested.getPageNumber(), requested.getPageSize(), BY_ID)
+								: Pageable.unpaged(BY_ID);
+				sort = pageable.getSort();
+				arguments[i] = pageable.isPaged()
+						? PageRequest.of(0, (int) pageable.getOffset() + pageable.getPageSize(), sort) : pageable;
+			}
+			else if (arguments[i] instanceof Sort requested) {
+				sort = requested;
+			}
+		}
+		checkSortable(sort);
+		List<Future<Object>> futures = new ArrayList<>();
+		for (int shard = 0; shard < allocator.shardCount(); shard++) {
+			int target = shard;
+			MethodInvocation call = ((ProxyMethodInvocation) invocation).invocableClone(arguments);
+			futures.add(executor.submit(() -> ShardRoutingDataSource.callOn(target, () -> proceed(call))));
+		}
+		List<Object> results = new ArrayList<>();
+		for (Future<Object> future : futures) {
+			try {
+				results.add(future.get());
+			}
+			catch (ExecutionException ex) {
+				throw ex.getCause();
+			}
+		}
+		return merge(invocation, results, pageable, sort);
+	}
+
+	/**
+	 * Fail unless the results of every method of the repository that can run on every
+	 * shard can be {@link #merge merged}. Fluent queries, which take a function of the
+	 * query, cannot be merged and fail when called.
+	 */
+	static void checkMergeable(Class<?> repositoryInterface) {
+		for (Method method : repositoryInterface.getMethods()) {
+			Class<?>[] parameters = method.getParameterTypes();
+			// routed by the id or owner it is called with
+			boolean byOwner = parameters.length == 1 && (parameters[0] == Object.class
+					|| parameters[0] == Integer.class || parameters[0] == int.class || parameters[0] == Owner.class);
+			if (byOwner || method.getName().equals("findPetTypes") || method.isDefault()
+					|| Arrays.stream(parameters).anyMatch(Function.class::isAssignableFrom)) {
+				continue;
+			}
+			if (!isMergeable(method.getReturnType())) {
+				throw new IllegalStateException(method + " cannot run on sharded owners, results of "
+						+ method.getReturnType().getSimpleName() + " cannot be merged");
+			}
+		}
+	}
+
+	private static void checkSortable(Sort sort) {
+		for (Sort.Order order : sort) {
+			Class<?> type = new BeanWrapperImpl(Owner.class).getPropertyType(order.getProperty());
+			type = type == null ? null : ClassUtils.resolvePrimitiveIfNecessary(type);
+			if (type == null || !(Number.class.isAssignableFrom(type) || Temporal.class.isAssignableFrom(type))) {
+				throw new UnsupportedOperationException("Sorting by " + order.getProperty()
+						+ " is not supported on sharded owners, only numbers and dates can be merged");
+			}
+		}
+	}
+
+	private static boolean isMergeable(Class<?> type) {
+		return type == Page.class || type == Iterable.class || type == Collection.class || type == List.class
+				|| type == long.class || type == Long.class || type == boolean.class || type == Boolean.class
+				|| type == Optional.class || type == void.class;
+	}
+
+	private static Object merge(MethodInvocation invocation, List<Object> results, Pageable pageable, Sort sort) {
+		Class<?> type = invocation.getMethod().getReturnType();
+		if (!isMergeable(type)) {
+			throw new UnsupportedOperationException(invocation.getMethod() + " is not supported on sharded owners");
+		}
+		if (type == Page.class) {
+			long total = results.stream().mapToLong(page -> ((Page<?>) page).getTotalElements()).sum();
+			List<Object> rows = sorted(
+					results.stream().flatMap(page -> ((Page<?>) page).stream()).map(Object.class::cast).toList(), sort);
+			if (pageable.isPaged()) {
+				rows = rows.stream().skip(pageable.getOffset()).limit(pageable.getPageSize()).toList();
+			}
+			return new PageImpl<>(rows, pageable, total);
+		}
+		if (Iterable.class.isAssignableFrom(type)) {
+			List<Object> rows = new ArrayList<>();
+			results.forEach(result -> ((Iterable<?>) result).forEach(rows::add));
+			return sorted(rows, sort);
+		}
+		if (type == long.class || type == Long.class) {
+			return results.stream().mapToLong(count -> (Long) count).sum();
+		}
+		if (type == boolean.class || type == Boolean.class) {
+			return results.contains(Boolean.TRUE);
+		}
+		if (type == Optional.class) {
+			return results.stream().map(Optional.class::cast).filter(Optional::isPresent).findFirst()
+				.orElse(Optional.empty());
+		}
+		return null;
+	}
+
+	private static List<Object> sorted(List<Object> rows, Sort sort) {
+		if (sort.isUnsorted()) {
+			return rows;
+		}
+		Comparator<Object> comparator = (left, right) -> 0;
+		for (Sort.Order order : sort) {
+			comparator = comparator.thenComparing((left, right) -> compare(left, right, order));
+		}
+		return rows.stream().sorted(comparator).toList();
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static int compare(Object left, Object right, Sort.Order order) {
+		Object a = new BeanWrapperImpl(left).getPropertyValue(order.getProperty());
+		Object b = new BeanWrapperImpl(right).getPropertyValue(order.getProperty());
+		int result;
+		if (a == null || b == null) {
+			// nulls last when ascending, first when descending, as in Postgres
+			result = a == b ? 0 : a == null ? 1 : -1;
+		}
+		else {
+			result = ((Comparable) a).compareTo(b);
+		}
+		return order.isAscending() ? result : -result;
+	}
+
+	private static Object proceed(MethodInvocation invocation) {
+		try {
+			return invocation.proceed();
+		}
+		catch (RuntimeException | Error ex) {
+			throw ex;
+		}
+		catch (Throwable ex) {
+			throw new UndeclaredThrowableException(ex);
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,84 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Map;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.samples.petclinic.system.ShardIdAllocator;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Routes the {@link OwnerRepository} over the shards of a sharded data source, and pins
+ * the requests for one owner's pages to the owner's shard, so that the pet and visit
+ * lookups they make before or without the owner find their rows.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("petclinic.sharding.urls")
+class OwnerShardingConfiguration {
+
+	@Bean
+	OwnerShardRouter ownerShardRouter(ShardIdAllocator allocator,
+			@Value("${petclinic.sharding.search-threads:16}") int threads) {
+		OwnerShardRouter.checkMergeable(OwnerRepository.class);
+		return new OwnerShardRouter(allocator, threads);
+	}
+
+	@Bean
+	WebMvcConfigurer ownerRequestShardPinning(ShardIdAllocator allocator) {
+		HandlerInterceptor pinning = new HandlerInterceptor() {
+
+			@Override
+			public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+				if (request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE) instanceof Map<?, ?> variables
+						&& variables.get("ownerId") instanceof String ownerId && ownerId.matches("\\d{1,9}")) {
+					ShardRoutingDataSource.pinRequest(allocator.shardOf(Integer.parseInt(ownerId)));
+				}
+				return true;
+			}
+
+		};
+		return new WebMvcConfigurer() {
+
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(pinning).addPathPatterns("/owners/{ownerId}/**");
+			}
+
+		};
+	}
+
+	@Bean
+	static BeanPostProcessor ownerRepositoryShardRouting(ObjectProvider<OwnerShardRouter> router) {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+					factoryBean.addRepositoryFactoryCustomizer(factory -> factory
+						.addRepositoryProxyPostProcessor((proxyFactory, repository) -> {
+							if (repository.getRepositoryInterface() == OwnerRepository.class) {
+								// ahead of the transaction, which fetches the connection
+								MethodInterceptor routing = invocation -> router.getObject().invoke(invocation);
+								proxyFactory.addAdvice(0, routing);
+							}
+						}));
+				}
+				return bean;
+			}
+
+		};
+	}
+
+}
@@ -26,7 +26,6 @@ import org.springframework.samples.petclinic.model.NamedEntity;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
@@ -52,11 +51,17 @@ public class Pet extends NamedEntity {
 	@JoinColumn(name = "type_id")
 	private PetType type;
 
-	@OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
-	@JoinColumn(name = "pet_id")
+	@OneToMany(mappedBy = "pet", cascade = CascadeType.ALL)
 	@OrderBy("visit_date ASC")
 	private Set<Visit> visits = new LinkedHashSet<>();
 
+	// maintained by OwnerCounterListener, never written through the entity
+	@Column(name = "visit_count", insertable = false, updatable = false)
+	private int visitCount;
+
+	@Column(name = "last_visit_date", insertable = false, updatable = false)
+	private LocalDate lastVisitDate;
+
 	public void setBirthDate(LocalDate birthDate) {
 		this.birthDate = birthDate;
 	}
@@ -77,7 +82,16 @@ public class Pet extends NamedEntity {
 		return this.visits;
 	}
 
+	public int getVisitCount() {
+		return this.visitCount;
+	}
+
+	public LocalDate getLastVisitDate() {
+		return this.lastVisitDate;
+	}
+
 	public void addVisit(Visit visit) {
+		visit.setPet(this);
 		getVisits().add(visit);
 	}
 
@@ -65,13 +65,8 @@ class PetController {
 	}
 
 	@ModelAttribute("pet")
-	public Pet findPet(@PathVariable("ownerId") int ownerId,
+	public Pet findPet(@ModelAttribute(name = "owner", binding = false) Owner owner,
 			@PathVariable(name = "petId", required = false) Integer petId) {
-
-		Owner owner = this.owners.findByIdCustom(ownerId);
-		if (owner == null) {
-			throw new IllegalArgumentException("Owner ID not found: " + ownerId);
-		}
 		return petId == null ? new Pet() : owner.getPet(petId);
 	}
 
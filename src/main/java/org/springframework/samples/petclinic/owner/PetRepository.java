@@ -1,6 +1,31 @@
 package org.springframework.samples.petclinic.owner;
 
+import java.util.Optional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface PetRepository extends JpaRepository<Pet, Integer> {
+
+	/**
+	 * Check that the {@link Pet} with the given id belongs to the given {@link Owner},
+	 * with a single primary key lookup on {@code pets}.
+	 */
+	@Query(value = "SELECT COUNT(*) > 0 FROM pets WHERE id = :petId AND owner_id = :ownerId", nativeQuery = true)
+	@Transactional(readOnly = true)
+	boolean existsByIdAndOwnerId(@Param("petId") Integer petId, @Param("ownerId") Integer ownerId);
+
+	/**
+	 * Retrieve the {@link Pet} with the given id and its type, with the name of its
+	 * {@link Owner}, if it belongs to that owner. Neither the owner's other pets nor the
+	 * pet's visits are loaded.
+	 */
+	@Query("SELECT new org.springframework.samples.petclinic.owner.OwnedPet(pet, owner.id, owner.firstName, "
+			+ "owner.lastName) FROM Owner owner JOIN owner.pets pet JOIN FETCH pet.type "
+			+ "WHERE owner.id = :ownerId AND pet.id = :petId")
+	@Transactional(readOnly = true)
+	Optional<OwnedPet> findByIdAndOwnerId(@Param("petId") Integer petId, @Param("ownerId") Integer ownerId);
+
 }
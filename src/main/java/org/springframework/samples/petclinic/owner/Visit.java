@@ -22,6 +22,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.samples.petclinic.model.BaseEntity;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 import org.springframework.samples.petclinic.vet.Vet;
 
 /**
@@ -36,6 +37,7 @@ public class Visit extends BaseEntity {
 
 	@Column(name = "visit_date")
 	@DateTimeFormat(pattern = "yyyy-MM-dd")
+	@NotNull
 	private LocalDate date;
 
 	@NotBlank
@@ -45,6 +47,13 @@ public class Visit extends BaseEntity {
 	@JoinColumn(name = "vet_id")
 	private Vet vet;
 
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "pet_id")
+	private Pet pet;
+
+	@Version
+	private int version;
+
 	public Vet getVet() {
 		return vet;
 	}
@@ -53,6 +62,14 @@ public class Visit extends BaseEntity {
 		this.vet = vet;
 	}
 
+	public Pet getPet() {
+		return pet;
+	}
+
+	public void setPet(Pet pet) {
+		this.pet = pet;
+	}
+
 	/**
 	 * Creates a new instance of Visit for the current date
 	 */
@@ -76,4 +93,8 @@ public class Visit extends BaseEntity {
 		this.description = description;
 	}
 
+	public int getVersion() {
+		return this.version;
+	}
+
 }
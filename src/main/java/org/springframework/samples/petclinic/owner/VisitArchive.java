@@ -0,0 +1,210 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.samples.petclinic.owner.VisitSegmentFormat.Segment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local, append-only store of archived visits: a directory of immutable
+ * {@link VisitSegmentFormat segment files}, one or more per archived month. Segment
+ * footers and pet id indexes are kept in memory so that queries only open the files
+ * whose date range and pets can match.
+ */
+@Component
+public class VisitArchive {
+
+	private static final Logger log = LoggerFactory.getLogger(VisitArchive.class);
+
+	private static final String SUFFIX = ".seg";
+
+	private final Path directory;
+
+	private volatile List<Segment> segments = List.of();
+
+	public VisitArchive(@Value("${petclinic.visits.archive.directory:${java.io.tmpdir}/petclinic-visit-archive}") Path directory) {
+		this.directory = directory;
+	}
+
+	@PostConstruct
+	void load() throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+		List<Segment> loaded = new ArrayList<>();
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).toList()) {
+				try {
+					loaded.add(VisitSegmentFormat.open(file));
+				}
+				catch (IOException ex) {
+					log.warn("Ignoring unreadable visit segment {}", file, ex);
+				}
+			}
+		}
+		loaded.sort(Comparator.comparing(Segment::minDate));
+		segments = List.copyOf(loaded);
+		log.info("Loaded {} archived visit segments from {}", loaded.size(), directory);
+	}
+
+	/**
+	 * Durably write the visits of one month as a new segment. Once this returns, the
+	 * visits can be removed from the database.
+	 */
+	public synchronized void append(YearMonth month, List<VisitSummary> visits) throws IOException {
+		Files.createDirectories(directory);
+		Path target = directory.resolve("visits-" + month + "-" + UUID.randomUUID() + SUFFIX);
+		Path tmp = directory.resolve(target.getFileName() + ".tmp");
+		try {
+			VisitSegmentFormat.write(tmp, visits);
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(tmp);
+		}
+		List<Segment> updated = new ArrayList<>(segments);
+		updated.add(VisitSegmentFormat.open(target));
+		updated.sort(Comparator.comparing(Segment::minDate));
+		segments = List.copyOf(updated);
+	}
+
+	/**
+	 * Archived counterpart of {@link VisitRepository#findSummaries}: up to {@code limit}
+	 * archived visits matching the filter, in {@code (visit_date, id)} order, after the
+	 * given position.
+	 */
+	public List<VisitSummary> findSummaries(VisitFilter filter, LocalDate afterDate, Integer afterId, int limit) {
+		Map<Integer, VisitSummary> found = new LinkedHashMap<>();
+		List<VisitSummary> sorted = List.of();
+		for (Segment segment : segments) {
+			if (sorted.size() >= limit && segment.minDate().isAfter(sorted.get(limit - 1).date())) {
+				// segments are sorted by their first date, nothing later can make the cut
+				break;
+			}
+			if (!overlaps(segment, filter.from(), filter.to())
+					|| (afterDate != null && segment.maxDate().isBefore(afterDate))
+					|| (filter.petId() != null && !segment.containsPet(filter.petId()))) {
+				continue;
+			}
+			boolean added = false;
+			for (VisitSummary visit : read(segment, filter.petId())) {
+				if (matches(visit, filter, afterDate, afterId)) {
+					found.putIfAbsent(visit.id(), visit);
+					added = true;
+				}
+			}
+			if (added) {
+				sorted = found.values().stream().sorted(VisitSummary.BY_DATE_AND_ID).limit(limit).toList();
+			}
+		}
+		return sorted;
+	}
+
+	/**
+	 * Up to {@code limit} archived visits of a pet, newest first, before the given
+	 * {@code (visit_date, id)} position, or the latest ones if it is {@code null}.
+	 */
+	public List<VisitSummary> findLatestByPet(int petId, LocalDate beforeDate, Integer beforeId, int limit) {
+		Map<Integer, VisitSummary> found = new LinkedHashMap<>();
+		List<Segment> newestFirst = segments.stream().sorted(Comparator.comparing(Segment::maxDate).reversed()).toList();
+		for (Segment segment : newestFirst) {
+			if (found.size() >= limit && segment.maxDate().isBefore(oldest(found.values(), limit))) {
+				break;
+			}
+			if ((beforeDate == null || !segment.minDate().isAfter(beforeDate)) && segment.containsPet(petId)) {
+				for (VisitSummary visit : read(segment, petId)) {
+					if (isBefore(visit, beforeDate, beforeId)) {
+						found.putIfAbsent(visit.id(), visit);
+					}
+				}
+			}
+		}
+		return found.values().stream().sorted(VisitSummary.BY_DATE_AND_ID.reversed()).limit(limit).toList();
+	}
+
+	/**
+	 * Hand the archived visits between {@code from} and {@code to} to {@code action},
+	 * one segment at a time and each visit once.
+	 */
+	public void scan(LocalDate from, LocalDate to, Consumer<List<VisitSummary>> action) {
+		Set<Integer> seen = new HashSet<>();
+		for (Segment segment : segments) {
+			if (overlaps(segment, from, to)) {
+				action.accept(read(segment, null).stream()
+					.filter(visit -> !visit.date().isBefore(from) && !visit.date().isAfter(to))
+					.filter(visit -> seen.add(visit.id()))
+					.toList());
+			}
+		}
+	}
+
+	/**
+	 * The date of the oldest archived visit, or {@code null} if there is none.
+	 */
+	public LocalDate findOldestDate() {
+		List<Segment> current = segments;
+		return current.isEmpty() ? null : current.get(0).minDate();
+	}
+
+	int segmentCount() {
+		return segments.size();
+	}
+
+	private static LocalDate oldest(Collection<VisitSummary> visits, int limit) {
+		return visits.stream().sorted(VisitSummary.BY_DATE_AND_ID.reversed()).skip(limit - 1).findFirst().orElseThrow()
+			.date();
+	}
+
+	private static boolean overlaps(Segment segment, LocalDate from, LocalDate to) {
+		return (from == null || !segment.maxDate().isBefore(from)) && (to == null || !segment.minDate().isAfter(to));
+	}
+
+	private static boolean matches(VisitSummary visit, VisitFilter filter, LocalDate afterDate, Integer afterId) {
+		if (filter.vetId() != null && !filter.vetId().equals(visit.vetId())) {
+			return false;
+		}
+		if (filter.from() != null && visit.date().isBefore(filter.from())) {
+			return false;
+		}
+		if (filter.to() != null && visit.date().isAfter(filter.to())) {
+			return false;
+		}
+		return afterDate == null || visit.date().isAfter(afterDate)
+				|| (visit.date().equals(afterDate) && visit.id() > afterId);
+	}
+
+	private static boolean isBefore(VisitSummary visit, LocalDate beforeDate, Integer beforeId) {
+		return beforeDate == null || visit.date().isBefore(beforeDate)
+				|| (visit.date().equals(beforeDate) && visit.id() < beforeId);
+	}
+
+	private static List<VisitSummary> read(Segment segment, Integer petId) {
+		try {
+			return segment.read(petId);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Could not read visit segment " + segment.file(), ex);
+		}
+	}
+
+}
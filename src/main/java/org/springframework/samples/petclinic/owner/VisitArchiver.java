@@ -0,0 +1,145 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.samples.petclinic.vet.VisitHibernateEventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves whole months of visits older than {@code petclinic.visits.archive.horizon} from
+ * the {@code visits} table to the {@link VisitArchive}, oldest month first, in chunks of
+ * {@value #CHUNK_SIZE} visits. Each chunk is locked, deleted and durably written as a
+ * segment file in one transaction, so the segment holds exactly the rows that
+ * transaction deleted, as they were when it deleted them; should the commit still fail,
+ * {@link VisitHistory} prefers the rows left in the table. Archived visits are deleted in
+ * bulk, so the owner and pet counters and the visit topic are told about them
+ * explicitly. The rollups keep counting them. With a sharded database, every shard is archived in turn into the same
+ * archive.
+ * <p>
+ * Enabled with {@code petclinic.visits.archive.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "petclinic.visits.archive.enabled", havingValue = "true")
+class VisitArchiver {
+
+	private static final Logger log = LoggerFactory.getLogger(VisitArchiver.class);
+
+	private static final int CHUNK_SIZE = 1000;
+
+	private final VisitRepository visits;
+
+	private final VisitArchive archive;
+
+	private final OwnerCounterListener counters;
+
+	private final VisitHibernateEventListener events;
+
+	private final EntityManager entityManager;
+
+	private final DataSource dataSource;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final Period horizon;
+
+	private final int chunkSize;
+
+	private final Clock clock;
+
+	@Autowired
+	VisitArchiver(VisitRepository visits, VisitArchive archive, OwnerCounterListener counters,
+			VisitHibernateEventListener events, EntityManager entityManager, DataSource dataSource,
+			PlatformTransactionManager transactionManager,
+			@Value("${petclinic.visits.archive.horizon:2y}") Period horizon) {
+		this(visits, archive, counters, events, entityManager, dataSource, transactionManager, horizon, CHUNK_SIZE,
+				Clock.systemDefaultZone());
+	}
+
+	VisitArchiver(VisitRepository visits, VisitArchive archive, OwnerCounterListener counters,
+			VisitHibernateEventListener events, EntityManager entityManager, DataSource dataSource,
+			PlatformTransactionManager transactionManager, Period horizon, int chunkSize, Clock clock) {
+		this.visits = visits;
+		this.archive = archive;
+		this.counters = counters;
+		this.events = events;
+		this.entityManager = entityManager;
+		this.dataSource = dataSource;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.horizon = horizon;
+		this.chunkSize = chunkSize;
+		this.clock = clock;
+	}
+
+	@Scheduled(cron = "${petclinic.visits.archive.cron:0 30 3 * * *}")
+	public synchronized void archiveOldVisits() {
+		// only whole months are archived, so that every month lives in one place
+		LocalDate cutoff = LocalDate.now(clock).minus(horizon).withDayOfMonth(1);
+		ShardRoutingDataSource.callOnEach(dataSource, () -> {
+			LocalDate oldest;
+			while ((oldest = visits.findOldestDateBefore(cutoff)) != null) {
+				archiveMonth(YearMonth.from(oldest));
+			}
+			return null;
+		});
+	}
+
+	private void archiveMonth(YearMonth month) {
+		int archived = 0;
+		int chunk;
+		do {
+			chunk = archiveChunk(month).size();
+			archived += chunk;
+		}
+		while (chunk == chunkSize);
+		log.info("Archived {} visits of {}", archived, month);
+	}
+
+	private List<VisitSummary> archiveChunk(YearMonth month) {
+		LocalDate from = month.atDay(1);
+		LocalDate to = month.atEndOfMonth();
+		List<VisitSummary> deleted = transactionTemplate.execute(status -> {
+			// locked, so they can neither change nor be deleted by anyone else until commit
+			List<VisitSummary> chunk = visits.lockOldest(from, to, Limit.of(chunkSize));
+			if (chunk.isEmpty()) {
+				return chunk;
+			}
+			int count = visits.deleteArchived(from, to, chunk.stream().map(VisitSummary::id).toList());
+			if (count != chunk.size()) {
+				throw new IllegalStateException(
+						"Deleted " + count + " of " + chunk.size() + " locked visits of " + month);
+			}
+			counters.visitsRemoved(entityManager, chunk.stream().map(VisitSummary::petId).toList());
+			try {
+				archive.append(month, chunk);
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException("Could not archive visits of " + month, ex);
+			}
+			return chunk;
+		});
+		if (!deleted.isEmpty()) {
+			events.onBulkDelete(deleted);
+		}
+		return deleted;
+	}
+
+}
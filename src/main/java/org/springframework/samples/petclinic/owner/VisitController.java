@@ -15,11 +15,24 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
-
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpStatus;
 import org.springframework.samples.petclinic.vet.Vet;
 import org.springframework.samples.petclinic.vet.VetAutoAssignmentService;
+import org.springframework.samples.petclinic.vet.VetRepository;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -27,6 +40,8 @@ import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
 
 import jakarta.validation.Valid;
 
@@ -40,18 +55,40 @@ import jakarta.validation.Valid;
 @Controller
 class VisitController {
 
-	private final OwnerRepository owners;
+	private static final int PREVIOUS_VISITS = 5;
+
+	private static final int VISIT_HISTORY_PAGE_SIZE = 10;
+
+	private static final int ARCHIVED_VISITS = 50;
+
+	private final PetRepository pets;
+
+	private final VisitRepository visits;
 
-	private final PetRepository petRepository;
+	private final VisitService visitService;
+
+	private final VisitHistory visitHistory;
+
+	private final VetRepository vets;
 
 	private final VetAutoAssignmentService vetAutoAssignmentService;
 
-	public VisitController(OwnerRepository owners,
-						   PetRepository petRepository,
-						   VetAutoAssignmentService vetAutoAssignmentService) {
-		this.owners = owners;
-		this.petRepository = petRepository;
+	private final ObjectProvider<VisitWriteBehindService> writeBehindService;
+
+	public VisitController(PetRepository pets,
+						   VisitRepository visits,
+						   VisitService visitService,
+						   VisitHistory visitHistory,
+						   VetRepository vets,
+						   VetAutoAssignmentService vetAutoAssignmentService,
+						   ObjectProvider<VisitWriteBehindService> writeBehindService) {
+		this.pets = pets;
+		this.visits = visits;
+		this.visitService = visitService;
+		this.visitHistory = visitHistory;
+		this.vets = vets;
 		this.vetAutoAssignmentService = vetAutoAssignmentService;
+		this.writeBehindService = writeBehindService;
 	}
 
 	@InitBinder
@@ -63,46 +100,90 @@ class VisitController {
 	 * Called before each and every @RequestMapping annotated method. 2 goals: - Make sure
 	 * we always have fresh data - Since we do not use the session scope, make sure that
 	 * Pet object always has an id (Even though id is not part of the form fields)
+	 * <p>
+	 * Only the pet, checked to belong to the owner, and the owner's name are loaded, not
+	 * the owner aggregate.
 	 * @param petId
 	 * @return Pet
 	 */
 	@ModelAttribute("visit")
 	public Visit loadPetWithVisit(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
 			Map<String, Object> model) {
-		Owner owner = this.owners.findByIdCustom(ownerId);
-
-		Pet pet = owner.getPet(petId);
+		OwnedPet owned = this.pets.findByIdAndOwnerId(petId, ownerId)
+			.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+					"Pet ID " + petId + " not found for owner ID " + ownerId));
+		Pet pet = owned.pet();
 		model.put("pet", pet);
-		model.put("owner", owner);
+		model.put("owner", owned.owner());
 
+		// not added to pet.visits, which would load the pet's whole visit history
 		Visit visit = new Visit();
-		pet.addVisit(visit);
+		visit.setPet(pet);
 		return visit;
 	}
 
 	// Spring MVC calls method loadPetWithVisit(...) before initNewVisitForm is
 	// called
 	@GetMapping("/owners/{ownerId}/pets/{petId}/visits/new")
-	public String initNewVisitForm() {
-		return "pets/createOrUpdateVisitForm";
+	public String initNewVisitForm(@PathVariable int petId, Model model) {
+		return visitForm(petId, model);
+	}
+
+	@GetMapping("/owners/{ownerId}/pets/{petId}/visits")
+	public String showVisitHistory(@PathVariable int petId, @RequestParam(defaultValue = "1") int page,
+			@RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate archivedBefore,
+			@RequestParam(required = false) Integer archivedBeforeId, Model model) {
+		page = Math.max(page, 1);
+		Page<Visit> history = this.visits.findByPetIdOrderByDateDescIdDesc(petId,
+				PageRequest.of(page - 1, VISIT_HISTORY_PAGE_SIZE));
+		model.addAttribute("visits", history.getContent());
+		model.addAttribute("currentPage", page);
+		model.addAttribute("totalPages", history.getTotalPages());
+		if (page >= history.getTotalPages()) {
+			// archived visits are all older than the ones still in the table, paged by
+			// the (date, id) of the last one shown
+			if (archivedBefore == null || archivedBeforeId == null) {
+				archivedBefore = null;
+				archivedBeforeId = null;
+			}
+			List<VisitSummary> archived = this.visitHistory.findArchivedByPet(petId, archivedBefore,
+					archivedBeforeId, ARCHIVED_VISITS + 1);
+			if (archived.size() > ARCHIVED_VISITS) {
+				archived = archived.subList(0, ARCHIVED_VISITS);
+				model.addAttribute("nextArchived", archived.get(ARCHIVED_VISITS - 1));
+			}
+			model.addAttribute("archivedVisits", archived);
+			model.addAttribute("vets",
+					this.vets.findAll().stream().collect(Collectors.toMap(Vet::getId, Function.identity())));
+		}
+		return "pets/visitList";
 	}
 
 	// Spring MVC calls method loadPetWithVisit(...) before processNewVisitForm is
 	// called
 	@PostMapping("/owners/{ownerId}/pets/{petId}/visits/new")
-	public String processNewVisitForm(@ModelAttribute Owner owner, @PathVariable int petId, @Valid Visit visit,
-			BindingResult result) {
+	public String processNewVisitForm(@PathVariable int ownerId, @PathVariable int petId, @Valid Visit visit,
+			BindingResult result, Model model) {
 		if (result.hasErrors()) {
-			return "pets/createOrUpdateVisitForm";
+			return visitForm(petId, model);
 		}
 
-		Pet pet = petRepository.getReferenceById(petId);
-		Vet vet = vetAutoAssignmentService.findAppropriateVet(pet);
+		Vet vet = vetAutoAssignmentService.findAppropriateVet(visit.getPet());
 		visit.setVet(vet);
 
-		owner.addVisit(petId, visit);
-		this.owners.save(owner);
+		VisitWriteBehindService writeBehind = writeBehindService.getIfAvailable();
+		if (writeBehind != null) {
+			writeBehind.save(ownerId, petId, visit);
+			return "redirect:/owners/{ownerId}";
+		}
+
+		this.visitService.addVisit(ownerId, petId, visit);
 		return "redirect:/owners/{ownerId}";
 	}
 
+	private String visitForm(int petId, Model model) {
+		model.addAttribute("visits", this.visits.findByPetIdOrderByDateDescIdDesc(petId, Limit.of(PREVIOUS_VISITS)));
+		return "pets/createOrUpdateVisitForm";
+	}
+
 }
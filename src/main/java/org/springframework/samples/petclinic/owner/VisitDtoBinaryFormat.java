@@ -0,0 +1,152 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+/**
+ * Compact, schema-versioned binary encoding of {@link VisitDto} used on the {@code visit}
+ * topic.
+ * <p>
+ * Layout: a version byte, a presence bitmask byte, then every present field in
+ * declaration order. Ids are zig-zag varints, the date is the zig-zag varint epoch day
+ * and the description is a varint length followed by its UTF-8 bytes. Version 2 appends
+ * the pet id; version 1 records are still read, with no pet id.
+ */
+final class VisitDtoBinaryFormat {
+
+	/**
+	 * Value of the {@link #CONTENT_TYPE_HEADER} header for records written by this
+	 * format.
+	 */
+	static final String CONTENT_TYPE = "application/vnd.petclinic.visit+binary";
+
+	static final String CONTENT_TYPE_HEADER = "content-type";
+
+	static final byte VERSION_1 = 1;
+
+	static final byte VERSION_2 = 2;
+
+	private static final int ID_PRESENT = 1;
+
+	private static final int DATE_PRESENT = 1 << 1;
+
+	private static final int DESCRIPTION_PRESENT = 1 << 2;
+
+	private static final int VET_ID_PRESENT = 1 << 3;
+
+	private static final int PET_ID_PRESENT = 1 << 4;
+
+	private VisitDtoBinaryFormat() {
+	}
+
+	static byte[] write(VisitDto visit) {
+		byte[] description = visit.description() == null ? null
+				: visit.description().getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(24 + (description == null ? 0 : description.length));
+		int presence = 0;
+		if (visit.id() != null) {
+			presence |= ID_PRESENT;
+		}
+		if (visit.date() != null) {
+			presence |= DATE_PRESENT;
+		}
+		if (description != null) {
+			presence |= DESCRIPTION_PRESENT;
+		}
+		if (visit.vetId() != null) {
+			presence |= VET_ID_PRESENT;
+		}
+		if (visit.petId() != null) {
+			presence |= PET_ID_PRESENT;
+		}
+		out.write(VERSION_2);
+		out.write(presence);
+		if (visit.id() != null) {
+			writeVarLong(out, visit.id());
+		}
+		if (visit.date() != null) {
+			writeVarLong(out, visit.date().toEpochDay());
+		}
+		if (description != null) {
+			writeVarLong(out, description.length);
+			out.write(description, 0, description.length);
+		}
+		if (visit.vetId() != null) {
+			writeVarLong(out, visit.vetId());
+		}
+		if (visit.petId() != null) {
+			writeVarLong(out, visit.petId());
+		}
+		return out.toByteArray();
+	}
+
+	static VisitDto read(byte[] data) {
+		Reader in = new Reader(data);
+		byte version = in.readByte();
+		if (version != VERSION_1 && version != VERSION_2) {
+			throw new SerializationException("Unsupported visit record version " + version);
+		}
+		int presence = in.readByte();
+		Integer id = (presence & ID_PRESENT) != 0 ? Math.toIntExact(in.readVarLong()) : null;
+		LocalDate date = (presence & DATE_PRESENT) != 0 ? LocalDate.ofEpochDay(in.readVarLong()) : null;
+		String description = (presence & DESCRIPTION_PRESENT) != 0 ? in.readString() : null;
+		Integer vetId = (presence & VET_ID_PRESENT) != 0 ? Math.toIntExact(in.readVarLong()) : null;
+		Integer petId = (presence & PET_ID_PRESENT) != 0 ? Math.toIntExact(in.readVarLong()) : null;
+		return new VisitDto(id, date, description, vetId, petId);
+	}
+
+	private static void writeVarLong(ByteArrayOutputStream out, long value) {
+		long zigZag = (value << 1) ^ (value >> 63);
+		while ((zigZag & ~0x7FL) != 0) {
+			out.write((int) ((zigZag & 0x7F) | 0x80));
+			zigZag >>>= 7;
+		}
+		out.write((int) zigZag);
+	}
+
+	private static final class Reader {
+
+		private final byte[] data;
+
+		private int position;
+
+		Reader(byte[] data) {
+			this.data = data;
+		}
+
+		byte readByte() {
+			if (position >= data.length) {
+				throw new SerializationException("Truncated visit record");
+			}
+			return data[position++];
+		}
+
+		long readVarLong() {
+			long zigZag = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = readByte();
+				zigZag |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return (zigZag >>> 1) ^ -(zigZag & 1);
+				}
+			}
+			throw new SerializationException("Malformed varint in visit record");
+		}
+
+		String readString() {
+			long length = readVarLong();
+			if (length < 0 || length > data.length - position) {
+				throw new SerializationException("Visit record description of " + length + " bytes exceeds the "
+						+ (data.length - position) + " bytes left in the record");
+			}
+			String value = new String(data, position, (int) length, StandardCharsets.UTF_8);
+			position += (int) length;
+			return value;
+		}
+
+	}
+
+}
@@ -0,0 +1,46 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+/**
+ * Kafka {@link Deserializer} for {@link VisitDto} records. Records carrying the binary
+ * content-type header are decoded with {@link VisitDtoBinaryFormat}; anything else is
+ * treated as a JSON record written before the binary format was introduced.
+ */
+public class VisitDtoDeserializer implements Deserializer<VisitDto> {
+
+	private final JsonDeserializer<VisitDto> jsonDeserializer = new JsonDeserializer<>(VisitDto.class, false);
+
+	@Override
+	public VisitDto deserialize(String topic, byte[] data) {
+		return jsonDeserializer.deserialize(topic, data);
+	}
+
+	@Override
+	public VisitDto deserialize(String topic, Headers headers, byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		if (isBinary(headers)) {
+			return VisitDtoBinaryFormat.read(data);
+		}
+		return jsonDeserializer.deserialize(topic, headers, data);
+	}
+
+	@Override
+	public void close() {
+		jsonDeserializer.close();
+	}
+
+	private static boolean isBinary(Headers headers) {
+		Header contentType = headers.lastHeader(VisitDtoBinaryFormat.CONTENT_TYPE_HEADER);
+		return contentType != null && VisitDtoBinaryFormat.CONTENT_TYPE
+			.equals(new String(contentType.value(), StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,32 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka {@link Serializer} writing {@link VisitDto} in the compact binary format and
+ * tagging each record with a content-type header so consumers can tell it apart from
+ * legacy JSON records.
+ */
+public class VisitDtoSerializer implements Serializer<VisitDto> {
+
+	private static final byte[] CONTENT_TYPE = VisitDtoBinaryFormat.CONTENT_TYPE.getBytes(StandardCharsets.UTF_8);
+
+	@Override
+	public byte[] serialize(String topic, VisitDto data) {
+		return data == null ? null : VisitDtoBinaryFormat.write(data);
+	}
+
+	@Override
+	public byte[] serialize(String topic, Headers headers, VisitDto data) {
+		if (data == null) {
+			return null;
+		}
+		headers.remove(VisitDtoBinaryFormat.CONTENT_TYPE_HEADER);
+		headers.add(VisitDtoBinaryFormat.CONTENT_TYPE_HEADER, CONTENT_TYPE);
+		return VisitDtoBinaryFormat.write(data);
+	}
+
+}
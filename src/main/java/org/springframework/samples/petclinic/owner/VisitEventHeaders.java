@@ -0,0 +1,76 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * Kafka record headers carried by every event on the {@code visit} topic.
+ */
+public final class VisitEventHeaders {
+
+	/**
+	 * Unique id of the event, an 8-byte big-endian long. Redelivered, retried or resent
+	 * copies of the same event share this id, see {@link #eventId(int, Type, int)}.
+	 */
+	public static final String EVENT_ID = "visit-event-id";
+
+	/**
+	 * The change that produced the event, the name of a {@link Type}.
+	 */
+	public static final String EVENT_TYPE = "visit-event-type";
+
+	private VisitEventHeaders() {
+	}
+
+	/**
+	 * The id of the event for a change of a visit: the visit id in the high 32 bits, then
+	 * the visit's version after the change and the change type. Every change bumps the
+	 * version, so distinct changes get distinct ids, and sending the same change again
+	 * gives the same id.
+	 */
+	public static long eventId(int visitId, Type type, int version) {
+		return ((long) visitId << 32) | ((long) (version & 0x3FFFFFFF) << 2) | type.ordinal();
+	}
+
+	public static void addEventId(Headers headers, long eventId) {
+		headers.add(EVENT_ID, ByteBuffer.allocate(Long.BYTES).putLong(eventId).array());
+	}
+
+	/**
+	 * Return the event id of a record, or {@literal null} for records published before
+	 * event ids were introduced.
+	 */
+	public static Long eventId(Headers headers) {
+		Header header = headers.lastHeader(EVENT_ID);
+		if (header == null || header.value() == null || header.value().length != Long.BYTES) {
+			return null;
+		}
+		return ByteBuffer.wrap(header.value()).getLong();
+	}
+
+	public static void addEventType(Headers headers, Type type) {
+		headers.add(EVENT_TYPE, type.name().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Return the event type of a record, or {@code null} for records published before
+	 * event types were introduced, which do not tell a delete from a change.
+	 */
+	public static Type eventType(Headers headers) {
+		Header header = headers.lastHeader(EVENT_TYPE);
+		if (header == null || header.value() == null) {
+			return null;
+		}
+		return Type.valueOf(new String(header.value(), StandardCharsets.UTF_8));
+	}
+
+	public enum Type {
+
+		CREATED, UPDATED, DELETED
+
+	}
+
+}
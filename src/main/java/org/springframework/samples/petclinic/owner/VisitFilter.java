@@ -0,0 +1,13 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+/**
+ * Optional criteria for {@link VisitRepository#findSummaries}. {@code from} and
+ * {@code to} are inclusive; {@code null} criteria are ignored.
+ */
+public record VisitFilter(Integer petId, Integer vetId, @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+		@DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+}
@@ -0,0 +1,65 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Visit history across the {@code visits} table and the {@link VisitArchive}, so that
+ * callers do not need to know which visits have been archived.
+ */
+@Component
+public class VisitHistory {
+
+	private final VisitRepository visits;
+
+	private final VisitArchive archive;
+
+	private final DataSource dataSource;
+
+	public VisitHistory(VisitRepository visits, VisitArchive archive, DataSource dataSource) {
+		this.visits = visits;
+		this.archive = archive;
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Up to {@code limit} visits matching the filter in {@code (visit_date, id)} order,
+	 * after the given position, from both the database and the archive. With a sharded
+	 * database, the first {@code limit} visits of every shard are merged.
+	 */
+	public List<VisitSummary> findSummaries(VisitFilter filter, LocalDate afterDate, Integer afterId, int limit) {
+		List<List<VisitSummary>> shards = ShardRoutingDataSource.callOnEach(dataSource,
+				() -> visits.findSummaries(filter, afterDate, afterId, limit));
+		List<VisitSummary> current = shards.size() == 1 ? shards.get(0)
+				: shards.stream()
+					.flatMap(List::stream)
+					.sorted(VisitSummary.BY_DATE_AND_ID)
+					.limit(limit)
+					.toList();
+		List<VisitSummary> archived = archive.findSummaries(filter, afterDate, afterId, limit);
+		if (archived.isEmpty()) {
+			return current;
+		}
+		// a visit archived by an interrupted run can still be in the table, keep that one
+		Map<Integer, VisitSummary> merged = new LinkedHashMap<>();
+		current.forEach(visit -> merged.put(visit.id(), visit));
+		archived.forEach(visit -> merged.putIfAbsent(visit.id(), visit));
+		return merged.values().stream().sorted(VisitSummary.BY_DATE_AND_ID).limit(limit).toList();
+	}
+
+	/**
+	 * Up to {@code limit} archived visits of a pet, newest first, before the given
+	 * {@code (visit_date, id)} position, or the latest ones if it is {@code null}.
+	 */
+	public List<VisitSummary> findArchivedByPet(int petId, LocalDate beforeDate, Integer beforeId, int limit) {
+		return archive.findLatestByPet(petId, beforeDate, beforeId, limit);
+	}
+
+}
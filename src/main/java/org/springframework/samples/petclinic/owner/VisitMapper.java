@@ -8,5 +8,6 @@ import org.mapstruct.ReportingPolicy;
 @Mapper(unmappedTargetPolicy = ReportingPolicy.IGNORE, componentModel = MappingConstants.ComponentModel.SPRING)
 public interface VisitMapper {
 	@Mapping(source = "vet.id", target = "vetId")
+	@Mapping(source = "pet.id", target = "petId")
 	VisitDto toDto(Visit visit);
 }
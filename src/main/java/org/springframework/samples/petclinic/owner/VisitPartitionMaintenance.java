@@ -0,0 +1,162 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.Clock;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the monthly partitions of a range-partitioned {@code visits} table (see the
+ * PostgreSQL-only {@code V4} migration) ahead of time, and publishes the size of each
+ * partition as the {@code petclinic.visits.partition.size} gauge. Does nothing on
+ * databases where {@code visits} is a plain table. With a sharded database, partitions
+ * are created on every shard and the gauge adds up the shards.
+ * <p>
+ * Visits of a month without a partition land in {@code visits_default}, and PostgreSQL
+ * refuses to create a partition whose range the default partition holds rows of. Those
+ * rows are therefore moved into the new partition in the transaction that creates it.
+ * A partition that still cannot be created is logged as an error and counted by
+ * {@code petclinic.visits.partition.failures}.
+ */
+@Component
+public class VisitPartitionMaintenance {
+
+	private static final Logger log = LoggerFactory.getLogger(VisitPartitionMaintenance.class);
+
+	private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+	private static final String PARTITION_SIZES = "SELECT c.relname, pg_total_relation_size(c.oid) FROM pg_inherits i "
+			+ "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'visits'::regclass ORDER BY c.relname";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final int monthsAhead;
+
+	private final Clock clock;
+
+	private final MultiGauge partitionSizes;
+
+	private final Counter failures;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private Boolean partitioned;
+
+	@Autowired
+	VisitPartitionMaintenance(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			MeterRegistry registry, @Value("${petclinic.visits.partitions.months-ahead:3}") int monthsAhead) {
+		this(jdbcTemplate, transactionManager, registry, monthsAhead, Clock.systemDefaultZone());
+	}
+
+	VisitPartitionMaintenance(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+			MeterRegistry registry, int monthsAhead, Clock clock) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.monthsAhead = monthsAhead;
+		this.clock = clock;
+		this.partitionSizes = MultiGauge.builder("petclinic.visits.partition.size")
+			.description("Total size of each visits partition, including its indexes")
+			.baseUnit("bytes")
+			.register(registry);
+		this.failures = Counter.builder("petclinic.visits.partition.failures")
+			.description("Visits partitions that could not be created")
+			.register(registry);
+	}
+
+	@Scheduled(initialDelay = 0, fixedDelayString = "${petclinic.visits.partitions.maintenance-interval-ms:3600000}")
+	public synchronized void maintain() {
+		if (!isPartitioned()) {
+			return;
+		}
+		YearMonth current = YearMonth.now(clock);
+		ShardRoutingDataSource.callOnEach(jdbcTemplate.getDataSource(), () -> {
+			for (int i = 0; i <= monthsAhead; i++) {
+				createPartition(current.plusMonths(i));
+			}
+			return null;
+		});
+		reportSizes();
+	}
+
+	private void createPartition(YearMonth month) {
+		if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class,
+				partitionName(month)))) {
+			return;
+		}
+		String range = "visit_date >= '%s' AND visit_date < '%s'".formatted(month.atDay(1),
+				month.plusMonths(1).atDay(1));
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				jdbcTemplate.execute("CREATE TEMPORARY TABLE visits_moving ON COMMIT DROP AS "
+						+ "SELECT * FROM visits_default WHERE " + range);
+				int moved = jdbcTemplate.update("DELETE FROM visits_default WHERE " + range);
+				jdbcTemplate.execute(createPartitionSql(month));
+				if (moved > 0) {
+					jdbcTemplate.update("INSERT INTO visits SELECT * FROM visits_moving");
+					log.info("Moved {} visits of {} from visits_default to {}", moved, month, partitionName(month));
+				}
+			});
+		}
+		catch (DataAccessException ex) {
+			failures.increment();
+			log.error("Could not create visits partition for {}", month, ex);
+		}
+	}
+
+	private void reportSizes() {
+		Map<String, Long> sizes = new TreeMap<>();
+		ShardRoutingDataSource.callOnEach(jdbcTemplate.getDataSource(), () -> jdbcTemplate.query(PARTITION_SIZES,
+				(RowMapper<Map.Entry<String, Long>>) (rs, row) -> Map.entry(rs.getString(1), rs.getLong(2))))
+			.forEach(shard -> shard.forEach(size -> sizes.merge(size.getKey(), size.getValue(), Long::sum)));
+		List<MultiGauge.Row<?>> rows = sizes.entrySet()
+			.stream()
+			.<MultiGauge.Row<?>>map(size -> MultiGauge.Row.of(Tags.of("partition", size.getKey()), size.getValue()))
+			.toList();
+		partitionSizes.register(rows, true);
+		log.info("Visits partition sizes in bytes: {}", sizes);
+	}
+
+	private boolean isPartitioned() {
+		if (partitioned == null) {
+			String database = jdbcTemplate
+				.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+			partitioned = "PostgreSQL".equals(database) && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+					"SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('visits'))",
+					Boolean.class));
+			if (!partitioned) {
+				log.debug("visits is not a partitioned table on {}, skipping partition maintenance", database);
+			}
+		}
+		return partitioned;
+	}
+
+	static String partitionName(YearMonth month) {
+		return "visits_p" + month.format(PARTITION_SUFFIX);
+	}
+
+	static String createPartitionSql(YearMonth month) {
+		return "CREATE TABLE IF NOT EXISTS %s PARTITION OF visits FOR VALUES FROM ('%s') TO ('%s')"
+			.formatted(partitionName(month), month.atDay(1), month.plusMonths(1).atDay(1));
+	}
+
+}
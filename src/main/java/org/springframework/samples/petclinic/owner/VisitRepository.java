@@ -0,0 +1,90 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository for single {@link Visit} rows, used to add and page through visits without
+ * loading the owning {@link Owner} aggregate.
+ */
+public interface VisitRepository extends JpaRepository<Visit, Integer>, VisitRepositoryCustom {
+
+	/**
+	 * Retrieve the most recent visits of a {@link Pet}, newest first, with their vet.
+	 * @param petId the pet to search for
+	 * @param limit the maximum number of visits to return
+	 */
+	@EntityGraph(attributePaths = "vet")
+	@Transactional(readOnly = true)
+	List<Visit> findByPetIdOrderByDateDescIdDesc(Integer petId, Limit limit);
+
+	/**
+	 * Retrieve the most recent visits of each of the given pets, at most {@code limit}
+	 * per pet, newest first, with their vet, in one query.
+	 * @param petIds the pets to search for, not empty
+	 * @param limit the maximum number of visits to return per pet
+	 */
+	@Query("SELECT v FROM Visit v WHERE v.id IN (SELECT ranked.id FROM (SELECT w.id AS id, "
+			+ "row_number() OVER (PARTITION BY w.pet.id ORDER BY w.date DESC, w.id DESC) AS rn "
+			+ "FROM Visit w WHERE w.pet.id IN :petIds) ranked WHERE ranked.rn <= :limit) "
+			+ "ORDER BY v.date DESC, v.id DESC")
+	@EntityGraph(attributePaths = "vet")
+	@Transactional(readOnly = true)
+	List<Visit> findLatestByPetIds(@Param("petIds") Collection<Integer> petIds, @Param("limit") int limit);
+
+	/**
+	 * Retrieve one page of the visit history of a {@link Pet}, newest first, with their
+	 * vet.
+	 */
+	@EntityGraph(attributePaths = "vet")
+	@Transactional(readOnly = true)
+	Page<Visit> findByPetIdOrderByDateDescIdDesc(Integer petId, Pageable pageable);
+
+	/**
+	 * Retrieve the most recent visit of a {@link Pet} that has a vet assigned.
+	 */
+	@EntityGraph(attributePaths = "vet")
+	@Transactional(readOnly = true)
+	Optional<Visit> findFirstByPetIdAndVetIsNotNullOrderByDateDescIdDesc(Integer petId);
+
+	/**
+	 * Retrieve the date of the oldest visit before the given date, or {@code null} if
+	 * there is none.
+	 */
+	@Query("SELECT min(v.date) FROM Visit v WHERE v.date < :before")
+	@Transactional(readOnly = true)
+	LocalDate findOldestDateBefore(@Param("before") LocalDate before);
+
+	/**
+	 * Delete the given visits, which all lie between {@code from} and {@code to}; the
+	 * date bounds let a partitioned table only touch the matching partitions.
+	 */
+	@Modifying
+	@Query("DELETE FROM Visit v WHERE v.date >= :from AND v.date <= :to AND v.id IN :ids")
+	int deleteArchived(@Param("from") LocalDate from, @Param("to") LocalDate to, @Param("ids") Collection<Integer> ids);
+
+	/**
+	 * Retrieve the oldest visits between {@code from} and {@code to}, in
+	 * {@code (visit_date, id)} order, and lock them until the end of the transaction.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT new org.springframework.samples.petclinic.owner.VisitSummary("
+			+ "v.id, v.date, v.description, v.pet.id, v.vet.id) FROM Visit v "
+			+ "WHERE v.date >= :from AND v.date <= :to ORDER BY v.date, v.id")
+	List<VisitSummary> lockOldest(@Param("from") LocalDate from, @Param("to") LocalDate to, Limit limit);
+
+}
@@ -0,0 +1,21 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Keyset-paginated visit queries that need a dynamically built where clause.
+ */
+public interface VisitRepositoryCustom {
+
+	/**
+	 * Retrieve up to {@code limit} visits matching the filter, ordered by
+	 * {@code (visit_date, id)} and starting strictly after the given position.
+	 * @param afterDate date of the last visit of the previous page, or {@code null} for
+	 * the first page
+	 * @param afterId id of the last visit of the previous page, or {@code null} for the
+	 * first page
+	 */
+	List<VisitSummary> findSummaries(VisitFilter filter, LocalDate afterDate, Integer afterId, int limit);
+
+}
@@ -0,0 +1,68 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+class VisitRepositoryCustomImpl implements VisitRepositoryCustom {
+
+	private static final int MAX_FETCH_SIZE = 1000;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<VisitSummary> findSummaries(VisitFilter filter, LocalDate afterDate, Integer afterId, int limit) {
+		// v.pet.id and v.vet.id read the foreign key columns, no join is rendered
+		StringBuilder jpql = new StringBuilder("SELECT new org.springframework.samples.petclinic.owner.VisitSummary("
+				+ "v.id, v.date, v.description, v.pet.id, v.vet.id) FROM Visit v WHERE 1 = 1");
+		if (filter.petId() != null) {
+			jpql.append(" AND v.pet.id = :petId");
+		}
+		if (filter.vetId() != null) {
+			jpql.append(" AND v.vet.id = :vetId");
+		}
+		if (filter.from() != null) {
+			jpql.append(" AND v.date >= :from");
+		}
+		if (filter.to() != null) {
+			jpql.append(" AND v.date <= :to");
+		}
+		if (afterDate != null) {
+			// the redundant v.date >= :afterDate lets a partitioned visits table skip
+			// the months before the cursor
+			jpql.append(" AND v.date >= :afterDate AND (v.date > :afterDate OR v.id > :afterId)");
+		}
+		jpql.append(" ORDER BY v.date, v.id");
+
+		TypedQuery<VisitSummary> query = entityManager.createQuery(jpql.toString(), VisitSummary.class)
+			.setMaxResults(limit)
+			.setHint(HibernateHints.HINT_FETCH_SIZE, Math.min(limit, MAX_FETCH_SIZE))
+			.setHint(HibernateHints.HINT_READ_ONLY, true);
+		if (filter.petId() != null) {
+			query.setParameter("petId", filter.petId());
+		}
+		if (filter.vetId() != null) {
+			query.setParameter("vetId", filter.vetId());
+		}
+		if (filter.from() != null) {
+			query.setParameter("from", filter.from());
+		}
+		if (filter.to() != null) {
+			query.setParameter("to", filter.to());
+		}
+		if (afterDate != null) {
+			query.setParameter("afterDate", afterDate);
+			query.setParameter("afterId", afterId);
+		}
+		return query.getResultList();
+	}
+
+}
@@ -0,0 +1,506 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable, compressed columnar file of archived visits, written once per archived
+ * month by {@link VisitArchive}.
+ * <p>
+ * Layout: a header (magic, version), six Deflate-compressed blocks, a footer and a
+ * trailer. Rows are sorted by {@code (visit_date, id)}. The blocks hold the ids as
+ * zig-zag varint deltas, the dates as run-length encoded day offsets from the minimum
+ * date, the pet ids as varints, the vet ids as varints shifted by one (0 is null), the
+ * descriptions as a dictionary followed by one dictionary index per row, and a pet id
+ * index listing the row numbers of every pet. The footer holds the row count, the
+ * minimum and maximum visit date and the position and sizes of every block. The
+ * trailer repeats the footer length and the magic so that readers find the footer from
+ * the end of the file.
+ */
+final class VisitSegmentFormat {
+
+	/** "PCVS". */
+	static final int MAGIC = 0x50435653;
+
+	static final byte VERSION = 1;
+
+	private static final int IDS = 0;
+
+	private static final int DATES = 1;
+
+	private static final int PET_IDS = 2;
+
+	private static final int VET_IDS = 3;
+
+	private static final int DESCRIPTIONS = 4;
+
+	private static final int PET_INDEX = 5;
+
+	private static final int BLOCKS = 6;
+
+	private static final int HEADER_LENGTH = 5;
+
+	private static final int TRAILER_LENGTH = 8;
+
+	private VisitSegmentFormat() {
+	}
+
+	/**
+	 * Write the visits, which must all have a date, to a new file.
+	 */
+	static void write(Path file, List<VisitSummary> visits) throws IOException {
+		if (visits.isEmpty()) {
+			throw new IllegalArgumentException("A segment needs at least one visit");
+		}
+		List<VisitSummary> rows = visits.stream().sorted(VisitSummary.BY_DATE_AND_ID).toList();
+		LocalDate minDate = rows.get(0).date();
+		LocalDate maxDate = rows.get(rows.size() - 1).date();
+
+		byte[][] blocks = new byte[BLOCKS][];
+		blocks[IDS] = encodeIds(rows);
+		blocks[DATES] = encodeDates(rows, minDate);
+		blocks[PET_IDS] = encodePetIds(rows);
+		blocks[VET_IDS] = encodeVetIds(rows);
+		blocks[DESCRIPTIONS] = encodeDescriptions(rows);
+		blocks[PET_INDEX] = encodePetIndex(rows);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).put(VERSION).flip();
+			writeFully(channel, header);
+			ByteBuffer footer = ByteBuffer.allocate(12 + BLOCKS * 16);
+			footer.putInt(rows.size()).putInt(Math.toIntExact(minDate.toEpochDay()))
+				.putInt(Math.toIntExact(maxDate.toEpochDay()));
+			long position = HEADER_LENGTH;
+			for (byte[] block : blocks) {
+				byte[] compressed = deflate(block);
+				writeFully(channel, ByteBuffer.wrap(compressed));
+				footer.putLong(position).putInt(compressed.length).putInt(block.length);
+				position += compressed.length;
+			}
+			footer.flip();
+			int footerLength = footer.remaining();
+			writeFully(channel, footer);
+			writeFully(channel, ByteBuffer.allocate(TRAILER_LENGTH).putInt(footerLength).putInt(MAGIC).flip());
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Read the footer and the pet id index of a segment file; the other columns are only
+	 * read by {@link Segment#read(Integer)}.
+	 */
+	static Segment open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_LENGTH + TRAILER_LENGTH) {
+				throw new IOException("Truncated visit segment " + file);
+			}
+			ByteBuffer header = readFully(channel, 0, HEADER_LENGTH);
+			if (header.getInt() != MAGIC || header.get() != VERSION) {
+				throw new IOException("Not a version " + VERSION + " visit segment: " + file);
+			}
+			ByteBuffer trailer = readFully(channel, size - TRAILER_LENGTH, TRAILER_LENGTH);
+			int footerLength = trailer.getInt();
+			if (trailer.getInt() != MAGIC || footerLength != 12 + BLOCKS * 16) {
+				throw new IOException("Corrupt visit segment trailer in " + file);
+			}
+			ByteBuffer footer = readFully(channel, size - TRAILER_LENGTH - footerLength, footerLength);
+			int rowCount = footer.getInt();
+			LocalDate minDate = LocalDate.ofEpochDay(footer.getInt());
+			LocalDate maxDate = LocalDate.ofEpochDay(footer.getInt());
+			long[] offsets = new long[BLOCKS];
+			int[] compressedLengths = new int[BLOCKS];
+			int[] rawLengths = new int[BLOCKS];
+			for (int i = 0; i < BLOCKS; i++) {
+				offsets[i] = footer.getLong();
+				compressedLengths[i] = footer.getInt();
+				rawLengths[i] = footer.getInt();
+			}
+			Segment segment = new Segment(file, rowCount, minDate, maxDate, offsets, compressedLengths, rawLengths);
+			segment.petRows = decodePetIndex(segment.block(channel, PET_INDEX));
+			return segment;
+		}
+	}
+
+	/**
+	 * An opened segment file: its footer and pet id index, kept in memory.
+	 */
+	static final class Segment {
+
+		private final Path file;
+
+		private final int rowCount;
+
+		private final LocalDate minDate;
+
+		private final LocalDate maxDate;
+
+		private final long[] offsets;
+
+		private final int[] compressedLengths;
+
+		private final int[] rawLengths;
+
+		private Map<Integer, int[]> petRows;
+
+		private Segment(Path file, int rowCount, LocalDate minDate, LocalDate maxDate, long[] offsets,
+				int[] compressedLengths, int[] rawLengths) {
+			this.file = file;
+			this.rowCount = rowCount;
+			this.minDate = minDate;
+			this.maxDate = maxDate;
+			this.offsets = offsets;
+			this.compressedLengths = compressedLengths;
+			this.rawLengths = rawLengths;
+		}
+
+		Path file() {
+			return file;
+		}
+
+		int rowCount() {
+			return rowCount;
+		}
+
+		LocalDate minDate() {
+			return minDate;
+		}
+
+		LocalDate maxDate() {
+			return maxDate;
+		}
+
+		boolean containsPet(int petId) {
+			return petRows.containsKey(petId);
+		}
+
+		/**
+		 * Decode the rows of the given pet, or all rows for {@code null}, in
+		 * {@code (visit_date, id)} order.
+		 */
+		List<VisitSummary> read(Integer petId) throws IOException {
+			int[] rows;
+			if (petId == null) {
+				rows = null;
+			}
+			else {
+				rows = petRows.get(petId);
+				if (rows == null) {
+					return List.of();
+				}
+			}
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				int[] ids = decodeIds(block(channel, IDS), rowCount);
+				LocalDate[] dates = decodeDates(block(channel, DATES), rowCount, minDate);
+				int[] petIds = decodeInts(block(channel, PET_IDS), rowCount);
+				Integer[] vetIds = decodeVetIds(block(channel, VET_IDS), rowCount);
+				String[] descriptions = decodeDescriptions(block(channel, DESCRIPTIONS), rowCount);
+				int count = rows == null ? rowCount : rows.length;
+				List<VisitSummary> visits = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					int row = rows == null ? i : rows[i];
+					Integer rowPetId = petIds[row] < 0 ? null : petIds[row];
+					visits.add(new VisitSummary(ids[row], dates[row], descriptions[row], rowPetId, vetIds[row]));
+				}
+				return visits;
+			}
+		}
+
+		private Reader block(FileChannel channel, int block) throws IOException {
+			ByteBuffer compressed = readFully(channel, offsets[block], compressedLengths[block]);
+			return new Reader(inflate(compressed.array(), rawLengths[block], file));
+		}
+
+	}
+
+	private static byte[] encodeIds(List<VisitSummary> rows) {
+		Writer out = new Writer();
+		long previous = 0;
+		for (VisitSummary row : rows) {
+			out.writeVarLong(row.id() - previous);
+			previous = row.id();
+		}
+		return out.toByteArray();
+	}
+
+	private static int[] decodeIds(Reader in, int rowCount) throws IOException {
+		int[] ids = new int[rowCount];
+		long previous = 0;
+		for (int i = 0; i < rowCount; i++) {
+			previous += in.readVarLong();
+			ids[i] = Math.toIntExact(previous);
+		}
+		return ids;
+	}
+
+	private static byte[] encodeDates(List<VisitSummary> rows, LocalDate minDate) {
+		Writer out = new Writer();
+		int i = 0;
+		while (i < rows.size()) {
+			LocalDate date = rows.get(i).date();
+			int run = 1;
+			while (i + run < rows.size() && rows.get(i + run).date().equals(date)) {
+				run++;
+			}
+			out.writeVarLong(date.toEpochDay() - minDate.toEpochDay());
+			out.writeVarLong(run);
+			i += run;
+		}
+		return out.toByteArray();
+	}
+
+	private static LocalDate[] decodeDates(Reader in, int rowCount, LocalDate minDate) throws IOException {
+		LocalDate[] dates = new LocalDate[rowCount];
+		int i = 0;
+		while (i < rowCount) {
+			LocalDate date = minDate.plusDays(in.readVarLong());
+			int run = Math.toIntExact(in.readVarLong());
+			if (run <= 0 || i + run > rowCount) {
+				throw new IOException("Corrupt date column");
+			}
+			for (int end = i + run; i < end; i++) {
+				dates[i] = date;
+			}
+		}
+		return dates;
+	}
+
+	private static byte[] encodePetIds(List<VisitSummary> rows) {
+		Writer out = new Writer();
+		for (VisitSummary row : rows) {
+			out.writeVarLong(row.petId() == null ? -1 : row.petId());
+		}
+		return out.toByteArray();
+	}
+
+	private static int[] decodeInts(Reader in, int rowCount) throws IOException {
+		int[] values = new int[rowCount];
+		for (int i = 0; i < rowCount; i++) {
+			values[i] = Math.toIntExact(in.readVarLong());
+		}
+		return values;
+	}
+
+	private static byte[] encodeVetIds(List<VisitSummary> rows) {
+		Writer out = new Writer();
+		for (VisitSummary row : rows) {
+			out.writeVarLong(row.vetId() == null ? 0 : row.vetId() + 1L);
+		}
+		return out.toByteArray();
+	}
+
+	private static Integer[] decodeVetIds(Reader in, int rowCount) throws IOException {
+		Integer[] values = new Integer[rowCount];
+		for (int i = 0; i < rowCount; i++) {
+			long value = in.readVarLong();
+			values[i] = value == 0 ? null : Math.toIntExact(value - 1);
+		}
+		return values;
+	}
+
+	private static byte[] encodeDescriptions(List<VisitSummary> rows) {
+		// index 0 stands for a null description
+		Map<String, Integer> dictionary = new LinkedHashMap<>();
+		for (VisitSummary row : rows) {
+			if (row.description() != null) {
+				dictionary.putIfAbsent(row.description(), dictionary.size() + 1);
+			}
+		}
+		Writer out = new Writer();
+		out.writeVarLong(dictionary.size());
+		dictionary.keySet().forEach(out::writeString);
+		for (VisitSummary row : rows) {
+			out.writeVarLong(row.description() == null ? 0 : dictionary.get(row.description()));
+		}
+		return out.toByteArray();
+	}
+
+	private static String[] decodeDescriptions(Reader in, int rowCount) throws IOException {
+		int size = Math.toIntExact(in.readVarLong());
+		String[] dictionary = new String[size + 1];
+		for (int i = 1; i <= size; i++) {
+			dictionary[i] = in.readString();
+		}
+		String[] values = new String[rowCount];
+		for (int i = 0; i < rowCount; i++) {
+			int index = Math.toIntExact(in.readVarLong());
+			if (index < 0 || index > size) {
+				throw new IOException("Corrupt description column");
+			}
+			values[i] = dictionary[index];
+		}
+		return values;
+	}
+
+	private static byte[] encodePetIndex(List<VisitSummary> rows) {
+		Map<Integer, List<Integer>> rowsPerPet = new TreeMap<>();
+		for (int i = 0; i < rows.size(); i++) {
+			Integer petId = rows.get(i).petId();
+			rowsPerPet.computeIfAbsent(petId == null ? -1 : petId, id -> new ArrayList<>()).add(i);
+		}
+		Writer out = new Writer();
+		out.writeVarLong(rowsPerPet.size());
+		long previousPet = 0;
+		for (Map.Entry<Integer, List<Integer>> pet : rowsPerPet.entrySet()) {
+			out.writeVarLong(pet.getKey() - previousPet);
+			previousPet = pet.getKey();
+			out.writeVarLong(pet.getValue().size());
+			long previousRow = 0;
+			for (int row : pet.getValue()) {
+				out.writeVarLong(row - previousRow);
+				previousRow = row;
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static Map<Integer, int[]> decodePetIndex(Reader in) throws IOException {
+		int pets = Math.toIntExact(in.readVarLong());
+		Map<Integer, int[]> petRows = new HashMap<>(pets * 2);
+		long petId = 0;
+		for (int i = 0; i < pets; i++) {
+			petId += in.readVarLong();
+			int[] rows = new int[Math.toIntExact(in.readVarLong())];
+			long row = 0;
+			for (int j = 0; j < rows.length; j++) {
+				row += in.readVarLong();
+				rows[j] = Math.toIntExact(row);
+			}
+			petRows.put(Math.toIntExact(petId), rows);
+		}
+		return petRows;
+	}
+
+	private static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				int length = deflater.deflate(buffer);
+				out.write(buffer, 0, length);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] data, int rawLength, Path file) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			byte[] raw = new byte[rawLength];
+			int length = 0;
+			while (length < rawLength && !inflater.finished()) {
+				int inflated = inflater.inflate(raw, length, rawLength - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+			if (length != rawLength) {
+				throw new IOException("Truncated block in visit segment " + file);
+			}
+			return raw;
+		}
+		catch (DataFormatException ex) {
+			throw new IOException("Corrupt block in visit segment " + file, ex);
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of visit segment");
+			}
+		}
+		return buffer.flip();
+	}
+
+	private static final class Writer extends ByteArrayOutputStream {
+
+		void writeVarLong(long value) {
+			long zigZag = (value << 1) ^ (value >> 63);
+			while ((zigZag & ~0x7FL) != 0) {
+				write((int) ((zigZag & 0x7F) | 0x80));
+				zigZag >>>= 7;
+			}
+			write((int) zigZag);
+		}
+
+		void writeString(String value) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(bytes.length);
+			write(bytes, 0, bytes.length);
+		}
+
+	}
+
+	private static final class Reader {
+
+		private final byte[] data;
+
+		private int position;
+
+		Reader(byte[] data) {
+			this.data = data;
+		}
+
+		long readVarLong() throws IOException {
+			long zigZag = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if (position >= data.length) {
+					throw new IOException("Truncated visit segment column");
+				}
+				byte b = data[position++];
+				zigZag |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return (zigZag >>> 1) ^ -(zigZag & 1);
+				}
+			}
+			throw new IOException("Malformed varint in visit segment column");
+		}
+
+		String readString() throws IOException {
+			long length = readVarLong();
+			if (length < 0 || length > data.length - position) {
+				throw new IOException("Visit segment string of " + length + " bytes exceeds the "
+						+ (data.length - position) + " bytes left in the column");
+			}
+			String value = new String(data, position, (int) length, StandardCharsets.UTF_8);
+			position += (int) length;
+			return value;
+		}
+
+	}
+
+}
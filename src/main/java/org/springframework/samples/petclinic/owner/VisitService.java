@@ -0,0 +1,35 @@
+package org.springframework.samples.petclinic.owner;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Adds visits by inserting the single {@link Visit} row. The pet is attached as a
+ * reference, so neither the pet nor its owner is loaded or merged.
+ */
+@Service
+public class VisitService {
+
+	private final PetRepository pets;
+
+	private final VisitRepository visits;
+
+	public VisitService(PetRepository pets, VisitRepository visits) {
+		this.pets = pets;
+		this.visits = visits;
+	}
+
+	/**
+	 * Insert a new visit for the given pet.
+	 * @throws IllegalArgumentException if the pet does not belong to the owner
+	 */
+	@Transactional
+	public Visit addVisit(int ownerId, int petId, Visit visit) {
+		if (!pets.existsByIdAndOwnerId(petId, ownerId)) {
+			throw new IllegalArgumentException("Pet ID " + petId + " not found for owner ID " + ownerId);
+		}
+		visit.setPet(pets.getReferenceById(petId));
+		return visits.save(visit);
+	}
+
+}
@@ -0,0 +1,18 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * Flat, read-only projection of a {@link Visit} row, selected directly into this record
+ * without loading the entity, its pet or its vet.
+ */
+public record VisitSummary(Integer id, LocalDate date, String description, Integer petId, Integer vetId) {
+
+	/**
+	 * The {@code (visit_date, id)} order that visit history is paged in.
+	 */
+	public static final Comparator<VisitSummary> BY_DATE_AND_ID = Comparator.comparing(VisitSummary::date)
+		.thenComparing(VisitSummary::id);
+
+}
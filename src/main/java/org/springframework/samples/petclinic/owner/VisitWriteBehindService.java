@@ -0,0 +1,112 @@
+package org.springframework.samples.petclinic.owner;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.sql.DataSource;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.samples.petclinic.system.GroupCommitQueue;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Optional write-behind path for new visits. Validated visits are queued and inserted by
+ * a single committer thread in one transaction per batch, instead of one transaction per
+ * request. Callers still block until their batch has committed, so a request that
+ * returns successfully has a durable visit. A caller gives up after
+ * {@code commit-timeout}; its visit may still be committed later. With a sharded
+ * database, a batch is committed in one transaction per shard of its pets.
+ * <p>
+ * Enabled with {@code petclinic.visits.write-behind.enabled=true}.
+ */
+@Service
+@ConditionalOnProperty(name = "petclinic.visits.write-behind.enabled", havingValue = "true")
+public class VisitWriteBehindService {
+
+	private final PetRepository pets;
+
+	private final VisitRepository visits;
+
+	private final DataSource dataSource;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final GroupCommitQueue<NewVisit> queue;
+
+	private final Duration commitTimeout;
+
+	public VisitWriteBehindService(PetRepository pets, VisitRepository visits, DataSource dataSource,
+			PlatformTransactionManager transactionManager,
+			@Value("${petclinic.visits.write-behind.queue-capacity:1024}") int capacity,
+			@Value("${petclinic.visits.write-behind.max-batch-size:64}") int maxBatchSize,
+			@Value("${petclinic.visits.write-behind.max-delay:5ms}") Duration maxDelay,
+			@Value("${petclinic.visits.write-behind.enqueue-timeout:1s}") Duration enqueueTimeout,
+			@Value("${petclinic.visits.write-behind.commit-timeout:10s}") Duration commitTimeout) {
+		this.pets = pets;
+		this.visits = visits;
+		this.dataSource = dataSource;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.queue = new GroupCommitQueue<>("visit-group-commit", capacity, maxBatchSize, maxDelay, enqueueTimeout,
+				this::insertAll);
+		this.commitTimeout = commitTimeout;
+	}
+
+	/**
+	 * Insert the visit for the given pet and wait until its batch has committed.
+	 * @throws IllegalArgumentException if the pet does not belong to the owner
+	 */
+	public void save(int ownerId, int petId, Visit visit) {
+		if (!pets.existsByIdAndOwnerId(petId, ownerId)) {
+			throw new IllegalArgumentException("Pet ID " + petId + " not found for owner ID " + ownerId);
+		}
+		try {
+			queue.submit(new NewVisit(petId, visit)).get(commitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+		}
+		catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw new IllegalStateException(ex.getCause());
+		}
+		catch (TimeoutException ex) {
+			throw new IllegalStateException("Visit not committed within " + commitTimeout, ex);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the visit to commit", ex);
+		}
+	}
+
+	private void insertAll(List<NewVisit> batch) {
+		ShardRoutingDataSource.runOnShardsOf(dataSource, batch, NewVisit::petId, this::insertOnShard);
+	}
+
+	private void insertOnShard(List<NewVisit> batch) {
+		transactionTemplate.executeWithoutResult(status -> {
+			for (NewVisit newVisit : batch) {
+				Visit visit = newVisit.visit();
+				// a failed batch may have assigned an id before rolling back
+				visit.setId(null);
+				visit.setPet(pets.getReferenceById(newVisit.petId()));
+				visits.save(visit);
+			}
+		});
+	}
+
+	@PreDestroy
+	void close() throws InterruptedException {
+		queue.close();
+	}
+
+	private record NewVisit(int petId, Visit visit) {
+	}
+
+}
@@ -3,11 +3,17 @@ package org.springframework.samples.petclinic.owner.rest;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.samples.petclinic.owner.Owner;
 
+import java.time.LocalDate;
+
 /**
- * DTO for {@link Owner}
+ * DTO for {@link Owner}, sortable by {@code petCount}, {@code visitCount} and
+ * {@code lastVisitDate}, e.g. {@code /rest/owners?sort=visitCount,desc}
  */
 public record OwnerMinimalDto(Integer id,
                               @NotBlank String firstName,
                               @NotBlank String lastName,
-                              @NotBlank String city) {
+                              @NotBlank String city,
+                              int petCount,
+                              int visitCount,
+                              LocalDate lastVisitDate) {
 }
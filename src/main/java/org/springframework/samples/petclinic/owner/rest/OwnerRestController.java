@@ -7,6 +7,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PagedModel;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.samples.petclinic.owner.Owner;
 import org.springframework.samples.petclinic.owner.OwnerRepository;
 import org.springframework.web.bind.annotation.*;
@@ -22,13 +23,16 @@ public class OwnerRestController {
     private final OwnerRepository ownerRepository;
     private final OwnerMapper ownerMapper;
     private final ObjectMapper objectMapper;
+    private final OwnerSnapshotService ownerSnapshotService;
 
     public OwnerRestController(OwnerRepository ownerRepository,
                                OwnerMapper ownerMapper,
-                               ObjectMapper objectMapper) {
+                               ObjectMapper objectMapper,
+                               OwnerSnapshotService ownerSnapshotService) {
         this.ownerRepository = ownerRepository;
         this.ownerMapper = ownerMapper;
         this.objectMapper = objectMapper;
+        this.ownerSnapshotService = ownerSnapshotService;
     }
 
     @PostMapping
@@ -48,6 +52,16 @@ public class OwnerRestController {
                 new ResponseStatusException(HttpStatus.NOT_FOUND, "Entity with id `%s` not found".formatted(id))));
     }
 
+    /**
+     * The owner with its pets, their visits and the visits' vets, as an
+     * {@link OwnerExtendedDto} document pre-rendered by {@link OwnerSnapshotService}.
+     */
+    @GetMapping(value = "/{id}/details", produces = MediaType.APPLICATION_JSON_VALUE)
+    public String getDetails(@PathVariable Integer id) {
+        return ownerSnapshotService.findDocument(id).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Entity with id `%s` not found".formatted(id)));
+    }
+
     @GetMapping
     public PagedModel<OwnerMinimalDto> getAll(@ModelAttribute OwnerFilter ownerFilter,
                                               Pageable pageable) {
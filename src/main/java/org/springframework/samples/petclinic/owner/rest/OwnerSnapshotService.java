@@ -0,0 +1,164 @@
+package org.springframework.samples.petclinic.owner.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerAggregateChangedEvent;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.system.GroupCommitQueue;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Serves owner details as pre-rendered {@link OwnerExtendedDto} documents from
+ * {@link OwnerSnapshotStore}, so that a read is a single primary key lookup. Documents
+ * are re-rendered by a background thread after each committed change of the owner
+ * aggregate. A read that finds no current document renders one from the entities and
+ * queues a rebuild, it never waits for the background thread. Both load the owner with
+ * its pets in one query and all of their visits in a second one. With a sharded
+ * database, both run on the owner's shard, where its document is kept.
+ * <p>
+ * With {@code petclinic.owners.snapshots.background-rebuild=false} nothing is queued,
+ * and reads render the owners that changed until their documents are rebuilt some
+ * other way.
+ */
+@Component
+public class OwnerSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(OwnerSnapshotService.class);
+
+    private final OwnerSnapshotStore store;
+
+    private final OwnerRepository ownerRepository;
+
+    private final OwnerMapper ownerMapper;
+
+    private final ObjectMapper objectMapper;
+
+    private final DataSource dataSource;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final GroupCommitQueue<Integer> queue;
+
+    private final boolean backgroundRebuild;
+
+    OwnerSnapshotService(OwnerSnapshotStore store, OwnerRepository ownerRepository, OwnerMapper ownerMapper,
+                         ObjectMapper objectMapper, DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${petclinic.owners.snapshots.background-rebuild:true}") boolean backgroundRebuild) {
+        this.store = store;
+        this.ownerRepository = ownerRepository;
+        this.ownerMapper = ownerMapper;
+        this.objectMapper = objectMapper;
+        this.dataSource = dataSource;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.queue = new GroupCommitQueue<>("owner-snapshots", 10_000, 100, Duration.ofMillis(100), Duration.ZERO,
+                this::rebuildAll);
+        this.backgroundRebuild = backgroundRebuild;
+    }
+
+    /**
+     * The details document of an owner, or empty if the owner does not exist.
+     */
+    public Optional<String> findDocument(int ownerId) {
+        return ShardRoutingDataSource.callOnShardOf(dataSource, ownerId, () -> findDocumentOnShard(ownerId));
+    }
+
+    private Optional<String> findDocumentOnShard(int ownerId) {
+        Optional<String> current = store.findCurrent(ownerId);
+        if (current.isPresent()) {
+            return current;
+        }
+        Optional<String> rendered = readOnlyTransactionTemplate
+                .execute(status -> loadAggregates(List.of(ownerId)).stream().findFirst().map(this::render));
+        if (rendered.isPresent()) {
+            scheduleRebuild(ownerId);
+        }
+        return rendered;
+    }
+
+    @EventListener
+    void onAggregateChanged(OwnerAggregateChangedEvent event) {
+        event.ownerIds().forEach(this::scheduleRebuild);
+    }
+
+    void scheduleRebuild(Integer ownerId) {
+        if (!backgroundRebuild) {
+            return;
+        }
+        try {
+            queue.submit(ownerId).exceptionally(ex -> {
+                log.warn("Could not rebuild the snapshot of owner {}, it is rendered on read", ownerId, ex);
+                return null;
+            });
+        }
+        catch (IllegalStateException ex) {
+            log.warn("Dropping snapshot rebuild of owner {}, it is rendered on read: {}", ownerId, ex.getMessage());
+        }
+    }
+
+    private void rebuildAll(List<Integer> ownerIds) {
+        ShardRoutingDataSource.runOnShardsOf(dataSource, ownerIds, Integer::intValue, this::rebuildOnShard);
+    }
+
+    private void rebuildOnShard(List<Integer> ownerIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // read the versions first, the entities are then at least as recent
+            Map<Integer, Long> versions = store.findVersions(new LinkedHashSet<>(ownerIds));
+            for (Owner owner : loadAggregates(versions.keySet())) {
+                store.save(owner.getId(), versions.get(owner.getId()), render(owner));
+            }
+        });
+    }
+
+    /**
+     * The owners with their pets, visits and the visits' vets, in two queries. Must run
+     * in a transaction.
+     */
+    private List<Owner> loadAggregates(Collection<Integer> ownerIds) {
+        if (ownerIds.isEmpty()) {
+            return List.of();
+        }
+        List<Owner> owners = ownerRepository.findWithPetsByIdIn(ownerIds);
+        if (owners.stream().anyMatch(owner -> !owner.getPets().isEmpty())) {
+            // initializes the visits of the pets loaded above
+            ownerRepository.findPetsWithVisitsByOwnerIdIn(ownerIds);
+        }
+        return owners;
+    }
+
+    private String render(Owner owner) {
+        try {
+            return objectMapper.writeValueAsString(ownerMapper.toOwnerExtendedDto(owner));
+        }
+        catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException {
+        queue.close();
+    }
+}
@@ -0,0 +1,71 @@
+package org.springframework.samples.petclinic.owner.rest;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * JDBC access to {@code owner_snapshot}, one pre-rendered JSON document per owner,
+ * tagged with the {@code owners.aggregate_version} it was rendered from.
+ */
+@Component
+class OwnerSnapshotStore {
+
+    private static final String FIND_CURRENT = "SELECT s.document FROM owner_snapshot s "
+            + "JOIN owners o ON o.id = s.owner_id AND o.aggregate_version = s.version WHERE s.owner_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    OwnerSnapshotStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * The document of an owner, unless there is none or the owner changed since it was
+     * rendered.
+     */
+    Optional<String> findCurrent(int ownerId) {
+        return jdbcTemplate.queryForList(FIND_CURRENT, String.class, ownerId).stream().findFirst();
+    }
+
+    /**
+     * The current aggregate versions of the given owners, by owner id. Owners that do
+     * not exist are left out.
+     */
+    Map<Integer, Long> findVersions(Collection<Integer> ownerIds) {
+        Map<Integer, Long> versions = new HashMap<>();
+        if (ownerIds.isEmpty()) {
+            return versions;
+        }
+        String placeholders = ownerIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        jdbcTemplate.query("SELECT id, aggregate_version FROM owners WHERE id IN (" + placeholders + ")",
+                rs -> {
+                    versions.put(rs.getInt(1), rs.getLong(2));
+                },
+                ownerIds.toArray());
+        return versions;
+    }
+
+    /**
+     * Store the document of an owner unless a document of the same or a later version
+     * is stored already. Callers serialize saves of the same owner.
+     */
+    void save(int ownerId, long version, String document) {
+        Timestamp now = Timestamp.from(Instant.now());
+        int updated = jdbcTemplate.update(
+                "UPDATE owner_snapshot SET version = ?, document = ?, built_at = ? WHERE owner_id = ? AND version < ?",
+                version, document, now, ownerId, version);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO owner_snapshot (owner_id, version, document, built_at) "
+                            + "SELECT ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM owner_snapshot WHERE owner_id = ?)",
+                    ownerId, version, document, now, ownerId);
+        }
+    }
+}
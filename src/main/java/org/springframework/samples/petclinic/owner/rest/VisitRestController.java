@@ -0,0 +1,58 @@
+package org.springframework.samples.petclinic.owner.rest;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.samples.petclinic.owner.VisitFilter;
+import org.springframework.samples.petclinic.owner.VisitHistory;
+import org.springframework.samples.petclinic.owner.VisitSummary;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Visit history, keyset-paginated on {@code (visit_date, id)} so that every page costs
+ * one index range scan regardless of how deep the client has paged. Archived visits are
+ * merged in transparently.
+ */
+@RestController
+@RequestMapping("/rest/visits")
+public class VisitRestController {
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private final VisitHistory visitHistory;
+
+    public VisitRestController(VisitHistory visitHistory) {
+        this.visitHistory = visitHistory;
+    }
+
+    @GetMapping
+    public VisitSlice getAll(@ModelAttribute VisitFilter filter,
+                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate afterDate,
+                             @RequestParam(required = false) Integer afterId,
+                             @RequestParam(defaultValue = "100") int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "`size` must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if ((afterDate == null) != (afterId == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "`afterDate` and `afterId` must be given together");
+        }
+        if (filter.from() != null && filter.to() != null && filter.from().isAfter(filter.to())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "`from` must not be after `to`");
+        }
+        // one extra row tells whether there is a next page without a count query
+        List<VisitSummary> visits = visitHistory.findSummaries(filter, afterDate, afterId, size + 1);
+        if (visits.size() <= size) {
+            return new VisitSlice(visits, null);
+        }
+        List<VisitSummary> page = visits.subList(0, size);
+        VisitSummary last = page.get(size - 1);
+        return new VisitSlice(page, new VisitSlice.Cursor(last.date(), last.id()));
+    }
+}
@@ -0,0 +1,16 @@
+package org.springframework.samples.petclinic.owner.rest;
+
+import org.springframework.samples.petclinic.owner.VisitSummary;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One page of visits. {@code next} is the position to pass back as
+ * {@code afterDate}/{@code afterId} for the following page, or {@code null} on the last page.
+ */
+public record VisitSlice(List<VisitSummary> content, Cursor next) {
+
+    public record Cursor(LocalDate afterDate, Integer afterId) {
+    }
+}
@@ -0,0 +1,68 @@
+package org.springframework.samples.petclinic.system;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Resizes every connection pool with an {@link AdaptivePoolSizer} when
+ * {@code petclinic.datasource.adaptive-pool.enabled} is set: the primary and the
+ * replica, or every shard. Fails to start if statements are not timed by the
+ * {@link SlowQueryLog}, as the sizers would then only ever grow the pools.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "petclinic.datasource.adaptive-pool.enabled", havingValue = "true")
+class AdaptivePoolConfiguration {
+
+	@Bean
+	AdaptivePoolSizers adaptivePoolSizers(DataSource dataSource, ObjectProvider<HikariDataSource> pools,
+			SlowQueryLog slowQueryLog, MeterRegistry registry,
+			@Value("${petclinic.datasource.adaptive-pool.min-size:5}") int minSize,
+			@Value("${petclinic.datasource.adaptive-pool.max-size:40}") int maxSize,
+			@Value("${petclinic.datasource.adaptive-pool.target-wait:5ms}") Duration targetWait) throws SQLException {
+		if (!dataSource.isWrapperFor(SlowQueryDataSource.class)
+				|| registry.find("petclinic.jdbc.statements").timer() == null) {
+			throw new IllegalStateException("Adaptive pool sizing needs the petclinic.jdbc.statements timer, "
+					+ "but the data source is not wrapped by the slow query log");
+		}
+		List<AdaptivePoolSizer> sizers = new ArrayList<>();
+		for (HikariDataSource pool : pools(dataSource, pools)) {
+			sizers.add(new AdaptivePoolSizer(pool, registry, minSize, maxSize, targetWait));
+		}
+		return new AdaptivePoolSizers(sizers);
+	}
+
+	/**
+	 * The pools declared as beans, such as the primary and the replica, those of the
+	 * shards, or else the one the data source wraps.
+	 */
+	private static Set<HikariDataSource> pools(DataSource dataSource, ObjectProvider<HikariDataSource> beans)
+			throws SQLException {
+		Set<HikariDataSource> pools = Collections.newSetFromMap(new IdentityHashMap<>());
+		beans.orderedStream().forEach(pools::add);
+		if (dataSource.isWrapperFor(ShardRoutingDataSource.class)) {
+			for (DataSource shard : dataSource.unwrap(ShardRoutingDataSource.class).getShards()) {
+				pools.add(shard.unwrap(HikariDataSource.class));
+			}
+		}
+		if (pools.isEmpty()) {
+			pools.add(dataSource.unwrap(HikariDataSource.class));
+		}
+		return pools;
+	}
+
+}
@@ -0,0 +1,126 @@
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resizes a Hikari pool between {@code minSize} and {@code maxSize} with a gradient in
+ * the style of TCP Vegas. The lowest statement latency seen stands for the database
+ * without load. As long as latency stays near it the database has spare capacity, so
+ * the pool grows by the square root of its size while requests wait for connections.
+ * When latency rises the database is queueing work itself, and the pool shrinks in
+ * proportion, down to half its size per step. Changes are smoothed so that one noisy
+ * interval does not swing the pool.
+ * <p>
+ * Statement latency comes from the {@code petclinic.jdbc.statements} timer of the
+ * {@link SlowQueryLog} and wait time from Hikari's {@code hikaricp.connections.acquire}
+ * timer, both compared between two runs. The statement timer covers every pool, so
+ * when pools front different databases, such as a primary and its replica, a slow one
+ * holds all of them back. Hikari only closes connections above a smaller maximum once
+ * they are idle, and only if {@code minimum-idle} is below it.
+ */
+class AdaptivePoolSizer {
+
+	private static final Logger log = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+	private static final double SMOOTHING = 0.2;
+
+	// lets the no-load latency recover from a lucky interval, about 1% a minute at 1s ticks
+	private static final double NO_LOAD_DRIFT = 1.0002;
+
+	private final HikariDataSource pool;
+
+	private final MeterRegistry registry;
+
+	private final int minSize;
+
+	private final int maxSize;
+
+	private final double targetWaitMillis;
+
+	private double noLoadLatencyMillis = Double.NaN;
+
+	private final Interval latency = new Interval();
+
+	private final Interval wait = new Interval();
+
+	AdaptivePoolSizer(HikariDataSource pool, MeterRegistry registry, int minSize, int maxSize, Duration targetWait) {
+		this.pool = pool;
+		this.registry = registry;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.targetWaitMillis = targetWait.toNanos() / 1_000_000.0;
+	}
+
+	public void adjust() {
+		HikariPoolMXBean poolBean = pool.getHikariPoolMXBean();
+		if (poolBean == null) {
+			return;
+		}
+		double latencyMillis = latency.meanMillis(registry.find("petclinic.jdbc.statements").timer());
+		double waitMillis = wait.meanMillis(
+				registry.find("hikaricp.connections.acquire").tag("pool", pool.getPoolName()).timer());
+		int size = pool.getMaximumPoolSize();
+		int next = nextSize(size, latencyMillis, waitMillis, poolBean.getThreadsAwaitingConnection());
+		if (next != size) {
+			log.info("Resizing connection pool {} from {} to {}: latency {} ms (no load {} ms), wait {} ms",
+					pool.getPoolName(), size, next, latencyMillis, noLoadLatencyMillis, waitMillis);
+			pool.getHikariConfigMXBean().setMaximumPoolSize(next);
+		}
+	}
+
+	/**
+	 * The pool size for the next interval.
+	 * @param size the current size
+	 * @param latencyMillis mean statement latency in the last interval, NaN if none ran
+	 * @param waitMillis mean time to get a connection in the last interval, NaN if none
+	 * was taken
+	 * @param waiting threads waiting for a connection right now
+	 */
+	int nextSize(int size, double latencyMillis, double waitMillis, int waiting) {
+		double gradient = 1;
+		if (!Double.isNaN(latencyMillis)) {
+			noLoadLatencyMillis = Double.isNaN(noLoadLatencyMillis) ? latencyMillis
+					: Math.min(noLoadLatencyMillis * NO_LOAD_DRIFT, latencyMillis);
+			gradient = Math.max(0.5, Math.min(1, noLoadLatencyMillis / latencyMillis));
+		}
+		boolean starved = waiting > 0 || waitMillis > targetWaitMillis;
+		double target = size * gradient + (starved ? Math.sqrt(size) : 0);
+		long next = Math.round(size * (1 - SMOOTHING) + target * SMOOTHING);
+		if (starved && gradient == 1 && next == size) {
+			next++;
+		}
+		return (int) Math.max(minSize, Math.min(maxSize, next));
+	}
+
+	/**
+	 * The mean of a timer over the time since the previous call.
+	 */
+	private static class Interval {
+
+		private long count;
+
+		private double totalMillis;
+
+		double meanMillis(Timer timer) {
+			if (timer == null) {
+				return Double.NaN;
+			}
+			long count = timer.count();
+			double totalMillis = timer.totalTime(TimeUnit.MILLISECONDS);
+			double mean = count > this.count ? (totalMillis - this.totalMillis) / (count - this.count) : Double.NaN;
+			this.count = count;
+			this.totalMillis = totalMillis;
+			return mean;
+		}
+
+	}
+
+}
@@ -0,0 +1,29 @@
+package org.springframework.samples.petclinic.system;
+
+import java.util.List;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Runs one {@link AdaptivePoolSizer} per connection pool, each with its own state.
+ */
+class AdaptivePoolSizers {
+
+	private final List<AdaptivePoolSizer> sizers;
+
+	AdaptivePoolSizers(List<AdaptivePoolSizer> sizers) {
+		this.sizers = List.copyOf(sizers);
+	}
+
+	List<AdaptivePoolSizer> sizers() {
+		return sizers;
+	}
+
+	@Scheduled(fixedDelayString = "${petclinic.datasource.adaptive-pool.interval-ms:1000}")
+	public void adjust() {
+		for (AdaptivePoolSizer sizer : sizers) {
+			sizer.adjust();
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.springframework.samples.petclinic.system;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Base for data sources that hand out decorated connections. Closeable so that the pool
+ * it wraps is still shut down with the context.
+ */
+abstract class ConnectionDecoratingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+	ConnectionDecoratingDataSource(DataSource dataSource) {
+		super(dataSource);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return decorate(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return decorate(super.getConnection(username, password));
+	}
+
+	protected abstract Connection decorate(Connection connection);
+
+	@Override
+	public void close() throws Exception {
+		if (getTargetDataSource() instanceof AutoCloseable closeable) {
+			closeable.close();
+		}
+	}
+
+	/**
+	 * A JDK proxy of the given JDBC interface that hands every call to {@code handler},
+	 * which can invoke the target with {@link #invoke}.
+	 */
+	static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(ConnectionDecoratingDataSource.class.getClassLoader(),
+				new Class<?>[] { type }, handler));
+	}
+
+	/**
+	 * Invoke the method on the target, rethrowing what it throws rather than an
+	 * {@link InvocationTargetException}.
+	 */
+	static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException ex) {
+			throw ex.getTargetException();
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+package org.springframework.samples.petclinic.system;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Measures the connection hold time of every request, see
+ * {@link ConnectionHoldTimeFilter}.
+ */
+@Configuration(proxyBeanMethods = false)
+class ConnectionHoldTimeConfiguration {
+
+	@Bean
+	ConnectionHoldTimeFilter connectionHoldTimeFilter(MeterRegistry registry) {
+		return new ConnectionHoldTimeFilter(registry);
+	}
+
+	@Bean
+	static BeanPostProcessor connectionHoldTimeDataSourceWrapper() {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				// only the data source the application uses, not the pools behind a router
+				if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+					return ConnectionHoldTimeFilter.track(dataSource);
+				}
+				return bean;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,87 @@
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Records how long each request held JDBC connections as the
+ * {@code petclinic.http.connection.hold} timer, tagged with the request's URI pattern.
+ * Connections are only tracked when they come from a data source wrapped with
+ * {@link #track(DataSource)}. Compared with the request duration this shows how much of
+ * a request keeps a pool connection busy, which with open-in-view disabled should be
+ * just the transactions and not the view rendering.
+ */
+class ConnectionHoldTimeFilter extends OncePerRequestFilter {
+
+	private static final ThreadLocal<long[]> heldNanos = new ThreadLocal<>();
+
+	private final MeterRegistry registry;
+
+	ConnectionHoldTimeFilter(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		long[] held = new long[1];
+		heldNanos.set(held);
+		try {
+			chain.doFilter(request, response);
+		}
+		finally {
+			heldNanos.remove();
+			Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+			Timer.builder("petclinic.http.connection.hold")
+				.description("Time a request held JDBC connections")
+				.tag("method", request.getMethod())
+				.tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+				.register(registry)
+				.record(held[0], TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Wrap the data source so that connections obtained while handling a request add the
+	 * time until they are closed to that request's hold time.
+	 */
+	static DataSource track(DataSource dataSource) {
+		return new ConnectionDecoratingDataSource(dataSource) {
+
+			@Override
+			protected Connection decorate(Connection connection) {
+				return tracked(connection);
+			}
+
+		};
+	}
+
+	private static Connection tracked(Connection connection) {
+		long[] held = heldNanos.get();
+		if (held == null) {
+			return connection;
+		}
+		long acquired = System.nanoTime();
+		boolean[] closed = new boolean[1];
+		return ConnectionDecoratingDataSource.proxy(Connection.class, (proxy, method, args) -> {
+			if (method.getName().equals("close") && !closed[0]) {
+				closed[0] = true;
+				held[0] += System.nanoTime() - acquired;
+			}
+			return ConnectionDecoratingDataSource.invoke(connection, method, args);
+		});
+	}
+
+}
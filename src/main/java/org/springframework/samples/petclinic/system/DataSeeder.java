@@ -0,0 +1,118 @@
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the seed script given by {@code petclinic.seed.script} once per version of the
+ * script, instead of on every start as {@code spring.sql.init.mode=always} does. The
+ * script's SHA-256 checksum is recorded in {@code seed_history} in the same transaction
+ * as its statements, so a start whose script is unchanged skips seeding after a single
+ * query. A changed script runs again and must tolerate the rows it inserted before.
+ * <p>
+ * Seeding happens once all singletons exist, after the Flyway migrations and before the
+ * web server accepts requests.
+ */
+@Component
+@ConditionalOnProperty("petclinic.seed.script")
+public class DataSeeder implements SmartInitializingSingleton {
+
+	private static final Logger log = LoggerFactory.getLogger(DataSeeder.class);
+
+	private final DataSource dataSource;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final String location;
+
+	private final Resource script;
+
+	DataSeeder(DataSource dataSource, PlatformTransactionManager transactionManager,
+			@Value("${petclinic.seed.script}") String location, @Value("${petclinic.seed.script}") Resource script) {
+		this.dataSource = dataSource;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.location = location;
+		this.script = script;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		seed();
+	}
+
+	/**
+	 * Run the script unless this version of it has been applied already.
+	 * @return whether the script ran
+	 */
+	public boolean seed() {
+		String checksum = checksum();
+		List<String> applied = jdbcTemplate.queryForList("SELECT checksum FROM seed_history WHERE script = ?",
+				String.class, location);
+		if (applied.contains(checksum)) {
+			log.debug("Seed script {} already applied", location);
+			return false;
+		}
+		long start = System.nanoTime();
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				new ResourceDatabasePopulator(script).execute(dataSource);
+				if (applied.isEmpty()) {
+					jdbcTemplate.update(
+							"INSERT INTO seed_history (script, checksum, applied_at) VALUES (?, ?, CURRENT_TIMESTAMP)",
+							location, checksum);
+				}
+				else {
+					jdbcTemplate.update(
+							"UPDATE seed_history SET checksum = ?, applied_at = CURRENT_TIMESTAMP WHERE script = ?",
+							checksum, location);
+				}
+			});
+		}
+		catch (DuplicateKeyException ex) {
+			// another instance starting at the same time seeded first
+			log.info("Seed script {} applied concurrently by another instance", location);
+			return false;
+		}
+		log.info("Applied seed script {} in {} ms", location,
+				Duration.ofNanos(System.nanoTime() - start).toMillis());
+		return true;
+	}
+
+	private String checksum() {
+		try (InputStream in = script.getInputStream()) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest(in.readAllBytes()));
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Cannot read seed script " + location, ex);
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+}
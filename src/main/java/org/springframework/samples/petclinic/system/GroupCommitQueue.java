@@ -0,0 +1,178 @@
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue that hands submitted items to a single committer thread, which writes
+ * them in batches of up to {@code maxBatchSize} items, or whatever has arrived within
+ * {@code maxDelay} of the first item of a batch, whichever comes first.
+ * <p>
+ * Each submitter gets a future that completes once the batch holding its item has been
+ * committed. If a batch fails, its items are retried one by one so that a single bad
+ * item only fails its own submitter.
+ */
+public class GroupCommitQueue<T> implements AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger(GroupCommitQueue.class);
+
+	private final BlockingQueue<Pending<T>> queue;
+
+	private final int maxBatchSize;
+
+	private final long maxDelayNanos;
+
+	private final Duration enqueueTimeout;
+
+	private final Consumer<List<T>> committer;
+
+	private final Thread thread;
+
+	// submitters share the read lock, close takes the write lock, so no item is queued
+	// after the committer has been told to stop
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+	private volatile boolean running = true;
+
+	public GroupCommitQueue(String name, int capacity, int maxBatchSize, Duration maxDelay, Duration enqueueTimeout,
+			Consumer<List<T>> committer) {
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNanos = maxDelay.toNanos();
+		this.enqueueTimeout = enqueueTimeout;
+		this.committer = committer;
+		this.thread = new Thread(this::run, name);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Queue an item for the next batch.
+	 * @return a future completed when the item is committed
+	 * @throws IllegalStateException if the queue stays full for longer than the enqueue
+	 * timeout, or the queue is closed
+	 */
+	public CompletableFuture<Void> submit(T item) {
+		Pending<T> pending = new Pending<>(item, new CompletableFuture<>());
+		Lock lock = closeLock.readLock();
+		lock.lock();
+		try {
+			if (!running) {
+				throw new IllegalStateException("Group commit queue is closed");
+			}
+			if (!queue.offer(pending, enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+				throw new IllegalStateException("Group commit queue is full");
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while queueing item", ex);
+		}
+		finally {
+			lock.unlock();
+		}
+		return pending.future();
+	}
+
+	/**
+	 * Stop accepting items, commit everything already queued and stop the committer
+	 * thread. Items the committer did not get to, because it was interrupted, are
+	 * failed.
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		Lock lock = closeLock.writeLock();
+		lock.lock();
+		try {
+			running = false;
+		}
+		finally {
+			lock.unlock();
+		}
+		thread.join();
+		List<Pending<T>> leftovers = new ArrayList<>();
+		queue.drainTo(leftovers);
+		leftovers.forEach(pending -> pending.future()
+			.completeExceptionally(new IllegalStateException("Group commit queue closed before the item was committed")));
+	}
+
+	private void run() {
+		List<Pending<T>> batch = new ArrayList<>(maxBatchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				Pending<T> first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + maxDelayNanos;
+				while (batch.size() < maxBatchSize) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0 || (queue.drainTo(batch, maxBatchSize - batch.size()) == 0
+							&& !pollInto(batch, remaining))) {
+						break;
+					}
+				}
+				commit(batch);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				running = false;
+			}
+			finally {
+				batch.forEach(pending -> pending.future().completeExceptionally(
+						new IllegalStateException("Group commit queue stopped before the item was committed")));
+				batch.clear();
+			}
+		}
+	}
+
+	private boolean pollInto(List<Pending<T>> batch, long timeoutNanos) throws InterruptedException {
+		Pending<T> next = queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+		if (next == null) {
+			return false;
+		}
+		batch.add(next);
+		return true;
+	}
+
+	private void commit(List<Pending<T>> batch) {
+		try {
+			committer.accept(batch.stream().map(Pending::item).toList());
+			batch.forEach(pending -> pending.future().complete(null));
+			return;
+		}
+		catch (RuntimeException ex) {
+			if (batch.size() == 1) {
+				batch.get(0).future().completeExceptionally(ex);
+				return;
+			}
+			log.warn("Batch of {} items failed, retrying them one by one", batch.size(), ex);
+		}
+		for (Pending<T> pending : batch) {
+			try {
+				committer.accept(List.of(pending.item()));
+				pending.future().complete(null);
+			}
+			catch (RuntimeException ex) {
+				pending.future().completeExceptionally(ex);
+			}
+		}
+	}
+
+	private record Pending<T>(T item, CompletableFuture<Void> future) {
+	}
+
+}
@@ -0,0 +1,34 @@
+package org.springframework.samples.petclinic.system;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publishes Hibernate's statistics as meters and at {@code /actuator/hibernatestatistics}
+ * when {@code spring.jpa.properties.hibernate.generate_statistics} is enabled.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("spring.jpa.properties.hibernate.generate_statistics")
+class HibernateStatisticsConfiguration {
+
+	@Bean
+	HibernateStatisticsMetrics hibernateStatisticsMetrics(EntityManagerFactory entityManagerFactory,
+			@Value("${petclinic.hibernate.statistics.max-queries:50}") int maxQueries) {
+		return new HibernateStatisticsMetrics(statistics(entityManagerFactory), maxQueries);
+	}
+
+	@Bean
+	HibernateStatisticsEndpoint hibernateStatisticsEndpoint(EntityManagerFactory entityManagerFactory) {
+		return new HibernateStatisticsEndpoint(statistics(entityManagerFactory));
+	}
+
+	private static Statistics statistics(EntityManagerFactory entityManagerFactory) {
+		return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+}
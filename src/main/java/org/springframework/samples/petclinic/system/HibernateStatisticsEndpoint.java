@@ -0,0 +1,112 @@
+package org.springframework.samples.petclinic.system;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Exposes Hibernate's {@link Statistics} at {@code /actuator/hibernatestatistics}, with
+ * the queries ordered by the total time spent running them. Deleting resets the
+ * statistics, and with them the {@link HibernateStatisticsMetrics}. Like
+ * {@link SlowQueryEndpoint}, it is not exposed over HTTP by the prod profile.
+ */
+@Endpoint(id = "hibernatestatistics")
+class HibernateStatisticsEndpoint {
+
+	private final Statistics statistics;
+
+	HibernateStatisticsEndpoint(Statistics statistics) {
+		this.statistics = statistics;
+	}
+
+	@ReadOperation
+	public Report statistics() {
+		List<QueryReport> queries = Arrays.stream(statistics.getQueries())
+			.map(query -> QueryReport.of(query, statistics.getQueryStatistics(query)))
+			.sorted(Comparator.comparingLong(QueryReport::totalMillis).reversed())
+			.toList();
+		List<EntityReport> entities = Arrays.stream(statistics.getEntityNames())
+			.sorted()
+			.map(entity -> EntityReport.of(entity, statistics.getEntityStatistics(entity)))
+			.toList();
+		List<CollectionReport> collections = Arrays.stream(statistics.getCollectionRoleNames())
+			.sorted()
+			.map(role -> CollectionReport.of(role, statistics.getCollectionStatistics(role)))
+			.toList();
+		List<CacheRegionReport> cacheRegions = Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+			.sorted()
+			.map(region -> CacheRegionReport.of(region, statistics.getCacheRegionStatistics(region)))
+			.toList();
+		return new Report(statistics.isStatisticsEnabled(), statistics.getStart(), statistics.getSessionOpenCount(),
+				statistics.getTransactionCount(), statistics.getPrepareStatementCount(),
+				statistics.getQueryExecutionCount(), statistics.getQueryExecutionMaxTime(),
+				statistics.getQueryExecutionMaxTimeQueryString(), queries, entities, collections, cacheRegions);
+	}
+
+	@DeleteOperation
+	public void reset() {
+		statistics.clear();
+	}
+
+	public record Report(boolean enabled, Instant since, long sessions, long transactions, long statements,
+			long queryExecutions, long slowestQueryMillis, String slowestQuery, List<QueryReport> queries,
+			List<EntityReport> entities, List<CollectionReport> collections, List<CacheRegionReport> cacheRegions) {
+	}
+
+	public record QueryReport(String query, long executions, long rows, long totalMillis, long averageMillis,
+			long maxMillis, long minMillis, long cacheHits, long cacheMisses) {
+
+		static QueryReport of(String query, QueryStatistics statistics) {
+			return new QueryReport(query, statistics.getExecutionCount(), statistics.getExecutionRowCount(),
+					statistics.getExecutionTotalTime(), statistics.getExecutionAvgTime(),
+					statistics.getExecutionMaxTime(), statistics.getExecutionMinTime(), statistics.getCacheHitCount(),
+					statistics.getCacheMissCount());
+		}
+
+	}
+
+	public record EntityReport(String entity, long loads, long fetches, long inserts, long updates, long deletes,
+			long cacheHits, long cacheMisses) {
+
+		static EntityReport of(String entity, EntityStatistics statistics) {
+			return new EntityReport(entity, statistics.getLoadCount(), statistics.getFetchCount(),
+					statistics.getInsertCount(), statistics.getUpdateCount(), statistics.getDeleteCount(),
+					statistics.getCacheHitCount(), statistics.getCacheMissCount());
+		}
+
+	}
+
+	public record CollectionReport(String role, long loads, long fetches, long updates, long cacheHits,
+			long cacheMisses) {
+
+		static CollectionReport of(String role, CollectionStatistics statistics) {
+			return new CollectionReport(role, statistics.getLoadCount(), statistics.getFetchCount(),
+					statistics.getUpdateCount(), statistics.getCacheHitCount(), statistics.getCacheMissCount());
+		}
+
+	}
+
+	public record CacheRegionReport(String region, long hits, long misses, long puts, double hitRatio) {
+
+		static CacheRegionReport of(String region, CacheRegionStatistics statistics) {
+			if (statistics == null) {
+				return new CacheRegionReport(region, 0, 0, 0, 0);
+			}
+			long requests = statistics.getHitCount() + statistics.getMissCount();
+			return new CacheRegionReport(region, statistics.getHitCount(), statistics.getMissCount(),
+					statistics.getPutCount(), requests == 0 ? 0 : (double) statistics.getHitCount() / requests);
+		}
+
+	}
+
+}
@@ -0,0 +1,171 @@
+package org.springframework.samples.petclinic.system;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Publishes Hibernate's {@link Statistics} as {@code hibernate.*} meters. There are
+ * totals, and meters per entity, per collection role, per second-level cache region and
+ * per HQL query. Queries only show up in the statistics once they have run, so the query
+ * meters are updated every {@code petclinic.hibernate.statistics.refresh-interval-ms}.
+ * Each query is a tag value, so only the {@code maxQueries} queries with the most total
+ * execution time get meters, and the meters of a query that drops out are removed.
+ * <p>
+ * The meters read the statistics on every scrape instead of copying them, so they follow
+ * a reset of the {@link HibernateStatisticsEndpoint} and drop back to zero like
+ * counters after a restart.
+ */
+class HibernateStatisticsMetrics implements MeterBinder {
+
+	private final Statistics statistics;
+
+	private final int maxQueries;
+
+	private final Map<String, List<Meter>> boundQueries = new HashMap<>();
+
+	private volatile MeterRegistry registry;
+
+	HibernateStatisticsMetrics(Statistics statistics, int maxQueries) {
+		this.statistics = statistics;
+		this.maxQueries = maxQueries;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		synchronized (this) {
+			this.registry = registry;
+			boundQueries.clear();
+		}
+		counter(registry, "hibernate.sessions.open", "Sessions opened", Statistics::getSessionOpenCount);
+		counter(registry, "hibernate.transactions", "Transactions completed", Statistics::getTransactionCount);
+		counter(registry, "hibernate.statements", "JDBC statements prepared", Statistics::getPrepareStatementCount);
+		counter(registry, "hibernate.flushes", "Session flushes", Statistics::getFlushCount);
+		counter(registry, "hibernate.entities.loads", "Entities loaded", Statistics::getEntityLoadCount);
+		counter(registry, "hibernate.entities.fetches", "Entities fetched by a separate statement",
+				Statistics::getEntityFetchCount);
+		counter(registry, "hibernate.collections.loads", "Collections loaded", Statistics::getCollectionLoadCount);
+		counter(registry, "hibernate.collections.fetches", "Collections fetched by a separate statement",
+				Statistics::getCollectionFetchCount);
+		counter(registry, "hibernate.queries.executions", "HQL queries run", Statistics::getQueryExecutionCount);
+		TimeGauge.builder("hibernate.queries.execution.max", statistics, TimeUnit.MILLISECONDS,
+				Statistics::getQueryExecutionMaxTime)
+			.description("Slowest HQL query run")
+			.register(registry);
+
+		for (String entity : statistics.getEntityNames()) {
+			entityCounter(registry, "hibernate.entity.loads", entity, EntityStatistics::getLoadCount);
+			entityCounter(registry, "hibernate.entity.fetches", entity, EntityStatistics::getFetchCount);
+			entityCounter(registry, "hibernate.entity.inserts", entity, EntityStatistics::getInsertCount);
+			entityCounter(registry, "hibernate.entity.updates", entity, EntityStatistics::getUpdateCount);
+			entityCounter(registry, "hibernate.entity.deletes", entity, EntityStatistics::getDeleteCount);
+		}
+		for (String role : statistics.getCollectionRoleNames()) {
+			String name = role.substring(role.lastIndexOf('.', role.lastIndexOf('.') - 1) + 1);
+			FunctionCounter
+				.builder("hibernate.collection.loads", statistics,
+						stats -> stats.getCollectionStatistics(role).getLoadCount())
+				.tag("role", name)
+				.register(registry);
+			FunctionCounter
+				.builder("hibernate.collection.fetches", statistics,
+						stats -> stats.getCollectionStatistics(role).getFetchCount())
+				.tag("role", name)
+				.register(registry);
+		}
+		for (String region : statistics.getSecondLevelCacheRegionNames()) {
+			regionCounter(registry, region, "hit", CacheRegionStatistics::getHitCount);
+			regionCounter(registry, region, "miss", CacheRegionStatistics::getMissCount);
+			regionCounter(registry, region, "put", CacheRegionStatistics::getPutCount);
+		}
+		bindQueries();
+	}
+
+	/**
+	 * Add meters for the queries that are now among the {@code maxQueries} with the most
+	 * total execution time, and remove those of the queries that are no longer.
+	 */
+	@Scheduled(fixedDelayString = "${petclinic.hibernate.statistics.refresh-interval-ms:60000}")
+	synchronized void bindQueries() {
+		MeterRegistry registry = this.registry;
+		if (registry == null) {
+			return;
+		}
+		Set<String> top = Arrays.stream(statistics.getQueries())
+			.sorted(Comparator.comparingLong(
+					(String query) -> statistics.getQueryStatistics(query).getExecutionTotalTime())
+				.reversed())
+			.limit(maxQueries)
+			.collect(Collectors.toSet());
+		boundQueries.entrySet().removeIf(bound -> {
+			if (top.contains(bound.getKey())) {
+				return false;
+			}
+			bound.getValue().forEach(registry::remove);
+			return true;
+		});
+		for (String query : top) {
+			boundQueries.computeIfAbsent(query, key -> queryMeters(registry, query));
+		}
+	}
+
+	private List<Meter> queryMeters(MeterRegistry registry, String query) {
+		FunctionTimer executions = FunctionTimer
+			.builder("hibernate.query.executions", statistics,
+					stats -> stats.getQueryStatistics(query).getExecutionCount(),
+					stats -> stats.getQueryStatistics(query).getExecutionTotalTime(), TimeUnit.MILLISECONDS)
+			.description("Runs of an HQL query")
+			.tag("query", query)
+			.register(registry);
+		TimeGauge max = TimeGauge
+			.builder("hibernate.query.execution.max", statistics, TimeUnit.MILLISECONDS,
+					stats -> stats.getQueryStatistics(query).getExecutionMaxTime())
+			.description("Slowest run of an HQL query")
+			.tag("query", query)
+			.register(registry);
+		FunctionCounter rows = FunctionCounter
+			.builder("hibernate.query.rows", statistics,
+					stats -> stats.getQueryStatistics(query).getExecutionRowCount())
+			.description("Rows returned by an HQL query")
+			.tag("query", query)
+			.register(registry);
+		return List.of(executions, max, rows);
+	}
+
+	private void counter(MeterRegistry registry, String name, String description, ToDoubleFunction<Statistics> count) {
+		FunctionCounter.builder(name, statistics, count).description(description).register(registry);
+	}
+
+	private void entityCounter(MeterRegistry registry, String name, String entity,
+			ToDoubleFunction<EntityStatistics> count) {
+		FunctionCounter.builder(name, statistics, stats -> count.applyAsDouble(stats.getEntityStatistics(entity)))
+			.tag("entity", entity.substring(entity.lastIndexOf('.') + 1))
+			.register(registry);
+	}
+
+	private void regionCounter(MeterRegistry registry, String region, String result,
+			ToDoubleFunction<CacheRegionStatistics> count) {
+		FunctionCounter.builder("hibernate.second.level.cache.requests", statistics, stats -> {
+			CacheRegionStatistics regionStatistics = stats.getCacheRegionStatistics(region);
+			return regionStatistics == null ? 0 : count.applyAsDouble(regionStatistics);
+		}).tags("region", region, "result", result).register(registry);
+	}
+
+}
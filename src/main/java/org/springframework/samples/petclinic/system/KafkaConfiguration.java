@@ -1,9 +1,11 @@
 package org.springframework.samples.petclinic.system;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,10 +15,11 @@ import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.serializer.JsonDeserializer;
-import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.samples.petclinic.owner.VisitDto;
+import org.springframework.samples.petclinic.owner.VisitDtoDeserializer;
+import org.springframework.samples.petclinic.owner.VisitDtoSerializer;
 
+import java.time.Duration;
 import java.util.Map;
 
 @Configuration
@@ -55,7 +58,7 @@ public class KafkaConfiguration {
 	DefaultKafkaProducerFactory<String, VisitDto> visitDtoProducerFactory(KafkaProperties properties) {
 		Map<String, Object> producerProperties = properties.buildProducerProperties();
 		producerProperties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-		producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+		producerProperties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, VisitDtoSerializer.class);
 		return new DefaultKafkaProducerFactory<>(producerProperties);
 	}
 
@@ -68,13 +71,28 @@ public class KafkaConfiguration {
     public ConsumerFactory<String, VisitDto> visitDtoConsumerFactory(KafkaProperties kafkaProperties) {
         Map<String, Object> props = kafkaProperties.buildConsumerProperties();
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
-        props.put(JsonDeserializer.TRUSTED_PACKAGES, "org.springframework.samples.petclinic.owner");
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, VisitDtoDeserializer.class);
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
     @Bean
-    public KafkaListenerContainerFactory<?> visitDtoListenerFactory(ConsumerFactory<String, VisitDto> visitDtoConsumerFactory) {
+    public KafkaListenerContainerFactory<?> visitDtoListenerFactory(ConsumerFactory<String, VisitDto> visitDtoConsumerFactory,
+                                                                    MeterRegistry meterRegistry,
+                                                                    @Value("${petclinic.kafka.visit-dedup.window:10m}") Duration dedupWindow,
+                                                                    @Value("${petclinic.kafka.visit-dedup.max-events:100000}") int dedupMaxEvents) {
+        ConcurrentKafkaListenerContainerFactory<String, VisitDto> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(visitDtoConsumerFactory);
+        factory.setBatchListener(false);
+        VisitEventDeduplicationFilter deduplication = new VisitEventDeduplicationFilter(dedupWindow, dedupMaxEvents, meterRegistry);
+        factory.setRecordFilterStrategy(deduplication);
+        // records an event id only once the listener succeeded, a failed record is redelivered
+        factory.setRecordInterceptor(deduplication);
+        factory.setAckDiscarded(true);
+        return factory;
+    }
+
+    @Bean
+    public KafkaListenerContainerFactory<?> visitReadModelListenerFactory(ConsumerFactory<String, VisitDto> visitDtoConsumerFactory) {
         ConcurrentKafkaListenerContainerFactory<String, VisitDto> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(visitDtoConsumerFactory);
         factory.setBatchListener(false);
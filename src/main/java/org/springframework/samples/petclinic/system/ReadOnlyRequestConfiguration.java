@@ -0,0 +1,35 @@
+package org.springframework.samples.petclinic.system;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+/**
+ * Runs GET and HEAD requests with read-only Hibernate sessions, see
+ * {@link ReadOnlyRequestFilter}.
+ */
+@Configuration(proxyBeanMethods = false)
+class ReadOnlyRequestConfiguration {
+
+	@Bean
+	ReadOnlyRequestFilter readOnlyRequestFilter() {
+		return new ReadOnlyRequestFilter();
+	}
+
+	@Bean
+	static BeanPostProcessor readOnlyRequestEntityManagerInitializer() {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof AbstractEntityManagerFactoryBean entityManagerFactory) {
+					entityManagerFactory.setEntityManagerInitializer(ReadOnlyRequestFilter::initialize);
+				}
+				return bean;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,53 @@
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Marks GET and HEAD requests as read-only. Every entity manager opened while handling
+ * such a request, the open-in-view one as well as those of transactions, starts in
+ * Hibernate's read-only mode with {@link FlushMode#MANUAL}: loaded entities keep no
+ * snapshot and are never dirty-checked. Changes made to loaded entities during a GET
+ * request are therefore not written, new entities still are.
+ */
+class ReadOnlyRequestFilter extends OncePerRequestFilter {
+
+	private static final ThreadLocal<Boolean> readOnly = new ThreadLocal<>();
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+			chain.doFilter(request, response);
+			return;
+		}
+		readOnly.set(Boolean.TRUE);
+		try {
+			chain.doFilter(request, response);
+		}
+		finally {
+			readOnly.remove();
+		}
+	}
+
+	/**
+	 * Switch a newly created entity manager to read-only mode if the current request is
+	 * read-only.
+	 */
+	static void initialize(EntityManager entityManager) {
+		if (readOnly.get() != null) {
+			Session session = entityManager.unwrap(Session.class);
+			session.setDefaultReadOnly(true);
+			session.setHibernateFlushMode(FlushMode.MANUAL);
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Keeps a client's reads on the primary for a while after it wrote, so that it sees its
+ * own changes even if the replica has not replayed them yet. The first read-write
+ * transaction of a request sets a cookie holding the end of the window; requests that
+ * carry an unexpired cookie are pinned to the primary. No server-side session is
+ * needed.
+ */
+class ReadYourWritesFilter extends OncePerRequestFilter {
+
+	static final String COOKIE = "petclinic-primary-until";
+
+	private static final ThreadLocal<RequestState> current = new ThreadLocal<>();
+
+	private final Duration window;
+
+	private final Clock clock;
+
+	ReadYourWritesFilter(Duration window, Clock clock) {
+		this.window = window;
+		this.clock = clock;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		current.set(new RequestState(this, response, isInWindow(WebUtils.getCookie(request, COOKIE))));
+		try {
+			chain.doFilter(request, response);
+		}
+		finally {
+			current.remove();
+		}
+	}
+
+	static boolean isPinnedToPrimary() {
+		RequestState state = current.get();
+		return state != null && state.pinned;
+	}
+
+	/**
+	 * Start the read-your-writes window of the current client, if called while handling
+	 * a request.
+	 */
+	static void recordWrite() {
+		RequestState state = current.get();
+		if (state == null || state.written) {
+			return;
+		}
+		state.written = true;
+		state.pinned = true;
+		if (!state.response.isCommitted()) {
+			state.response.addCookie(state.filter.windowCookie());
+		}
+	}
+
+	private boolean isInWindow(Cookie cookie) {
+		if (cookie == null) {
+			return false;
+		}
+		try {
+			return Long.parseLong(cookie.getValue()) > clock.millis();
+		}
+		catch (NumberFormatException ex) {
+			return false;
+		}
+	}
+
+	private Cookie windowCookie() {
+		Cookie cookie = new Cookie(COOKIE, Long.toString(clock.millis() + window.toMillis()));
+		cookie.setPath("/");
+		cookie.setHttpOnly(true);
+		cookie.setMaxAge((int) window.toSeconds());
+		return cookie;
+	}
+
+	private static final class RequestState {
+
+		private final ReadYourWritesFilter filter;
+
+		private final HttpServletResponse response;
+
+		private boolean pinned;
+
+		private boolean written;
+
+		private RequestState(ReadYourWritesFilter filter, HttpServletResponse response, boolean pinned) {
+			this.filter = filter;
+			this.response = response;
+			this.pinned = pinned;
+		}
+
+	}
+
+}
@@ -0,0 +1,77 @@
+package org.springframework.samples.petclinic.system;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Adds a read replica when {@code petclinic.datasource.replica.url} is set. Read-only
+ * transactions, such as the {@code @Transactional(readOnly = true)} repository
+ * methods, then run on the replica, while writes and everything outside a transaction
+ * stay on the primary configured with {@code spring.datasource.*}. See
+ * {@link ReplicaRoutingDataSource} for when reads fall back to the primary.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("petclinic.datasource.replica.url")
+class ReplicaDataSourceConfiguration {
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	HikariDataSource primaryDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		dataSource.setPoolName("primary");
+		return dataSource;
+	}
+
+	@Bean
+	HikariDataSource replicaDataSource(@Value("${petclinic.datasource.replica.url}") String url,
+			@Value("${petclinic.datasource.replica.username:${spring.datasource.username:}}") String username,
+			@Value("${petclinic.datasource.replica.password:${spring.datasource.password:}}") String password,
+			@Value("${petclinic.datasource.replica.maximum-pool-size:10}") int maximumPoolSize) {
+		HikariDataSource dataSource = DataSourceBuilder.create()
+			.type(HikariDataSource.class)
+			.url(url)
+			.username(username)
+			.password(password)
+			.build();
+		dataSource.setPoolName("replica");
+		dataSource.setReadOnly(true);
+		dataSource.setMaximumPoolSize(maximumPoolSize);
+		return dataSource;
+	}
+
+	@Bean
+	ReplicaLagMonitor replicaLagMonitor(HikariDataSource replicaDataSource, MeterRegistry registry,
+			@Value("${petclinic.datasource.replica.lag-query:" + ReplicaLagMonitor.POSTGRES_LAG_QUERY + "}") String lagQuery,
+			@Value("${petclinic.datasource.replica.max-lag:5s}") Duration maxLag) {
+		return new ReplicaLagMonitor(replicaDataSource, lagQuery, maxLag, registry);
+	}
+
+	@Bean
+	@Primary
+	DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource,
+			ReplicaLagMonitor replicaLagMonitor) {
+		return new LazyConnectionDataSourceProxy(
+				new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource, replicaLagMonitor));
+	}
+
+	@Bean
+	ReadYourWritesFilter readYourWritesFilter(
+			@Value("${petclinic.datasource.replica.read-your-writes-window:10s}") Duration window) {
+		return new ReadYourWritesFilter(window, Clock.systemUTC());
+	}
+
+}
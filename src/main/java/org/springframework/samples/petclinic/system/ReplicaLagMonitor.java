@@ -0,0 +1,78 @@
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Polls the replication lag of the read replica and publishes it as the
+ * {@code petclinic.datasource.replica.lag} gauge. The replica is only used while the
+ * last check succeeded and reported a lag of at most {@code maxLag}; otherwise, or when
+ * the lag query returns null, read-only transactions fall back to the primary.
+ */
+class ReplicaLagMonitor {
+
+	/**
+	 * Seconds since the last replayed transaction, or zero while the replica streams from
+	 * its primary and has replayed everything it received, so that an idle primary does
+	 * not look like lag. A replica that lost its primary has no WAL receiver: its lag
+	 * then grows from the last replayed transaction, and is unknown (null) if it never
+	 * replayed one. A server that is not in recovery has no lag.
+	 */
+	static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 "
+			+ "WHEN EXISTS (SELECT 1 FROM pg_stat_wal_receiver) "
+			+ "AND pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+			+ "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+	private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+	private final JdbcTemplate replica;
+
+	private final String lagQuery;
+
+	private final Duration maxLag;
+
+	private volatile double lagSeconds = Double.NaN;
+
+	ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag, MeterRegistry registry) {
+		this.replica = new JdbcTemplate(replica);
+		this.replica.setQueryTimeout(5);
+		this.lagQuery = lagQuery;
+		this.maxLag = maxLag;
+		Gauge.builder("petclinic.datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+			.description("Replication lag of the read replica, NaN while it is unknown")
+			.baseUnit("seconds")
+			.register(registry);
+	}
+
+	@Scheduled(initialDelay = 0, fixedDelayString = "${petclinic.datasource.replica.lag-check-interval-ms:1000}")
+	public void check() {
+		try {
+			Double lag = replica.queryForObject(lagQuery, Double.class);
+			if (lag == null && !Double.isNaN(lagSeconds)) {
+				log.warn("Replica lag is unknown, reading from the primary until it is known");
+			}
+			lagSeconds = lag == null ? Double.NaN : lag;
+		}
+		catch (DataAccessException ex) {
+			if (!Double.isNaN(lagSeconds)) {
+				log.warn("Replica lag check failed, reading from the primary until it succeeds", ex);
+			}
+			lagSeconds = Double.NaN;
+		}
+	}
+
+	boolean isReplicaUsable() {
+		double lag = lagSeconds;
+		return !Double.isNaN(lag) && lag * 1000 <= maxLag.toMillis();
+	}
+
+}
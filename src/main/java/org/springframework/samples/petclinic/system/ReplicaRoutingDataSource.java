@@ -0,0 +1,50 @@
+package org.springframework.samples.petclinic.system;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends connections of read-only transactions to the read replica and everything else
+ * to the primary. Reads stay on the primary while the replica lags behind, and for
+ * clients inside their {@link ReadYourWritesFilter read-your-writes window}.
+ * <p>
+ * The transaction must be known when the connection is fetched, so this needs to sit
+ * behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+	enum Target {
+
+		PRIMARY, REPLICA
+
+	}
+
+	private final ReplicaLagMonitor lagMonitor;
+
+	ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor) {
+		this.lagMonitor = lagMonitor;
+		setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+		setDefaultTargetDataSource(primary);
+		afterPropertiesSet();
+	}
+
+	@Override
+	protected Target determineCurrentLookupKey() {
+		if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+			return Target.PRIMARY;
+		}
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			ReadYourWritesFilter.recordWrite();
+			return Target.PRIMARY;
+		}
+		if (ReadYourWritesFilter.isPinnedToPrimary() || !lagMonitor.isReplicaUsable()) {
+			return Target.PRIMARY;
+		}
+		return Target.REPLICA;
+	}
+
+}
@@ -0,0 +1,204 @@
+package org.springframework.samples.petclinic.system;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Hands out ids that are unique across all shards and tell which shard a row lives on.
+ * Shard {@code n} owns the id range {@code n * rangeSize + 1} to
+ * {@code (n + 1) * rangeSize}: its {@code owners}, {@code pets} and {@code visits}
+ * sequences are moved into that range on startup, and {@link ShardSequenceGenerator}
+ * keeps Hibernate's pooled ids apart per shard. Ids then need no round trip to a
+ * central allocator, and the shard of an owner is computed from its id.
+ * <p>
+ * On startup the shards other than shard 0 are also migrated with the application's
+ * Flyway configuration, and the reference data of shard 0 (pet types, specialties and
+ * vets) is copied to them: rows they lack are inserted, rows that differ are
+ * overwritten. Reference rows removed from shard 0 are kept, visits may still refer to
+ * them.
+ */
+public class ShardIdAllocator implements SmartInitializingSingleton {
+
+	private static final Logger log = LoggerFactory.getLogger(ShardIdAllocator.class);
+
+	static final List<String> SEQUENCES = List.of("owners_seq", "pets_seq", "visits_seq");
+
+	// the key columns of each reference table, in foreign key order
+	static final Map<String, List<String>> REFERENCE_TABLES = referenceTables();
+
+	// Hibernate's pooled optimizer treats each sequence value as the top of a block
+	private static final int BLOCK_SIZE = 50;
+
+	private final DataSource dataSource;
+
+	private final ObjectProvider<Flyway> flyway;
+
+	private final AtomicInteger nextShard = new AtomicInteger();
+
+	private volatile ShardRoutingDataSource routing;
+
+	private volatile List<DataSource> shards = List.of();
+
+	public ShardIdAllocator(DataSource dataSource, ObjectProvider<Flyway> flyway) {
+		this.dataSource = dataSource;
+		this.flyway = flyway;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		try {
+			routing = dataSource.unwrap(ShardRoutingDataSource.class);
+		}
+		catch (SQLException ex) {
+			throw new IllegalStateException("The data source is not sharded", ex);
+		}
+		shards = routing.getShards();
+		long rangeSize = routing.getRangeSize();
+		if (shards.size() * rangeSize > Integer.MAX_VALUE) {
+			throw new IllegalStateException(
+					shards.size() + " shards of " + rangeSize + " ids do not fit into integer ids");
+		}
+		Flyway migrations = flyway.getIfAvailable();
+		for (int shard = 0; shard < shards.size(); shard++) {
+			if (shard > 0 && migrations != null) {
+				Flyway.configure()
+					.configuration(migrations.getConfiguration())
+					.dataSource(shards.get(shard))
+					.load()
+					.migrate();
+			}
+			if (shard > 0) {
+				copyReferenceData(shard);
+			}
+			reserveRange(shard, rangeSize);
+		}
+	}
+
+	/**
+	 * The number of shards.
+	 */
+	public int shardCount() {
+		return shards.size();
+	}
+
+	/**
+	 * The shard holding the row with the given id.
+	 */
+	public int shardOf(int id) {
+		return routing.shardOf(id);
+	}
+
+	/**
+	 * The shard to create the next owner on, taking turns.
+	 */
+	public int nextShard() {
+		return Math.floorMod(nextShard.getAndIncrement(), shards.size());
+	}
+
+	private void reserveRange(int shard, long rangeSize) {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(shards.get(shard));
+		String database = jdbcTemplate
+			.execute((Connection connection) -> connection.getMetaData().getDatabaseProductName());
+		long first = shard * rangeSize + 1;
+		long last = (shard + 1) * rangeSize;
+		for (String sequence : SEQUENCES) {
+			// read without drawing a value, which would skip a block of ids on every start
+			String nextValue = switch (database) {
+				// last_value was not handed out yet when setval(..., false) left is_called unset
+				case "PostgreSQL" -> "SELECT CASE WHEN is_called THEN last_value + " + BLOCK_SIZE
+						+ " ELSE last_value END FROM " + sequence;
+				case "H2" -> "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES "
+						+ "WHERE SEQUENCE_SCHEMA = CURRENT_SCHEMA AND LOWER(SEQUENCE_NAME) = '" + sequence + "'";
+				default -> throw new IllegalStateException("Sharding is not supported on " + database);
+			};
+			long value = jdbcTemplate.queryForObject(nextValue, Long.class);
+			String table = sequence.substring(0, sequence.length() - "_seq".length());
+			long used = jdbcTemplate.queryForObject(
+					"SELECT COALESCE(MAX(id), 0) FROM " + table + " WHERE id BETWEEN ? AND ?", Long.class, first, last);
+			// the next block must start in the range and above the rows already in it
+			long lowest = Math.max(first - 1, used) + BLOCK_SIZE;
+			if (value < lowest) {
+				log.info("Moving {} of shard {} from {} to {}", sequence, shard, value, lowest);
+				jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + lowest);
+				value = lowest;
+			}
+			if (value > last) {
+				throw new IllegalStateException(
+						"Shard " + shard + " has used up its ids, " + sequence + " is at " + value);
+			}
+			else if (value > last - rangeSize / 10) {
+				log.warn("Shard {} has used up 90% of its ids, {} is at {}", shard, sequence, value);
+			}
+		}
+	}
+
+	private void copyReferenceData(int shard) {
+		JdbcTemplate source = new JdbcTemplate(shards.get(0));
+		JdbcTemplate target = new JdbcTemplate(shards.get(shard));
+		REFERENCE_TABLES.forEach((table, keys) -> {
+			List<Map<String, Object>> rows = source.queryForList("SELECT * FROM " + table);
+			if (rows.isEmpty()) {
+				return;
+			}
+			List<String> columns = List.copyOf(rows.get(0).keySet());
+			// the row maps of JdbcTemplate look columns up ignoring case
+			Set<Map<String, Object>> present = new HashSet<>(target.queryForList("SELECT * FROM " + table));
+			Set<List<Object>> presentKeys = present.stream()
+				.map(row -> keys.stream().map(row::get).toList())
+				.collect(Collectors.toSet());
+			List<Object[]> inserts = new ArrayList<>();
+			List<Object[]> updates = new ArrayList<>();
+			List<String> values = columns.stream().filter(column -> !keys.contains(column.toLowerCase())).toList();
+			for (Map<String, Object> row : rows) {
+				List<Object> key = keys.stream().map(row::get).toList();
+				if (!presentKeys.contains(key)) {
+					inserts.add(row.values().toArray());
+				}
+				else if (!values.isEmpty() && !present.contains(row)) {
+					List<Object> arguments = new ArrayList<>(values.stream().map(row::get).toList());
+					arguments.addAll(key);
+					updates.add(arguments.toArray());
+				}
+			}
+			target.batchUpdate("INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+					+ columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")", inserts);
+			if (!values.isEmpty()) {
+				target.batchUpdate("UPDATE " + table + " SET "
+						+ values.stream().map(column -> column + " = ?").collect(Collectors.joining(", "))
+						+ " WHERE " + keys.stream().map(column -> column + " = ?").collect(Collectors.joining(" AND ")),
+						updates);
+			}
+			if (!inserts.isEmpty() || !updates.isEmpty()) {
+				log.info("Copied {} new and {} changed rows of {} to shard {}", inserts.size(), updates.size(), table,
+						shard);
+			}
+		});
+	}
+
+	private static Map<String, List<String>> referenceTables() {
+		Map<String, List<String>> tables = new LinkedHashMap<>();
+		tables.put("types", List.of("id"));
+		tables.put("specialties", List.of("id"));
+		tables.put("vets", List.of("id"));
+		tables.put("vet_specialties", List.of("vet_id", "specialty_id"));
+		return tables;
+	}
+
+}
@@ -0,0 +1,194 @@
+package org.springframework.samples.petclinic.system;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Sends connections to one of several databases holding disjoint sets of owners. The
+ * shard is the one the current thread runs {@link #callOn on}, else the one the current
+ * request was {@link #pinRequest pinned} to, else shard 0, which also holds the
+ * reference data every shard has a copy of.
+ * <p>
+ * The shard is looked up when a transaction fetches its connection, so the shard must
+ * be chosen before the transaction starts.
+ * <p>
+ * Code that is not tied to one owner uses the static helpers, which take the
+ * application's data source and run the action once when it is not sharded: background
+ * jobs run {@link #callOnEach on every shard}, and queued work runs
+ * {@link #runOnShardsOf on the shards of its rows}.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+	private static final String REQUEST_ATTRIBUTE = ShardRoutingDataSource.class.getName() + ".shard";
+
+	private static final ThreadLocal<Integer> currentShard = new ThreadLocal<>();
+
+	private final List<DataSource> shards;
+
+	private final long rangeSize;
+
+	public ShardRoutingDataSource(List<DataSource> shards, long rangeSize) {
+		this.shards = List.copyOf(shards);
+		this.rangeSize = rangeSize;
+		Map<Object, Object> targets = new HashMap<>();
+		for (int shard = 0; shard < shards.size(); shard++) {
+			targets.put(shard, shards.get(shard));
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(shards.get(0));
+		afterPropertiesSet();
+	}
+
+	/**
+	 * The data source of every shard, by shard number.
+	 */
+	public List<DataSource> getShards() {
+		return shards;
+	}
+
+	/**
+	 * The shard holding the row with the given id, see {@link ShardIdAllocator}.
+	 */
+	public int shardOf(int id) {
+		return (int) ((id - 1) / rangeSize);
+	}
+
+	long getRangeSize() {
+		return rangeSize;
+	}
+
+	@Override
+	protected Integer determineCurrentLookupKey() {
+		return currentShard();
+	}
+
+	@Override
+	public void close() throws Exception {
+		for (DataSource shard : shards) {
+			if (shard instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+	}
+
+	/**
+	 * Run {@code action} with every connection it fetches on the given shard.
+	 */
+	public static <T> T callOn(int shard, Supplier<T> action) {
+		Integer previous = currentShard.get();
+		currentShard.set(shard);
+		try {
+			return action.get();
+		}
+		finally {
+			if (previous == null) {
+				currentShard.remove();
+			}
+			else {
+				currentShard.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * Run {@code action} once on every shard of the given data source, one shard after
+	 * the other, or once if it is not sharded.
+	 * @return the results by shard
+	 */
+	public static <T> List<T> callOnEach(DataSource dataSource, Supplier<T> action) {
+		List<T> results = new ArrayList<>();
+		ShardRoutingDataSource sharded = sharded(dataSource);
+		if (sharded == null) {
+			results.add(action.get());
+			return results;
+		}
+		for (int shard = 0; shard < sharded.shards.size(); shard++) {
+			results.add(callOn(shard, action));
+		}
+		return results;
+	}
+
+	/**
+	 * Run {@code action} on the shard holding the row with the given id, or as it is if
+	 * the data source is not sharded.
+	 */
+	public static <T> T callOnShardOf(DataSource dataSource, int id, Supplier<T> action) {
+		ShardRoutingDataSource sharded = sharded(dataSource);
+		return sharded == null ? action.get() : callOn(sharded.shardOf(id), action);
+	}
+
+	/**
+	 * Split {@code items} by the shard of their row and run {@code action} once per shard
+	 * on that shard with its items, or once with all of them if the data source is not
+	 * sharded.
+	 */
+	public static <T> void runOnShardsOf(DataSource dataSource, Collection<T> items, ToIntFunction<T> id,
+			Consumer<List<T>> action) {
+		ShardRoutingDataSource sharded = sharded(dataSource);
+		if (sharded == null) {
+			action.accept(List.copyOf(items));
+			return;
+		}
+		Map<Integer, List<T>> byShard = new LinkedHashMap<>();
+		for (T item : items) {
+			byShard.computeIfAbsent(sharded.shardOf(id.applyAsInt(item)), shard -> new ArrayList<>()).add(item);
+		}
+		byShard.forEach((shard, shardItems) -> callOn(shard, () -> {
+			action.accept(shardItems);
+			return null;
+		}));
+	}
+
+	private static ShardRoutingDataSource sharded(DataSource dataSource) {
+		try {
+			// e.g. the data source of a JdbcTemplate without one
+			return dataSource != null && dataSource.isWrapperFor(ShardRoutingDataSource.class)
+					? dataSource.unwrap(ShardRoutingDataSource.class) : null;
+		}
+		catch (SQLException ex) {
+			throw new IllegalStateException("Could not unwrap " + dataSource, ex);
+		}
+	}
+
+	/**
+	 * Send the rest of the current request to the given shard, e.g. the lookups of an
+	 * owner's pets and visits after the owner. Does nothing outside a request.
+	 */
+	public static void pinRequest(int shard) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes != null) {
+			attributes.setAttribute(REQUEST_ATTRIBUTE, shard, RequestAttributes.SCOPE_REQUEST);
+		}
+	}
+
+	/**
+	 * The shard connections fetched now would go to.
+	 */
+	public static int currentShard() {
+		Integer shard = currentShard.get();
+		if (shard != null) {
+			return shard;
+		}
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes != null && attributes.getAttribute(REQUEST_ATTRIBUTE,
+				RequestAttributes.SCOPE_REQUEST) instanceof Integer pinned) {
+			return pinned;
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,19 @@
+package org.springframework.samples.petclinic.system;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+/**
+ * Generates ids from the entity's {@code <table>_seq} sequence with a
+ * {@link ShardSequenceGenerator}.
+ */
+@IdGeneratorType(ShardSequenceGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+public @interface ShardSequence {
+
+}
@@ -0,0 +1,43 @@
+package org.springframework.samples.petclinic.system;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.PooledOptimizer;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Hibernate's {@code <table>_seq} sequence generator, with the block of ids it hands
+ * out before fetching the next value kept per {@link ShardRoutingDataSource shard}. The
+ * sequence of each shard covers that shard's {@link ShardIdAllocator id range}, so a
+ * shared block would give a row the id of another shard. Without sharding everything
+ * runs on shard 0 and this is the plain sequence generator.
+ */
+public class ShardSequenceGenerator extends SequenceStyleGenerator {
+
+	private final Map<Integer, Optimizer> shardOptimizers = new ConcurrentHashMap<>();
+
+	@Override
+	public Object generate(SharedSessionContractImplementor session, Object object) {
+		int shard = ShardRoutingDataSource.currentShard();
+		if (shard == 0) {
+			return super.generate(session, object);
+		}
+		return shardOptimizers.computeIfAbsent(shard, key -> newOptimizer())
+			.generate(getDatabaseStructure().buildCallback(session));
+	}
+
+	private Optimizer newOptimizer() {
+		if (!(getOptimizer() instanceof PooledOptimizer)) {
+			// keeps no block
+			return getOptimizer();
+		}
+		PooledOptimizer optimizer = new PooledOptimizer(getIdentifierType().getReturnedClass(),
+				getOptimizer().getIncrementSize());
+		optimizer.injectInitialValue(1);
+		return optimizer;
+	}
+
+}
@@ -0,0 +1,72 @@
+package org.springframework.samples.petclinic.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Spreads owners over the database of {@code spring.datasource}, shard 0, and one more
+ * database per url in {@code petclinic.sharding.urls}. Cannot be combined with a read
+ * replica.
+ * <p>
+ * Owners, pets and visits live on the owner's shard, and so do the rows derived from
+ * them: counters, rollups and snapshots. Background jobs run on every shard, and reads
+ * that are not about one owner, such as visit searches and rollups, gather the rows of
+ * every shard. The visit topic and its read model are fed by the visit changes of every
+ * shard. Reference data is maintained on shard 0 and copied to the others on startup.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("petclinic.sharding.urls")
+class ShardingConfiguration {
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	HikariDataSource firstShardDataSource(DataSourceProperties properties) {
+		HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		dataSource.setPoolName("shard-0");
+		return dataSource;
+	}
+
+	@Bean
+	@Primary
+	ShardRoutingDataSource dataSource(HikariDataSource firstShardDataSource,
+			@Value("${petclinic.sharding.urls}") List<String> urls,
+			@Value("${petclinic.sharding.username:${spring.datasource.username:}}") String username,
+			@Value("${petclinic.sharding.password:${spring.datasource.password:}}") String password,
+			@Value("${petclinic.sharding.maximum-pool-size:10}") int maximumPoolSize,
+			@Value("${petclinic.sharding.id-range-size:100000000}") long rangeSize) {
+		List<DataSource> shards = new ArrayList<>();
+		shards.add(firstShardDataSource);
+		for (String url : urls) {
+			HikariDataSource shard = DataSourceBuilder.create()
+				.type(HikariDataSource.class)
+				.url(url)
+				.username(username)
+				.password(password)
+				.build();
+			shard.setPoolName("shard-" + shards.size());
+			shard.setMaximumPoolSize(maximumPoolSize);
+			shards.add(shard);
+		}
+		return new ShardRoutingDataSource(shards, rangeSize);
+	}
+
+	@Bean
+	ShardIdAllocator shardIdAllocator(DataSource dataSource, ObjectProvider<Flyway> flyway) {
+		return new ShardIdAllocator(dataSource, flyway);
+	}
+
+}
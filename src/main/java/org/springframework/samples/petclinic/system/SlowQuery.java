@@ -0,0 +1,22 @@
+package org.springframework.samples.petclinic.system;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A statement recorded by the {@link SlowQueryLog}.
+ *
+ * @param time when the statement finished
+ * @param millis how long it ran
+ * @param sql the statement
+ * @param binds the bound parameters in order, of the last row for batches, as their
+ * types unless bind values are shown
+ * @param batchSize the number of rows of a batch, 0 for a single statement
+ * @param repositoryMethod the repository method that ran it, if any
+ * @param requestUri the URI of the request that ran it, if any
+ * @param thread the thread that ran it
+ * @param sampled whether it was faster than the threshold and only sampled
+ */
+public record SlowQuery(Instant time, double millis, String sql, List<String> binds, int batchSize,
+		String repositoryMethod, String requestUri, String thread, boolean sampled) {
+}
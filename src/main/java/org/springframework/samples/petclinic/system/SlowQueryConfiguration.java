@@ -0,0 +1,86 @@
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+/**
+ * Records slow statements in a {@link SlowQueryLog}, exposed by the
+ * {@link SlowQueryEndpoint}. The data source is wrapped to time statements, and every
+ * Spring Data repository gets an interceptor so that statements can be attributed to
+ * the repository method that ran them.
+ */
+@Configuration(proxyBeanMethods = false)
+class SlowQueryConfiguration {
+
+	@Bean
+	SlowQueryLog slowQueryLog(MeterRegistry registry,
+			@Value("${petclinic.jdbc.slow-query.capacity:256}") int capacity,
+			@Value("${petclinic.jdbc.slow-query.threshold:200ms}") Duration threshold,
+			@Value("${petclinic.jdbc.slow-query.sample-rate:0}") double sampleRate,
+			@Value("${petclinic.jdbc.slow-query.show-bind-values:false}") boolean showBindValues) {
+		return new SlowQueryLog(capacity, threshold, sampleRate, showBindValues, registry);
+	}
+
+	@Bean
+	SlowQueryEndpoint slowQueryEndpoint(SlowQueryLog slowQueryLog) {
+		return new SlowQueryEndpoint(slowQueryLog);
+	}
+
+	@Bean
+	static BeanPostProcessor slowQueryDataSourceWrapper(ObjectProvider<SlowQueryLog> slowQueryLog) {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				// only the data source the application uses, not the pools behind a router
+				if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+					return new SlowQueryDataSource(dataSource, slowQueryLog.getObject());
+				}
+				return bean;
+			}
+
+		};
+	}
+
+	@Bean
+	static BeanPostProcessor slowQueryRepositoryMethodTracker() {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+					factoryBean.addRepositoryFactoryCustomizer(factory -> factory
+						.addRepositoryProxyPostProcessor((proxyFactory, repository) -> proxyFactory
+							.addAdvice(trackRepositoryMethod(repository.getRepositoryInterface().getSimpleName()))));
+				}
+				return bean;
+			}
+
+		};
+	}
+
+	private static MethodInterceptor trackRepositoryMethod(String repository) {
+		return invocation -> {
+			if (!SlowQueryLog.enterRepositoryMethod(repository + "." + invocation.getMethod().getName())) {
+				return invocation.proceed();
+			}
+			try {
+				return invocation.proceed();
+			}
+			finally {
+				SlowQueryLog.exitRepositoryMethod();
+			}
+		};
+	}
+
+}
@@ -0,0 +1,97 @@
+package org.springframework.samples.petclinic.system;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+/**
+ * Times every statement run on its connections and hands it to a {@link SlowQueryLog},
+ * together with the parameters bound to it. Parameters are only collected, not
+ * rendered, so fast statements cost two {@link System#nanoTime()} calls and a list.
+ */
+class SlowQueryDataSource extends ConnectionDecoratingDataSource {
+
+	private final SlowQueryLog log;
+
+	SlowQueryDataSource(DataSource dataSource, SlowQueryLog log) {
+		super(dataSource);
+		this.log = log;
+	}
+
+	@Override
+	protected Connection decorate(Connection connection) {
+		return proxy(Connection.class, (proxy, method, args) -> {
+			Object result = invoke(connection, method, args);
+			if (result instanceof Statement statement) {
+				String sql = method.getName().equals("createStatement") ? null : (String) args[0];
+				return timed(statement, method.getReturnType(), sql);
+			}
+			return result;
+		});
+	}
+
+	private Object timed(Statement statement, Class<?> type, String preparedSql) {
+		List<Object> binds = new ArrayList<>();
+		int[] batchSize = new int[1];
+		String[] batchSql = new String[1];
+		return proxy(type, (proxy, method, args) -> {
+			String name = method.getName();
+			if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+				bind(binds, index, name.equals("setNull") ? null : args[1]);
+			}
+			else if (name.equals("clearParameters")) {
+				binds.clear();
+			}
+			else if (name.equals("addBatch")) {
+				batchSize[0]++;
+				if (args != null) {
+					batchSql[0] = (String) args[0];
+				}
+			}
+			else if (name.equals("clearBatch")) {
+				batchSize[0] = 0;
+			}
+			else if (name.startsWith("execute")) {
+				return execute(statement, method, args, sql(preparedSql, batchSql[0], args), binds, batchSize);
+			}
+			return invoke(statement, method, args);
+		});
+	}
+
+	private Object execute(Statement statement, Method method, Object[] args, String sql, List<Object> binds,
+			int[] batchSize) throws Throwable {
+		boolean batch = method.getName().contains("Batch");
+		long start = System.nanoTime();
+		try {
+			return invoke(statement, method, args);
+		}
+		finally {
+			log.statement(sql, System.nanoTime() - start, binds, batch ? batchSize[0] : 0);
+			if (batch) {
+				batchSize[0] = 0;
+			}
+		}
+	}
+
+	private static String sql(String preparedSql, String batchSql, Object[] args) {
+		if (preparedSql != null) {
+			return preparedSql;
+		}
+		if (args != null && args.length > 0 && args[0] instanceof String sql) {
+			return sql;
+		}
+		return batchSql;
+	}
+
+	private static void bind(List<Object> binds, int index, Object value) {
+		while (binds.size() < index) {
+			binds.add(null);
+		}
+		binds.set(index - 1, value);
+	}
+
+}
@@ -0,0 +1,34 @@
+package org.springframework.samples.petclinic.system;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Exposes the {@link SlowQueryLog} at {@code /actuator/slowqueries}, newest first.
+ * Deleting clears it, for example before reproducing a problem. The prod profile does
+ * not expose it over HTTP, as the application has no authentication for the management
+ * endpoints.
+ */
+@Endpoint(id = "slowqueries")
+class SlowQueryEndpoint {
+
+	private final SlowQueryLog log;
+
+	SlowQueryEndpoint(SlowQueryLog log) {
+		this.log = log;
+	}
+
+	@ReadOperation
+	public List<SlowQuery> slowQueries() {
+		return log.entries();
+	}
+
+	@DeleteOperation
+	public void clear() {
+		log.clear();
+	}
+
+}
@@ -0,0 +1,175 @@
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Keeps the most recent slow statements, and a sample of the fast ones, in a fixed-size
+ * ring buffer. Writers claim a slot with a single atomic increment and never block each
+ * other; a full buffer overwrites its oldest entries. Slow statements are also logged by
+ * a background thread on the {@code petclinic.slowqueries} logger, so the statement
+ * itself never waits for the log. Every statement is timed in the
+ * {@code petclinic.jdbc.statements} timer.
+ * <p>
+ * Bind values can hold personal data, so only their types are kept unless
+ * {@code showBindValues} is set.
+ */
+class SlowQueryLog implements AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger("petclinic.slowqueries");
+
+	private static final ThreadLocal<String> repositoryMethod = new ThreadLocal<>();
+
+	private final AtomicReferenceArray<SlowQuery> entries;
+
+	private final AtomicLong next = new AtomicLong();
+
+	private final long thresholdNanos;
+
+	private final double sampleRate;
+
+	private final boolean showBindValues;
+
+	private final Timer statements;
+
+	private final Counter droppedLogs;
+
+	private final ThreadPoolExecutor logger;
+
+	SlowQueryLog(int capacity, Duration threshold, double sampleRate, boolean showBindValues,
+			MeterRegistry registry) {
+		this.entries = new AtomicReferenceArray<>(capacity);
+		this.thresholdNanos = threshold.toNanos();
+		this.sampleRate = sampleRate;
+		this.showBindValues = showBindValues;
+		this.statements = Timer.builder("petclinic.jdbc.statements")
+			.description("Time to execute JDBC statements")
+			.register(registry);
+		this.droppedLogs = Counter.builder("petclinic.jdbc.slow-queries.dropped-logs")
+			.description("Slow queries not logged because the log queue was full")
+			.register(registry);
+		this.logger = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1024), runnable -> {
+			Thread thread = new Thread(runnable, "slow-query-log");
+			thread.setDaemon(true);
+			return thread;
+		}, (runnable, executor) -> droppedLogs.increment());
+	}
+
+	/**
+	 * Attribute the statements run until {@link #exitRepositoryMethod()} to the given
+	 * repository method, unless an outer repository call is already running.
+	 * @return whether the caller has to exit
+	 */
+	static boolean enterRepositoryMethod(String method) {
+		if (repositoryMethod.get() != null) {
+			return false;
+		}
+		repositoryMethod.set(method);
+		return true;
+	}
+
+	static void exitRepositoryMethod() {
+		repositoryMethod.remove();
+	}
+
+	/**
+	 * Time a statement that took {@code nanos} to run, recording it if it was slow or is
+	 * sampled. The binds are only rendered if it is recorded.
+	 */
+	void statement(String sql, long nanos, List<?> binds, int batchSize) {
+		statements.record(nanos, TimeUnit.NANOSECONDS);
+		boolean slow = nanos >= thresholdNanos;
+		if (!slow && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+			return;
+		}
+		SlowQuery query = new SlowQuery(Instant.now(), nanos / 1_000_000.0, sql, render(binds), batchSize,
+				repositoryMethod.get(), requestUri(), Thread.currentThread().getName(), !slow);
+		entries.set((int) (next.getAndIncrement() % entries.length()), query);
+		if (slow) {
+			logger.execute(() -> log.atWarn()
+				.addKeyValue("millis", query.millis())
+				.addKeyValue("sql", query.sql())
+				.addKeyValue("binds", query.binds())
+				.addKeyValue("batchSize", query.batchSize())
+				.addKeyValue("repositoryMethod", query.repositoryMethod())
+				.addKeyValue("requestUri", query.requestUri())
+				.addKeyValue("thread", query.thread())
+				.log("Slow query took {} ms: {}", query.millis(), query.sql()));
+		}
+	}
+
+	/**
+	 * The recorded statements, newest first.
+	 */
+	List<SlowQuery> entries() {
+		long last = next.get();
+		List<SlowQuery> newestFirst = new ArrayList<>();
+		for (long index = last - 1; index >= 0 && index >= last - entries.length(); index--) {
+			SlowQuery query = entries.get((int) (index % entries.length()));
+			if (query != null) {
+				newestFirst.add(query);
+			}
+		}
+		return newestFirst;
+	}
+
+	void clear() {
+		for (int i = 0; i < entries.length(); i++) {
+			entries.set(i, null);
+		}
+	}
+
+	@Override
+	public void close() {
+		logger.shutdown();
+	}
+
+	private List<String> render(List<?> binds) {
+		List<String> rendered = new ArrayList<>(binds.size());
+		for (Object bind : binds) {
+			String value;
+			if (bind instanceof byte[] bytes) {
+				value = "<" + bytes.length + " bytes>";
+			}
+			else if (!showBindValues && bind != null) {
+				value = "<" + bind.getClass().getSimpleName() + ">";
+			}
+			else {
+				value = String.valueOf(bind);
+				if (value.length() > 100) {
+					value = value.substring(0, 100) + "...";
+				}
+			}
+			rendered.add(value);
+		}
+		return rendered;
+	}
+
+	private static String requestUri() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes instanceof ServletRequestAttributes servletAttributes) {
+			HttpServletRequest request = servletAttributes.getRequest();
+			return request.getMethod() + " " + request.getRequestURI();
+		}
+		return null;
+	}
+
+}
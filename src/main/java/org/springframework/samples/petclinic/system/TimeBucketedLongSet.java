@@ -0,0 +1,146 @@
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded set of {@code long} values remembered for a sliding time window.
+ * <p>
+ * The window is split into a ring of buckets, each a primitive open-addressing hash
+ * table. Values are added to the newest bucket; when a bucket's time slice has passed,
+ * or it reaches its capacity, the ring advances and the oldest bucket is cleared. Memory
+ * use is therefore fixed at construction and does not depend on the event rate.
+ */
+class TimeBucketedLongSet {
+
+	private static final long EMPTY = 0L;
+
+	private final long[][] tables;
+
+	private final int[] sizes;
+
+	private final boolean[] containsEmptyMarker;
+
+	private final int bucketCapacity;
+
+	private final long bucketNanos;
+
+	private final LongSupplier nanoClock;
+
+	private int current;
+
+	private long currentStartNanos;
+
+	TimeBucketedLongSet(Duration window, int buckets, int maxEntries) {
+		this(window, buckets, maxEntries, System::nanoTime);
+	}
+
+	TimeBucketedLongSet(Duration window, int buckets, int maxEntries, LongSupplier nanoClock) {
+		if (buckets < 2) {
+			throw new IllegalArgumentException("At least two buckets are required");
+		}
+		this.bucketCapacity = Math.max(1, maxEntries / buckets);
+		int tableSize = Integer.highestOneBit(Math.max(2, bucketCapacity * 2 - 1)) << 1;
+		this.tables = new long[buckets][tableSize];
+		this.sizes = new int[buckets];
+		this.containsEmptyMarker = new boolean[buckets];
+		this.bucketNanos = Math.max(1, window.toNanos() / buckets);
+		this.nanoClock = nanoClock;
+		this.currentStartNanos = nanoClock.getAsLong();
+	}
+
+	/**
+	 * Add the value unless it was already seen within the window.
+	 * @return {@literal true} if the value was not present
+	 */
+	synchronized boolean add(long value) {
+		expireBuckets();
+		for (int i = 0; i < tables.length; i++) {
+			if (contains(i, value)) {
+				return false;
+			}
+		}
+		if (sizes[current] >= bucketCapacity) {
+			advance();
+		}
+		insert(current, value);
+		return true;
+	}
+
+	/**
+	 * Whether the value was seen within the window.
+	 */
+	synchronized boolean contains(long value) {
+		expireBuckets();
+		for (int i = 0; i < tables.length; i++) {
+			if (contains(i, value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	synchronized int size() {
+		expireBuckets();
+		return Arrays.stream(sizes).sum();
+	}
+
+	private void expireBuckets() {
+		long elapsed = nanoClock.getAsLong() - currentStartNanos;
+		if (elapsed < bucketNanos) {
+			return;
+		}
+		long steps = Math.min(elapsed / bucketNanos, tables.length);
+		for (long i = 0; i < steps; i++) {
+			advance();
+		}
+		currentStartNanos = nanoClock.getAsLong();
+	}
+
+	private void advance() {
+		current = (current + 1) % tables.length;
+		Arrays.fill(tables[current], EMPTY);
+		sizes[current] = 0;
+		containsEmptyMarker[current] = false;
+		currentStartNanos = nanoClock.getAsLong();
+	}
+
+	private boolean contains(int bucket, long value) {
+		if (value == EMPTY) {
+			return containsEmptyMarker[bucket];
+		}
+		long[] table = tables[bucket];
+		int mask = table.length - 1;
+		for (int slot = hash(value) & mask;; slot = (slot + 1) & mask) {
+			long candidate = table[slot];
+			if (candidate == EMPTY) {
+				return false;
+			}
+			if (candidate == value) {
+				return true;
+			}
+		}
+	}
+
+	private void insert(int bucket, long value) {
+		sizes[bucket]++;
+		if (value == EMPTY) {
+			containsEmptyMarker[bucket] = true;
+			return;
+		}
+		long[] table = tables[bucket];
+		int mask = table.length - 1;
+		int slot = hash(value) & mask;
+		while (table[slot] != EMPTY) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = value;
+	}
+
+	private static int hash(long value) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
@@ -0,0 +1,83 @@
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
+import org.springframework.samples.petclinic.owner.VisitDto;
+import org.springframework.samples.petclinic.owner.VisitEventHeaders;
+
+/**
+ * Discards visit events whose {@link VisitEventHeaders#EVENT_ID event id} was already
+ * handled within the deduplication window, before they reach any listener. As a
+ * {@link RecordInterceptor} of the same container, it only remembers an event id once
+ * the listener has handled the record successfully, so a record redelivered after a
+ * failed attempt is handled again.
+ * <p>
+ * Publishes {@code petclinic.visit.events} counters tagged with the outcome
+ * ({@code accepted}, {@code duplicate} or {@code untracked} for records without an event
+ * id) and a gauge of the ids currently held in the window.
+ */
+class VisitEventDeduplicationFilter
+		implements RecordFilterStrategy<String, VisitDto>, RecordInterceptor<String, VisitDto> {
+
+	private final TimeBucketedLongSet seenEventIds;
+
+	private final Counter accepted;
+
+	private final Counter duplicates;
+
+	private final Counter untracked;
+
+	VisitEventDeduplicationFilter(Duration window, int maxEvents, MeterRegistry registry) {
+		this.seenEventIds = new TimeBucketedLongSet(window, 6, maxEvents);
+		this.accepted = outcomeCounter(registry, "accepted");
+		this.duplicates = outcomeCounter(registry, "duplicate");
+		this.untracked = outcomeCounter(registry, "untracked");
+		Gauge.builder("petclinic.visit.events.dedup.window", seenEventIds, TimeBucketedLongSet::size)
+			.description("Visit event ids held in the deduplication window")
+			.register(registry);
+	}
+
+	@Override
+	public boolean filter(ConsumerRecord<String, VisitDto> consumerRecord) {
+		Long eventId = VisitEventHeaders.eventId(consumerRecord.headers());
+		if (eventId == null) {
+			untracked.increment();
+			return false;
+		}
+		if (!seenEventIds.contains(eventId)) {
+			accepted.increment();
+			return false;
+		}
+		duplicates.increment();
+		return true;
+	}
+
+	@Override
+	public ConsumerRecord<String, VisitDto> intercept(ConsumerRecord<String, VisitDto> consumerRecord,
+			Consumer<String, VisitDto> consumer) {
+		return consumerRecord;
+	}
+
+	@Override
+	public void success(ConsumerRecord<String, VisitDto> consumerRecord, Consumer<String, VisitDto> consumer) {
+		Long eventId = VisitEventHeaders.eventId(consumerRecord.headers());
+		if (eventId != null) {
+			seenEventIds.add(eventId);
+		}
+	}
+
+	private static Counter outcomeCounter(MeterRegistry registry, String outcome) {
+		return Counter.builder("petclinic.visit.events")
+			.description("Visit events received, by deduplication outcome")
+			.tag("outcome", outcome)
+			.register(registry);
+	}
+
+}
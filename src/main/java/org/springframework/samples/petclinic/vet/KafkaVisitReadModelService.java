@@ -0,0 +1,115 @@
+package org.springframework.samples.petclinic.vet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.samples.petclinic.owner.VisitDto;
+import org.springframework.samples.petclinic.owner.VisitEventHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the {@link VisitReadModel} up to date from the {@code visit} topic and
+ * periodically checkpoints it, together with the consumed offsets, to a local snapshot
+ * file. On restart the snapshot is loaded and consumption resumes from the checkpointed
+ * offsets instead of replaying the whole topic.
+ */
+@Component
+public class KafkaVisitReadModelService implements ConsumerSeekAware {
+
+	private static final Logger log = LoggerFactory.getLogger(KafkaVisitReadModelService.class);
+
+	private final VisitReadModel readModel;
+
+	private final Path snapshotFile;
+
+	private final AtomicLong untyped = new AtomicLong();
+
+	KafkaVisitReadModelService(VisitReadModel readModel,
+			@Value("${petclinic.visit-read-model.snapshot-file:${java.io.tmpdir}/petclinic-visit-read-model.bin}") Path snapshotFile) {
+		this.readModel = readModel;
+		this.snapshotFile = snapshotFile;
+	}
+
+	@PostConstruct
+	void restore() {
+		if (!Files.exists(snapshotFile)) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+			readModel.readSnapshot(in);
+			log.info("Restored visit read model from {} at offsets {}", snapshotFile, readModel.nextOffsets());
+		}
+		catch (IOException ex) {
+			log.warn("Ignoring unreadable visit read model snapshot {}, rebuilding from the topic", snapshotFile, ex);
+			readModel.clear();
+		}
+	}
+
+	@KafkaListener(id = "visitReadModel", topics = "visit", groupId = "visit-read-model",
+			containerFactory = "visitReadModelListenerFactory")
+	public void consumeVisitDto(ConsumerRecord<String, VisitDto> record) {
+		VisitEventHeaders.Type type = VisitEventHeaders.eventType(record.headers());
+		if (type == null && untyped.getAndIncrement() == 0) {
+			log.warn("Skipping visit records without an event type, starting at {}-{}@{}", record.topic(),
+					record.partition(), record.offset());
+		}
+		readModel.apply(new TopicPartition(record.topic(), record.partition()), record.offset(), type,
+				record.value());
+	}
+
+	@Override
+	public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+		Map<TopicPartition, Long> checkpointed = readModel.nextOffsets();
+		List<TopicPartition> unknown = new ArrayList<>();
+		for (TopicPartition partition : assignments.keySet()) {
+			Long offset = checkpointed.get(partition);
+			if (offset != null) {
+				callback.seek(partition.topic(), partition.partition(), offset);
+			}
+			else {
+				unknown.add(partition);
+			}
+		}
+		if (!unknown.isEmpty()) {
+			callback.seekToBeginning(unknown);
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${petclinic.visit-read-model.snapshot-interval-ms:60000}")
+	@PreDestroy
+	public void checkpoint() throws IOException {
+		Path directory = snapshotFile.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path tmp = Files.createTempFile(directory, snapshotFile.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				readModel.writeSnapshot(out);
+			}
+			Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+}
@@ -19,7 +19,9 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
@@ -56,7 +58,12 @@ public interface VetRepository extends Repository<Vet, Integer> {
 	@Cacheable("vets")
 	Page<Vet> findAll(Pageable pageable) throws DataAccessException;
 
-	List<Vet> findBySpecialtiesIn(Collection<Specialty> specialties);
+	// inner joins, the derived queries left join vet_specialties and H2 then scans all
+	// vets instead of looking up the specialty
 
-	List<Vet> findBySpecialties_IdIn(Collection<Integer> ids);
+	@Query("SELECT vet FROM Vet vet JOIN vet.specialties specialty WHERE specialty IN :specialties")
+	List<Vet> findBySpecialtiesIn(@Param("specialties") Collection<Specialty> specialties);
+
+	@Query("SELECT vet FROM Vet vet JOIN vet.specialties specialty WHERE specialty.id IN :ids")
+	List<Vet> findBySpecialties_IdIn(@Param("ids") Collection<Integer> ids);
 }
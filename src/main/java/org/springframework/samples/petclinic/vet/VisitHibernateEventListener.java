@@ -2,16 +2,26 @@ package org.springframework.samples.petclinic.vet;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManagerFactory;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.event.service.spi.EventListenerRegistry;
 import org.hibernate.event.spi.*;
 import org.hibernate.persister.entity.EntityPersister;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.samples.petclinic.model.BaseEntity;
 import org.springframework.samples.petclinic.owner.Visit;
 import org.springframework.samples.petclinic.owner.VisitDto;
+import org.springframework.samples.petclinic.owner.VisitEventHeaders;
 import org.springframework.samples.petclinic.owner.VisitMapper;
+import org.springframework.samples.petclinic.owner.VisitSummary;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
 @Component
 public class VisitHibernateEventListener implements PostDeleteEventListener, PostInsertEventListener, PostUpdateEventListener {
 
@@ -21,19 +31,24 @@ public class VisitHibernateEventListener implements PostDeleteEventListener, Pos
 
 	private final KafkaTemplate<String, VisitDto> kafkaTemplate;
 
+	private final VisitRollupUpdater rollupUpdater;
+
 	public VisitHibernateEventListener(EntityManagerFactory entityManagerFactory,
 									   VisitMapper visitMapper,
-									   KafkaTemplate<String, VisitDto> kafkaTemplate) {
+									   KafkaTemplate<String, VisitDto> kafkaTemplate,
+									   VisitRollupUpdater rollupUpdater) {
 		this.entityManagerFactory = entityManagerFactory;
 		this.visitMapper = visitMapper;
 		this.kafkaTemplate = kafkaTemplate;
+		this.rollupUpdater = rollupUpdater;
 	}
 
 	@Override
 	public void onPostDelete(PostDeleteEvent postDeleteEvent) {
 		Object entity = postDeleteEvent.getEntity();
 		if (entity instanceof Visit visit) {
-			kafkaTemplate.send("visit", visitMapper.toDto(visit));
+			send(visit, VisitEventHeaders.Type.DELETED);
+			rollupUpdater.record(id(visit.getVet()), id(visit.getPet()), visit.getDate(), -1);
 		}
 
 	}
@@ -42,7 +57,8 @@ public class VisitHibernateEventListener implements PostDeleteEventListener, Pos
 	public void onPostInsert(PostInsertEvent postInsertEvent) {
 		Object entity = postInsertEvent.getEntity();
 		if (entity instanceof Visit visit) {
-			kafkaTemplate.send("visit", visitMapper.toDto(visit));
+			send(visit, VisitEventHeaders.Type.CREATED);
+			rollupUpdater.record(id(visit.getVet()), id(visit.getPet()), visit.getDate(), 1);
 		}
 
 	}
@@ -51,16 +67,67 @@ public class VisitHibernateEventListener implements PostDeleteEventListener, Pos
 	public void onPostUpdate(PostUpdateEvent postUpdateEvent) {
 		Object entity = postUpdateEvent.getEntity();
 		if (entity instanceof Visit visit) {
-			kafkaTemplate.send("visit", visitMapper.toDto(visit));
+			send(visit, VisitEventHeaders.Type.UPDATED);
+			recordRollupUpdate(postUpdateEvent, visit);
 		}
 
 	}
 
+	/**
+	 * Publish the deletion of visits archived by a bulk statement. Called once the
+	 * deleting transaction has committed. The rollups keep counting archived visits, they
+	 * are history that only moved.
+	 */
+	public void onBulkDelete(Collection<VisitSummary> visits) {
+		for (VisitSummary visit : visits) {
+			// a visit is deleted once, so the event id does not need its version
+			send(new VisitDto(visit.id(), visit.date(), visit.description(), visit.vetId(), visit.petId()),
+					VisitEventHeaders.eventId(visit.id(), VisitEventHeaders.Type.DELETED, 0),
+					VisitEventHeaders.Type.DELETED);
+		}
+	}
+
 	@Override
 	public boolean requiresPostCommitHandling(EntityPersister entityPersister) {
 		return true;
 	}
 
+	private void recordRollupUpdate(PostUpdateEvent event, Visit visit) {
+		Object[] oldState = event.getOldState();
+		if (oldState == null) {
+			// updated without loading it first, the reconciliation repairs the rollups
+			return;
+		}
+		List<String> properties = Arrays.asList(event.getPersister().getPropertyNames());
+		Integer oldVetId = id((BaseEntity) oldState[properties.indexOf("vet")]);
+		Integer oldPetId = id((BaseEntity) oldState[properties.indexOf("pet")]);
+		LocalDate oldDate = (LocalDate) oldState[properties.indexOf("date")];
+		Integer vetId = id(visit.getVet());
+		Integer petId = id(visit.getPet());
+		if (Objects.equals(oldVetId, vetId) && Objects.equals(oldPetId, petId)
+				&& Objects.equals(oldDate, visit.getDate())) {
+			return;
+		}
+		rollupUpdater.record(oldVetId, oldPetId, oldDate, -1);
+		rollupUpdater.record(vetId, petId, visit.getDate(), 1);
+	}
+
+	private static Integer id(BaseEntity entity) {
+		return entity == null ? null : entity.getId();
+	}
+
+	private void send(Visit visit, VisitEventHeaders.Type type) {
+		send(visitMapper.toDto(visit), VisitEventHeaders.eventId(visit.getId(), type, visit.getVersion()), type);
+	}
+
+	private void send(VisitDto visit, long eventId, VisitEventHeaders.Type type) {
+		// keyed by visit so that all changes of a visit stay in order on one partition
+		ProducerRecord<String, VisitDto> record = new ProducerRecord<>("visit", String.valueOf(visit.id()), visit);
+		VisitEventHeaders.addEventId(record.headers(), eventId);
+		VisitEventHeaders.addEventType(record.headers(), type);
+		kafkaTemplate.send(record);
+	}
+
 	@PostConstruct
 	private void postConstruct() {
 		SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
@@ -0,0 +1,225 @@
+package org.springframework.samples.petclinic.vet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.samples.petclinic.owner.VisitDto;
+import org.springframework.samples.petclinic.owner.VisitEventHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory visit statistics maintained incrementally from the {@code visit} topic:
+ * visits per vet, visits per day and the last visit of each pet.
+ * <p>
+ * Every visit is remembered by id with the attributes the statistics depend on, so
+ * updates and deletes can retract the previous contribution of a visit and redelivered
+ * events are applied idempotently. Deleted visits, archived ones included, are
+ * forgotten, so the model holds one small entry per row of the {@code visits} table and
+ * its heap use grows with that table. The consumed offsets are tracked together with the
+ * state so that a snapshot always describes a consistent position in the topic.
+ */
+@Component
+class VisitReadModel {
+
+	private static final int SNAPSHOT_VERSION = 1;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<Integer, Entry> visits = new HashMap<>();
+
+	private final Map<Integer, Long> visitsPerVet = new HashMap<>();
+
+	private final NavigableMap<LocalDate, Long> visitsPerDay = new TreeMap<>();
+
+	private final Map<Integer, NavigableMap<LocalDate, Integer>> visitDatesPerPet = new HashMap<>();
+
+	private final Map<TopicPartition, Long> nextOffsets = new HashMap<>();
+
+	/**
+	 * Apply one record of the topic. A record without an event type is skipped, it
+	 * could be a delete as well as a change; only its offset is consumed.
+	 */
+	void apply(TopicPartition partition, long offset, VisitEventHeaders.Type type, VisitDto visit) {
+		lock.writeLock().lock();
+		try {
+			if (type != null && visit != null && visit.id() != null) {
+				remove(visits.remove(visit.id()));
+				if (type != VisitEventHeaders.Type.DELETED) {
+					Entry entry = new Entry(visit.petId(), visit.vetId(), visit.date());
+					visits.put(visit.id(), entry);
+					add(entry);
+				}
+			}
+			nextOffsets.put(partition, offset + 1);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	Map<Integer, Long> visitsPerVet() {
+		lock.readLock().lock();
+		try {
+			return new TreeMap<>(visitsPerVet);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	Map<LocalDate, Long> visitsPerDay(LocalDate from, LocalDate to) {
+		lock.readLock().lock();
+		try {
+			return new TreeMap<>(visitsPerDay.subMap(from, true, to, true));
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	Optional<LocalDate> lastVisit(int petId) {
+		lock.readLock().lock();
+		try {
+			NavigableMap<LocalDate, Integer> dates = visitDatesPerPet.get(petId);
+			return dates == null ? Optional.empty() : Optional.of(dates.lastKey());
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	Map<TopicPartition, Long> nextOffsets() {
+		lock.readLock().lock();
+		try {
+			return new HashMap<>(nextOffsets);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	void writeSnapshot(DataOutputStream out) throws IOException {
+		lock.readLock().lock();
+		try {
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeInt(nextOffsets.size());
+			for (Map.Entry<TopicPartition, Long> offset : nextOffsets.entrySet()) {
+				out.writeUTF(offset.getKey().topic());
+				out.writeInt(offset.getKey().partition());
+				out.writeLong(offset.getValue());
+			}
+			out.writeInt(visits.size());
+			for (Map.Entry<Integer, Entry> visit : visits.entrySet()) {
+				Entry entry = visit.getValue();
+				out.writeInt(visit.getKey());
+				writeNullableInt(out, entry.petId());
+				writeNullableInt(out, entry.vetId());
+				out.writeBoolean(entry.date() != null);
+				if (entry.date() != null) {
+					out.writeLong(entry.date().toEpochDay());
+				}
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	void readSnapshot(DataInputStream in) throws IOException {
+		int version = in.readInt();
+		if (version != SNAPSHOT_VERSION) {
+			throw new IOException("Unsupported visit read model snapshot version " + version);
+		}
+		lock.writeLock().lock();
+		try {
+			clear();
+			int partitions = in.readInt();
+			for (int i = 0; i < partitions; i++) {
+				nextOffsets.put(new TopicPartition(in.readUTF(), in.readInt()), in.readLong());
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				int id = in.readInt();
+				Integer petId = readNullableInt(in);
+				Integer vetId = readNullableInt(in);
+				LocalDate date = in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+				Entry entry = new Entry(petId, vetId, date);
+				visits.put(id, entry);
+				add(entry);
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	void clear() {
+		lock.writeLock().lock();
+		try {
+			visits.clear();
+			visitsPerVet.clear();
+			visitsPerDay.clear();
+			visitDatesPerPet.clear();
+			nextOffsets.clear();
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void add(Entry entry) {
+		if (entry.vetId() != null) {
+			visitsPerVet.merge(entry.vetId(), 1L, Long::sum);
+		}
+		if (entry.date() != null) {
+			visitsPerDay.merge(entry.date(), 1L, Long::sum);
+			if (entry.petId() != null) {
+				visitDatesPerPet.computeIfAbsent(entry.petId(), id -> new TreeMap<>()).merge(entry.date(), 1, Integer::sum);
+			}
+		}
+	}
+
+	private void remove(Entry entry) {
+		if (entry == null) {
+			return;
+		}
+		if (entry.vetId() != null) {
+			visitsPerVet.computeIfPresent(entry.vetId(), (id, count) -> count == 1 ? null : count - 1);
+		}
+		if (entry.date() != null) {
+			visitsPerDay.computeIfPresent(entry.date(), (date, count) -> count == 1 ? null : count - 1);
+			NavigableMap<LocalDate, Integer> dates = entry.petId() == null ? null : visitDatesPerPet.get(entry.petId());
+			if (dates != null) {
+				dates.computeIfPresent(entry.date(), (date, count) -> count == 1 ? null : count - 1);
+				if (dates.isEmpty()) {
+					visitDatesPerPet.remove(entry.petId());
+				}
+			}
+		}
+	}
+
+	private static void writeNullableInt(DataOutputStream out, Integer value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeInt(value);
+		}
+	}
+
+	private static Integer readNullableInt(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readInt() : null;
+	}
+
+	private record Entry(Integer petId, Integer vetId, LocalDate date) {
+	}
+
+}
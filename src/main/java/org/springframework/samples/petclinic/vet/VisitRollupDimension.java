@@ -0,0 +1,31 @@
+package org.springframework.samples.petclinic.vet;
+
+/**
+ * The dimensions visits are rolled up by, each backed by one daily rollup table.
+ */
+enum VisitRollupDimension {
+
+	VET("visit_rollup_vet_day", "vet_id",
+			"SELECT COALESCE(vet_id, 0), visit_date, COUNT(*) FROM visits "
+					+ "WHERE visit_date >= ? AND visit_date <= ? GROUP BY COALESCE(vet_id, 0), visit_date"),
+
+	PET_TYPE("visit_rollup_type_day", "type_id",
+			"SELECT p.type_id, v.visit_date, COUNT(*) FROM visits v JOIN pets p ON p.id = v.pet_id "
+					+ "WHERE v.visit_date >= ? AND v.visit_date <= ? GROUP BY p.type_id, v.visit_date");
+
+	final String table;
+
+	final String keyColumn;
+
+	/**
+	 * Recomputes the rollup rows of a date range from the {@code visits} table.
+	 */
+	final String aggregateQuery;
+
+	VisitRollupDimension(String table, String keyColumn, String aggregateQuery) {
+		this.table = table;
+		this.keyColumn = keyColumn;
+		this.aggregateQuery = aggregateQuery;
+	}
+
+}
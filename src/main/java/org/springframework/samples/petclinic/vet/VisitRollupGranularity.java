@@ -0,0 +1,23 @@
+package org.springframework.samples.petclinic.vet;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Period length of the visit rollups served by {@link VisitRollupRestController}; every
+ * period is identified by its first day.
+ */
+public enum VisitRollupGranularity {
+
+	DAY, WEEK, MONTH;
+
+	LocalDate periodStart(LocalDate date) {
+		return switch (this) {
+			case DAY -> date;
+			case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+			case MONTH -> date.withDayOfMonth(1);
+		};
+	}
+
+}
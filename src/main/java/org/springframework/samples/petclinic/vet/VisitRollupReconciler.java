@@ -0,0 +1,186 @@
+package org.springframework.samples.petclinic.vet;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.owner.VisitArchive;
+import org.springframework.samples.petclinic.owner.VisitSummary;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Backfills the visit rollup tables when they are empty, and periodically recomputes the
+ * rollups of the recent {@code petclinic.visits.rollups.reconcile-window} from
+ * {@code visits} and the {@link VisitArchive}, repairing rows that drifted, e.g. because
+ * a change was dropped. Archived visits stay counted, the rollups are what long-range
+ * reports read. Both run on every shard of a sharded database, where each shard counts
+ * the archived visits of its own pets. The {@link VisitRollupUpdater} is drained first and
+ * paused while rows are overwritten, so a queued change is neither lost nor counted
+ * twice.
+ */
+@Component
+public class VisitRollupReconciler {
+
+	private static final Logger log = LoggerFactory.getLogger(VisitRollupReconciler.class);
+
+	private final VisitRollupStore store;
+
+	private final VisitArchive archive;
+
+	private final VisitRollupUpdater updater;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final Period window;
+
+	private final Clock clock;
+
+	private final Counter repaired;
+
+	@Autowired
+	VisitRollupReconciler(VisitRollupStore store, VisitArchive archive, VisitRollupUpdater updater,
+			JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry registry,
+			@Value("${petclinic.visits.rollups.reconcile-window:90d}") Period window) {
+		this(store, archive, updater, jdbcTemplate, transactionManager, registry, window, Clock.systemDefaultZone());
+	}
+
+	VisitRollupReconciler(VisitRollupStore store, VisitArchive archive, VisitRollupUpdater updater,
+			JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, MeterRegistry registry,
+			Period window, Clock clock) {
+		this.store = store;
+		this.archive = archive;
+		this.updater = updater;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.window = window;
+		this.clock = clock;
+		this.repaired = Counter.builder("petclinic.visits.rollups.repaired")
+			.description("Visit rollup rows found out of date by reconciliation")
+			.register(registry);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void backfillIfEmpty() {
+		ShardRoutingDataSource.callOnEach(jdbcTemplate.getDataSource(), () -> {
+			backfillShardIfEmpty();
+			return null;
+		});
+	}
+
+	private void backfillShardIfEmpty() {
+		if (!store.isEmpty()) {
+			return;
+		}
+		LocalDate from = jdbcTemplate.queryForObject("SELECT MIN(visit_date) FROM visits", LocalDate.class);
+		LocalDate to = jdbcTemplate.queryForObject("SELECT MAX(visit_date) FROM visits", LocalDate.class);
+		LocalDate archived = archive.findOldestDate();
+		if (archived != null && (from == null || archived.isBefore(from))) {
+			from = archived;
+			to = to == null ? LocalDate.now(clock) : to;
+		}
+		if (from == null) {
+			return;
+		}
+		log.info("Backfilled {} visit rollup rows from {} to {}", reconcile(from, to), from, to);
+	}
+
+	@Scheduled(cron = "${petclinic.visits.rollups.reconcile-cron:0 0 4 * * *}")
+	public void reconcileRecent() {
+		LocalDate today = LocalDate.now(clock);
+		int rows = ShardRoutingDataSource
+			.callOnEach(jdbcTemplate.getDataSource(), () -> reconcile(today.minus(window), today))
+			.stream()
+			.mapToInt(Integer::intValue)
+			.sum();
+		repaired.increment(rows);
+		if (rows > 0) {
+			log.warn("Repaired {} visit rollup rows", rows);
+		}
+	}
+
+	/**
+	 * Recompute the rollups of a date range on every shard, e.g. after visits were added
+	 * with plain SQL. A shard whose rollups are still empty is backfilled instead, since
+	 * the backfill on startup skips it once this has written rows.
+	 */
+	public void reconcileRange(LocalDate from, LocalDate to) {
+		int rows = ShardRoutingDataSource.callOnEach(jdbcTemplate.getDataSource(), () -> {
+			if (store.isEmpty()) {
+				backfillShardIfEmpty();
+				return 0;
+			}
+			return reconcile(from, to);
+		}).stream().mapToInt(Integer::intValue).sum();
+		log.info("Recomputed the visit rollups from {} to {}, {} rows changed", from, to, rows);
+	}
+
+	/**
+	 * Recompute the rollups of a date range and overwrite the rows that differ.
+	 * @return the number of rows that were repaired
+	 */
+	int reconcile(LocalDate from, LocalDate to) {
+		return updater.exclusively(() -> transactionTemplate.execute(status -> {
+			Map<VisitRollupDimension, Map<VisitRollupStore.Key, Long>> recomputed = new EnumMap<>(
+					VisitRollupDimension.class);
+			for (VisitRollupDimension dimension : VisitRollupDimension.values()) {
+				recomputed.put(dimension, store.aggregate(dimension, from, to));
+			}
+			archive.scan(from, to, visits -> addArchived(visits, recomputed));
+			int count = 0;
+			for (VisitRollupDimension dimension : VisitRollupDimension.values()) {
+				Map<VisitRollupStore.Key, Long> expected = recomputed.get(dimension);
+				Map<VisitRollupStore.Key, Long> actual = store.find(dimension, from, to);
+				for (Map.Entry<VisitRollupStore.Key, Long> row : expected.entrySet()) {
+					if (!row.getValue().equals(actual.get(row.getKey()))) {
+						store.set(dimension, row.getKey(), row.getValue());
+						count++;
+					}
+				}
+				for (VisitRollupStore.Key key : actual.keySet()) {
+					if (!expected.containsKey(key)) {
+						store.set(dimension, key, 0);
+						count++;
+					}
+				}
+			}
+			return count;
+		}));
+	}
+
+	private void addArchived(List<VisitSummary> visits,
+			Map<VisitRollupDimension, Map<VisitRollupStore.Key, Long>> recomputed) {
+		// only the pets of this shard are found
+		Map<Integer, Integer> petTypes = store
+			.findPetTypes(visits.stream().map(VisitSummary::petId).collect(Collectors.toSet()));
+		for (VisitSummary visit : visits) {
+			Integer typeId = petTypes.get(visit.petId());
+			if (typeId != null) {
+				recomputed.get(VisitRollupDimension.VET)
+					.merge(new VisitRollupStore.Key(visit.vetId() == null ? 0 : visit.vetId(), visit.date()), 1L,
+							Long::sum);
+				recomputed.get(VisitRollupDimension.PET_TYPE)
+					.merge(new VisitRollupStore.Key(typeId, visit.date()), 1L, Long::sum);
+			}
+		}
+	}
+
+}
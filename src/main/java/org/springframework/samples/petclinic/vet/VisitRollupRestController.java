@@ -0,0 +1,58 @@
+package org.springframework.samples.petclinic.vet;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Visit counts per vet and per pet type, read from the daily rollup tables. The cost of
+ * a request depends on the length of the date range and the number of vets or pet
+ * types, not on the number of visits. Visits without a vet are counted under vet 0.
+ */
+@RestController
+@RequestMapping("/rest/visit-rollups")
+public class VisitRollupRestController {
+
+	private final VisitRollupStore store;
+
+	VisitRollupRestController(VisitRollupStore store) {
+		this.store = store;
+	}
+
+	@GetMapping("/per-vet")
+	public Map<Integer, Map<LocalDate, Long>> visitsPerVet(
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+			@RequestParam(defaultValue = "DAY") VisitRollupGranularity granularity) {
+		return rollup(VisitRollupDimension.VET, from, to, granularity);
+	}
+
+	@GetMapping("/per-pet-type")
+	public Map<Integer, Map<LocalDate, Long>> visitsPerPetType(
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+			@RequestParam(defaultValue = "DAY") VisitRollupGranularity granularity) {
+		return rollup(VisitRollupDimension.PET_TYPE, from, to, granularity);
+	}
+
+	private Map<Integer, Map<LocalDate, Long>> rollup(VisitRollupDimension dimension, LocalDate from, LocalDate to,
+			VisitRollupGranularity granularity) {
+		if (from.isAfter(to)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "`from` must not be after `to`");
+		}
+		Map<Integer, Map<LocalDate, Long>> result = new TreeMap<>();
+		store.findOnEveryShard(dimension, from, to)
+			.forEach((key, count) -> result.computeIfAbsent(key.value(), value -> new TreeMap<>())
+				.merge(granularity.periodStart(key.date()), count, Long::sum));
+		return result;
+	}
+
+}
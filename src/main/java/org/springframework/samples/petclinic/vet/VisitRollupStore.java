@@ -0,0 +1,131 @@
+package org.springframework.samples.petclinic.vet;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * JDBC access to the daily visit rollup tables. Rollup rows are keyed by the dimension
+ * value (vet id or pet type id) and the visit date.
+ */
+@Component
+class VisitRollupStore {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	VisitRollupStore(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Add {@code delta} to one rollup row, creating it if needed. Callers serialize
+	 * updates of the same row.
+	 */
+	void increment(VisitRollupDimension dimension, Key key, long delta) {
+		int updated = jdbcTemplate.update("UPDATE " + dimension.table + " SET visit_count = visit_count + ? WHERE "
+				+ dimension.keyColumn + " = ? AND visit_date = ?", delta, key.value(), Date.valueOf(key.date()));
+		if (updated == 0) {
+			insert(dimension, key, delta);
+		}
+	}
+
+	/**
+	 * Overwrite one rollup row with the given count, removing it for zero.
+	 */
+	void set(VisitRollupDimension dimension, Key key, long count) {
+		if (count == 0) {
+			jdbcTemplate.update("DELETE FROM " + dimension.table + " WHERE " + dimension.keyColumn
+					+ " = ? AND visit_date = ?", key.value(), Date.valueOf(key.date()));
+			return;
+		}
+		int updated = jdbcTemplate.update("UPDATE " + dimension.table + " SET visit_count = ? WHERE "
+				+ dimension.keyColumn + " = ? AND visit_date = ?", count, key.value(), Date.valueOf(key.date()));
+		if (updated == 0) {
+			insert(dimension, key, count);
+		}
+	}
+
+	/**
+	 * The stored rollup rows of a date range.
+	 */
+	Map<Key, Long> find(VisitRollupDimension dimension, LocalDate from, LocalDate to) {
+		return query("SELECT " + dimension.keyColumn + ", visit_date, visit_count FROM " + dimension.table
+				+ " WHERE visit_date >= ? AND visit_date <= ?", from, to);
+	}
+
+	/**
+	 * The stored rollup rows of a date range, added up over every shard of a sharded
+	 * database.
+	 */
+	Map<Key, Long> findOnEveryShard(VisitRollupDimension dimension, LocalDate from, LocalDate to) {
+		Map<Key, Long> rows = new TreeMap<>();
+		ShardRoutingDataSource.callOnEach(jdbcTemplate.getDataSource(), () -> find(dimension, from, to))
+			.forEach(shard -> shard.forEach((key, count) -> rows.merge(key, count, Long::sum)));
+		return rows;
+	}
+
+	/**
+	 * The rollup rows of a date range as they should be, recomputed from
+	 * {@code visits}.
+	 */
+	Map<Key, Long> aggregate(VisitRollupDimension dimension, LocalDate from, LocalDate to) {
+		return query(dimension.aggregateQuery, from, to);
+	}
+
+	/**
+	 * Pet type ids of the given pets.
+	 */
+	Map<Integer, Integer> findPetTypes(Collection<Integer> petIds) {
+		if (petIds.isEmpty()) {
+			return Map.of();
+		}
+		Map<Integer, Integer> types = new HashMap<>();
+		String placeholders = petIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+		jdbcTemplate.query("SELECT id, type_id FROM pets WHERE id IN (" + placeholders + ")",
+				rs -> {
+					types.put(rs.getInt(1), rs.getInt(2));
+				}, petIds.toArray());
+		return types;
+	}
+
+	boolean isEmpty() {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + VisitRollupDimension.VET.table, Long.class) == 0
+				&& jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + VisitRollupDimension.PET_TYPE.table,
+						Long.class) == 0;
+	}
+
+	private void insert(VisitRollupDimension dimension, Key key, long count) {
+		jdbcTemplate.update("INSERT INTO " + dimension.table + " (" + dimension.keyColumn
+				+ ", visit_date, visit_count) VALUES (?, ?, ?)", key.value(), Date.valueOf(key.date()), count);
+	}
+
+	private Map<Key, Long> query(String sql, LocalDate from, LocalDate to) {
+		Map<Key, Long> rows = new TreeMap<>();
+		jdbcTemplate.query(sql, rs -> {
+			rows.put(new Key(rs.getInt(1), rs.getDate(2).toLocalDate()), rs.getLong(3));
+		}, Date.valueOf(from), Date.valueOf(to));
+		return rows;
+	}
+
+	/**
+	 * Identifies a rollup row: the vet or pet type id, and the day.
+	 */
+	record Key(int value, LocalDate date) implements Comparable<Key> {
+
+		@Override
+		public int compareTo(Key other) {
+			int byDate = date.compareTo(other.date);
+			return byDate != 0 ? byDate : Integer.compare(value, other.value);
+		}
+
+	}
+
+}
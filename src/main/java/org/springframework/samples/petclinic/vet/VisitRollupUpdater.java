@@ -0,0 +1,154 @@
+package org.springframework.samples.petclinic.vet;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.samples.petclinic.system.GroupCommitQueue;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Applies committed visit changes to the rollup tables. Changes are queued by
+ * {@link VisitHibernateEventListener} after the visit transaction commits, netted per
+ * rollup row and written in batches by a background thread, so visit writes never wait
+ * for, or contend on, the rollup rows. A change that cannot be queued or applied is
+ * repaired by the next {@link VisitRollupReconciler} run, which holds off the batches
+ * while it overwrites rows. With a sharded database, each change is applied on the shard
+ * of its pet.
+ */
+@Component
+public class VisitRollupUpdater {
+
+	private static final Logger log = LoggerFactory.getLogger(VisitRollupUpdater.class);
+
+	// queued behind the pending changes, applied as a no-op
+	private static final Change DRAIN = new Change(0, null, null, 0);
+
+	private final VisitRollupStore store;
+
+	private final DataSource dataSource;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final GroupCommitQueue<Change> queue;
+
+	// held while a batch is applied and while the reconciler overwrites rows
+	private final Lock applying = new ReentrantLock();
+
+	VisitRollupUpdater(VisitRollupStore store, DataSource dataSource, PlatformTransactionManager transactionManager) {
+		this.store = store;
+		this.dataSource = dataSource;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.queue = new GroupCommitQueue<>("visit-rollups", 10_000, 500, Duration.ofMillis(100), Duration.ZERO,
+				this::applyAll);
+	}
+
+	/**
+	 * Record a visit change: {@code -1} for the old state of an updated or deleted
+	 * visit, {@code +1} for the new state of an inserted or updated one.
+	 */
+	public void record(Integer vetId, Integer petId, LocalDate date, int delta) {
+		if (date == null) {
+			return;
+		}
+		try {
+			queue.submit(new Change(vetId == null ? 0 : vetId, petId, date, delta)).exceptionally(ex -> {
+				log.warn("Could not apply visit rollup change, the next reconciliation will repair it", ex);
+				return null;
+			});
+		}
+		catch (IllegalStateException ex) {
+			log.warn("Dropping visit rollup change, the next reconciliation will repair it: {}", ex.getMessage());
+		}
+	}
+
+	/**
+	 * Run an action that overwrites rollup rows, once the changes queued before the call
+	 * have been applied, and without applying any other change while it runs. Changes
+	 * recorded meanwhile wait in the queue and are applied on top of what the action
+	 * wrote. Must not be called from within another such action.
+	 */
+	<T> T exclusively(Supplier<T> action) {
+		try {
+			queue.submit(DRAIN).join();
+		}
+		catch (IllegalStateException ex) {
+			log.warn("Could not wait for queued visit rollup changes, they may be counted twice until the next "
+					+ "reconciliation: {}", ex.getMessage());
+		}
+		applying.lock();
+		try {
+			return action.get();
+		}
+		finally {
+			applying.unlock();
+		}
+	}
+
+	private void applyAll(List<Change> changes) {
+		List<Change> deltas = changes.stream().filter(change -> change != DRAIN).toList();
+		if (deltas.isEmpty()) {
+			return;
+		}
+		applying.lock();
+		try {
+			// a change without a pet is counted on the first shard
+			ShardRoutingDataSource.runOnShardsOf(dataSource, deltas,
+					change -> change.petId() == null ? 1 : change.petId(), this::applyOnShard);
+		}
+		finally {
+			applying.unlock();
+		}
+	}
+
+	private void applyOnShard(List<Change> changes) {
+		Set<Integer> petIds = changes.stream().map(Change::petId).filter(Objects::nonNull).collect(Collectors.toSet());
+		Map<Integer, Integer> petTypes = store.findPetTypes(petIds);
+		Map<VisitRollupStore.Key, Long> perVet = new HashMap<>();
+		Map<VisitRollupStore.Key, Long> perType = new HashMap<>();
+		for (Change change : changes) {
+			perVet.merge(new VisitRollupStore.Key(change.vetId(), change.date()), (long) change.delta(), Long::sum);
+			Integer typeId = change.petId() == null ? null : petTypes.get(change.petId());
+			if (typeId != null) {
+				perType.merge(new VisitRollupStore.Key(typeId, change.date()), (long) change.delta(), Long::sum);
+			}
+		}
+		transactionTemplate.executeWithoutResult(status -> {
+			apply(VisitRollupDimension.VET, perVet);
+			apply(VisitRollupDimension.PET_TYPE, perType);
+		});
+	}
+
+	private void apply(VisitRollupDimension dimension, Map<VisitRollupStore.Key, Long> deltas) {
+		deltas.forEach((key, delta) -> {
+			if (delta != 0) {
+				store.increment(dimension, key, delta);
+			}
+		});
+	}
+
+	@PreDestroy
+	void close() throws InterruptedException {
+		queue.close();
+	}
+
+	private record Change(int vetId, Integer petId, LocalDate date, int delta) {
+	}
+
+}
@@ -0,0 +1,49 @@
+package org.springframework.samples.petclinic.vet;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Visit statistics served from the {@link VisitReadModel}, without touching the database.
+ */
+@RestController
+@RequestMapping("/rest/visit-stats")
+public class VisitStatsRestController {
+
+	private final VisitReadModel readModel;
+
+	VisitStatsRestController(VisitReadModel readModel) {
+		this.readModel = readModel;
+	}
+
+	@GetMapping("/per-vet")
+	public Map<Integer, Long> visitsPerVet() {
+		return readModel.visitsPerVet();
+	}
+
+	@GetMapping("/per-day")
+	public Map<LocalDate, Long> visitsPerDay(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+		if (from.isAfter(to)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "`from` must not be after `to`");
+		}
+		return readModel.visitsPerDay(from, to);
+	}
+
+	@GetMapping("/pets/{petId}/last-visit")
+	public LocalDate lastVisit(@PathVariable int petId) {
+		return readModel.lastVisit(petId)
+			.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+					"No visits known for pet `%s`".formatted(petId)));
+	}
+
+}
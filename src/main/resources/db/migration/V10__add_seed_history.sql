@@ -0,0 +1,8 @@
+-- Seed scripts applied by DataSeeder, with the checksum of the version that ran. A start
+-- whose script still has the recorded checksum skips seeding.
+CREATE TABLE seed_history (
+  script VARCHAR(255) NOT NULL,
+  checksum VARCHAR(64) NOT NULL,
+  applied_at TIMESTAMP NOT NULL,
+  CONSTRAINT pk_seed_history PRIMARY KEY (script)
+);
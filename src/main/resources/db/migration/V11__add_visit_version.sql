@@ -0,0 +1,3 @@
+-- Optimistic lock version of a visit. Together with the visit id and the kind of change
+-- it identifies an event on the visit topic, so a resent event keeps its id.
+ALTER TABLE visits ADD COLUMN version INTEGER DEFAULT 0 NOT NULL;
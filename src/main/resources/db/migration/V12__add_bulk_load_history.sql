@@ -0,0 +1,18 @@
+-- Files loaded by BulkLoader, with the checksum of the version that was loaded. A load
+-- skips a file whose checksum is recorded.
+CREATE TABLE bulk_load_history (
+  file_name VARCHAR(255) NOT NULL,
+  checksum VARCHAR(64) NOT NULL,
+  row_count BIGINT NOT NULL,
+  loaded_at TIMESTAMP NOT NULL,
+  CONSTRAINT pk_bulk_load_history PRIMARY KEY (file_name, checksum)
+);
+
+-- The id each loaded row got, by the id it had in the other system, so that a later load
+-- skips rows it already has and can refer to rows of an earlier one.
+CREATE TABLE bulk_load_ids (
+  table_name VARCHAR(30) NOT NULL,
+  legacy_id VARCHAR(255) NOT NULL,
+  id INTEGER NOT NULL,
+  CONSTRAINT pk_bulk_load_ids PRIMARY KEY (table_name, legacy_id)
+);
@@ -0,0 +1,3 @@
+CREATE INDEX visits_vet_id_visit_date_idx ON visits(vet_id, visit_date, id);
+
+CREATE INDEX visits_visit_date_idx ON visits(visit_date, id);
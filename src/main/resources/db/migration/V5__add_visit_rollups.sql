@@ -0,0 +1,20 @@
+-- Daily visit counts, maintained incrementally from visit changes and repaired by
+-- VisitRollupReconciler. Weeks and months are summed from the days. Visits without a
+-- vet are counted under vet_id 0.
+CREATE TABLE visit_rollup_vet_day (
+  vet_id INTEGER NOT NULL,
+   visit_date date NOT NULL,
+   visit_count BIGINT NOT NULL,
+   CONSTRAINT visit_rollup_vet_day_pkey PRIMARY KEY (vet_id, visit_date)
+);
+
+CREATE TABLE visit_rollup_type_day (
+  type_id INTEGER NOT NULL,
+   visit_date date NOT NULL,
+   visit_count BIGINT NOT NULL,
+   CONSTRAINT visit_rollup_type_day_pkey PRIMARY KEY (type_id, visit_date)
+);
+
+CREATE INDEX visit_rollup_vet_day_visit_date_idx ON visit_rollup_vet_day(visit_date);
+
+CREATE INDEX visit_rollup_type_day_visit_date_idx ON visit_rollup_type_day(visit_date);
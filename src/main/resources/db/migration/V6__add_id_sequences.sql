@@ -0,0 +1,14 @@
+-- One pooled sequence per entity, named after Hibernate's default <table>_seq. Each
+-- nextval reserves a block of 50 ids, so Hibernate knows ids before inserting and can
+-- batch the inserts.
+CREATE SEQUENCE owners_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE pets_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE types_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE visits_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE vets_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE specialties_seq START WITH 1 INCREMENT BY 50;
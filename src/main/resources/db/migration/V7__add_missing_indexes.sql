@@ -0,0 +1,8 @@
+-- Indexes recommended by IndexAdvisorTests. visits.vet_id needs none of its own, it
+-- leads visits_vet_id_visit_date_idx.
+
+-- OwnerFilter.citySpec, the REST owner search by city
+CREATE INDEX owners_city_idx ON owners(city);
+
+-- vets by specialty; the unique key on (vet_id, specialty_id) only serves lookups by vet
+CREATE INDEX vet_specialties_specialty_id_idx ON vet_specialties(specialty_id, vet_id);
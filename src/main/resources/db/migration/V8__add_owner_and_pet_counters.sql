@@ -0,0 +1,18 @@
+-- Counters for list views, kept up to date by OwnerCounterListener and repaired by
+-- OwnerCounterReconciler. The counts are of the visits still in the visits table.
+ALTER TABLE owners ADD COLUMN pet_count INTEGER DEFAULT 0 NOT NULL;
+ALTER TABLE owners ADD COLUMN visit_count INTEGER DEFAULT 0 NOT NULL;
+ALTER TABLE owners ADD COLUMN last_visit_date DATE;
+ALTER TABLE pets ADD COLUMN visit_count INTEGER DEFAULT 0 NOT NULL;
+ALTER TABLE pets ADD COLUMN last_visit_date DATE;
+
+UPDATE pets SET visit_count = (SELECT COUNT(*) FROM visits v WHERE v.pet_id = pets.id),
+  last_visit_date = (SELECT MAX(v.visit_date) FROM visits v WHERE v.pet_id = pets.id);
+
+UPDATE owners SET pet_count = (SELECT COUNT(*) FROM pets p WHERE p.owner_id = owners.id),
+  visit_count = (SELECT COALESCE(SUM(p.visit_count), 0) FROM pets p WHERE p.owner_id = owners.id),
+  last_visit_date = (SELECT MAX(p.last_visit_date) FROM pets p WHERE p.owner_id = owners.id);
+
+-- sorting the REST owner list by activity
+CREATE INDEX owners_visit_count_idx ON owners(visit_count);
+CREATE INDEX owners_last_visit_date_idx ON owners(last_visit_date);
@@ -0,0 +1,13 @@
+-- Pre-rendered owner documents served by GET /rest/owners/{id}/details. The aggregate
+-- version is bumped by OwnerCounterListener whenever the owner, one of its pets or one
+-- of their visits changes; a snapshot is current while its version matches.
+ALTER TABLE owners ADD COLUMN aggregate_version BIGINT DEFAULT 0 NOT NULL;
+
+CREATE TABLE owner_snapshot (
+  owner_id INTEGER NOT NULL,
+  version BIGINT NOT NULL,
+  document TEXT NOT NULL,
+  built_at TIMESTAMP NOT NULL,
+  CONSTRAINT pk_owner_snapshot PRIMARY KEY (owner_id),
+  CONSTRAINT fk_owner_snapshot_owner FOREIGN KEY (owner_id) REFERENCES owners (id) ON DELETE CASCADE
+);
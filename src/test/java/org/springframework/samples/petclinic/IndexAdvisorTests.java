@@ -0,0 +1,351 @@
+package org.springframework.samples.petclinic;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.PetRepository;
+import org.springframework.samples.petclinic.owner.VisitFilter;
+import org.springframework.samples.petclinic.owner.VisitRepository;
+import org.springframework.samples.petclinic.owner.rest.OwnerFilter;
+import org.springframework.samples.petclinic.vet.SpecialtyRepository;
+import org.springframework.samples.petclinic.vet.VetRepository;
+
+/**
+ * Runs every repository query against a seeded dataset and explains each SELECT with
+ * its actual bind parameters. A full scan of a table with more than
+ * {@value #SCAN_THRESHOLD} rows fails the test unless the query is expected to read the
+ * whole table. The plans are written to {@code build/reports/index-advisor/report.txt}.
+ * <p>
+ * H2 cannot index expressions, so the case-insensitive contains filters are only
+ * indexed on PostgreSQL, see {@code db/vendor/postgresql/V7.1__add_name_search_indexes.sql}.
+ */
+// a database of its own, since ANALYZE commits the seeded rows, created by the Flyway
+// migrations rather than the test schema.sql
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+@Import(IndexAdvisorTests.ExplainingDataSourceConfiguration.class)
+class IndexAdvisorTests {
+
+	static final int SCAN_THRESHOLD = 1000;
+
+	private static final Pattern H2_SCAN = Pattern.compile("/\\* \\w+\\.(\\w+)\\.tableScan");
+
+	private static final Pattern POSTGRES_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+	private static final LocalDate FIRST_VISIT = LocalDate.of(2022, 1, 1);
+
+	private static final Path REPORT = Path.of(System.getProperty("petclinic.index-advisor.report",
+			"build/reports/index-advisor/report.txt"));
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private PetRepository pets;
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Autowired
+	private VetRepository vets;
+
+	@Autowired
+	private SpecialtyRepository specialties;
+
+	private final Map<String, Long> rowCounts = new HashMap<>();
+
+	@Test
+	void shouldNotScanLargeTables() throws IOException {
+		seed();
+		Map<String, Query> queries = new LinkedHashMap<>();
+		run(queries, "OwnerRepository.findPetTypes", null, () -> owners.findPetTypes());
+		run(queries, "OwnerRepository.findByLastName", null,
+				() -> owners.findByLastName("Davis", PageRequest.of(0, 5)));
+		run(queries, "OwnerRepository.findByIdCustom", null, () -> owners.findByIdCustom(42));
+		run(queries, "OwnerRepository.findById", null, () -> owners.findById(42));
+		run(queries, "OwnerRepository.findAll(Pageable)", "pages through all owners",
+				() -> owners.findAll(PageRequest.of(1, 5)));
+		run(queries, "OwnerRepository.findAll(city)", null,
+				() -> owners.findAll(new OwnerFilter(null, null, "City 7").toSpecification(), PageRequest.of(0, 5)));
+		run(queries, "OwnerRepository.findAll(firstNameContains)", "contains search, trigram index on PostgreSQL",
+				() -> owners.findAll(new OwnerFilter("eor", null, null).toSpecification(), PageRequest.of(0, 5)));
+		run(queries, "OwnerRepository.findAll(lastNameContains)", "contains search, trigram index on PostgreSQL",
+				() -> owners.findAll(new OwnerFilter(null, "avi", null).toSpecification(), PageRequest.of(0, 5)));
+		run(queries, "PetRepository.existsByIdAndOwnerId", null, () -> pets.existsByIdAndOwnerId(84, 42));
+		run(queries, "VisitRepository.findByPetIdOrderByDateDescIdDesc(Limit)", null,
+				() -> visits.findByPetIdOrderByDateDescIdDesc(84, Limit.of(3)));
+		run(queries, "VisitRepository.findLatestByPetIds", null,
+				() -> visits.findLatestByPetIds(List.of(84, 85), 3));
+		run(queries, "VisitRepository.findByPetIdOrderByDateDescIdDesc(Pageable)", null,
+				() -> visits.findByPetIdOrderByDateDescIdDesc(84, PageRequest.of(0, 10)));
+		run(queries, "VisitRepository.findFirstByPetIdAndVetIsNotNullOrderByDateDescIdDesc", null,
+				() -> visits.findFirstByPetIdAndVetIsNotNullOrderByDateDescIdDesc(84));
+		run(queries, "VisitRepository.findOldestDateBefore", null,
+				() -> visits.findOldestDateBefore(FIRST_VISIT.plusYears(1)));
+		run(queries, "VisitRepository.findSummaries", null,
+				() -> visits.findSummaries(new VisitFilter(null, null, null, null), null, null, 100));
+		run(queries, "VisitRepository.findSummaries(pet)", null,
+				() -> visits.findSummaries(new VisitFilter(84, null, null, null), null, null, 100));
+		run(queries, "VisitRepository.findSummaries(vet, dates)", null,
+				() -> visits.findSummaries(new VisitFilter(null, 7, FIRST_VISIT, FIRST_VISIT.plusMonths(1)), null,
+						null, 100));
+		run(queries, "VisitRepository.findSummaries(dates, cursor)", null,
+				() -> visits.findSummaries(new VisitFilter(null, null, FIRST_VISIT, FIRST_VISIT.plusMonths(6)),
+						FIRST_VISIT.plusMonths(2), 100, 100));
+		run(queries, "VetRepository.findAll", "lists all vets", () -> vets.findAll());
+		run(queries, "VetRepository.findAll(Pageable)", "pages through all vets",
+				() -> vets.findAll(PageRequest.of(1, 5)));
+		run(queries, "VetRepository.findBySpecialties_IdIn", null, () -> vets.findBySpecialties_IdIn(List.of(3)));
+		run(queries, "VetRepository.findBySpecialtiesIn", null,
+				() -> vets.findBySpecialtiesIn(List.of(specialties.getReferenceById(3))));
+		run(queries, "SpecialtyRepository.findAll", "lists all specialties", () -> specialties.findAll());
+
+		List<String> findings = new ArrayList<>();
+		StringBuilder report = new StringBuilder("Index advisor, full scans of tables over " + SCAN_THRESHOLD
+				+ " rows are flagged" + System.lineSeparator());
+		queries.forEach((name, query) -> {
+			report.append(System.lineSeparator()).append("== ").append(name).append(System.lineSeparator());
+			for (Explained explained : query.explained) {
+				report.append(explained.sql).append(System.lineSeparator()).append(explained.plan);
+				for (String table : scannedTables(explained.plan)) {
+					long rows = rowCount(table);
+					if (rows <= SCAN_THRESHOLD) {
+						continue;
+					}
+					String finding = "full scan of " + table + " (" + rows + " rows)";
+					if (query.expectedScan != null) {
+						report.append("   expected ").append(finding).append(": ").append(query.expectedScan);
+					}
+					else {
+						report.append("   FLAGGED ").append(finding);
+						findings.add(name + ": " + finding);
+					}
+					report.append(System.lineSeparator());
+				}
+			}
+		});
+		Files.createDirectories(REPORT.getParent());
+		Files.writeString(REPORT, report);
+
+		assertThat(findings).as("queries scanning large tables, see %s", REPORT.toAbsolutePath()).isEmpty();
+	}
+
+	private void run(Map<String, Query> queries, String name, String expectedScan, Runnable repositoryCall) {
+		// nothing may be served from the persistence context
+		entityManager.clear();
+		Query query = new Query(expectedScan);
+		ExplainingDataSourceConfiguration.current = query;
+		try {
+			repositoryCall.run();
+		}
+		finally {
+			ExplainingDataSourceConfiguration.current = null;
+		}
+		assertThat(query.explained).as("statements of %s", name).isNotEmpty();
+		queries.put(name, query);
+	}
+
+	private static List<String> scannedTables(String plan) {
+		List<String> tables = new ArrayList<>();
+		for (Pattern pattern : List.of(H2_SCAN, POSTGRES_SCAN)) {
+			Matcher matcher = pattern.matcher(plan);
+			while (matcher.find()) {
+				tables.add(matcher.group(1).toLowerCase(Locale.ROOT));
+			}
+		}
+		return tables;
+	}
+
+	private long rowCount(String table) {
+		return rowCounts.computeIfAbsent(table,
+				name -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + name, Long.class));
+	}
+
+	/**
+	 * 5000 owners in 100 cities with two pets each, 50 visits per pet over three years and
+	 * 2000 vets with one or two of 20 specialties.
+	 */
+	private void seed() {
+		jdbcTemplate.batchUpdate("INSERT INTO types (id, name) VALUES (?, ?)",
+				IntStream.rangeClosed(1, 6).mapToObj(id -> new Object[] { id, "type " + id }).toList());
+		jdbcTemplate.batchUpdate("INSERT INTO specialties (id, name) VALUES (?, ?)",
+				IntStream.rangeClosed(1, 20).mapToObj(id -> new Object[] { id, "specialty " + id }).toList());
+		jdbcTemplate.batchUpdate("INSERT INTO vets (id, first_name, last_name, salary) VALUES (?, ?, ?, 1000)",
+				IntStream.rangeClosed(1, 2000)
+					.mapToObj(id -> new Object[] { id, "Vet" + id, "Surname" + id % 300 })
+					.toList());
+		List<Object[]> vetSpecialties = new ArrayList<>();
+		for (int id = 1; id <= 2000; id++) {
+			vetSpecialties.add(new Object[] { id, id % 20 + 1 });
+			if (id % 2 == 1) {
+				vetSpecialties.add(new Object[] { id, (id + 7) % 20 + 1 });
+			}
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO vet_specialties (vet_id, specialty_id) VALUES (?, ?)", vetSpecialties);
+		jdbcTemplate.batchUpdate(
+				"INSERT INTO owners (id, first_name, last_name, address, city, telephone) VALUES (?, ?, ?, ?, ?, ?)",
+				IntStream.rangeClosed(1, 5000)
+					.mapToObj(id -> new Object[] { id, "George" + id % 400, (id % 50 == 0 ? "Davis" : "Name" + id % 900),
+							id + " Main St.", "City " + id % 100, "6085551023" })
+					.toList());
+		jdbcTemplate.batchUpdate(
+				"INSERT INTO pets (id, name, birth_date, type_id, owner_id) VALUES (?, ?, DATE '2020-01-01', ?, ?)",
+				IntStream.rangeClosed(1, 10000)
+					.mapToObj(id -> new Object[] { id, "Pet" + id, id % 6 + 1, (id + 1) / 2 })
+					.toList());
+		jdbcTemplate.batchUpdate(
+				"INSERT INTO visits (id, pet_id, visit_date, description, vet_id) VALUES (?, ?, ?, 'check-up', ?)",
+				IntStream.rangeClosed(1, 50000)
+					.mapToObj(id -> new Object[] { id, id % 10000 + 1, FIRST_VISIT.plusDays(id % 1095),
+							id % 5 == 0 ? null : id % 2000 + 1 })
+					.toList());
+		// the planners only prefer indexes once they know the table sizes
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	private record Explained(String sql, String plan) {
+	}
+
+	private static final class Query {
+
+		final String expectedScan;
+
+		final List<Explained> explained = new ArrayList<>();
+
+		Query(String expectedScan) {
+			this.expectedScan = expectedScan;
+		}
+
+	}
+
+	/**
+	 * Wraps the data source so that every SELECT prepared while a query of the test runs
+	 * is explained with the same parameters on the same connection.
+	 */
+	@TestConfiguration(proxyBeanMethods = false)
+	static class ExplainingDataSourceConfiguration {
+
+		static volatile Query current;
+
+		@Bean
+		static BeanPostProcessor explainingDataSource() {
+			return new BeanPostProcessor() {
+
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					if (bean instanceof DataSource dataSource && "dataSource".equals(beanName)) {
+						return new DelegatingDataSource(dataSource) {
+
+							@Override
+							public Connection getConnection() throws SQLException {
+								return explaining(super.getConnection());
+							}
+
+						};
+					}
+					return bean;
+				}
+
+			};
+		}
+
+		private static Connection explaining(Connection connection) {
+			return proxy(Connection.class, connection, (method, args) -> {
+				Object result = method.invoke(connection, args);
+				if (method.getName().equals("prepareStatement") && args[0] instanceof String sql
+						&& sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select")) {
+					return explaining(connection, sql, (PreparedStatement) result);
+				}
+				return result;
+			});
+		}
+
+		private static PreparedStatement explaining(Connection connection, String sql, PreparedStatement statement) {
+			Map<Object, Object[]> parameters = new LinkedHashMap<>();
+			Map<Object, Method> setters = new HashMap<>();
+			return proxy(PreparedStatement.class, statement, (method, args) -> {
+				if (method.getName().startsWith("set") && args != null && args.length >= 2
+						&& args[0] instanceof Integer index) {
+					parameters.put(index, args);
+					setters.put(index, method);
+				}
+				else if (method.getName().equals("executeQuery") && current != null) {
+					Query query = current;
+					try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+						for (Map.Entry<Object, Object[]> parameter : parameters.entrySet()) {
+							setters.get(parameter.getKey()).invoke(explain, parameter.getValue());
+						}
+						StringBuilder plan = new StringBuilder();
+						try (ResultSet rows = explain.executeQuery()) {
+							while (rows.next()) {
+								plan.append(rows.getString(1)).append(System.lineSeparator());
+							}
+						}
+						query.explained.add(new Explained(sql, plan.toString()));
+					}
+				}
+				return method.invoke(statement, args);
+			});
+		}
+
+		private static <T> T proxy(Class<T> type, T target, Invocation invocation) {
+			return type.cast(Proxy.newProxyInstance(IndexAdvisorTests.class.getClassLoader(), new Class<?>[] { type },
+					(proxy, method, args) -> {
+						try {
+							return invocation.invoke(method, args);
+						}
+						catch (InvocationTargetException ex) {
+							throw ex.getTargetException();
+						}
+					}));
+		}
+
+		private interface Invocation {
+
+			Object invoke(Method method, Object[] args) throws Throwable;
+
+		}
+
+	}
+
+}
@@ -0,0 +1,107 @@
+package org.springframework.samples.petclinic;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.support.MaxStatements;
+import org.springframework.samples.petclinic.support.StatementCounter;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Renders every view with open-in-view disabled and lazy loading outside of sessions
+ * forbidden, so any view touching an association its controller did not fetch fails
+ * with a {@link org.hibernate.LazyInitializationException}. The main views also have a
+ * statement budget, so that a template or mapper change that starts loading an
+ * association per row shows up as a failing test rather than as a slow page.
+ */
+@SpringBootTest(properties = { "spring.jpa.open-in-view=false",
+		"spring.jpa.properties.hibernate.enable_lazy_load_no_trans=false", "spring.kafka.consumer.group-id=tests",
+		"spring.kafka.listener.auto-startup=false", StatementCounter.ENABLED })
+@AutoConfigureMockMvc
+@TestInstance(Lifecycle.PER_CLASS)
+class OpenInViewDisabledIntegrationTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private MeterRegistry registry;
+
+	@BeforeAll
+	void seed(@Autowired JdbcTemplate jdbcTemplate) {
+		// plain SQL, inserting visits through Hibernate would publish them to Kafka
+		jdbcTemplate.batchUpdate("INSERT INTO types (id, name) VALUES (1, 'cat')",
+				"INSERT INTO specialties (id, name) VALUES (1, 'surgery')",
+				"INSERT INTO vets (id, first_name, last_name, salary) VALUES (1, 'James', 'Carter', 1000)",
+				"INSERT INTO vet_specialties (vet_id, specialty_id) VALUES (1, 1)",
+				"INSERT INTO owners (id, first_name, last_name, address, city, telephone) "
+						+ "VALUES (1, 'George', 'Franklin', '110 W. Liberty St.', 'Madison', '6085551023')",
+				"INSERT INTO owners (id, first_name, last_name, address, city, telephone) "
+						+ "VALUES (2, 'Betty', 'Frank', '638 Cardinal Ave.', 'Sun Prairie', '6085551749')",
+				"INSERT INTO pets (id, name, birth_date, type_id, owner_id) VALUES (1, 'Leo', '2020-09-07', 1, 1)",
+				"INSERT INTO pets (id, name, birth_date, type_id, owner_id) VALUES (2, 'Basil', '2021-08-06', 1, 2)",
+				"INSERT INTO visits (id, pet_id, visit_date, description, vet_id) "
+						+ "VALUES (1, 1, '2024-03-01', 'rabies shot', 1)",
+				"INSERT INTO visits (id, pet_id, visit_date, description, vet_id) "
+						+ "VALUES (2, 1, '2024-03-04', 'neutered', NULL)");
+	}
+
+	@Test
+	void shouldRenderEveryViewWithoutOpenSession() throws Exception {
+		for (String view : new String[] { "/owners?lastName=Fran", "/owners/1", "/owners/1/edit",
+				"/owners/1/pets/new", "/owners/1/pets/1/edit", "/owners/1/pets/1/visits/new",
+				"/owners/1/pets/1/visits", "/vets.html", "/vets", "/rest/owners/1", "/rest/vets",
+				"/rest/vets/by-specialty?specialtyIds=1", "/rest/visits" }) {
+			mockMvc.perform(get(view)).andExpect(status().isOk());
+		}
+	}
+
+	@Test
+	@MaxStatements(2)
+	void shouldFindOwnersWithTheirPetsInOneQueryPerPage() throws Exception {
+		mockMvc.perform(get("/owners").param("lastName", "Fran")).andExpect(status().isOk());
+	}
+
+	@Test
+	@MaxStatements(2) // the owner with its pets, then the latest visits of its one pet
+	void shouldShowOwnerWithLatestVisitsOfEachPet() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}", 1)).andExpect(status().isOk());
+	}
+
+	@Test
+	@MaxStatements(2)
+	void shouldShowPetForm() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/edit", 1, 1)).andExpect(status().isOk());
+	}
+
+	@Test
+	@MaxStatements(2)
+	void shouldShowVisitForm() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits/new", 1, 1)).andExpect(status().isOk());
+	}
+
+	@Test
+	@MaxStatements(4) // the last page also loads the vets for archived visits, unless cached
+	void shouldShowVisitHistory() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits", 1, 1)).andExpect(status().isOk());
+	}
+
+	@Test
+	void shouldRecordConnectionHoldTimePerRequest() throws Exception {
+		mockMvc.perform(get("/owners/{ownerId}", 1)).andExpect(status().isOk());
+
+		assertThat(registry.get("petclinic.http.connection.hold").tag("uri", "/owners/{ownerId}").timer().count())
+			.isPositive();
+	}
+
+}
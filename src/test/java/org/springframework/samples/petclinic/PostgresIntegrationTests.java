@@ -18,9 +18,12 @@ package org.springframework.samples.petclinic;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.flywaydb.core.Flyway;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledInNativeImage;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.context.event.ApplicationPreparedEvent;
@@ -34,20 +37,37 @@ import org.springframework.core.env.EnumerablePropertySource;
 import org.springframework.core.env.PropertySource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.RequestEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.owner.BulkLoadReport;
+import org.springframework.samples.petclinic.owner.BulkLoader;
+import org.springframework.samples.petclinic.owner.VisitPartitionMaintenance;
+import org.springframework.samples.petclinic.system.ShardIdAllocator;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
 import org.springframework.samples.petclinic.vet.VetRepository;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.aot.DisabledInAotMode;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
+import javax.sql.DataSource;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "spring.docker.compose.skip.in-tests=false", //
-		"spring.docker.compose.profiles.active=postgres" })
+		"spring.docker.compose.profiles.active=postgres", //
+		"spring.flyway.locations=classpath:db/migration,classpath:db/vendor/{vendor}", //
+		"spring.kafka.consumer.group-id=tests", "spring.kafka.listener.auto-startup=false" })
 @ActiveProfiles("postgres")
 @DisabledInNativeImage
 @DisabledInAotMode
@@ -62,6 +82,24 @@ public class PostgresIntegrationTests {
 	@Autowired
 	private RestTemplateBuilder builder;
 
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private VisitPartitionMaintenance partitionMaintenance;
+
+	@Autowired
+	private ObjectProvider<Flyway> flyway;
+
+	@TempDir
+	Path directory;
+
 	@BeforeAll
 	static void available() {
 	}
@@ -89,6 +127,116 @@ public class PostgresIntegrationTests {
 		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
 	}
 
+	@Test
+	void testVisitsArePartitionedByMonth() {
+		assertThat(jdbcTemplate.queryForObject("SELECT relkind FROM pg_class WHERE oid = 'visits'::regclass",
+				String.class))
+			.isEqualTo("p");
+		YearMonth now = YearMonth.now();
+		assertThat(jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+				+ "WHERE i.inhparent = 'visits'::regclass", String.class))
+			.contains("visits_default", partition(now), partition(now.plusMonths(3)));
+
+		Integer typeId = jdbcTemplate.queryForObject("INSERT INTO types (name) VALUES ('partition') RETURNING id",
+				Integer.class);
+		Integer ownerId = jdbcTemplate.queryForObject(
+				"INSERT INTO owners (first_name, last_name) VALUES ('Part', 'Ition') RETURNING id", Integer.class);
+		Integer petId = jdbcTemplate.queryForObject(
+				"INSERT INTO pets (name, type_id, owner_id) VALUES ('Leo', ?, ?) RETURNING id", Integer.class, typeId,
+				ownerId);
+		Integer visitId = jdbcTemplate.queryForObject(
+				"INSERT INTO visits (pet_id, visit_date, description) VALUES (?, ?, 'checkup') RETURNING id",
+				Integer.class, petId, now.atDay(1));
+		assertThat(jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM visits WHERE id = ?",
+				String.class, visitId))
+			.isEqualTo(partition(now));
+		jdbcTemplate.update("DELETE FROM visits WHERE id = ?", visitId);
+		jdbcTemplate.update("DELETE FROM pets WHERE id = ?", petId);
+		jdbcTemplate.update("DELETE FROM owners WHERE id = ?", ownerId);
+		jdbcTemplate.update("DELETE FROM types WHERE id = ?", typeId);
+	}
+
+	@Test
+	void testBulkLoadCopiesOnce() throws IOException {
+		Files.writeString(directory.resolve("owners.csv"),
+				"legacy_id,first_name,last_name,address,city,telephone\n"
+						+ "o1,Ada,Copy,\"1 Main St, Apt 2\",Madison,6085551023\n" + "o2,Bob,Copy,,Madison,6085551024\n");
+		Files.writeString(directory.resolve("pets.csv"), "legacy_id,owner_legacy_id,name,birth_date,type\n"
+				+ "p1,o1,Copy Leo,2020-09-07,cat\n" + "p2,o2,Copy Basil,2021-01-02,dog\n");
+		Files.writeString(directory.resolve("visits.csv"),
+				"legacy_id,pet_legacy_id,vet_legacy_id,visit_date,description\n"
+						+ "x1,p1,,2024-03-01,\"said \"\"hello\"\",\nthen slept\"\n");
+		BulkLoader loader = new BulkLoader(jdbcTemplate, transactionManager);
+		try {
+			BulkLoadReport report = loader.load(directory);
+			assertThat(report.tables()).extracting(BulkLoadReport.TableLoad::table, BulkLoadReport.TableLoad::rows)
+				.containsExactly(tuple("owners", 2L), tuple("pets", 2L), tuple("visits", 1L));
+			assertThat(loader.load(directory).tables()).isEmpty();
+			assertThat(jdbcTemplate.queryForList("SELECT o.address FROM owners o JOIN pets p ON p.owner_id = o.id "
+					+ "WHERE o.last_name = 'Copy' ORDER BY p.name DESC", String.class))
+				.containsExactly("1 Main St, Apt 2", null);
+			assertThat(jdbcTemplate.queryForObject("SELECT v.description FROM visits v JOIN pets p ON p.id = v.pet_id "
+					+ "WHERE p.name = 'Copy Leo'", String.class))
+				.isEqualTo("said \"hello\",\nthen slept");
+		}
+		finally {
+			jdbcTemplate.update("DELETE FROM visits WHERE pet_id IN (SELECT id FROM pets WHERE name LIKE 'Copy%')");
+			jdbcTemplate.update("DELETE FROM pets WHERE name LIKE 'Copy%'");
+			jdbcTemplate.update("DELETE FROM owners WHERE last_name = 'Copy'");
+			jdbcTemplate.update("DELETE FROM bulk_load_ids");
+			jdbcTemplate.update("DELETE FROM bulk_load_history");
+		}
+	}
+
+	@Test
+	void testShardIdsStartAboveTheSeededRows() {
+		// the seed and V6.1 leave the sequences with setval(..., false), last_value not handed out yet
+		String nextValue = "SELECT CASE WHEN is_called THEN last_value + 50 ELSE last_value END FROM owners_seq";
+		Long before = jdbcTemplate.queryForObject(nextValue, Long.class);
+		ShardIdAllocator allocator = new ShardIdAllocator(
+				new ShardRoutingDataSource(List.of(dataSource), 100_000_000L), flyway);
+
+		allocator.afterSingletonsInstantiated();
+		allocator.afterSingletonsInstantiated();
+
+		assertThat(jdbcTemplate.queryForObject(nextValue, Long.class)).isEqualTo(before);
+		Long top = jdbcTemplate.queryForObject("SELECT nextval('owners_seq')", Long.class);
+		assertThat(top - 49).isGreaterThan(jdbcTemplate.queryForObject("SELECT max(id) FROM owners", Long.class));
+	}
+
+	@Test
+	void testPartitionMaintenanceMovesVisitsOutOfTheDefaultPartition() {
+		YearMonth month = YearMonth.now().plusMonths(3);
+		jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition(month));
+		Integer typeId = jdbcTemplate.queryForObject("INSERT INTO types (name) VALUES ('default') RETURNING id",
+				Integer.class);
+		Integer ownerId = jdbcTemplate.queryForObject(
+				"INSERT INTO owners (first_name, last_name) VALUES ('De', 'Fault') RETURNING id", Integer.class);
+		Integer petId = jdbcTemplate.queryForObject(
+				"INSERT INTO pets (name, type_id, owner_id) VALUES ('Leo', ?, ?) RETURNING id", Integer.class, typeId,
+				ownerId);
+		Integer visitId = jdbcTemplate.queryForObject(
+				"INSERT INTO visits (pet_id, visit_date, description) VALUES (?, ?, 'early') RETURNING id",
+				Integer.class, petId, month.atDay(1));
+		assertThat(jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM visits WHERE id = ?",
+				String.class, visitId))
+			.isEqualTo("visits_default");
+
+		partitionMaintenance.maintain();
+
+		assertThat(jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM visits WHERE id = ?",
+				String.class, visitId))
+			.isEqualTo(partition(month));
+		jdbcTemplate.update("DELETE FROM visits WHERE id = ?", visitId);
+		jdbcTemplate.update("DELETE FROM pets WHERE id = ?", petId);
+		jdbcTemplate.update("DELETE FROM owners WHERE id = ?", ownerId);
+		jdbcTemplate.update("DELETE FROM types WHERE id = ?", typeId);
+	}
+
+	private static String partition(YearMonth month) {
+		return "visits_p" + month.format(DateTimeFormatter.ofPattern("yyyy_MM"));
+	}
+
 	static class PropertiesLogger implements ApplicationListener<ApplicationPreparedEvent> {
 
 		private static final Log log = LogFactory.getLog(PropertiesLogger.class);
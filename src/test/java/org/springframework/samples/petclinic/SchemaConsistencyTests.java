@@ -0,0 +1,54 @@
+package org.springframework.samples.petclinic;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Checks that the test {@code schema.sql} creates the same tables, columns and
+ * sequences on H2 as the Flyway migrations do, so that tests running on it see the
+ * schema production gets. The PostgreSQL-only migrations, such as the monthly
+ * partitioning of {@code visits}, are checked by {@link PostgresIntegrationTests}.
+ */
+class SchemaConsistencyTests {
+
+	private static final String COLUMNS = "SELECT LOWER(TABLE_NAME) || '.' || LOWER(COLUMN_NAME) FROM INFORMATION_SCHEMA.COLUMNS "
+			+ "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME <> 'flyway_schema_history' ORDER BY 1";
+
+	private static final String SEQUENCES = "SELECT LOWER(SEQUENCE_NAME) || ' ' || INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES "
+			+ "WHERE SEQUENCE_SCHEMA = 'PUBLIC' ORDER BY 1";
+
+	@Test
+	void shouldCreateTheSchemaOfTheMigrations() {
+		DataSource migrated = database();
+		Flyway.configure()
+			.dataSource(migrated)
+			.locations("classpath:db/migration", "classpath:db/vendor/h2")
+			.failOnMissingLocations(false)
+			.load()
+			.migrate();
+		DataSource scripted = database();
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(scripted);
+
+		List<String> columns = new JdbcTemplate(migrated).queryForList(COLUMNS, String.class);
+		assertThat(columns).contains("visits.version", "visit_rollup_vet_day.visit_count");
+		assertThat(new JdbcTemplate(scripted).queryForList(COLUMNS, String.class)).isEqualTo(columns);
+		assertThat(new JdbcTemplate(scripted).queryForList(SEQUENCES, String.class))
+			.isEqualTo(new JdbcTemplate(migrated).queryForList(SEQUENCES, String.class));
+	}
+
+	private static DataSource database() {
+		return new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+	}
+
+}
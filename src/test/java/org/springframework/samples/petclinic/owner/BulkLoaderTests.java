@@ -0,0 +1,204 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test class for {@link BulkLoader}, on H2 and so through its batched insert fallback.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BulkLoaderTests {
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@TempDir
+	private Path directory;
+
+	private BulkLoader loader;
+
+	@BeforeEach
+	void setUp() {
+		loader = new BulkLoader(jdbcTemplate, transactionManager);
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			PetType lizard = new PetType();
+			lizard.setName("bulk-lizard");
+			entityManager.persist(lizard);
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		jdbcTemplate.update("DELETE FROM visits WHERE pet_id IN (SELECT id FROM pets WHERE name LIKE 'Bulk%')");
+		jdbcTemplate.update("DELETE FROM pets WHERE name LIKE 'Bulk%'");
+		jdbcTemplate.update("DELETE FROM owners WHERE last_name = 'Bulk'");
+		jdbcTemplate.update("DELETE FROM vets WHERE last_name = 'Bulk'");
+		jdbcTemplate.update("DELETE FROM types WHERE name = 'bulk-lizard'");
+		jdbcTemplate.update("DELETE FROM bulk_load_ids");
+		jdbcTemplate.update("DELETE FROM bulk_load_history");
+	}
+
+	@Test
+	void shouldLoadAndResolveReferences() throws IOException {
+		write("vets.csv", "legacy_id,first_name,last_name", "v1,Helen,Bulk");
+		write("owners.csv", "legacy_id, first_name, last_name, address, city, telephone",
+				"o1,Ada,Bulk,\"1 Main St, Apt 2\",Madison,6085551023", "o2,Bob,Bulk,,Madison,6085551024");
+		write("pets.csv", "legacy_id,owner_legacy_id,name,birth_date,type", "p1,o1,Bulk Leo,2020-09-07,bulk-lizard",
+				"p2,o2,Bulk Basil,2021-01-02,bulk-lizard");
+		write("visits.csv", "legacy_id,pet_legacy_id,vet_legacy_id,visit_date,description",
+				"x1,p1,v1,2024-03-01,\"said \"\"hello\"\",\nthen slept\"", "x2,p1,,2024-04-01,shots",
+				"x3,p2,v1,2024-05-01,\"\"");
+
+		BulkLoadReport report = loader.load(directory);
+
+		assertThat(report.tables()).extracting(BulkLoadReport.TableLoad::table, BulkLoadReport.TableLoad::rows)
+			.containsExactly(tuple("vets", 1L),
+					tuple("owners", 2L), tuple("pets", 2L),
+					tuple("visits", 3L));
+		assertThat(report.rows()).isEqualTo(8);
+		assertThat(report.rowsPerSecond()).isPositive();
+		assertThat(report.firstVisit()).isEqualTo(LocalDate.of(2024, 3, 1));
+		assertThat(report.lastVisit()).isEqualTo(LocalDate.of(2024, 5, 1));
+
+		List<Map<String, Object>> pets = jdbcTemplate.queryForList("SELECT o.first_name, o.address, p.name "
+				+ "FROM owners o JOIN pets p ON p.owner_id = o.id JOIN types t ON t.id = p.type_id "
+				+ "WHERE o.last_name = 'Bulk' AND t.name = 'bulk-lizard' ORDER BY o.first_name");
+		assertThat(pets).extracting(row -> row.get("NAME")).containsExactly("Bulk Leo", "Bulk Basil");
+		assertThat(pets).extracting(row -> row.get("ADDRESS")).containsExactly("1 Main St, Apt 2", null);
+		List<Map<String, Object>> visits = jdbcTemplate
+			.queryForList("SELECT p.name, v.description, vet.first_name FROM visits v JOIN pets p ON p.id = v.pet_id "
+					+ "LEFT JOIN vets vet ON vet.id = v.vet_id WHERE p.name LIKE 'Bulk%' ORDER BY v.visit_date");
+		assertThat(visits).extracting(row -> row.get("DESCRIPTION"))
+			.containsExactly("said \"hello\",\nthen slept", "shots", "");
+		assertThat(visits).extracting(row -> row.get("FIRST_NAME")).containsExactly("Helen", null, "Helen");
+		assertThat(visits).extracting(row -> row.get("NAME")).containsExactly("Bulk Leo", "Bulk Leo", "Bulk Basil");
+	}
+
+	@Test
+	void shouldNotCollideWithIdsHandedOutByHibernate() throws IOException {
+		write("owners.csv", "legacy_id,first_name,last_name,address,city,telephone",
+				"o1,Ada,Bulk,1 Main St,Madison,6085551023");
+		loader.load(directory);
+
+		Owner owner = new TransactionTemplate(transactionManager).execute(status -> {
+			Owner other = new Owner();
+			other.setFirstName("Eve");
+			other.setLastName("Bulk");
+			other.setAddress("2 Main St");
+			other.setCity("Madison");
+			other.setTelephone("6085551025");
+			entityManager.persist(other);
+			return other;
+		});
+		write("owners.csv", "legacy_id,first_name,last_name,address,city,telephone",
+				"o1,Ada,Bulk,1 Main St,Madison,6085551023", "o2,Bob,Bulk,3 Main St,Madison,6085551024");
+		loader.load(directory);
+
+		assertThat(jdbcTemplate.queryForList("SELECT id FROM owners WHERE last_name = 'Bulk'", Integer.class))
+			.hasSize(3)
+			.doesNotHaveDuplicates()
+			.contains(owner.getId());
+	}
+
+	@Test
+	void shouldSkipFilesAndRowsLoadedBefore() throws IOException {
+		write("vets.csv", "legacy_id,first_name,last_name", "v1,Helen,Bulk");
+		write("owners.csv", "legacy_id,first_name,last_name,address,city,telephone",
+				"o1,Ada,Bulk,1 Main St,Madison,6085551023");
+		loader.load(directory);
+
+		assertThat(loader.load(directory).tables()).isEmpty();
+
+		write("owners.csv", "legacy_id,first_name,last_name,address,city,telephone",
+				"o1,Ada,Bulk,1 Main St,Madison,6085551023", "o2,Bob,Bulk,3 Main St,Madison,6085551024");
+		assertThat(loader.load(directory).tables())
+			.extracting(BulkLoadReport.TableLoad::table, BulkLoadReport.TableLoad::rows)
+			.containsExactly(tuple("owners", 1L));
+		assertThat(jdbcTemplate.queryForList("SELECT first_name FROM owners WHERE last_name = 'Bulk' ORDER BY 1",
+				String.class))
+			.containsExactly("Ada", "Bob");
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM vets WHERE last_name = 'Bulk'", Long.class))
+			.isOne();
+	}
+
+	@Test
+	void shouldResolveReferencesToRowsOfAnEarlierLoad() throws IOException {
+		write("vets.csv", "legacy_id,first_name,last_name", "v1,Helen,Bulk");
+		write("owners.csv", "legacy_id,first_name,last_name,address,city,telephone",
+				"o1,Ada,Bulk,1 Main St,Madison,6085551023");
+		loader.load(directory);
+		Files.delete(directory.resolve("vets.csv"));
+		Files.delete(directory.resolve("owners.csv"));
+		write("pets.csv", "legacy_id,owner_legacy_id,name,birth_date,type", "p1,o1,Bulk Leo,2020-09-07,bulk-lizard");
+		loader.load(directory);
+		Files.delete(directory.resolve("pets.csv"));
+		write("visits.csv", "legacy_id,pet_legacy_id,vet_legacy_id,visit_date,description",
+				"x1,p1,v1,2024-03-01,shots");
+
+		assertThat(loader.load(directory).rows()).isOne();
+		assertThat(jdbcTemplate.queryForMap("SELECT o.first_name AS owner, p.name AS pet, vet.first_name AS vet "
+				+ "FROM visits v JOIN pets p ON p.id = v.pet_id JOIN owners o ON o.id = p.owner_id "
+				+ "JOIN vets vet ON vet.id = v.vet_id WHERE p.name = 'Bulk Leo'"))
+			.containsEntry("OWNER", "Ada")
+			.containsEntry("PET", "Bulk Leo")
+			.containsEntry("VET", "Helen");
+	}
+
+	@Test
+	void shouldLoadNothingWhenReferencesAreUnresolved() throws IOException {
+		write("owners.csv", "legacy_id,first_name,last_name,address,city,telephone",
+				"o1,Ada,Bulk,1 Main St,Madison,6085551023");
+		write("pets.csv", "legacy_id,owner_legacy_id,name,birth_date,type", "p1,o1,Bulk Leo,2020-09-07,bulk-lizard",
+				"p2,o9,Bulk Basil,2021-01-02,bulk-lizard");
+
+		assertThatIllegalArgumentException().isThrownBy(() -> loader.load(directory))
+			.withMessageContaining("1 pets of an unknown owner");
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM owners WHERE last_name = 'Bulk'", Long.class))
+			.isZero();
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bulk_load_history", Long.class)).isZero();
+	}
+
+	@Test
+	void shouldRejectUnexpectedColumns() throws IOException {
+		write("vets.csv", "legacy_id,last_name,first_name", "v1,Bulk,Helen");
+
+		assertThatIllegalArgumentException().isThrownBy(() -> loader.load(directory))
+			.withMessageContaining("legacy_id,first_name,last_name");
+	}
+
+	private void write(String file, String... lines) throws IOException {
+		Files.writeString(directory.resolve(file), String.join("\n", lines) + "\n");
+	}
+
+}
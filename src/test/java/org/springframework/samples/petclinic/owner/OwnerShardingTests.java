@@ -0,0 +1,229 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.Repository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.system.ShardIdAllocator;
+import org.springframework.samples.petclinic.system.ShardRoutingDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test class for the {@link OwnerRepository} spread over three in-memory shards.
+ */
+@DataJpaTest(
+		properties = "petclinic.sharding.urls=jdbc:h2:mem:owner-shard-1;DB_CLOSE_DELAY=-1,"
+				+ "jdbc:h2:mem:owner-shard-2;DB_CLOSE_DELAY=-1",
+		includeFilters = @Filter(type = FilterType.REGEX, pattern = ".*\\.(Owner)?ShardingConfiguration"))
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OwnerShardingTests {
+
+	private static final int TYPE_ID = 990;
+
+	private static final int NEW_TYPE_ID = 991;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private ShardIdAllocator allocator;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@BeforeEach
+	void setUp() {
+		// reference data is copied to every shard
+		onEachShard(shard -> jdbcTemplate.update("INSERT INTO types (id, name) VALUES (?, ?)", TYPE_ID, "lizard"));
+	}
+
+	@AfterEach
+	void tearDown() {
+		onEachShard(shard -> {
+			jdbcTemplate.update("DELETE FROM pets WHERE owner_id IN (SELECT id FROM owners WHERE last_name = ?)",
+					"Sharded");
+			jdbcTemplate.update("DELETE FROM owners WHERE last_name = ?", "Sharded");
+			jdbcTemplate.update("DELETE FROM types WHERE id IN (?, ?)", TYPE_ID, NEW_TYPE_ID);
+		});
+	}
+
+	@Test
+	void shouldSpreadNewOwnersOverShards() {
+		assertThat(allocator.shardCount()).isEqualTo(3);
+		Set<Integer> shards = new HashSet<>();
+		for (String firstName : List.of("Ada", "Bea", "Cy")) {
+			Owner owner = owners.save(owner(firstName));
+			int shard = allocator.shardOf(owner.getId());
+			shards.add(shard);
+			assertThat(allocator.shardOf(owner.getPets().get(0).getId())).isEqualTo(shard);
+			for (int other = 0; other < 3; other++) {
+				Integer rows = ShardRoutingDataSource.callOn(other, () -> jdbcTemplate
+					.queryForObject("SELECT COUNT(*) FROM owners WHERE id = ?", Integer.class, owner.getId()));
+				assertThat(rows).isEqualTo(other == shard ? 1 : 0);
+			}
+			assertThat(owners.findById(owner.getId())).get()
+				.extracting(Owner::getFirstName)
+				.isEqualTo(firstName);
+		}
+		assertThat(shards).containsExactlyInAnyOrder(0, 1, 2);
+	}
+
+	@Test
+	void shouldUpdateOwnerOnItsShard() {
+		Owner owner = owners.save(owner("Ada"));
+		while (allocator.shardOf(owner.getId()) == 0) {
+			owner = owners.save(owner("Ada"));
+		}
+		Owner loaded = owners.findById(owner.getId()).orElseThrow();
+		Pet pet = new Pet();
+		pet.setName("Iggy");
+		pet.setBirthDate(LocalDate.of(2021, 4, 1));
+		pet.setType(loaded.getPets().get(0).getType());
+		loaded.addPet(pet);
+		owners.save(loaded);
+
+		Owner reloaded = owners.findByIdCustom(owner.getId());
+		assertThat(reloaded.getPets()).extracting(Pet::getName).containsExactlyInAnyOrder("Leo", "Iggy");
+		assertThat(reloaded.getPets()).allMatch(p -> allocator.shardOf(p.getId()) == allocator.shardOf(reloaded.getId()));
+	}
+
+	@Test
+	void shouldMergeSearchResultsAcrossShards() {
+		List<Owner> saved = new ArrayList<>();
+		for (String firstName : List.of("Eve", "Cy", "Ada", "Dot", "Bea")) {
+			saved.add(owners.save(owner(firstName)));
+		}
+		List<Integer> ids = saved.stream().map(Owner::getId).sorted().toList();
+
+		Page<Owner> page = owners.findByLastName("Sharded", PageRequest.of(1, 2, Sort.by("id")));
+		assertThat(page.getTotalElements()).isEqualTo(5);
+		assertThat(page.getContent()).extracting(Owner::getId).containsExactlyElementsOf(ids.subList(2, 4));
+
+		Specification<Owner> sharded = (root, query, cb) -> cb.equal(root.get("lastName"), "Sharded");
+		Page<Owner> first = owners.findAll(sharded, PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "id")));
+		assertThat(first.getContent()).extracting(Owner::getId)
+			.containsExactlyElementsOf(ids.stream().sorted(Comparator.reverseOrder()).limit(3).toList());
+		assertThat(owners.count(sharded)).isEqualTo(5);
+		assertThat(owners.findPetTypes()).extracting(PetType::getId).containsOnlyOnce(TYPE_ID);
+	}
+
+	@Test
+	void shouldRejectSortingMergedResultsByStrings() {
+		assertThatThrownBy(() -> owners.findByLastName("Sharded", PageRequest.of(0, 2, Sort.by("firstName"))))
+			.isInstanceOf(UnsupportedOperationException.class)
+			.hasMessageContaining("firstName");
+	}
+
+	@Test
+	void shouldCopyReferenceDataOnStartupWithoutSkippingIds() {
+		ShardRoutingDataSource.callOn(0, () -> {
+			jdbcTemplate.update("INSERT INTO types (id, name) VALUES (?, ?)", NEW_TYPE_ID, "gecko");
+			return jdbcTemplate.update("UPDATE types SET name = ? WHERE id = ?", "iguana", TYPE_ID);
+		});
+		List<Long> sequences = onEachShard(() -> jdbcTemplate.queryForObject(
+				"SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'OWNERS_SEQ'", Long.class));
+
+		// as on the next start
+		allocator.afterSingletonsInstantiated();
+
+		assertThat(onEachShard(() -> jdbcTemplate.queryForList("SELECT name FROM types WHERE id IN (?, ?) "
+				+ "ORDER BY id", String.class, TYPE_ID, NEW_TYPE_ID)))
+			.containsOnly(List.of("iguana", "gecko"));
+		assertThat(onEachShard(() -> jdbcTemplate.queryForObject(
+				"SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'OWNERS_SEQ'", Long.class)))
+			.isEqualTo(sequences);
+	}
+
+	@Test
+	void shouldLoadOwnersOfOneShardInTheTransactionOfThatShard() {
+		Owner owner = owners.save(owner("Ada"));
+		while (allocator.shardOf(owner.getId()) == 0) {
+			owner = owners.save(owner("Ada"));
+		}
+		int id = owner.getId();
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		Boolean managed = ShardRoutingDataSource.callOn(allocator.shardOf(id), () -> transaction.execute(
+				status -> entityManager.contains(owners.findWithPetsByIdIn(List.of(id)).get(0))));
+		assertThat(managed).isTrue();
+	}
+
+	@Test
+	void shouldRejectRepositoryMethodsWhoseResultsCannotBeMerged() {
+		OwnerShardRouter.checkMergeable(OwnerRepository.class);
+		assertThatIllegalStateException().isThrownBy(() -> OwnerShardRouter.checkMergeable(OwnersByCity.class))
+			.withMessageContaining("findByCity");
+	}
+
+	private <T> List<T> onEachShard(Supplier<T> query) {
+		return ShardRoutingDataSource.callOnEach(jdbcTemplate.getDataSource(), query);
+	}
+
+	private void onEachShard(IntConsumer action) {
+		for (int shard = 0; shard < allocator.shardCount(); shard++) {
+			int current = shard;
+			ShardRoutingDataSource.callOn(shard, () -> {
+				action.accept(current);
+				return null;
+			});
+		}
+	}
+
+	private static Owner owner(String firstName) {
+		PetType lizard = new PetType();
+		lizard.setId(TYPE_ID);
+		Pet pet = new Pet();
+		pet.setName("Leo");
+		pet.setBirthDate(LocalDate.of(2020, 9, 7));
+		pet.setType(lizard);
+		Owner owner = new Owner();
+		owner.setFirstName(firstName);
+		owner.setLastName("Sharded");
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		owner.addPet(pet);
+		return owner;
+	}
+
+	interface OwnersByCity extends Repository<Owner, Integer> {
+
+		Set<Owner> findByCity(String city);
+
+	}
+
+}
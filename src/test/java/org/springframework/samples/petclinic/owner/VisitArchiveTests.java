@@ -0,0 +1,82 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for {@link VisitArchive}
+ */
+class VisitArchiveTests {
+
+	private static final VisitFilter ALL = new VisitFilter(null, null, null, null);
+
+	@TempDir
+	Path directory;
+
+	private VisitArchive archive;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		archive = new VisitArchive(directory);
+		archive.append(YearMonth.of(2020, 2), List.of(visit(2, "2020-02-10", 1, 1), visit(1, "2020-02-03", 2, 1)));
+		archive.append(YearMonth.of(2020, 1), List.of(visit(3, "2020-01-15", 1, 2), visit(4, "2020-01-15", 2, null)));
+	}
+
+	@Test
+	void shouldPageAcrossSegmentsInDateOrder() {
+		List<VisitSummary> first = archive.findSummaries(ALL, null, null, 3);
+		VisitSummary last = first.get(2);
+		List<VisitSummary> second = archive.findSummaries(ALL, last.date(), last.id(), 3);
+
+		assertThat(first).extracting(VisitSummary::id).containsExactly(3, 4, 1);
+		assertThat(second).extracting(VisitSummary::id).containsExactly(2);
+	}
+
+	@Test
+	void shouldFilterByPetVetAndDate() {
+		assertThat(archive.findSummaries(new VisitFilter(1, null, null, null), null, null, 10))
+			.extracting(VisitSummary::id)
+			.containsExactly(3, 2);
+		assertThat(archive.findSummaries(new VisitFilter(null, 1, LocalDate.parse("2020-02-05"), null), null, null, 10))
+			.extracting(VisitSummary::id)
+			.containsExactly(2);
+	}
+
+	@Test
+	void shouldFindLatestVisitsOfPet() {
+		assertThat(archive.findLatestByPet(2, null, null, 1)).extracting(VisitSummary::id).containsExactly(1);
+	}
+
+	@Test
+	void shouldPageLatestVisitsOfPetBackwards() {
+		List<VisitSummary> first = archive.findLatestByPet(1, null, null, 1);
+		VisitSummary last = first.get(0);
+
+		assertThat(first).extracting(VisitSummary::id).containsExactly(2);
+		assertThat(archive.findLatestByPet(1, last.date(), last.id(), 10)).extracting(VisitSummary::id)
+			.containsExactly(3);
+	}
+
+	@Test
+	void shouldReloadSegmentsFromDisk() throws IOException {
+		VisitArchive reopened = new VisitArchive(directory);
+		reopened.load();
+
+		assertThat(reopened.segmentCount()).isEqualTo(2);
+		assertThat(reopened.findSummaries(ALL, null, null, 10)).hasSize(4);
+	}
+
+	private static VisitSummary visit(int id, String date, int petId, Integer vetId) {
+		return new VisitSummary(id, LocalDate.parse(date), "check-up", petId, vetId);
+	}
+
+}
@@ -0,0 +1,198 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.vet.VisitHibernateEventListener;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test class for {@link VisitArchiver}. The counters are written just before commit, so
+ * every step runs in its own transaction.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import(OwnerCounterListener.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VisitArchiverTests {
+
+	private static final Clock CLOCK = Clock.fixed(LocalDate.of(2024, 6, 15).atStartOfDay().toInstant(ZoneOffset.UTC),
+			ZoneOffset.UTC);
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Autowired
+	private OwnerCounterListener counters;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@MockBean
+	private VisitHibernateEventListener events;
+
+	@TempDir
+	Path directory;
+
+	private TransactionTemplate transaction;
+
+	private Owner owner;
+
+	private Pet leo;
+
+	@BeforeEach
+	void setUp() {
+		transaction = new TransactionTemplate(transactionManager);
+		transaction.executeWithoutResult(status -> {
+			PetType cat = new PetType();
+			cat.setName("cat");
+			entityManager.persist(cat);
+			owner = new Owner();
+			owner.setFirstName("George");
+			owner.setLastName("Archive");
+			owner.setAddress("110 W. Liberty St.");
+			owner.setCity("Madison");
+			owner.setTelephone("6085551023");
+			leo = new Pet();
+			leo.setName("Leo");
+			leo.setBirthDate(LocalDate.of(2010, 9, 7));
+			leo.setType(cat);
+			owner.addPet(leo);
+			entityManager.persist(owner);
+		});
+		addVisit(LocalDate.of(2020, 1, 3));
+		addVisit(LocalDate.of(2020, 1, 17));
+		addVisit(LocalDate.of(2020, 1, 30));
+		addVisit(LocalDate.of(2020, 2, 12));
+		addVisit(LocalDate.of(2024, 5, 2));
+	}
+
+	@AfterEach
+	void tearDown() {
+		jdbcTemplate.update("DELETE FROM visits WHERE pet_id = ?", leo.getId());
+		jdbcTemplate.update("DELETE FROM pets WHERE owner_id = ?", owner.getId());
+		jdbcTemplate.update("DELETE FROM owners WHERE id = ?", owner.getId());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void shouldArchiveOldMonthsInChunksAndReportTheDeletes() throws IOException {
+		VisitArchive archive = new VisitArchive(directory);
+		VisitArchiver archiver = new VisitArchiver(visits, archive, counters, events, entityManager, dataSource,
+				transactionManager, Period.ofYears(2), 2, CLOCK);
+
+		archiver.archiveOldVisits();
+
+		assertThat(jdbcTemplate.queryForList("SELECT visit_date FROM visits WHERE pet_id = ?", Date.class,
+				leo.getId()))
+			.containsExactly(Date.valueOf("2024-05-02"));
+		// January in two chunks, February in one
+		assertThat(archive.segmentCount()).isEqualTo(3);
+		assertThat(archive.findLatestByPet(leo.getId(), null, null, 10)).hasSize(4);
+		assertThat(jdbcTemplate.queryForMap("SELECT visit_count, last_visit_date FROM pets WHERE id = ?",
+				leo.getId()))
+			.containsEntry("VISIT_COUNT", 1)
+			.containsEntry("LAST_VISIT_DATE", Date.valueOf("2024-05-02"));
+		assertThat(jdbcTemplate.queryForMap("SELECT visit_count, last_visit_date FROM owners WHERE id = ?",
+				owner.getId()))
+			.containsEntry("VISIT_COUNT", 1)
+			.containsEntry("LAST_VISIT_DATE", Date.valueOf("2024-05-02"));
+		ArgumentCaptor<Collection<VisitSummary>> deleted = ArgumentCaptor.forClass(Collection.class);
+		verify(events, times(3)).onBulkDelete(deleted.capture());
+		List<VisitSummary> all = new ArrayList<>();
+		deleted.getAllValues().forEach(all::addAll);
+		assertThat(all).extracting(VisitSummary::date)
+			.containsExactly(LocalDate.of(2020, 1, 3), LocalDate.of(2020, 1, 17), LocalDate.of(2020, 1, 30),
+					LocalDate.of(2020, 2, 12));
+	}
+
+	@Test
+	void shouldArchiveAVisitAsItWasWhenDeleted() throws Exception {
+		VisitArchive archive = new VisitArchive(directory);
+		VisitArchiver archiver = new VisitArchiver(visits, archive, counters, events, entityManager, dataSource,
+				transactionManager, Period.ofYears(2), 10, CLOCK);
+		CountDownLatch edited = new CountDownLatch(1);
+		CountDownLatch archiving = new CountDownLatch(1);
+		// an edit that is still open when the archiver starts
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<?> edit = executor.submit(() -> transaction.executeWithoutResult(status -> {
+			jdbcTemplate.update("UPDATE visits SET description = 'edited' WHERE visit_date = ?",
+					Date.valueOf("2020-01-17"));
+			edited.countDown();
+			try {
+				archiving.await(5, TimeUnit.SECONDS);
+				Thread.sleep(200);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		edited.await(5, TimeUnit.SECONDS);
+		archiving.countDown();
+
+		archiver.archiveOldVisits();
+		edit.get(5, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		assertThat(archive.findLatestByPet(leo.getId(), null, null, 10)).extracting(VisitSummary::description)
+			.containsExactly("rabies shot", "rabies shot", "edited", "rabies shot");
+		assertThat(jdbcTemplate.queryForObject("SELECT visit_count FROM pets WHERE id = ?", Integer.class,
+				leo.getId()))
+			.isOne();
+	}
+
+	private void addVisit(LocalDate date) {
+		transaction.executeWithoutResult(status -> {
+			Visit visit = new Visit();
+			visit.setPet(entityManager.find(Pet.class, leo.getId()));
+			visit.setDate(date);
+			visit.setDescription("rabies shot");
+			entityManager.persist(visit);
+		});
+	}
+
+}
@@ -16,19 +16,33 @@
 
 package org.springframework.samples.petclinic.owner;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.DisabledInNativeImage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.samples.petclinic.vet.VetAutoAssignmentService;
+import org.springframework.samples.petclinic.vet.VetRepository;
 import org.springframework.test.context.aot.DisabledInAotMode;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -52,13 +66,30 @@ class VisitControllerTests {
 	@MockBean
 	private OwnerRepository owners;
 
+	@MockBean
+	private PetRepository pets;
+
+	@MockBean
+	private VisitRepository visits;
+
+	@MockBean
+	private VisitService visitService;
+
+	@MockBean
+	private VisitHistory visitHistory;
+
+	@MockBean
+	private VetRepository vets;
+
+	@MockBean
+	private VetAutoAssignmentService vetAutoAssignmentService;
+
 	@BeforeEach
 	void init() {
-		Owner owner = new Owner();
 		Pet pet = new Pet();
-		owner.addPet(pet);
 		pet.setId(TEST_PET_ID);
-		given(this.owners.findByIdCustom(TEST_OWNER_ID)).willReturn(owner);
+		given(this.pets.findByIdAndOwnerId(TEST_PET_ID, TEST_OWNER_ID))
+			.willReturn(Optional.of(new OwnedPet(pet, TEST_OWNER_ID, "George", "Franklin")));
 	}
 
 	@Test
@@ -88,4 +119,50 @@ class VisitControllerTests {
 			.andExpect(view().name("pets/createOrUpdateVisitForm"));
 	}
 
+	@Test
+	void testProcessNewVisitFormForPetOfAnotherOwner() throws Exception {
+		mockMvc
+			.perform(post("/owners/{ownerId}/pets/{petId}/visits/new", TEST_OWNER_ID + 1, TEST_PET_ID)
+				.param("description", "Visit Description"))
+			.andExpect(status().isNotFound());
+
+		verify(this.visitService, never()).addVisit(anyInt(), anyInt(), any());
+		verify(this.owners, never()).findByIdCustom(anyInt());
+	}
+
+	@Test
+	void testShowVisitHistory() throws Exception {
+		given(this.visits.findByPetIdOrderByDateDescIdDesc(eq(TEST_PET_ID), any(Pageable.class)))
+			.willReturn(Page.empty());
+
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits", TEST_OWNER_ID, TEST_PET_ID))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeExists("visits", "archivedVisits"))
+			.andExpect(view().name("pets/visitList"));
+	}
+
+	@Test
+	void testPageArchivedVisitHistory() throws Exception {
+		given(this.visits.findByPetIdOrderByDateDescIdDesc(eq(TEST_PET_ID), any(Pageable.class)))
+			.willReturn(Page.empty());
+		List<VisitSummary> archived = IntStream.rangeClosed(1, 51)
+			.mapToObj(day -> new VisitSummary(100 - day, LocalDate.of(2020, 3, 1).minusDays(day), "rabies shot",
+					TEST_PET_ID, null))
+			.toList();
+		given(this.visitHistory.findArchivedByPet(TEST_PET_ID, null, null, 51)).willReturn(archived);
+
+		mockMvc.perform(get("/owners/{ownerId}/pets/{petId}/visits", TEST_OWNER_ID, TEST_PET_ID))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("archivedVisits", archived.subList(0, 50)))
+			.andExpect(model().attribute("nextArchived", archived.get(49)));
+
+		mockMvc
+			.perform(get("/owners/{ownerId}/pets/{petId}/visits", TEST_OWNER_ID, TEST_PET_ID)
+				.param("archivedBefore", archived.get(49).date().toString())
+				.param("archivedBeforeId", archived.get(49).id().toString()))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeDoesNotExist("nextArchived"));
+		verify(this.visitHistory).findArchivedByPet(TEST_PET_ID, archived.get(49).date(), archived.get(49).id(), 51);
+	}
+
 }
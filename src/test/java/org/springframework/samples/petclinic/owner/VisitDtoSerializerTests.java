@@ -0,0 +1,97 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.time.LocalDate;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+/**
+ * Test class for {@link VisitDtoSerializer} and {@link VisitDtoDeserializer}
+ */
+class VisitDtoSerializerTests {
+
+	private final VisitDtoSerializer serializer = new VisitDtoSerializer();
+
+	private final VisitDtoDeserializer deserializer = new VisitDtoDeserializer();
+
+	@Test
+	void shouldRoundTripBinaryRecord() {
+		VisitDto visit = new VisitDto(300_000, LocalDate.of(1969, 12, 31), "neutered été", 2, 11);
+		RecordHeaders headers = new RecordHeaders();
+
+		byte[] data = serializer.serialize("visit", headers, visit);
+
+		assertThat(headers.lastHeader("content-type")).isNotNull();
+		assertThat(deserializer.deserialize("visit", headers, data)).isEqualTo(visit);
+	}
+
+	@Test
+	void shouldRoundTripMissingFields() {
+		VisitDto visit = new VisitDto(null, null, null, null, null);
+		RecordHeaders headers = new RecordHeaders();
+
+		byte[] data = serializer.serialize("visit", headers, visit);
+
+		assertThat(data).hasSize(2);
+		assertThat(deserializer.deserialize("visit", headers, data)).isEqualTo(visit);
+	}
+
+	@Test
+	void shouldBeSmallerThanJson() {
+		VisitDto visit = new VisitDto(7, LocalDate.of(2013, 1, 1), "rabies shot", 3, 7);
+
+		byte[] binary = serializer.serialize("visit", new RecordHeaders(), visit);
+		try (JsonSerializer<VisitDto> json = new JsonSerializer<>()) {
+			assertThat(binary.length).isLessThan(json.serialize("visit", visit).length / 3);
+		}
+	}
+
+	@Test
+	void shouldReadLegacyJsonRecord() {
+		VisitDto visit = new VisitDto(7, LocalDate.of(2013, 1, 1), "rabies shot", 3, 7);
+		RecordHeaders headers = new RecordHeaders();
+		byte[] data;
+		try (JsonSerializer<VisitDto> json = new JsonSerializer<>()) {
+			data = json.serialize("visit", headers, visit);
+		}
+
+		assertThat(deserializer.deserialize("visit", headers, data)).isEqualTo(visit);
+	}
+
+	@Test
+	void shouldReadVersion1Record() {
+		RecordHeaders headers = new RecordHeaders();
+		serializer.serialize("visit", headers, new VisitDto(null, null, null, null, null));
+
+		assertThat(deserializer.deserialize("visit", headers, new byte[] { 1, 1, 14 }))
+			.isEqualTo(new VisitDto(7, null, null, null, null));
+	}
+
+	@Test
+	void shouldRejectUnknownVersion() {
+		RecordHeaders headers = new RecordHeaders();
+		byte[] data = serializer.serialize("visit", headers, new VisitDto(1, null, null, null, null));
+		data[0] = 99;
+
+		assertThatExceptionOfType(SerializationException.class)
+			.isThrownBy(() -> deserializer.deserialize("visit", headers, data));
+	}
+
+	@Test
+	void shouldRejectDescriptionLongerThanRecord() {
+		RecordHeaders headers = new RecordHeaders();
+		serializer.serialize("visit", headers, new VisitDto(null, null, null, null, null));
+		// description present, length prefix Integer.MAX_VALUE as a zig-zag varint
+		byte[] data = { 2, 4, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 'a' };
+
+		assertThatExceptionOfType(SerializationException.class)
+			.isThrownBy(() -> deserializer.deserialize("visit", headers, data))
+			.withMessageContaining("exceeds the 1 bytes left");
+	}
+
+}
@@ -0,0 +1,71 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Test class for {@link VisitPartitionMaintenance}
+ */
+class VisitPartitionMaintenanceTests {
+
+	private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-11-15T10:00:00Z"), ZoneOffset.UTC);
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void shouldBuildMonthlyPartitionDdl() {
+		assertThat(VisitPartitionMaintenance.createPartitionSql(YearMonth.of(2024, 12))).isEqualTo(
+				"CREATE TABLE IF NOT EXISTS visits_p2024_12 PARTITION OF visits FOR VALUES FROM ('2024-12-01') TO ('2025-01-01')");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void shouldCreateUpcomingPartitionsAndReportSizesOnPostgres() {
+		given(jdbcTemplate.execute(any(ConnectionCallback.class))).willReturn("PostgreSQL");
+		given(jdbcTemplate.queryForObject(anyString(), any(Class.class))).willReturn(true);
+		given(jdbcTemplate.query(anyString(), any(RowMapper.class)))
+			.willReturn(List.of(Map.entry("visits_p2024_11", 8192L), Map.entry("visits_default", 0L)));
+
+		new VisitPartitionMaintenance(jdbcTemplate, transactionManager, registry, 2, CLOCK).maintain();
+
+		verify(jdbcTemplate).execute(VisitPartitionMaintenance.createPartitionSql(YearMonth.of(2024, 11)));
+		verify(jdbcTemplate).execute(VisitPartitionMaintenance.createPartitionSql(YearMonth.of(2024, 12)));
+		verify(jdbcTemplate).execute(VisitPartitionMaintenance.createPartitionSql(YearMonth.of(2025, 1)));
+		assertThat(registry.get("petclinic.visits.partition.size").tag("partition", "visits_p2024_11").gauge().value())
+			.isEqualTo(8192);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void shouldSkipPlainVisitsTable() {
+		given(jdbcTemplate.execute(any(ConnectionCallback.class))).willReturn("H2");
+
+		new VisitPartitionMaintenance(jdbcTemplate, transactionManager, registry, 2, CLOCK).maintain();
+
+		verify(jdbcTemplate, never()).execute(anyString());
+	}
+
+}
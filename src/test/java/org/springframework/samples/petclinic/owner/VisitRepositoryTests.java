@@ -0,0 +1,167 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.PersistenceUnitUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.samples.petclinic.vet.Vet;
+
+/**
+ * Test class for {@link VisitRepository}
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+class VisitRepositoryTests {
+
+	private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private Pet leo;
+
+	private Pet basil;
+
+	private Vet carter;
+
+	@BeforeEach
+	void setUp() {
+		PetType cat = new PetType();
+		cat.setName("cat");
+		entityManager.persist(cat);
+		leo = pet("Leo", cat);
+		basil = pet("Basil", cat);
+		Owner owner = new Owner();
+		owner.setFirstName("George");
+		owner.setLastName("Franklin");
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		owner.addPet(leo);
+		owner.addPet(basil);
+		entityManager.persist(owner);
+		carter = new Vet();
+		carter.setFirstName("James");
+		carter.setLastName("Carter");
+		entityManager.persist(carter);
+
+		// several visits share a date, so paging must break ties on id
+		for (int day = 0; day < 5; day++) {
+			visit(leo, DAY.plusDays(day), carter);
+			visit(leo, DAY.plusDays(day), null);
+			visit(basil, DAY.plusDays(day), carter);
+		}
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	@Test
+	void shouldPageThroughAllVisitsInOrderWithoutGapsOrDuplicates() {
+		VisitFilter all = new VisitFilter(null, null, null, null);
+		List<VisitSummary> seen = new ArrayList<>();
+		List<VisitSummary> page = visits.findSummaries(all, null, null, 4);
+		while (!page.isEmpty()) {
+			seen.addAll(page);
+			VisitSummary last = page.get(page.size() - 1);
+			page = visits.findSummaries(all, last.date(), last.id(), 4);
+		}
+
+		assertThat(seen).hasSize(15);
+		assertThat(seen).extracting(VisitSummary::id).doesNotHaveDuplicates();
+		assertThat(seen).isSortedAccordingTo((a, b) -> a.date().equals(b.date()) ? a.id().compareTo(b.id())
+				: a.date().compareTo(b.date()));
+	}
+
+	@Test
+	void shouldFilterByPetVetAndDateRange() {
+		List<VisitSummary> found = visits.findSummaries(
+				new VisitFilter(leo.getId(), carter.getId(), DAY.plusDays(1), DAY.plusDays(3)), null, null, 100);
+
+		assertThat(found).hasSize(3);
+		assertThat(found).allSatisfy(visit -> {
+			assertThat(visit.petId()).isEqualTo(leo.getId());
+			assertThat(visit.vetId()).isEqualTo(carter.getId());
+			assertThat(visit.date()).isBetween(DAY.plusDays(1), DAY.plusDays(3));
+		});
+	}
+
+	@Test
+	void shouldKeepVisitsWithoutVet() {
+		List<VisitSummary> found = visits.findSummaries(new VisitFilter(leo.getId(), null, DAY, DAY), null, null, 100);
+
+		assertThat(found).extracting(VisitSummary::vetId).containsExactly(carter.getId(), null);
+	}
+
+	@Test
+	void shouldFindLatestVisitsOfPetNewestFirst() {
+		List<Visit> latest = visits.findByPetIdOrderByDateDescIdDesc(leo.getId(), Limit.of(3));
+
+		assertThat(latest).extracting(Visit::getDate)
+			.containsExactly(DAY.plusDays(4), DAY.plusDays(4), DAY.plusDays(3));
+	}
+
+	@Test
+	void shouldFindLatestVisitsOfSeveralPetsInOneQuery() {
+		List<Visit> latest = visits.findLatestByPetIds(List.of(leo.getId(), basil.getId()), 3);
+
+		assertThat(latest).filteredOn(visit -> visit.getPet().getId().equals(leo.getId()))
+			.extracting(Visit::getDate)
+			.containsExactly(DAY.plusDays(4), DAY.plusDays(4), DAY.plusDays(3));
+		assertThat(latest).filteredOn(visit -> visit.getPet().getId().equals(basil.getId()))
+			.extracting(Visit::getDate)
+			.containsExactly(DAY.plusDays(4), DAY.plusDays(3), DAY.plusDays(2));
+		assertThat(latest).filteredOn(visit -> visit.getVet() != null)
+			.allSatisfy(visit -> assertThat(visit.getVet().getLastName()).isEqualTo("Carter"));
+	}
+
+	@Test
+	void shouldFindLatestVisitWithVet() {
+		assertThat(visits.findFirstByPetIdAndVetIsNotNullOrderByDateDescIdDesc(leo.getId())).hasValueSatisfying(visit -> {
+			assertThat(visit.getDate()).isEqualTo(DAY.plusDays(4));
+			assertThat(visit.getVet().getLastName()).isEqualTo("Carter");
+		});
+	}
+
+	@Test
+	void shouldLoadDescriptionWithEveryVisit() {
+		PersistenceUnitUtil util = entityManager.getEntityManager().getEntityManagerFactory().getPersistenceUnitUtil();
+
+		assertThat(visits.findFirstByPetIdAndVetIsNotNullOrderByDateDescIdDesc(leo.getId()))
+			.hasValueSatisfying(visit -> assertThat(util.isLoaded(visit, "description")).isTrue());
+		entityManager.clear();
+		assertThat(entityManager.find(Pet.class, leo.getId()).getVisits())
+			.allSatisfy(visit -> assertThat(util.isLoaded(visit, "description")).isTrue());
+	}
+
+	private Pet pet(String name, PetType type) {
+		Pet pet = new Pet();
+		pet.setName(name);
+		pet.setBirthDate(LocalDate.of(2020, 9, 7));
+		pet.setType(type);
+		return pet;
+	}
+
+	private void visit(Pet pet, LocalDate date, Vet vet) {
+		Visit visit = new Visit();
+		visit.setDate(date);
+		visit.setDescription("check-up");
+		visit.setVet(vet);
+		pet.addVisit(visit);
+		entityManager.persist(visit);
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.samples.petclinic.owner.VisitSegmentFormat.Segment;
+
+/**
+ * Test class for {@link VisitSegmentFormat}
+ */
+class VisitSegmentFormatTests {
+
+	private static final LocalDate DAY = LocalDate.of(2021, 5, 1);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void shouldRoundTripAllColumns() throws IOException {
+		List<VisitSummary> visits = List.of(new VisitSummary(7, DAY.plusDays(3), "rabies shot", 1, 2),
+				new VisitSummary(3, DAY, null, 4, null), new VisitSummary(5, DAY, "rabies shot", 1, 3),
+				new VisitSummary(9, DAY.plusDays(30), "neutered", 6, 2));
+		Path file = directory.resolve("visits.seg");
+
+		VisitSegmentFormat.write(file, visits);
+		Segment segment = VisitSegmentFormat.open(file);
+
+		assertThat(segment.rowCount()).isEqualTo(4);
+		assertThat(segment.minDate()).isEqualTo(DAY);
+		assertThat(segment.maxDate()).isEqualTo(DAY.plusDays(30));
+		assertThat(segment.read(null)).containsExactlyElementsOf(
+				visits.stream().sorted(VisitSummary.BY_DATE_AND_ID).toList());
+	}
+
+	@Test
+	void shouldReadOnlyTheRowsOfAPetThroughTheIndex() throws IOException {
+		List<VisitSummary> visits = new ArrayList<>();
+		for (int i = 1; i <= 500; i++) {
+			visits.add(new VisitSummary(i, DAY.plusDays(i % 28), "check-up", i % 10, i % 3 == 0 ? null : 1));
+		}
+		Path file = directory.resolve("visits.seg");
+
+		VisitSegmentFormat.write(file, visits);
+		Segment segment = VisitSegmentFormat.open(file);
+
+		assertThat(segment.containsPet(3)).isTrue();
+		assertThat(segment.containsPet(42)).isFalse();
+		assertThat(segment.read(3)).hasSize(50).allSatisfy(visit -> assertThat(visit.petId()).isEqualTo(3));
+		assertThat(segment.read(42)).isEmpty();
+		// sorted dates run-length encode and the repeated description is a dictionary entry
+		assertThat(Files.size(file)).isLessThan(500 * 4);
+	}
+
+	@Test
+	void shouldRejectTruncatedFile() throws IOException {
+		Path file = directory.resolve("visits.seg");
+		VisitSegmentFormat.write(file, List.of(new VisitSummary(1, DAY, "check-up", 1, 1)));
+		byte[] content = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(content, content.length - 3));
+
+		assertThatIOException().isThrownBy(() -> VisitSegmentFormat.open(file));
+	}
+
+}
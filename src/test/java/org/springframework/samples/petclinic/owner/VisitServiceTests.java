@@ -0,0 +1,103 @@
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.time.LocalDate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Test class for {@link VisitService}
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import(VisitService.class)
+class VisitServiceTests {
+
+	@Autowired
+	private VisitService visitService;
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	private Owner owner;
+
+	private Owner otherOwner;
+
+	private Pet pet;
+
+	@BeforeEach
+	void setUp() {
+		PetType cat = new PetType();
+		cat.setName("cat");
+		entityManager.persist(cat);
+		pet = new Pet();
+		pet.setName("Leo");
+		pet.setBirthDate(LocalDate.of(2020, 9, 7));
+		pet.setType(cat);
+		owner = owner("Franklin");
+		owner.addPet(pet);
+		entityManager.persist(owner);
+		otherOwner = entityManager.persist(owner("Davis"));
+		entityManager.flush();
+		entityManager.clear();
+
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void shouldAddVisitWithOneCheckAndOneInsert() {
+		Visit visit = new Visit();
+		visit.setDate(LocalDate.now());
+		visit.setDescription("check-up");
+
+		visitService.addVisit(owner.getId(), pet.getId(), visit);
+
+		assertThat(visit.getId()).isNotNull();
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+		assertThat(statistics.getEntityLoadCount()).isZero();
+		assertThat(statistics.getCollectionLoadCount()).isZero();
+		assertThat(visits.findById(visit.getId())).isPresent();
+	}
+
+	@Test
+	void shouldRejectPetOfAnotherOwner() {
+		Visit visit = new Visit();
+		visit.setDescription("check-up");
+
+		assertThatIllegalArgumentException().isThrownBy(() -> visitService.addVisit(otherOwner.getId(), pet.getId(), visit));
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	private static Owner owner(String lastName) {
+		Owner owner = new Owner();
+		owner.setFirstName("George");
+		owner.setLastName(lastName);
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		return owner;
+	}
+
+}
@@ -9,6 +9,8 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.support.MaxStatements;
+import org.springframework.samples.petclinic.support.StatementCounter;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -24,9 +26,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 /**
- * Test class for the {@link OwnerRestController}
+ * Test class for the {@link OwnerRestController}. The statement budgets include the
+ * owners a test creates through the API before calling the endpoint under test. Owner
+ * snapshots are not rebuilt in the background, whose statements would count against
+ * whichever test is running, so reads render the owner.
  */
-@SpringBootTest
+@SpringBootTest(properties = { StatementCounter.ENABLED, "petclinic.owners.snapshots.background-rebuild=false" })
 @TestPropertySource(locations = "classpath:application-test.properties")
 @AutoConfigureMockMvc
 public class OwnerRestControllerTest {
@@ -44,6 +49,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("GET ALL, positive path: pagination")
+    @MaxStatements(select = 3, insert = 3)
     public void getAllOwnersPaginationReturnsPaginatedResults() throws Exception {
         String ownerAsJson = getOwnerAsJson(null, "John", "Doe", "123 Main St", "Anytown", "8996746899");
         saveOwner(ownerAsJson);
@@ -59,6 +65,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("GET ALL, positive path: without pagination")
+    @MaxStatements(select = 2, insert = 3)
     public void getAllOwners() throws Exception {
         String ownerAsJson = getOwnerAsJson(null, "John", "Doe", "123 Main St", "Anytown", "8996746899");
         saveOwner(ownerAsJson);
@@ -74,6 +81,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("GET ALL, positive path: filter by first name")
+    @MaxStatements(select = 2, insert = 3)
     public void getAllOwnersFilterByFirstNameReturnsFilteredOwners() throws Exception {
         String ownerJohnAsJson = getOwnerAsJson(null, "John", "Doe", "123 Main St", "Anytown", "8996746899");
         saveOwner(ownerJohnAsJson);
@@ -90,6 +98,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("GET ALL, positive path: filter by last name")
+    @MaxStatements(select = 2, insert = 3)
     public void getAllOwnersFilterByLastNameReturnsFilteredOwners() throws Exception {
         String ownerJohnAsJson = getOwnerAsJson(null, "John", "Doe", "123 Main St", "Anytown", "8996746899");
         saveOwner(ownerJohnAsJson);
@@ -106,6 +115,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("GET ALL, positive path: wrong filter")
+    @MaxStatements(1)
     public void getAllOwnersInvalidFilterReturnsNoResults() throws Exception {
         mockMvc.perform(get("/rest/owners").param("firstNameContains", "NonExistent"))
                 .andExpect(status().isOk())
@@ -116,6 +126,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("DELETE, negative path: entity not found")
+    @MaxStatements(1)
     public void deleteEntityNotFound() throws Exception {
         mockMvc.perform(MockMvcRequestBuilders.delete("/rest/owners/{0}", 999))
                 .andExpect(status()
@@ -127,6 +138,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("DELETE, positive path")
+    @MaxStatements(select = 1, insert = 1, delete = 1)
     public void delete() throws Exception {
         String ownerAsJson = getOwnerAsJson(null, "John", "Doe", "123 Main St", "Anytown", "8996746899");
         MvcResult mvcResult = saveOwner(ownerAsJson);
@@ -140,6 +152,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("PATCH, negative path: ids aren't equal")
+    @MaxStatements(0)
     public void partialUpdateIdsArentEqual() throws Exception {
         String dto = """
                 {
@@ -161,6 +174,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("PATCH, negative path: entity not found")
+    @MaxStatements(1)
     public void partialUpdateEntityNotFound() throws Exception {
         String dto = """
                 {
@@ -182,6 +196,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("PATH, positive path")
+    @MaxStatements(select = 1, insert = 1, update = 1)
     public void patch() throws Exception {
         String ownerAsJson = getOwnerAsJson(null, "John", "Doe", "123 Main St", "Anytown", "8996746899");
         MvcResult mvcResult = saveOwner(ownerAsJson);
@@ -210,6 +225,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("PUT, negative path: entity not found")
+    @MaxStatements(1)
     public void updateEntityNotFound() throws Exception {
         String dto = """
                 {
@@ -231,6 +247,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("PUT, negative path: ids aren't equal")
+    @MaxStatements(0)
     public void updateIdsArentEqual() throws Exception {
         String dto = """
                 {
@@ -252,6 +269,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("PUT, positive path")
+    @MaxStatements(select = 1, insert = 1, update = 1)
     public void update() throws Exception {
         String ownerAsJson = getOwnerAsJson(null, "John", "Doe", "123 Main St", "Anytown", "8996746899");
         MvcResult mvcResult = saveOwner(ownerAsJson);
@@ -276,6 +294,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("GET, negative path: entity not found")
+    @MaxStatements(1)
     public void getOneEntityNotFound() throws Exception {
         mockMvc.perform(get("/rest/owners/{0}", 999))
                 .andExpect(status()
@@ -285,6 +304,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("GET, positive path")
+    @MaxStatements(select = 1, insert = 1)
     public void getOne() throws Exception {
         String ownerAsJson = getOwnerAsJson(null, "John", "Doe", "123 Main St", "Anytown", "8996746899");
         MvcResult mvcResult = saveOwner(ownerAsJson);
@@ -303,6 +323,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("POST, negative path: id must be null")
+    @MaxStatements(0)
     public void createIdNotNull() throws Exception {
         String ownerDto = getOwnerAsJson(1, "John", "Doe", "123 Main St", "Anytown", "8996746899");
 
@@ -316,6 +337,7 @@ public class OwnerRestControllerTest {
 
     @Test
     @DisplayName("POST, happy path")
+    @MaxStatements(select = 2, insert = 1)
     public void create() throws Exception {
         String ownerDto = getOwnerAsJson(null, "John", "Doe", "123 Main St", "Anytown", "8996746899");
         MvcResult mvcResult = saveOwner(ownerDto);
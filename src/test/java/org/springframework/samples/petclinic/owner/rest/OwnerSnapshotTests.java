@@ -0,0 +1,213 @@
+package org.springframework.samples.petclinic.owner.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerAggregateChangedEvent;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.samples.petclinic.support.StatementCounter;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link OwnerSnapshotService}. Snapshots are rebuilt after commit, so
+ * every step runs in its own transaction and the tests wait for the rebuild.
+ */
+@DataJpaTest(properties = StatementCounter.ENABLED, includeFilters = {
+        @Filter(type = FilterType.ASSIGNABLE_TYPE,
+                classes = {OwnerSnapshotService.class, OwnerSnapshotStore.class, OwnerMapper.class}),
+        @Filter(type = FilterType.REGEX, pattern = ".*\\.OwnerCounterListener")})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OwnerSnapshotTests {
+
+    @Autowired
+    private OwnerSnapshotService snapshots;
+
+    @Autowired
+    private OwnerSnapshotStore store;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    private Owner owner;
+
+    private Pet leo;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            PetType cat = new PetType();
+            cat.setName("cat");
+            entityManager.persist(cat);
+            owner = new Owner();
+            owner.setFirstName("George");
+            owner.setLastName("Snapshot");
+            owner.setAddress("110 W. Liberty St.");
+            owner.setCity("Madison");
+            owner.setTelephone("6085551023");
+            leo = new Pet();
+            leo.setName("Leo");
+            leo.setBirthDate(LocalDate.of(2020, 9, 7));
+            leo.setType(cat);
+            owner.addPet(leo);
+            entityManager.persist(owner);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM visits WHERE pet_id IN (SELECT id FROM pets WHERE owner_id = ?)",
+                owner.getId());
+        jdbcTemplate.update("DELETE FROM pets WHERE owner_id = ?", owner.getId());
+        jdbcTemplate.update("DELETE FROM owners WHERE id = ?", owner.getId());
+        jdbcTemplate.update("DELETE FROM vets WHERE last_name = 'Snapshot'");
+    }
+
+    @Test
+    void shouldRebuildSnapshotAfterCommit() throws Exception {
+        JsonNode document = awaitSnapshot(json -> json.path("pets").path(0).path("name").asText().equals("Leo"));
+        assertThat(document.path("lastName").asText()).isEqualTo("Snapshot");
+        assertThat(document.path("pets").path(0).path("visits")).isEmpty();
+
+        transaction.executeWithoutResult(status -> {
+            Visit visit = new Visit();
+            visit.setDate(LocalDate.of(2024, 3, 1));
+            visit.setDescription("rabies shot");
+            entityManager.find(Pet.class, leo.getId()).addVisit(visit);
+            entityManager.persist(visit);
+        });
+        document = awaitSnapshot(json -> json.path("pets").path(0).path("visits").size() == 1);
+        assertThat(document.path("pets").path(0).path("visits").path(0).path("description").asText())
+                .isEqualTo("rabies shot");
+
+        transaction.executeWithoutResult(status -> entityManager.find(Owner.class, owner.getId()).setCity("Monona"));
+        awaitSnapshot(json -> json.path("city").asText().equals("Monona"));
+    }
+
+    @Test
+    void shouldRenderStaleSnapshotOnRead() throws Exception {
+        awaitSnapshot(json -> true);
+        jdbcTemplate.update("UPDATE owners SET aggregate_version = aggregate_version + 1, city = 'Monona' WHERE id = ?",
+                owner.getId());
+        assertThat(store.findCurrent(owner.getId())).isEmpty();
+
+        Optional<String> rendered = snapshots.findDocument(owner.getId());
+        assertThat(rendered).isPresent();
+        assertThat(objectMapper.readTree(rendered.get()).path("city").asText()).isEqualTo("Monona");
+        awaitSnapshot(json -> json.path("city").asText().equals("Monona"));
+    }
+
+    @Test
+    void shouldRebuildOwnerWithAllItsVisitsInTwoQueries() throws Exception {
+        transaction.executeWithoutResult(status -> {
+            Vet vet = new Vet();
+            vet.setFirstName("James");
+            vet.setLastName("Snapshot");
+            entityManager.persist(vet);
+            Owner loaded = entityManager.find(Owner.class, owner.getId());
+            Pet pet = new Pet();
+            pet.setName("Basil");
+            pet.setBirthDate(LocalDate.of(2021, 8, 6));
+            pet.setType(entityManager.find(Pet.class, leo.getId()).getType());
+            loaded.addPet(pet);
+            entityManager.persist(pet);
+            addVisit(loaded.getPet("Leo"), vet, LocalDate.of(2024, 3, 1));
+            addVisit(loaded.getPet("Leo"), vet, LocalDate.of(2024, 4, 1));
+            addVisit(pet, vet, LocalDate.of(2024, 5, 1));
+        });
+        awaitSnapshot(json -> json.path("pets").size() == 2);
+        jdbcTemplate.update("UPDATE owners SET aggregate_version = aggregate_version + 1 WHERE id = ?",
+                owner.getId());
+
+        StatementCounter.reset();
+        snapshots.onAggregateChanged(new OwnerAggregateChangedEvent(Set.of(owner.getId())));
+        JsonNode document = awaitSnapshot(json -> true);
+
+        assertThat(document.path("pets").findValues("visits")).extracting(JsonNode::size).containsOnly(2, 1);
+        assertThat(StatementCounter.counts().select()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldMakeSnapshotStaleWhenVetIsRenamed() throws Exception {
+        Vet vet = new Vet();
+        transaction.executeWithoutResult(status -> {
+            vet.setFirstName("James");
+            vet.setLastName("Snapshot");
+            entityManager.persist(vet);
+            addVisit(entityManager.find(Pet.class, leo.getId()), vet, LocalDate.of(2024, 3, 1));
+        });
+        awaitSnapshot(json -> json.path("pets").path(0).path("visits").size() == 1);
+
+        transaction.executeWithoutResult(status -> entityManager.find(Vet.class, vet.getId()).setFirstName("Jim"));
+
+        assertThat(store.findCurrent(owner.getId())).isEmpty();
+        JsonNode rendered = objectMapper.readTree(snapshots.findDocument(owner.getId()).orElseThrow());
+        assertThat(rendered.path("pets").path(0).path("visits").path(0).path("vet").path("firstName").asText())
+                .isEqualTo("Jim");
+    }
+
+    @Test
+    void shouldFindNothingForUnknownOwner() {
+        assertThat(snapshots.findDocument(-1)).isEmpty();
+    }
+
+    private void addVisit(Pet pet, Vet vet, LocalDate date) {
+        Visit visit = new Visit();
+        visit.setDate(date);
+        visit.setDescription("check-up");
+        visit.setVet(vet);
+        pet.addVisit(visit);
+        entityManager.persist(visit);
+    }
+
+    private JsonNode awaitSnapshot(Predicate<JsonNode> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            Optional<String> current = store.findCurrent(owner.getId());
+            if (current.isPresent() && condition.test(objectMapper.readTree(current.get()))) {
+                return objectMapper.readTree(current.get());
+            }
+            assertThat(System.currentTimeMillis()).as("snapshot rebuilt in time").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
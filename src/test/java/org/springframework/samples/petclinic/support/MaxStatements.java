@@ -0,0 +1,38 @@
+package org.springframework.samples.petclinic.support;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Fails the test if it makes Hibernate prepare more SQL statements than allowed. Setup
+ * in {@code @BeforeEach} methods is not counted, the test method itself is. On a class
+ * it applies to every test method that is not annotated itself.
+ * <p>
+ * The test context must count statements, see {@link StatementCounter#ENABLED}. Limits
+ * left at {@code -1} are not checked.
+ */
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@ExtendWith(StatementBudgetExtension.class)
+public @interface MaxStatements {
+
+	/**
+	 * Maximum number of statements of any kind.
+	 */
+	int value() default -1;
+
+	int select() default -1;
+
+	int insert() default -1;
+
+	int update() default -1;
+
+	int delete() default -1;
+
+}
@@ -0,0 +1,60 @@
+package org.springframework.samples.petclinic.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.assertj.core.api.SoftAssertions;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.springframework.samples.petclinic.support.StatementCounter.StatementCounts;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * Checks the statement budget declared with {@link MaxStatements}.
+ */
+class StatementBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+	@Override
+	public void beforeTestExecution(ExtensionContext context) {
+		SessionFactoryImplementor sessionFactory = SpringExtension.getApplicationContext(context)
+			.getBean(EntityManagerFactory.class)
+			.unwrap(SessionFactoryImplementor.class);
+		assertThat(sessionFactory.getSessionFactoryOptions().getStatementInspector())
+			.as("@MaxStatements needs a context created with StatementCounter.ENABLED")
+			.isInstanceOf(StatementCounter.class);
+		StatementCounter.reset();
+	}
+
+	@Override
+	public void afterTestExecution(ExtensionContext context) {
+		if (context.getExecutionException().isPresent()) {
+			return;
+		}
+		MaxStatements budget = findBudget(context).orElseThrow();
+		StatementCounts counts = StatementCounter.counts();
+		SoftAssertions softly = new SoftAssertions();
+		check(softly, "statements", counts.total(), budget.value(), counts);
+		check(softly, "select statements", counts.select(), budget.select(), counts);
+		check(softly, "insert statements", counts.insert(), budget.insert(), counts);
+		check(softly, "update statements", counts.update(), budget.update(), counts);
+		check(softly, "delete statements", counts.delete(), budget.delete(), counts);
+		softly.assertAll();
+	}
+
+	private static void check(SoftAssertions softly, String kind, int count, int max, StatementCounts counts) {
+		if (max >= 0) {
+			softly.assertThat(count).as("%s, the test prepared %s", kind, counts).isLessThanOrEqualTo(max);
+		}
+	}
+
+	private static Optional<MaxStatements> findBudget(ExtensionContext context) {
+		return AnnotationSupport.findAnnotation(context.getRequiredTestMethod(), MaxStatements.class)
+			.or(() -> AnnotationSupport.findAnnotation(context.getRequiredTestClass(), MaxStatements.class));
+	}
+
+}
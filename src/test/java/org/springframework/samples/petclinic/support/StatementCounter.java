@@ -0,0 +1,97 @@
+package org.springframework.samples.petclinic.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares, by kind. Enabled for a test context with
+ * {@code @SpringBootTest(properties = StatementCounter.ENABLED)} and asserted with
+ * {@link MaxStatements} or directly through {@link #counts()}.
+ * <p>
+ * Statements are counted across all threads, so that work handed to a background
+ * committer still counts against the test that caused it.
+ */
+public class StatementCounter implements StatementInspector {
+
+	public static final String ENABLED = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+			+ "org.springframework.samples.petclinic.support.StatementCounter";
+
+	private static final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+	@Override
+	public String inspect(String sql) {
+		statements.add(sql);
+		return sql;
+	}
+
+	public static void reset() {
+		statements.clear();
+	}
+
+	/**
+	 * The statements prepared since the last {@link #reset()}.
+	 */
+	public static StatementCounts counts() {
+		List<String> sqls;
+		synchronized (statements) {
+			sqls = List.copyOf(statements);
+		}
+		int select = 0;
+		int insert = 0;
+		int update = 0;
+		int delete = 0;
+		for (String sql : sqls) {
+			String kind = sql.stripLeading().toLowerCase(Locale.ROOT);
+			if (kind.contains("nextval(") || kind.contains("next value for")) {
+				// sequence calls depend on where the pooled optimizer is in its block
+				continue;
+			}
+			if (kind.startsWith("select") || kind.startsWith("with")) {
+				select++;
+			}
+			else if (kind.startsWith("insert")) {
+				insert++;
+			}
+			else if (kind.startsWith("update")) {
+				update++;
+			}
+			else if (kind.startsWith("delete")) {
+				delete++;
+			}
+		}
+		return new StatementCounts(select, insert, update, delete, sqls);
+	}
+
+	/**
+	 * Statement counts by kind. Anything that is neither a query nor DML, such as a
+	 * sequence call, only counts towards the total.
+	 */
+	public record StatementCounts(int select, int insert, int update, int delete, List<String> statements) {
+
+		public int total() {
+			return statements.size();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder description = new StringBuilder().append(select)
+				.append(" select, ")
+				.append(insert)
+				.append(" insert, ")
+				.append(update)
+				.append(" update, ")
+				.append(delete)
+				.append(" delete, ")
+				.append(total())
+				.append(" in total:");
+			statements.forEach(sql -> description.append(System.lineSeparator()).append("  ").append(sql));
+			return description.toString();
+		}
+
+	}
+
+}
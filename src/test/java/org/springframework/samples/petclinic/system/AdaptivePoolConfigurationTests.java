@@ -0,0 +1,54 @@
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+/**
+ * Test class for {@link AdaptivePoolConfiguration}.
+ */
+class AdaptivePoolConfigurationTests {
+
+	private final ApplicationContextRunner boot = new ApplicationContextRunner()
+		.withInitializer(context -> context.getBeanFactory()
+			.setConversionService(ApplicationConversionService.getSharedInstance()))
+		.withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class))
+		.withUserConfiguration(AdaptivePoolConfiguration.class)
+		.withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+		.withPropertyValues("petclinic.datasource.adaptive-pool.enabled=true",
+				"spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+
+	@Test
+	void shouldResizeThePoolBehindTheSlowQueryLog() {
+		boot.withUserConfiguration(SlowQueryConfiguration.class)
+			.run(context -> assertThat(context.getBean(AdaptivePoolSizers.class).sizers()).hasSize(1));
+	}
+
+	@Test
+	void shouldResizeThePrimaryAndTheReplica() {
+		boot.withUserConfiguration(SlowQueryConfiguration.class, ReplicaDataSourceConfiguration.class)
+			.withPropertyValues("petclinic.datasource.replica.url=jdbc:h2:mem:" + UUID.randomUUID(),
+					"petclinic.datasource.replica.lag-query=SELECT 0")
+			.run(context -> assertThat(context.getBean(AdaptivePoolSizers.class).sizers()).hasSize(2));
+	}
+
+	@Test
+	void shouldNotStartWithoutStatementTimer() {
+		boot.withBean(SlowQueryLog.class, () -> new SlowQueryLog(16, Duration.ofSeconds(1), 0, false,
+				new SimpleMeterRegistry()))
+			.run(context -> assertThat(context).getFailure()
+				.rootCause()
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("petclinic.jdbc.statements"));
+	}
+
+}
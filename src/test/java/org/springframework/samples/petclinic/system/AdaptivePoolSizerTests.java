@@ -0,0 +1,54 @@
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link AdaptivePoolSizer}
+ */
+class AdaptivePoolSizerTests {
+
+	private final AdaptivePoolSizer sizer = new AdaptivePoolSizer(new HikariDataSource(), new SimpleMeterRegistry(), 4,
+			40, Duration.ofMillis(5));
+
+	@Test
+	void shouldGrowWhileRequestsWaitAndLatencyHolds() {
+		int size = 4;
+		for (int i = 0; i < 10; i++) {
+			int next = sizer.nextSize(size, 2, 20, 8);
+			assertThat(next).isGreaterThan(size);
+			size = next;
+		}
+		assertThat(size).isLessThanOrEqualTo(40);
+	}
+
+	@Test
+	void shouldNotGrowWithoutWaiting() {
+		assertThat(sizer.nextSize(10, 2, 1, 0)).isEqualTo(10);
+		assertThat(sizer.nextSize(10, Double.NaN, Double.NaN, 0)).isEqualTo(10);
+	}
+
+	@Test
+	void shouldShrinkWhenLatencyRises() {
+		assertThat(sizer.nextSize(20, 2, 1, 0)).isEqualTo(20);
+		int size = 20;
+		for (int i = 0; i < 5; i++) {
+			int next = sizer.nextSize(size, 8, 50, 8);
+			assertThat(next).isLessThan(size);
+			size = next;
+		}
+	}
+
+	@Test
+	void shouldStayWithinBounds() {
+		assertThat(sizer.nextSize(40, 2, 50, 100)).isEqualTo(40);
+		sizer.nextSize(4, 1, 0, 0);
+		assertThat(sizer.nextSize(4, 100, 0, 0)).isEqualTo(4);
+	}
+
+}
@@ -0,0 +1,99 @@
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Test class for {@link DataSeeder}. Each test starts an application context twice
+ * against the same database, as two boots of the application would.
+ */
+class DataSeederTests {
+
+	private final String url = "jdbc:h2:mem:seed-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+
+	private final ApplicationContextRunner boot = new ApplicationContextRunner()
+		.withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class,
+				DataSourceTransactionManagerAutoConfiguration.class))
+		.withUserConfiguration(DataSeeder.class)
+		.withPropertyValues("spring.datasource.url=" + url);
+
+	@BeforeEach
+	void setUp() {
+		new ResourceDatabasePopulator(new ClassPathResource("db/h2/schema.sql"),
+				new ClassPathResource("db/migration/V10__add_seed_history.sql"))
+			.execute(jdbcTemplate.getDataSource());
+	}
+
+	@AfterEach
+	void tearDown() {
+		jdbcTemplate.execute("SHUTDOWN");
+	}
+
+	@Test
+	void shouldSeedOnFirstStartOnly() {
+		boot.withPropertyValues("petclinic.seed.script=classpath:db/h2/data.sql").run(context -> {
+			assertThat(context).hasNotFailed();
+			assertThat(count("vets")).isEqualTo(6);
+			assertThat(count("owners")).isEqualTo(10);
+		});
+		Timestamp applied = appliedAt();
+		jdbcTemplate.update("DELETE FROM vet_specialties");
+		jdbcTemplate.update("DELETE FROM vets");
+
+		// the deleted vets stay deleted: the second start does no seed work at all
+		boot.withPropertyValues("petclinic.seed.script=classpath:db/h2/data.sql").run(context -> {
+			assertThat(context).hasNotFailed();
+			assertThat(count("vets")).isZero();
+			assertThat(count("owners")).isEqualTo(10);
+		});
+		assertThat(appliedAt()).isEqualTo(applied);
+	}
+
+	@Test
+	void shouldSeedAgainWhenTheScriptChanges(@TempDir Path directory) throws IOException {
+		Path script = directory.resolve("seed.sql");
+		Files.writeString(script, seedType("lizard"));
+		boot.withPropertyValues("petclinic.seed.script=file:" + script).run(context -> assertThat(context).hasNotFailed());
+
+		Files.writeString(script, seedType("lizard") + seedType("parrot"));
+		boot.withPropertyValues("petclinic.seed.script=file:" + script).run(context -> assertThat(context).hasNotFailed());
+
+		assertThat(jdbcTemplate.queryForList("SELECT name FROM types ORDER BY name", String.class))
+			.containsExactly("lizard", "parrot");
+		assertThat(count("seed_history")).isEqualTo(1);
+	}
+
+	private int count(String table) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+	}
+
+	private Timestamp appliedAt() {
+		return jdbcTemplate.queryForObject("SELECT applied_at FROM seed_history", Timestamp.class);
+	}
+
+	private static String seedType(String name) {
+		return "INSERT INTO types (name) SELECT '" + name + "' WHERE NOT EXISTS (SELECT * FROM types WHERE name = '"
+				+ name + "');\n";
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link GroupCommitQueue}
+ */
+class GroupCommitQueueTests {
+
+	private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+
+	private GroupCommitQueue<Integer> queue;
+
+	@AfterEach
+	void close() throws InterruptedException {
+		queue.close();
+	}
+
+	@Test
+	void shouldCommitConcurrentSubmissionsInBatches() {
+		CountDownLatch firstBatchStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		queue = new GroupCommitQueue<>("test", 100, 10, Duration.ofMillis(50), Duration.ofSeconds(1), items -> {
+			firstBatchStarted.countDown();
+			await(release);
+			batches.add(items);
+		});
+
+		CompletableFuture<Void> first = queue.submit(0);
+		await(firstBatchStarted);
+		List<CompletableFuture<Void>> rest = IntStream.rangeClosed(1, 25).mapToObj(queue::submit).toList();
+		release.countDown();
+		rest.forEach(CompletableFuture::join);
+		first.join();
+
+		assertThat(batches).hasSizeLessThanOrEqualTo(5);
+		assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(10));
+		assertThat(batches.stream().mapToInt(List::size).sum()).isEqualTo(26);
+	}
+
+	@Test
+	void shouldFailOnlyTheBadItemOfAFailedBatch() {
+		CountDownLatch firstBatchStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		queue = new GroupCommitQueue<>("test", 100, 10, Duration.ofMillis(50), Duration.ofSeconds(1), items -> {
+			firstBatchStarted.countDown();
+			await(release);
+			if (items.contains(2)) {
+				throw new IllegalArgumentException("bad item");
+			}
+			batches.add(items);
+		});
+
+		CompletableFuture<Void> first = queue.submit(0);
+		await(firstBatchStarted);
+		CompletableFuture<Void> good = queue.submit(1);
+		CompletableFuture<Void> bad = queue.submit(2);
+		release.countDown();
+
+		first.join();
+		good.join();
+		assertThatExceptionOfType(CompletionException.class).isThrownBy(bad::join)
+			.withCauseInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void shouldRejectWhenFull() {
+		CountDownLatch release = new CountDownLatch(1);
+		queue = new GroupCommitQueue<>("test", 1, 1, Duration.ZERO, Duration.ofMillis(10), items -> await(release));
+
+		queue.submit(0);
+		assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> {
+			for (int i = 1; i < 10; i++) {
+				queue.submit(i);
+			}
+		});
+		release.countDown();
+	}
+
+	@Test
+	void shouldCompleteEveryAcceptedItemWhenClosedConcurrently() throws Exception {
+		queue = new GroupCommitQueue<>("test", 1000, 10, Duration.ZERO, Duration.ofSeconds(1), batches::add);
+		List<CompletableFuture<Void>> accepted = Collections.synchronizedList(new ArrayList<>());
+		Thread submitter = new Thread(() -> {
+			for (int i = 0; i < 10_000; i++) {
+				try {
+					accepted.add(queue.submit(i));
+				}
+				catch (IllegalStateException ex) {
+					return;
+				}
+			}
+		});
+		submitter.start();
+		Thread.sleep(5);
+		queue.close();
+		submitter.join();
+
+		assertThat(accepted).allSatisfy(future -> assertThat(future).isDone());
+		assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> queue.submit(-1));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
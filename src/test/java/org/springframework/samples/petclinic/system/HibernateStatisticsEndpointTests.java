@@ -0,0 +1,106 @@
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.system.HibernateStatisticsEndpoint.QueryReport;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * Test class for {@link HibernateStatisticsEndpoint} and
+ * {@link HibernateStatisticsMetrics}.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ContextConfiguration(classes = PetClinicApplication.class)
+@Import(HibernateStatisticsConfiguration.class)
+class HibernateStatisticsEndpointTests {
+
+	private static final String FIND_PET_TYPES = "SELECT ptype FROM PetType ptype ORDER BY ptype.name";
+
+	@Autowired
+	private HibernateStatisticsEndpoint endpoint;
+
+	@Autowired
+	private HibernateStatisticsMetrics metrics;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Test
+	void shouldBreakDownQueriesAndEntities() {
+		PetType dog = new PetType();
+		dog.setName("dog");
+		entityManager.persist(dog);
+		entityManager.flush();
+		entityManager.clear();
+		endpoint.reset();
+		owners.findPetTypes();
+		owners.findPetTypes();
+		owners.findByLastName("Fran", Pageable.ofSize(5));
+
+		HibernateStatisticsEndpoint.Report report = endpoint.statistics();
+		assertThat(report.enabled()).isTrue();
+		assertThat(report.queries()).extracting(QueryReport::query, QueryReport::executions)
+			.contains(tuple(FIND_PET_TYPES, 2L));
+		assertThat(report.entities()).anySatisfy(entity -> {
+			assertThat(entity.entity()).isEqualTo("org.springframework.samples.petclinic.owner.PetType");
+			assertThat(entity.loads()).isPositive();
+		});
+
+		endpoint.reset();
+		assertThat(endpoint.statistics().queries()).isEmpty();
+	}
+
+	@Test
+	void shouldPublishMetersPerQuery() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		metrics.bindTo(registry);
+		endpoint.reset();
+		owners.findPetTypes();
+		metrics.bindQueries();
+
+		FunctionTimer query = registry.get("hibernate.query.executions").tag("query", FIND_PET_TYPES).functionTimer();
+		assertThat(query.count()).isEqualTo(1);
+		assertThat(registry.get("hibernate.entity.loads").tag("entity", "PetType").functionCounter()).isNotNull();
+
+		endpoint.reset();
+		assertThat(query.count()).isZero();
+	}
+
+	@Test
+	void shouldOnlyPublishMetersOfTheSlowestQueries() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		HibernateStatisticsMetrics topQuery = new HibernateStatisticsMetrics(
+				entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics(),
+				1);
+		topQuery.bindTo(registry);
+		endpoint.reset();
+		owners.findPetTypes();
+		owners.findByLastName("Fran", Pageable.ofSize(5));
+		topQuery.bindQueries();
+
+		assertThat(registry.find("hibernate.query.executions").functionTimers()).hasSize(1);
+		assertThat(registry.find("hibernate.query.rows").functionCounters()).hasSize(1);
+
+		endpoint.reset();
+		topQuery.bindQueries();
+		assertThat(registry.find("hibernate.query.executions").functionTimers()).isEmpty();
+		assertThat(registry.find("hibernate.query.execution.max").timeGauges()).isEmpty();
+	}
+
+}
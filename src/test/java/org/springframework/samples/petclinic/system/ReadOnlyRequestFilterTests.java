@@ -0,0 +1,72 @@
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.samples.petclinic.PetClinicApplication;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test class for {@link ReadOnlyRequestFilter}
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@ContextConfiguration(classes = PetClinicApplication.class)
+@Import(ReadOnlyRequestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReadOnlyRequestFilterTests {
+
+	@Autowired
+	private ReadOnlyRequestFilter filter;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void shouldLoadEntitiesReadOnlyDuringGetRequests() throws Exception {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		PetType dog = new PetType();
+		dog.setName("dog");
+		transaction.executeWithoutResult(status -> entityManager.persist(dog));
+
+		AtomicBoolean readOnlyOnGet = new AtomicBoolean();
+		filter.doFilter(new MockHttpServletRequest("GET", "/"), new MockHttpServletResponse(),
+				(request, response) -> transaction.executeWithoutResult(status -> {
+					PetType loaded = entityManager.find(PetType.class, dog.getId());
+					loaded.setName("renamed");
+					readOnlyOnGet.set(entityManager.unwrap(Session.class).isReadOnly(loaded));
+				}));
+		AtomicBoolean readOnlyOnPost = new AtomicBoolean();
+		filter.doFilter(new MockHttpServletRequest("POST", "/"), new MockHttpServletResponse(),
+				(request, response) -> transaction.executeWithoutResult(status -> {
+					PetType loaded = entityManager.find(PetType.class, dog.getId());
+					readOnlyOnPost.set(entityManager.unwrap(Session.class).isReadOnly(loaded));
+				}));
+
+		assertThat(readOnlyOnGet).isTrue();
+		assertThat(readOnlyOnPost).isFalse();
+		String name = transaction.execute(status -> entityManager.find(PetType.class, dog.getId()).getName());
+		assertThat(name).isEqualTo("dog");
+		transaction.executeWithoutResult(status -> entityManager.remove(entityManager.find(PetType.class, dog.getId())));
+	}
+
+}
@@ -0,0 +1,132 @@
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test class for {@link ReplicaRoutingDataSource}, with two in-memory H2 databases as
+ * primary and replica.
+ */
+class ReplicaRoutingDataSourceTests {
+
+	private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-03-01T10:00:00Z"), ZoneOffset.UTC);
+
+	private DataSource replica;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private TransactionTemplate readOnly;
+
+	private TransactionTemplate readWrite;
+
+	private final ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(10), CLOCK);
+
+	@BeforeEach
+	void setUp() {
+		replica = database("replica");
+		setUp(new ReplicaLagMonitor(replica, "SELECT 0", Duration.ofSeconds(5), new SimpleMeterRegistry()));
+	}
+
+	@Test
+	void shouldRouteReadOnlyTransactionsToReplica() {
+		assertThat(server(readOnly)).isEqualTo("replica");
+		assertThat(server(readWrite)).isEqualTo("primary");
+		assertThat(server()).isEqualTo("primary");
+	}
+
+	@Test
+	void shouldFallBackToPrimaryWhileReplicaLags() {
+		setUp(new ReplicaLagMonitor(replica, "SELECT 6", Duration.ofSeconds(5), new SimpleMeterRegistry()));
+
+		assertThat(server(readOnly)).isEqualTo("primary");
+	}
+
+	@Test
+	void shouldFallBackToPrimaryWhenLagCannotBeChecked() {
+		setUp(new ReplicaLagMonitor(replica, "SELECT no_such_column", Duration.ofSeconds(5),
+				new SimpleMeterRegistry()));
+
+		assertThat(server(readOnly)).isEqualTo("primary");
+	}
+
+	@Test
+	void shouldFallBackToPrimaryWhileLagIsUnknown() {
+		setUp(new ReplicaLagMonitor(replica, "SELECT CAST(NULL AS DOUBLE)", Duration.ofSeconds(5),
+				new SimpleMeterRegistry()));
+
+		assertThat(server(readOnly)).isEqualTo("primary");
+	}
+
+	@Test
+	void shouldReadYourWritesFromPrimary() throws Exception {
+		List<String> servers = new ArrayList<>();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest(), response, (req, res) -> {
+			servers.add(server(readOnly));
+			servers.add(server(readWrite));
+			servers.add(server(readOnly));
+		});
+		Cookie cookie = response.getCookie(ReadYourWritesFilter.COOKIE);
+
+		MockHttpServletRequest pinned = new MockHttpServletRequest();
+		pinned.setCookies(cookie);
+		filter.doFilter(pinned, new MockHttpServletResponse(),
+				(req, res) -> servers.add(server(readOnly)));
+		MockHttpServletRequest expired = new MockHttpServletRequest();
+		expired.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, Long.toString(CLOCK.millis() - 1)));
+		filter.doFilter(expired, new MockHttpServletResponse(),
+				(req, res) -> servers.add(server(readOnly)));
+
+		assertThat(cookie.getValue()).isEqualTo(Long.toString(CLOCK.millis() + 10_000));
+		assertThat(servers).containsExactly("replica", "primary", "primary", "primary", "replica");
+	}
+
+	private void setUp(ReplicaLagMonitor lagMonitor) {
+		lagMonitor.check();
+		DataSource routing = new LazyConnectionDataSourceProxy(
+				new ReplicaRoutingDataSource(database("primary"), replica, lagMonitor));
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+		jdbcTemplate = new JdbcTemplate(routing);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+		readWrite = new TransactionTemplate(transactionManager);
+	}
+
+	private String server(TransactionTemplate transaction) {
+		return transaction.execute(status -> server());
+	}
+
+	private String server() {
+		return jdbcTemplate.queryForObject("SELECT name FROM server", String.class);
+	}
+
+	private static DataSource database(String name) {
+		DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS server (name VARCHAR(20))");
+		jdbcTemplate.update("DELETE FROM server");
+		jdbcTemplate.update("INSERT INTO server VALUES (?)", name);
+		return dataSource;
+	}
+
+}
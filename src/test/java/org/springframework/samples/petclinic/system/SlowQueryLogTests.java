@@ -0,0 +1,119 @@
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Test class for {@link SlowQueryLog} and {@link SlowQueryDataSource}, with an in-memory
+ * H2 database.
+ */
+class SlowQueryLogTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private SlowQueryLog log;
+
+	@AfterEach
+	void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+		log.close();
+	}
+
+	@Test
+	void shouldRecordSlowStatementsWithBindsRequestAndRepositoryMethod() {
+		JdbcTemplate jdbcTemplate = jdbcTemplate(10, Duration.ZERO, 0, true);
+		RequestContextHolder
+			.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest("GET", "/owners/1")));
+		assertThat(SlowQueryLog.enterRepositoryMethod("OwnerRepository.findById")).isTrue();
+		assertThat(SlowQueryLog.enterRepositoryMethod("OwnerRepository.findAll")).isFalse();
+		try {
+			jdbcTemplate.queryForList("SELECT name FROM pets WHERE id = ? AND name <> ?", 1, "x".repeat(150));
+		}
+		finally {
+			SlowQueryLog.exitRepositoryMethod();
+		}
+
+		assertThat(log.entries()).singleElement().satisfies(query -> {
+			assertThat(query.sql()).isEqualTo("SELECT name FROM pets WHERE id = ? AND name <> ?");
+			assertThat(query.binds()).containsExactly("1", "x".repeat(100) + "...");
+			assertThat(query.repositoryMethod()).isEqualTo("OwnerRepository.findById");
+			assertThat(query.requestUri()).isEqualTo("GET /owners/1");
+			assertThat(query.sampled()).isFalse();
+		});
+		assertThat(registry.get("petclinic.jdbc.statements").timer().count()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldMaskBindValuesUnlessShown() {
+		jdbcTemplate(10, Duration.ZERO, 0).queryForList("SELECT name FROM pets WHERE id = ? AND name <> ?", 1,
+				"George Franklin");
+
+		assertThat(log.entries()).singleElement()
+			.satisfies(query -> assertThat(query.binds()).containsExactly("<Integer>", "<String>"));
+	}
+
+	@Test
+	void shouldRecordBatchSize() {
+		JdbcTemplate jdbcTemplate = jdbcTemplate(10, Duration.ZERO, 0, true);
+		jdbcTemplate.batchUpdate("INSERT INTO pets VALUES (?, ?)",
+				List.of(new Object[] { 2, "Leo" }, new Object[] { 3, "Basil" }, new Object[] { 4, null }));
+
+		assertThat(log.entries()).singleElement().satisfies(query -> {
+			assertThat(query.batchSize()).isEqualTo(3);
+			assertThat(query.binds()).containsExactly("4", "null");
+			assertThat(query.repositoryMethod()).isNull();
+			assertThat(query.requestUri()).isNull();
+		});
+	}
+
+	@Test
+	void shouldSkipFastStatementsUnlessSampled() {
+		jdbcTemplate(10, Duration.ofMinutes(1), 0).queryForList("SELECT name FROM pets");
+		assertThat(log.entries()).isEmpty();
+		assertThat(registry.get("petclinic.jdbc.statements").timer().count()).isEqualTo(1);
+		log.close();
+
+		jdbcTemplate(10, Duration.ofMinutes(1), 1).queryForList("SELECT name FROM pets");
+		assertThat(log.entries()).singleElement().satisfies(query -> assertThat(query.sampled()).isTrue());
+	}
+
+	@Test
+	void shouldKeepNewestEntries() {
+		JdbcTemplate jdbcTemplate = jdbcTemplate(3, Duration.ZERO, 0, true);
+		for (int id = 1; id <= 5; id++) {
+			jdbcTemplate.queryForList("SELECT name FROM pets WHERE id = ?", id);
+		}
+
+		assertThat(log.entries()).extracting(query -> query.binds().get(0)).containsExactly("5", "4", "3");
+		log.clear();
+		assertThat(log.entries()).isEmpty();
+	}
+
+	private JdbcTemplate jdbcTemplate(int capacity, Duration threshold, double sampleRate) {
+		return jdbcTemplate(capacity, threshold, sampleRate, false);
+	}
+
+	private JdbcTemplate jdbcTemplate(int capacity, Duration threshold, double sampleRate, boolean showBindValues) {
+		DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:slowqueries;DB_CLOSE_DELAY=-1");
+		JdbcTemplate setup = new JdbcTemplate(dataSource);
+		setup.execute("CREATE TABLE IF NOT EXISTS pets (id INTEGER, name VARCHAR(200))");
+		setup.update("DELETE FROM pets");
+		setup.update("INSERT INTO pets VALUES (1, 'Leo')");
+		log = new SlowQueryLog(capacity, threshold, sampleRate, showBindValues, registry);
+		return new JdbcTemplate(new SlowQueryDataSource(dataSource, log));
+	}
+
+}
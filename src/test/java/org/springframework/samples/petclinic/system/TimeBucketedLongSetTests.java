@@ -0,0 +1,49 @@
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link TimeBucketedLongSet}
+ */
+class TimeBucketedLongSetTests {
+
+	private final AtomicLong clock = new AtomicLong();
+
+	private final TimeBucketedLongSet set = new TimeBucketedLongSet(Duration.ofNanos(600), 6, 60, clock::get);
+
+	@Test
+	void shouldRejectValuesSeenWithinWindow() {
+		assertThat(set.add(42)).isTrue();
+		assertThat(set.add(0)).isTrue();
+		clock.addAndGet(550);
+
+		assertThat(set.add(42)).isFalse();
+		assertThat(set.add(0)).isFalse();
+		assertThat(set.size()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldForgetValuesOnceWindowHasPassed() {
+		set.add(42);
+		clock.addAndGet(600);
+
+		assertThat(set.size()).isZero();
+		assertThat(set.add(42)).isTrue();
+	}
+
+	@Test
+	void shouldStayBoundedUnderBursts() {
+		for (long i = 1; i <= 1_000; i++) {
+			set.add(i);
+		}
+
+		assertThat(set.size()).isLessThanOrEqualTo(60);
+		assertThat(set.add(1_000)).isFalse();
+	}
+
+}
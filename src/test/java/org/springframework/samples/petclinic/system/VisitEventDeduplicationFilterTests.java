@@ -0,0 +1,106 @@
+package org.springframework.samples.petclinic.system;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.VisitDto;
+import org.springframework.samples.petclinic.owner.VisitEventHeaders;
+
+/**
+ * Test class for {@link VisitEventDeduplicationFilter}
+ */
+class VisitEventDeduplicationFilterTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final VisitEventDeduplicationFilter filter = new VisitEventDeduplicationFilter(Duration.ofMinutes(10),
+			1_000, registry);
+
+	@Test
+	void shouldDiscardRedeliveredEvents() {
+		assertThat(deliver(record(7L))).isTrue();
+		assertThat(deliver(record(8L))).isTrue();
+		assertThat(deliver(record(7L))).isFalse();
+
+		assertThat(registry.get("petclinic.visit.events").tag("outcome", "accepted").counter().count()).isEqualTo(2);
+		assertThat(registry.get("petclinic.visit.events").tag("outcome", "duplicate").counter().count()).isEqualTo(1);
+		assertThat(registry.get("petclinic.visit.events.dedup.window").gauge().value()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldDiscardResentChangesOnly() {
+		assertThat(deliver(record(VisitEventHeaders.eventId(1, VisitEventHeaders.Type.UPDATED, 1)))).isTrue();
+		assertThat(deliver(record(VisitEventHeaders.eventId(1, VisitEventHeaders.Type.UPDATED, 2)))).isTrue();
+		assertThat(deliver(record(VisitEventHeaders.eventId(1, VisitEventHeaders.Type.DELETED, 2)))).isTrue();
+		assertThat(deliver(record(VisitEventHeaders.eventId(2, VisitEventHeaders.Type.UPDATED, 1)))).isTrue();
+		assertThat(deliver(record(VisitEventHeaders.eventId(1, VisitEventHeaders.Type.UPDATED, 2)))).isFalse();
+	}
+
+	@Test
+	void shouldRedeliverEventsWhoseListenerFailed() {
+		AtomicInteger attempts = new AtomicInteger();
+		Runnable failingOnce = () -> {
+			if (attempts.incrementAndGet() == 1) {
+				throw new IllegalStateException("read model unavailable");
+			}
+		};
+
+		assertThatIllegalStateException().isThrownBy(() -> deliver(record(7L), failingOnce));
+		assertThat(deliver(record(7L), failingOnce)).isTrue();
+		assertThat(deliver(record(7L), failingOnce)).isFalse();
+
+		assertThat(attempts).hasValue(2);
+		assertThat(registry.get("petclinic.visit.events").tag("outcome", "duplicate").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldPassEventsWithoutId() {
+		assertThat(deliver(record(null))).isTrue();
+		assertThat(deliver(record(null))).isTrue();
+
+		assertThat(registry.get("petclinic.visit.events").tag("outcome", "untracked").counter().count()).isEqualTo(2);
+	}
+
+	private boolean deliver(ConsumerRecord<String, VisitDto> record) {
+		return deliver(record, () -> {
+		});
+	}
+
+	/**
+	 * Deliver a record the way the listener container does, to a listener that runs
+	 * {@code listener}.
+	 * @return whether the record reached the listener
+	 */
+	private boolean deliver(ConsumerRecord<String, VisitDto> record, Runnable listener) {
+		ConsumerRecord<String, VisitDto> intercepted = filter.intercept(record, null);
+		if (filter.filter(intercepted)) {
+			filter.success(intercepted, null);
+			return false;
+		}
+		try {
+			listener.run();
+		}
+		catch (RuntimeException ex) {
+			filter.failure(intercepted, ex, null);
+			throw ex;
+		}
+		filter.success(intercepted, null);
+		return true;
+	}
+
+	private static ConsumerRecord<String, VisitDto> record(Long eventId) {
+		ConsumerRecord<String, VisitDto> record = new ConsumerRecord<>("visit", 0, 0, null,
+				new VisitDto(1, null, "checkup", null, 1));
+		if (eventId != null) {
+			VisitEventHeaders.addEventId(record.headers(), eventId);
+		}
+		return record;
+	}
+
+}
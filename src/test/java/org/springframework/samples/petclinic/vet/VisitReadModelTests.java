@@ -0,0 +1,99 @@
+package org.springframework.samples.petclinic.vet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.VisitDto;
+import org.springframework.samples.petclinic.owner.VisitEventHeaders.Type;
+
+/**
+ * Test class for {@link VisitReadModel}
+ */
+class VisitReadModelTests {
+
+	private static final TopicPartition PARTITION = new TopicPartition("visit", 0);
+
+	private static final LocalDate JAN_1 = LocalDate.of(2024, 1, 1);
+
+	private static final LocalDate JAN_2 = LocalDate.of(2024, 1, 2);
+
+	private final VisitReadModel readModel = new VisitReadModel();
+
+	@Test
+	void shouldCountInsertedVisits() {
+		readModel.apply(PARTITION, 0, Type.CREATED, new VisitDto(1, JAN_1, "checkup", 3, 7));
+		readModel.apply(PARTITION, 1, Type.CREATED, new VisitDto(2, JAN_2, "shots", 3, 7));
+		readModel.apply(PARTITION, 2, Type.CREATED, new VisitDto(3, JAN_2, "shots", 4, 8));
+
+		assertThat(readModel.visitsPerVet()).containsExactlyInAnyOrderEntriesOf(Map.of(3, 2L, 4, 1L));
+		assertThat(readModel.visitsPerDay(JAN_1, JAN_2)).containsExactlyInAnyOrderEntriesOf(Map.of(JAN_1, 1L, JAN_2, 2L));
+		assertThat(readModel.lastVisit(7)).contains(JAN_2);
+		assertThat(readModel.nextOffsets()).containsEntry(PARTITION, 3L);
+	}
+
+	@Test
+	void shouldMoveVisitOnUpdate() {
+		readModel.apply(PARTITION, 0, Type.CREATED, new VisitDto(1, JAN_2, "checkup", 3, 7));
+		readModel.apply(PARTITION, 1, Type.UPDATED, new VisitDto(1, JAN_1, "checkup", 4, 7));
+
+		assertThat(readModel.visitsPerVet()).containsExactlyInAnyOrderEntriesOf(Map.of(4, 1L));
+		assertThat(readModel.visitsPerDay(JAN_1, JAN_2)).containsExactlyInAnyOrderEntriesOf(Map.of(JAN_1, 1L));
+		assertThat(readModel.lastVisit(7)).contains(JAN_1);
+	}
+
+	@Test
+	void shouldRetractDeletedVisits() {
+		readModel.apply(PARTITION, 0, Type.CREATED, new VisitDto(1, JAN_1, "checkup", 3, 7));
+		readModel.apply(PARTITION, 1, Type.CREATED, new VisitDto(2, JAN_2, "checkup", 3, 7));
+		readModel.apply(PARTITION, 2, Type.DELETED, new VisitDto(2, JAN_2, "checkup", 3, 7));
+		readModel.apply(PARTITION, 3, Type.DELETED, new VisitDto(2, JAN_2, "checkup", 3, 7));
+
+		assertThat(readModel.visitsPerVet()).containsExactlyInAnyOrderEntriesOf(Map.of(3, 1L));
+		assertThat(readModel.lastVisit(7)).contains(JAN_1);
+	}
+
+	@Test
+	void shouldSkipRecordsWithoutEventType() {
+		readModel.apply(PARTITION, 0, Type.CREATED, new VisitDto(1, JAN_1, "checkup", 3, 7));
+		// published before event types, possibly a delete
+		readModel.apply(PARTITION, 1, null, new VisitDto(1, JAN_2, "checkup", 4, 7));
+
+		assertThat(readModel.visitsPerVet()).containsExactlyInAnyOrderEntriesOf(Map.of(3, 1L));
+		assertThat(readModel.nextOffsets()).containsEntry(PARTITION, 2L);
+	}
+
+	@Test
+	void shouldIgnoreRedeliveredInsert() {
+		VisitDto visit = new VisitDto(1, JAN_1, "checkup", 3, 7);
+		readModel.apply(PARTITION, 0, Type.CREATED, visit);
+		readModel.apply(PARTITION, 0, Type.CREATED, visit);
+
+		assertThat(readModel.visitsPerVet()).containsExactlyInAnyOrderEntriesOf(Map.of(3, 1L));
+	}
+
+	@Test
+	void shouldRestoreFromSnapshot() throws IOException {
+		readModel.apply(PARTITION, 41, Type.CREATED, new VisitDto(1, JAN_1, "checkup", 3, 7));
+		readModel.apply(PARTITION, 42, Type.CREATED, new VisitDto(2, JAN_2, "checkup", null, 7));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		readModel.writeSnapshot(new DataOutputStream(bytes));
+
+		VisitReadModel restored = new VisitReadModel();
+		restored.readSnapshot(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertThat(restored.visitsPerVet()).isEqualTo(readModel.visitsPerVet());
+		assertThat(restored.visitsPerDay(JAN_1, JAN_2)).isEqualTo(readModel.visitsPerDay(JAN_1, JAN_2));
+		assertThat(restored.lastVisit(7)).contains(JAN_2);
+		assertThat(restored.nextOffsets()).containsEntry(PARTITION, 43L);
+	}
+
+}
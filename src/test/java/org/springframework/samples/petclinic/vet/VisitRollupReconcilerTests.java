@@ -0,0 +1,182 @@
+package org.springframework.samples.petclinic.vet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.PetType;
+import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.samples.petclinic.owner.VisitArchive;
+import org.springframework.samples.petclinic.owner.VisitSummary;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Test class for {@link VisitRollupReconciler}
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = Replace.NONE)
+@Import(VisitRollupStore.class)
+class VisitRollupReconcilerTests {
+
+	private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+	@Autowired
+	private VisitRollupStore store;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private VisitRollupReconciler reconciler;
+
+	private VisitArchive archive;
+
+	private VisitRollupUpdater updater;
+
+	@TempDir
+	Path directory;
+
+	private Pet leo;
+
+	private PetType cat;
+
+	private Vet carter;
+
+	@BeforeEach
+	void setUp() {
+		Clock clock = Clock.fixed(DAY.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+		archive = new VisitArchive(directory);
+		updater = new VisitRollupUpdater(store, jdbcTemplate.getDataSource(), transactionManager);
+		reconciler = new VisitRollupReconciler(store, archive, updater, jdbcTemplate, transactionManager, registry,
+				Period.ofDays(7), clock);
+		cat = new PetType();
+		cat.setName("cat");
+		entityManager.persist(cat);
+		leo = new Pet();
+		leo.setName("Leo");
+		leo.setBirthDate(LocalDate.of(2020, 9, 7));
+		leo.setType(cat);
+		Owner owner = new Owner();
+		owner.setFirstName("George");
+		owner.setLastName("Franklin");
+		owner.setAddress("110 W. Liberty St.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085551023");
+		owner.addPet(leo);
+		entityManager.persist(owner);
+		carter = new Vet();
+		carter.setFirstName("James");
+		carter.setLastName("Carter");
+		entityManager.persist(carter);
+		visit(leo, DAY, carter);
+		visit(leo, DAY, carter);
+		visit(leo, DAY, null);
+		visit(leo, DAY.minusDays(30), carter);
+		entityManager.flush();
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		updater.close();
+	}
+
+	@Test
+	void shouldBackfillEmptyRollups() {
+		reconciler.backfillIfEmpty();
+
+		assertThat(store.find(VisitRollupDimension.VET, DAY.minusDays(30), DAY)).containsExactlyInAnyOrderEntriesOf(
+				Map.of(new VisitRollupStore.Key(carter.getId(), DAY.minusDays(30)), 1L,
+						new VisitRollupStore.Key(0, DAY), 1L, new VisitRollupStore.Key(carter.getId(), DAY), 2L));
+		assertThat(store.find(VisitRollupDimension.PET_TYPE, DAY, DAY))
+			.containsExactlyInAnyOrderEntriesOf(Map.of(new VisitRollupStore.Key(cat.getId(), DAY), 3L));
+	}
+
+	@Test
+	void shouldRepairDriftedRowsWithinTheWindow() {
+		reconciler.backfillIfEmpty();
+		store.increment(VisitRollupDimension.VET, new VisitRollupStore.Key(carter.getId(), DAY), 5);
+		store.set(VisitRollupDimension.PET_TYPE, new VisitRollupStore.Key(cat.getId(), DAY), 0);
+		store.set(VisitRollupDimension.VET, new VisitRollupStore.Key(42, DAY.minusDays(1)), 3);
+		// outside the reconcile window, left alone
+		store.increment(VisitRollupDimension.VET, new VisitRollupStore.Key(carter.getId(), DAY.minusDays(30)), 1);
+
+		reconciler.reconcileRecent();
+
+		assertThat(store.find(VisitRollupDimension.VET, DAY.minusDays(7), DAY)).containsExactlyInAnyOrderEntriesOf(
+				Map.of(new VisitRollupStore.Key(0, DAY), 1L, new VisitRollupStore.Key(carter.getId(), DAY), 2L));
+		assertThat(store.find(VisitRollupDimension.PET_TYPE, DAY, DAY))
+			.containsExactlyInAnyOrderEntriesOf(Map.of(new VisitRollupStore.Key(cat.getId(), DAY), 3L));
+		assertThat(store.find(VisitRollupDimension.VET, DAY.minusDays(30), DAY.minusDays(30)))
+			.containsEntry(new VisitRollupStore.Key(carter.getId(), DAY.minusDays(30)), 2L);
+		assertThat(registry.counter("petclinic.visits.rollups.repaired").count()).isEqualTo(3);
+	}
+
+	@Test
+	void shouldRecomputeARangeOutsideTheWindow() {
+		reconciler.backfillIfEmpty();
+		store.set(VisitRollupDimension.VET, new VisitRollupStore.Key(carter.getId(), DAY.minusDays(30)), 7);
+		store.set(VisitRollupDimension.VET, new VisitRollupStore.Key(carter.getId(), DAY), 7);
+
+		reconciler.reconcileRange(DAY.minusDays(31), DAY.minusDays(29));
+
+		assertThat(store.find(VisitRollupDimension.VET, DAY.minusDays(30), DAY)).containsExactlyInAnyOrderEntriesOf(
+				Map.of(new VisitRollupStore.Key(carter.getId(), DAY.minusDays(30)), 1L,
+						new VisitRollupStore.Key(0, DAY), 1L, new VisitRollupStore.Key(carter.getId(), DAY), 7L));
+	}
+
+	@Test
+	void shouldKeepCountingArchivedVisits() throws IOException {
+		LocalDate archived = DAY.minusDays(60);
+		archive.append(YearMonth.from(archived),
+				List.of(new VisitSummary(9001, archived, "checkup", leo.getId(), carter.getId()),
+						new VisitSummary(9002, DAY.minusDays(2), "checkup", leo.getId(), null)));
+
+		reconciler.backfillIfEmpty();
+		reconciler.reconcileRecent();
+
+		assertThat(store.find(VisitRollupDimension.VET, archived, archived))
+			.containsExactlyInAnyOrderEntriesOf(Map.of(new VisitRollupStore.Key(carter.getId(), archived), 1L));
+		assertThat(store.find(VisitRollupDimension.PET_TYPE, DAY.minusDays(2), DAY.minusDays(2)))
+			.containsExactlyInAnyOrderEntriesOf(Map.of(new VisitRollupStore.Key(cat.getId(), DAY.minusDays(2)), 1L));
+		assertThat(registry.counter("petclinic.visits.rollups.repaired").count()).isZero();
+	}
+
+	private void visit(Pet pet, LocalDate date, Vet vet) {
+		Visit visit = new Visit();
+		visit.setPet(pet);
+		visit.setDate(date);
+		visit.setDescription("checkup");
+		visit.setVet(vet);
+		entityManager.persist(visit);
+	}
+
+}
@@ -1,3 +1,9 @@
+DROP TABLE IF EXISTS bulk_load_ids;
+DROP TABLE IF EXISTS bulk_load_history;
+DROP TABLE IF EXISTS seed_history;
+DROP TABLE IF EXISTS visit_rollup_vet_day;
+DROP TABLE IF EXISTS visit_rollup_type_day;
+DROP TABLE IF EXISTS owner_snapshot;
 DROP TABLE IF EXISTS vet_specialties;
 DROP TABLE IF EXISTS visits;
 DROP TABLE IF EXISTS pets;
@@ -5,6 +11,12 @@ DROP TABLE IF EXISTS vets;
 DROP TABLE IF EXISTS types;
 DROP TABLE IF EXISTS specialties;
 DROP TABLE IF EXISTS owners;
+DROP SEQUENCE IF EXISTS owners_seq;
+DROP SEQUENCE IF EXISTS pets_seq;
+DROP SEQUENCE IF EXISTS types_seq;
+DROP SEQUENCE IF EXISTS visits_seq;
+DROP SEQUENCE IF EXISTS vets_seq;
+DROP SEQUENCE IF EXISTS specialties_seq;
 
 CREATE TABLE owners (
   id INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
@@ -13,6 +25,10 @@ CREATE TABLE owners (
    address VARCHAR(255),
    city VARCHAR(255),
    telephone VARCHAR(255),
+   pet_count INTEGER DEFAULT 0 NOT NULL,
+   visit_count INTEGER DEFAULT 0 NOT NULL,
+   last_visit_date date,
+   aggregate_version BIGINT DEFAULT 0 NOT NULL,
    CONSTRAINT pk_owners PRIMARY KEY (id)
 );
 
@@ -22,6 +38,8 @@ CREATE TABLE pets (
    birth_date date,
    type_id INTEGER,
    owner_id INTEGER,
+   visit_count INTEGER DEFAULT 0 NOT NULL,
+   last_visit_date date,
    CONSTRAINT pk_pets PRIMARY KEY (id)
 );
 
@@ -57,6 +75,7 @@ CREATE TABLE visits (
    description VARCHAR(255),
    vet_id INTEGER,
    pet_id INTEGER,
+   version INTEGER DEFAULT 0 NOT NULL,
    CONSTRAINT pk_visits PRIMARY KEY (id)
 );
 
@@ -71,3 +90,65 @@ ALTER TABLE visits ADD CONSTRAINT FK_VISITS_ON_VET FOREIGN KEY (vet_id) REFERENC
 ALTER TABLE vet_specialties ADD CONSTRAINT fk_vetspe_on_specialty FOREIGN KEY (specialty_id) REFERENCES specialties (id);
 
 ALTER TABLE vet_specialties ADD CONSTRAINT fk_vetspe_on_vet FOREIGN KEY (vet_id) REFERENCES vets (id);
+
+CREATE TABLE owner_snapshot (
+  owner_id INTEGER NOT NULL,
+   version BIGINT NOT NULL,
+   document TEXT NOT NULL,
+   built_at TIMESTAMP NOT NULL,
+   CONSTRAINT pk_owner_snapshot PRIMARY KEY (owner_id)
+);
+
+CREATE TABLE seed_history (
+  script VARCHAR(255) NOT NULL,
+   checksum VARCHAR(64) NOT NULL,
+   applied_at TIMESTAMP NOT NULL,
+   CONSTRAINT pk_seed_history PRIMARY KEY (script)
+);
+
+CREATE TABLE bulk_load_history (
+  file_name VARCHAR(255) NOT NULL,
+   checksum VARCHAR(64) NOT NULL,
+   row_count BIGINT NOT NULL,
+   loaded_at TIMESTAMP NOT NULL,
+   CONSTRAINT pk_bulk_load_history PRIMARY KEY (file_name, checksum)
+);
+
+CREATE TABLE bulk_load_ids (
+  table_name VARCHAR(30) NOT NULL,
+   legacy_id VARCHAR(255) NOT NULL,
+   id INTEGER NOT NULL,
+   CONSTRAINT pk_bulk_load_ids PRIMARY KEY (table_name, legacy_id)
+);
+
+CREATE TABLE visit_rollup_vet_day (
+  vet_id INTEGER NOT NULL,
+   visit_date date NOT NULL,
+   visit_count BIGINT NOT NULL,
+   CONSTRAINT pk_visit_rollup_vet_day PRIMARY KEY (vet_id, visit_date)
+);
+
+CREATE TABLE visit_rollup_type_day (
+  type_id INTEGER NOT NULL,
+   visit_date date NOT NULL,
+   visit_count BIGINT NOT NULL,
+   CONSTRAINT pk_visit_rollup_type_day PRIMARY KEY (type_id, visit_date)
+);
+
+CREATE INDEX visit_rollup_vet_day_visit_date_idx ON visit_rollup_vet_day(visit_date);
+
+CREATE INDEX visit_rollup_type_day_visit_date_idx ON visit_rollup_type_day(visit_date);
+
+ALTER TABLE owner_snapshot ADD CONSTRAINT fk_owner_snapshot_owner FOREIGN KEY (owner_id) REFERENCES owners (id) ON DELETE CASCADE;
+
+CREATE SEQUENCE owners_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE pets_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE types_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE visits_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE vets_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE specialties_seq START WITH 1 INCREMENT BY 50;